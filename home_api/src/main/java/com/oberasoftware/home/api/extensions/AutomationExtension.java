@@ -4,8 +4,11 @@ import com.oberasoftware.home.api.commands.handlers.CommandHandler;
 import com.oberasoftware.home.api.model.ExtensionResource;
 import com.oberasoftware.home.api.model.storage.PluginItem;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author renarj
@@ -29,5 +32,20 @@ public interface AutomationExtension {
 
     boolean isReady();
 
+    /**
+     * @return Future that completes once the extension is ready, extensions that know when they become ready
+     * should complete their own future, by default the ready state is polled
+     */
+    default CompletableFuture<Void> whenReady() {
+        return ExtensionReadiness.poll(this::isReady);
+    }
+
+    /**
+     * @return The ids of the extensions that need to be ready before this extension is activated
+     */
+    default Set<String> getDependencies() {
+        return Collections.emptySet();
+    }
+
     void activate(Optional<PluginItem> pluginItem);
 }
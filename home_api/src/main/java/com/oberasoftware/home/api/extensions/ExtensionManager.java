@@ -4,6 +4,7 @@ import com.oberasoftware.home.api.exceptions.HomeAutomationException;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author renarj
@@ -13,6 +14,11 @@ public interface ExtensionManager {
 
     void activateExtensions() throws HomeAutomationException;
 
+    /**
+     * @return Future that completes once the activation of all extensions has either succeeded or failed
+     */
+    CompletableFuture<Void> whenActivated();
+
     List<AutomationExtension> getExtensions();
 
     Optional<AutomationExtension> getExtension(String extensionId);
@@ -0,0 +1,47 @@
+package com.oberasoftware.home.api.extensions;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Readiness for extensions that only expose a ready state and do not complete a future themselves. The state
+ * is checked on a shared scheduler, so waiting for an extension does not occupy a thread.
+ *
+ * @author renarj
+ */
+public final class ExtensionReadiness {
+    private static final long POLL_INTERVAL = 100;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "extension-readiness");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ExtensionReadiness() {
+    }
+
+    public static CompletableFuture<Void> poll(BooleanSupplier ready) {
+        if(ready.getAsBoolean()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        ScheduledFuture<?> check = SCHEDULER.scheduleWithFixedDelay(() -> {
+            try {
+                if(ready.getAsBoolean()) {
+                    future.complete(null);
+                }
+            } catch(RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }, POLL_INTERVAL, POLL_INTERVAL, TimeUnit.MILLISECONDS);
+        future.whenComplete((v, e) -> check.cancel(false));
+
+        return future;
+    }
+}
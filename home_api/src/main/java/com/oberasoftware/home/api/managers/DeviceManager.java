@@ -13,6 +13,8 @@ import java.util.Optional;
 public interface DeviceManager {
     DeviceItem registerDevice(String pluginId, Device device) throws HomeAutomationException;
 
+    List<DeviceItem> registerDevices(String pluginId, List<Device> devices) throws HomeAutomationException;
+
     DeviceItem findDevice(String itemId);
 
     List<DeviceItem> getDevices(String controllerId);
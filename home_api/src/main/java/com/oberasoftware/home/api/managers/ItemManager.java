@@ -1,6 +1,7 @@
 package com.oberasoftware.home.api.managers;
 
 import com.oberasoftware.home.api.exceptions.HomeAutomationException;
+import com.oberasoftware.home.api.model.Device;
 import com.oberasoftware.home.api.model.storage.ControllerItem;
 import com.oberasoftware.home.api.model.storage.DeviceItem;
 import com.oberasoftware.home.api.model.storage.Item;
@@ -19,6 +20,12 @@ public interface ItemManager {
 
     DeviceItem createOrUpdateDevice(String controllerId, String pluginId, String deviceId, String name, Map<String, String> properties) throws HomeAutomationException;
 
+    /**
+     * Creates or updates all devices of a plugin, the devices are compared against the stored devices of the plugin
+     * and only new or changed devices are written.
+     */
+    List<DeviceItem> createOrUpdateDevices(String controllerId, String pluginId, List<Device> devices) throws HomeAutomationException;
+
     List<ControllerItem> findControllers();
 
     List<PluginItem> findPlugins(String controllerId);
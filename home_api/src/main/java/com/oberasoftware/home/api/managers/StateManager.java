@@ -1,6 +1,7 @@
 package com.oberasoftware.home.api.managers;
 
 import com.oberasoftware.home.api.model.State;
+import com.oberasoftware.home.api.model.StateSnapshot;
 import com.oberasoftware.home.api.model.Status;
 import com.oberasoftware.home.api.model.storage.DeviceItem;
 import com.oberasoftware.home.api.types.Value;
@@ -20,4 +21,6 @@ public interface StateManager {
     Map<String, State> getStates();
 
     State getState(String itemId);
+
+    StateSnapshot getSnapshot();
 }
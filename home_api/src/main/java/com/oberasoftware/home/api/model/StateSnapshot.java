@@ -0,0 +1,24 @@
+package com.oberasoftware.home.api.model;
+
+import java.util.Map;
+
+/**
+ * Immutable point in time view of the state of all items. Every change to the state of an item
+ * increases the version, which allows clients to only retrieve the states changed since a version
+ * they have seen before.
+ *
+ * @author renarj
+ */
+public interface StateSnapshot {
+    long getVersion();
+
+    State getState(String itemId);
+
+    Map<String, State> getStates();
+
+    /**
+     * @param version The version of a previously seen snapshot
+     * @return The states of the items that have changed after the given version
+     */
+    Map<String, State> getChangesSince(long version);
+}
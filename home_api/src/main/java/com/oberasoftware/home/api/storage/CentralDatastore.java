@@ -4,19 +4,39 @@ import com.oberasoftware.home.api.exceptions.DataStoreException;
 import com.oberasoftware.home.api.model.storage.Container;
 import com.oberasoftware.home.api.model.storage.HomeEntity;
 
+import java.util.List;
+
 /**
  * @author renarj
  */
 public interface CentralDatastore {
+    /**
+     * Starts a transaction that excludes all other writes, prefer locking only the touched entity
+     * using {@link #beginTransaction(Class, String)}
+     */
     void beginTransaction();
 
     void commitTransaction();
 
+    /**
+     * Starts a transaction on a single entity, only transactions on the same entity type and key are serialized.
+     * The key is typically the entity id, or a natural key for entities that are looked up before they are created.
+     * A null key, for example the id of a new entity, does not lock any entity.
+     */
+    void beginTransaction(Class<?> type, String key);
+
+    void commitTransaction(Class<?> type, String key);
+
     void delete(Class<?> type, String id) throws DataStoreException;
 
     <T extends HomeEntity> T store(HomeEntity entity) throws DataStoreException;
 
     Container store(Container container) throws DataStoreException;
 
+    /**
+     * Stores all entities as a single batch using one database session
+     */
+    <T extends HomeEntity> List<T> store(List<T> entities) throws DataStoreException;
+
     HomeDAO getDAO();
 }
@@ -0,0 +1,62 @@
+package com.oberasoftware.home.core.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.oberasoftware.home.api.model.State;
+import com.oberasoftware.home.api.model.StateItem;
+import com.oberasoftware.home.api.model.Status;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * State that cannot be changed once created, so it can be shared with all readers without copying
+ *
+ * @author renarj
+ */
+public class ImmutableState implements State {
+    private final String itemId;
+    private final Status deviceStatus;
+    private final ImmutableList<StateItem> stateItems;
+    private final ImmutableMap<String, StateItem> labelIndex;
+
+    public ImmutableState(String itemId, Status deviceStatus, List<StateItem> stateItems) {
+        this.itemId = itemId;
+        this.deviceStatus = deviceStatus;
+        this.stateItems = ImmutableList.copyOf(stateItems);
+
+        Map<String, StateItem> index = new HashMap<>();
+        stateItems.forEach(s -> index.put(s.getLabel().toLowerCase(), s));
+        this.labelIndex = ImmutableMap.copyOf(index);
+    }
+
+    @Override
+    public String getItemId() {
+        return itemId;
+    }
+
+    @Override
+    public List<StateItem> getStateItems() {
+        return stateItems;
+    }
+
+    @Override
+    public StateItem getStateItem(String label) {
+        return labelIndex.get(label.toLowerCase());
+    }
+
+    @Override
+    public Status getDeviceStatus() {
+        return deviceStatus;
+    }
+
+    @Override
+    public String toString() {
+        return "ImmutableState{" +
+                "itemId='" + itemId + '\'' +
+                ", deviceStatus=" + deviceStatus +
+                ", stateItems=" + stateItems +
+                '}';
+    }
+}
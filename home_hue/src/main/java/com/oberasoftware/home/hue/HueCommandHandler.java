@@ -33,6 +33,9 @@ public class HueCommandHandler implements GroupCommandHandler {
     @Autowired
     private List<HueCommandAction> actions;
 
+    @Autowired
+    private HueLightMonitor lightMonitor;
+
     private ConcurrentMap<String, HueCommandAction<Command>> actionMap = new ConcurrentHashMap<>();
 
     @PostConstruct
@@ -67,6 +70,7 @@ public class HueCommandHandler implements GroupCommandHandler {
             LOG.debug("Executing group: {} action: {}", groupItem, command);
 
             action.get().receive(groupItem, items, command);
+            lightMonitor.commandSent();
         }
     }
 
@@ -77,6 +81,7 @@ public class HueCommandHandler implements GroupCommandHandler {
             LOG.debug("Executing device: {} action: {}", item, action.get());
 
             action.get().receive(item, command);
+            lightMonitor.commandSent();
         }
     }
 
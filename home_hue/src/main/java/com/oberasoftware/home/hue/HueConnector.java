@@ -5,6 +5,7 @@ import com.philips.lighting.hue.sdk.PHHueSDK;
 import com.philips.lighting.model.PHBridge;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author renarj
@@ -17,4 +18,6 @@ public interface HueConnector {
     PHBridge getBridge();
 
     boolean isConnected();
+
+    CompletableFuture<Void> whenConnected();
 }
@@ -20,6 +20,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.slf4j.LoggerFactory.getLogger;
@@ -37,6 +38,7 @@ public class HueConnectorImpl implements EventHandler, HueConnector {
     private String bridgeIp;
 
     private AtomicBoolean connected = new AtomicBoolean(false);
+    private final CompletableFuture<Void> connectedFuture = new CompletableFuture<>();
 
     @Autowired
     private AutomationBus automationBus;
@@ -93,6 +95,7 @@ public class HueConnectorImpl implements EventHandler, HueConnector {
         public void onBridgeConnected(PHBridge phBridge, String s) {
             LOG.info("Bridge connected: {} with user: {}", phBridge, bridgeUser);
             connected.set(true);
+            connectedFuture.complete(null);
 
             sdk.setSelectedBridge(phBridge);
             sdk.enableHeartbeat(phBridge, PHHueSDK.HB_INTERVAL);
@@ -170,4 +173,9 @@ public class HueConnectorImpl implements EventHandler, HueConnector {
     public boolean isConnected() {
         return connected.get();
     }
+
+    @Override
+    public CompletableFuture<Void> whenConnected() {
+        return connectedFuture;
+    }
 }
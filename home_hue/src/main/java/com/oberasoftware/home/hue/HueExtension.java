@@ -12,6 +12,7 @@ import org.springframework.stereotype.Component;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Renze de Vries
@@ -56,6 +57,11 @@ public class HueExtension implements DeviceExtension {
         return hueConnector.isConnected();
     }
 
+    @Override
+    public CompletableFuture<Void> whenReady() {
+        return hueConnector.whenConnected();
+    }
+
     @Override
     public List<Device> getDevices() {
         return hueDeviceManager.getDevices();
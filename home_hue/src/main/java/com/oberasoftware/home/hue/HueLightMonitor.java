@@ -5,45 +5,72 @@ import com.oberasoftware.home.api.events.OnOffValue;
 import com.oberasoftware.home.api.events.devices.DeviceValueEvent;
 import com.oberasoftware.home.api.events.devices.DeviceValueEventImpl;
 import com.oberasoftware.home.api.types.VALUE_TYPE;
-import com.oberasoftware.home.api.types.Value;
 import com.oberasoftware.home.core.types.ValueImpl;
+import com.philips.lighting.hue.sdk.PHAccessPoint;
+import com.philips.lighting.hue.sdk.PHMessageType;
+import com.philips.lighting.hue.sdk.PHSDKListener;
 import com.philips.lighting.model.PHBridge;
 import com.philips.lighting.model.PHBridgeResourcesCache;
+import com.philips.lighting.model.PHHueParsingError;
 import com.philips.lighting.model.PHLight;
 import com.philips.lighting.model.PHLightState;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
+ * Publishes the state of the Hue lights, only when the on/off state or the brightness of a light changed
+ * since it was last seen. Changes are picked up as soon as the SDK reports an updated lights cache. Next
+ * to that the cache is checked on an interval, which is short for a while after a command was sent, during
+ * which the lights are also polled from the bridge at that interval, and long when idle.
+ *
  * @author renarj
  */
 @Component
 public class HueLightMonitor {
     private static final Logger LOG = getLogger(HueLightMonitor.class);
 
-    private static final int MONITOR_INTERVAL = 60000;
-
     @Autowired
     private HueConnector hueConnector;
 
     @Autowired
     private AutomationBus bus;
 
+    @Value("${hue.poll.idle.interval:60000}")
+    private long idleInterval;
+
+    @Value("${hue.poll.fast.interval:1000}")
+    private long fastInterval;
+
+    @Value("${hue.poll.fast.duration:30000}")
+    private long fastDuration;
+
+    private final ConcurrentMap<String, LightSnapshot> lastSeen = new ConcurrentHashMap<>();
+
     private ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledFuture<?> nextCheck;
+    private long fastUntil;
+    private boolean fastPolling;
 
     @PostConstruct
     public void start() {
         LOG.debug("Scheduling regular light state checks");
-        scheduledExecutorService.scheduleAtFixedRate(this::checkAllLightStates, 0, MONITOR_INTERVAL, TimeUnit.MILLISECONDS);
+        schedule(0);
+
+        hueConnector.whenConnected().thenRun(() -> hueConnector.getSdk().getNotificationManager().registerSDKListener(new CacheListener()));
     }
 
     @PreDestroy
@@ -51,6 +78,45 @@ public class HueLightMonitor {
         scheduledExecutorService.shutdown();
     }
 
+    /**
+     * Signals a command was sent to the lights, the light states are checked at the fast interval for a while.
+     */
+    public synchronized void commandSent() {
+        fastUntil = System.currentTimeMillis() + fastDuration;
+        if(!fastPolling && hueConnector.isConnected()) {
+            LOG.debug("Command sent, polling lights every: {} ms", fastInterval);
+            fastPolling = true;
+            hueConnector.getSdk().getHeartbeatManager().enableLightsHeartbeat(hueConnector.getBridge(), fastInterval);
+            schedule(fastInterval);
+        }
+    }
+
+    private synchronized void schedule(long delay) {
+        if(nextCheck != null) {
+            nextCheck.cancel(false);
+        }
+        if(!scheduledExecutorService.isShutdown()) {
+            nextCheck = scheduledExecutorService.schedule(this::scheduledCheck, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void scheduledCheck() {
+        try {
+            checkAllLightStates();
+        } catch(RuntimeException e) {
+            LOG.error("Unable to check light states", e);
+        }
+
+        synchronized (this) {
+            if(fastPolling && System.currentTimeMillis() > fastUntil) {
+                LOG.debug("No recent commands, polling lights every: {} ms", idleInterval);
+                fastPolling = false;
+                hueConnector.getSdk().getHeartbeatManager().disableLightsHeartbeat(hueConnector.getBridge());
+            }
+            schedule(fastPolling ? fastInterval : idleInterval);
+        }
+    }
+
     public void checkAllLightStates() {
         if(hueConnector.isConnected()) {
             LOG.debug("Checking hue light state");
@@ -64,21 +130,80 @@ public class HueLightMonitor {
     }
 
     public void checkLightState(PHLight light) {
-        LOG.debug("Checking light state: {}", light);
-
         String deviceId = light.getIdentifier();
         PHLightState lightState = light.getLastKnownLightState();
-
-        Value onOffValue = new OnOffValue(lightState.isOn());
-
-        bus.publish(new DeviceValueEventImpl(bus.getControllerId(),
-                HueExtension.HUE_ID, deviceId, onOffValue, OnOffValue.LABEL));
+        if(lightState == null || lightState.isOn() == null || lightState.getBrightness() == null) {
+            LOG.debug("No known state for light: {}", deviceId);
+            return;
+        }
 
         int brightness = lightState.getBrightness();
         int correctedScale = (int)((double)brightness/255 * 100);
-        Value value = new ValueImpl(VALUE_TYPE.NUMBER, correctedScale);
-        DeviceValueEvent valueEvent = new DeviceValueEventImpl(bus.getControllerId(),
-                HueExtension.HUE_ID, deviceId, value, "value");
-        bus.publish(valueEvent);
+        LightSnapshot current = new LightSnapshot(lightState.isOn(), correctedScale);
+        LightSnapshot previous = lastSeen.put(deviceId, current);
+
+        if(previous == null || previous.on != current.on) {
+            LOG.debug("Light: {} on state changed to: {}", deviceId, current.on);
+            OnOffValue onOffValue = new OnOffValue(current.on);
+
+            bus.publish(new DeviceValueEventImpl(bus.getControllerId(),
+                    HueExtension.HUE_ID, deviceId, onOffValue, OnOffValue.LABEL));
+        }
+
+        if(previous == null || previous.brightness != current.brightness) {
+            LOG.debug("Light: {} brightness changed to: {}", deviceId, current.brightness);
+            ValueImpl value = new ValueImpl(VALUE_TYPE.NUMBER, current.brightness);
+            DeviceValueEvent valueEvent = new DeviceValueEventImpl(bus.getControllerId(),
+                    HueExtension.HUE_ID, deviceId, value, "value");
+            bus.publish(valueEvent);
+        }
+    }
+
+    private static final class LightSnapshot {
+        private final boolean on;
+        private final int brightness;
+
+        private LightSnapshot(boolean on, int brightness) {
+            this.on = on;
+            this.brightness = brightness;
+        }
+    }
+
+    private class CacheListener implements PHSDKListener {
+        @Override
+        public void onCacheUpdated(List<Integer> list, PHBridge phBridge) {
+            if(list.contains(PHMessageType.LIGHTS_CACHE_UPDATED) && !scheduledExecutorService.isShutdown()) {
+                LOG.debug("Lights cache updated, checking light states");
+                scheduledExecutorService.execute(() -> phBridge.getResourceCache().getAllLights().forEach(HueLightMonitor.this::checkLightState));
+            }
+        }
+
+        @Override
+        public void onBridgeConnected(PHBridge phBridge, String s) {
+        }
+
+        @Override
+        public void onAuthenticationRequired(PHAccessPoint phAccessPoint) {
+        }
+
+        @Override
+        public void onAccessPointsFound(List<PHAccessPoint> list) {
+        }
+
+        @Override
+        public void onError(int i, String s) {
+        }
+
+        @Override
+        public void onConnectionResumed(PHBridge phBridge) {
+        }
+
+        @Override
+        public void onConnectionLost(PHAccessPoint phAccessPoint) {
+        }
+
+        @Override
+        public void onParsingErrors(List<PHHueParsingError> list) {
+        }
     }
 }
@@ -1,74 +1,128 @@
 package com.oberasoftware.home.hue.actions;
 
-import com.google.common.util.concurrent.Uninterruptibles;
 import com.oberasoftware.home.api.exceptions.RuntimeHomeAutomationException;
 import com.oberasoftware.home.api.model.storage.DeviceItem;
 import com.oberasoftware.home.api.model.storage.GroupItem;
+import com.oberasoftware.home.hue.HueConnector;
 import com.philips.lighting.hue.listener.PHGroupListener;
 import com.philips.lighting.model.PHBridge;
 import com.philips.lighting.model.PHBridgeResource;
 import com.philips.lighting.model.PHGroup;
 import com.philips.lighting.model.PHHueError;
 import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
+ * Resolves the Philips Hue group for a set of lights. Groups are cached by their set of light ids, so the
+ * bridge groups are only scanned the first time a set of lights is used. Missing groups are created on the
+ * bridge asynchronously, the returned future fails when the bridge does not respond within the timeout.
+ *
  * @author Renze de Vries
  */
+@Component
 public class GroupHelper {
     private static final Logger LOG = getLogger(GroupHelper.class);
 
-    private GroupHelper() {
+    @Autowired
+    private HueConnector hueConnector;
 
-    }
-
-    public static PHGroup getOrCreateGroup(GroupItem groupItem, PHBridge bridge, List<DeviceItem> deviceItems) {
-        List<PHGroup> groups = bridge.getResourceCache().getAllGroups();
+    @Value("${hue.group.create.timeout:10000}")
+    private long createTimeout;
 
-        Set<String> deviceIds = deviceItems.stream().map(DeviceItem::getDeviceId).collect(Collectors.toSet());
+    private final ConcurrentMap<Set<String>, CompletableFuture<PHGroup>> groups = new ConcurrentHashMap<>();
 
-        Optional<PHGroup> existingGroup = groups.stream().filter(g -> deviceIds.equals(new HashSet<>(g.getLightIdentifiers()))).findFirst();
-        if(existingGroup.isPresent()) {
-            LOG.debug("Identified an existing hue group, using this: {}", existingGroup.get().getIdentifier());
-            return existingGroup.get();
-        } else {
-            BlockingGroupListener listener = new BlockingGroupListener();
-            bridge.createGroup(groupItem.getName(), new ArrayList<>(deviceIds), listener);
+    private final ScheduledExecutorService timeoutService = Executors.newSingleThreadScheduledExecutor();
 
-            listener.waitForCompletion();
+    @PreDestroy
+    public void stop() {
+        timeoutService.shutdownNow();
+    }
 
-            if(listener.isSuccess()) {
-                LOG.debug("Group was succesfully created, returning");
-                return listener.getPhGroup();
-            } else {
-                throw new RuntimeHomeAutomationException("Unable to create Philips hue group");
+    public CompletableFuture<PHGroup> getOrCreateGroup(GroupItem groupItem, List<DeviceItem> deviceItems) {
+        PHBridge bridge = hueConnector.getBridge();
+        Set<String> lightIds = deviceItems.stream().map(DeviceItem::getDeviceId).collect(Collectors.toSet());
+
+        CompletableFuture<PHGroup> group = groups.get(lightIds);
+        if(group == null) {
+            CompletableFuture<PHGroup> resolved = new CompletableFuture<>();
+            group = groups.putIfAbsent(lightIds, resolved);
+            if(group == null) {
+                group = resolved;
+                resolveGroup(groupItem, bridge, lightIds, resolved);
             }
         }
+        return group;
     }
 
-    public static class BlockingGroupListener implements PHGroupListener {
+    /**
+     * Removes a group from the cache, for instance when it was deleted from the bridge.
+     */
+    public void invalidateGroup(String groupId) {
+        groups.values().removeIf(g -> g.isDone() && !g.isCompletedExceptionally() && g.join().getIdentifier().equals(groupId));
+    }
 
-        private CountDownLatch latch = new CountDownLatch(1);
-        private boolean success = false;
+    private void resolveGroup(GroupItem groupItem, PHBridge bridge, Set<String> lightIds, CompletableFuture<PHGroup> future) {
+        //failed creations are not cached, so the next command retries
+        future.whenComplete((g, e) -> {
+            if(e != null) {
+                groups.remove(lightIds, future);
+            }
+        });
+
+        //any failure has to complete the cached future, otherwise all commands for these lights would wait on it
+        try {
+            ScheduledFuture<?> timeout = timeoutService.schedule(() -> future.completeExceptionally(
+                    new TimeoutException("Resolving hue group: " + groupItem.getName() + " timed out")), createTimeout, TimeUnit.MILLISECONDS);
+            future.whenComplete((g, e) -> timeout.cancel(false));
+
+            Optional<PHGroup> existingGroup = bridge.getResourceCache().getAllGroups().stream()
+                    .filter(g -> lightIds.equals(new HashSet<>(g.getLightIdentifiers()))).findFirst();
+            if(existingGroup.isPresent()) {
+                LOG.debug("Identified an existing hue group, using this: {}", existingGroup.get().getIdentifier());
+                future.complete(existingGroup.get());
+                return;
+            }
+
+            LOG.debug("Creating hue group: {} for lights: {}", groupItem.getName(), lightIds);
+            bridge.createGroup(groupItem.getName(), new ArrayList<>(lightIds), new GroupCreationListener(future));
+        } catch(RuntimeException e) {
+            LOG.error("Unable to resolve hue group: " + groupItem.getName(), e);
+            future.completeExceptionally(e);
+        }
+    }
 
-        private PHGroup phGroup;
+    private static class GroupCreationListener implements PHGroupListener {
+        private final CompletableFuture<PHGroup> future;
+
+        private GroupCreationListener(CompletableFuture<PHGroup> future) {
+            this.future = future;
+        }
 
         @Override
         public void onCreated(PHGroup phGroup) {
             LOG.debug("Group was created: {}", phGroup);
-            this.phGroup = phGroup;
-            success = true;
-            latch.countDown();
+            future.complete(phGroup);
         }
 
         @Override
@@ -84,33 +138,17 @@ public class GroupHelper {
         @Override
         public void onSuccess() {
             LOG.debug("Group operation succeeded");
-            success = true;
-            latch.countDown();
         }
 
         @Override
         public void onError(int i, String s) {
             LOG.error("Group operation failed code: {} reason: {}", i, s);
-            latch.countDown();
+            future.completeExceptionally(new RuntimeHomeAutomationException("Unable to create Philips hue group, code: " + i + " reason: " + s));
         }
 
         @Override
         public void onStateUpdate(Map<String, String> map, List<PHHueError> list) {
 
         }
-
-        public PHGroup getPhGroup() {
-            return phGroup;
-        }
-
-        public void waitForCompletion() {
-            LOG.debug("Waiting for callback");
-            Uninterruptibles.awaitUninterruptibly(latch);
-            LOG.debug("Callback received, releasing latch");
-        }
-
-        public boolean isSuccess() {
-            return success;
-        }
     }
 }
@@ -0,0 +1,178 @@
+package com.oberasoftware.home.hue.actions;
+
+import com.oberasoftware.home.hue.HueConnector;
+import com.philips.lighting.hue.listener.PHGroupListener;
+import com.philips.lighting.model.PHBridgeResource;
+import com.philips.lighting.model.PHGroup;
+import com.philips.lighting.model.PHHueError;
+import com.philips.lighting.model.PHLight;
+import com.philips.lighting.model.PHLightState;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Merges the light states sent to the same light or group within a short window into a single bridge call,
+ * to stay within the rate limits of the bridge. Later states override the properties of earlier ones.
+ *
+ * @author Renze de Vries
+ */
+@Component
+public class HueCommandBatcher {
+    private static final Logger LOG = getLogger(HueCommandBatcher.class);
+
+    private static final String LIGHT_KEY = "light/";
+    private static final String GROUP_KEY = "group/";
+
+    @Autowired
+    private HueConnector hueConnector;
+
+    @Autowired
+    private GroupHelper groupHelper;
+
+    @Value("${hue.command.window:100}")
+    private long commandWindow;
+
+    private final ConcurrentMap<String, PendingState> pendingStates = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+
+    @PreDestroy
+    public void stop() {
+        scheduledExecutorService.shutdown();
+    }
+
+    public void updateLightState(PHLight light, PHLightState state) {
+        submit(LIGHT_KEY + light.getIdentifier(), state, s -> hueConnector.getBridge().updateLightState(light, s));
+    }
+
+    public void setLightStateForGroup(String groupId, PHLightState state) {
+        submit(GROUP_KEY + groupId, state, s -> hueConnector.getBridge().setLightStateForGroup(groupId, s, new GroupStateListener(groupId)));
+    }
+
+    private void submit(String key, PHLightState state, Consumer<PHLightState> sender) {
+        boolean[] first = new boolean[1];
+        pendingStates.compute(key, (k, pending) -> {
+            if(pending == null) {
+                first[0] = true;
+                return new PendingState(state, sender);
+            }
+            LOG.debug("Merging light state for: {} into pending bridge call", k);
+            merge(pending.state, state);
+            return pending;
+        });
+
+        if(first[0]) {
+            scheduledExecutorService.schedule(() -> send(key), commandWindow, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void send(String key) {
+        PendingState pending = pendingStates.remove(key);
+        if(pending != null) {
+            LOG.debug("Sending light state for: {} to bridge", key);
+            try {
+                pending.sender.accept(pending.state);
+            } catch(RuntimeException e) {
+                LOG.error("Unable to send light state for: " + key, e);
+            }
+        }
+    }
+
+    static void merge(PHLightState target, PHLightState update) {
+        if(update.isOn() != null) {
+            target.setOn(update.isOn());
+        }
+        if(update.getBrightness() != null) {
+            target.setBrightness(update.getBrightness());
+        }
+        if(update.getHue() != null) {
+            target.setHue(update.getHue());
+        }
+        if(update.getSaturation() != null) {
+            target.setSaturation(update.getSaturation());
+        }
+        if(update.getCt() != null) {
+            target.setCt(update.getCt());
+        }
+        if(update.getX() != null) {
+            target.setX(update.getX());
+        }
+        if(update.getY() != null) {
+            target.setY(update.getY());
+        }
+        if(update.getTransitionTime() != null) {
+            target.setTransitionTime(update.getTransitionTime());
+        }
+        if(update.getAlertMode() != null) {
+            target.setAlertMode(update.getAlertMode());
+        }
+        if(update.getEffectMode() != null) {
+            target.setEffectMode(update.getEffectMode());
+        }
+    }
+
+    private static final class PendingState {
+        private final PHLightState state;
+        private final Consumer<PHLightState> sender;
+
+        private PendingState(PHLightState state, Consumer<PHLightState> sender) {
+            //copied so merging does not change the state of the caller
+            this.state = new PHLightState();
+            merge(this.state, state);
+            this.sender = sender;
+        }
+    }
+
+    private class GroupStateListener implements PHGroupListener {
+        private final String groupId;
+
+        private GroupStateListener(String groupId) {
+            this.groupId = groupId;
+        }
+
+        @Override
+        public void onError(int i, String s) {
+            LOG.error("Setting light state for group: {} failed code: {} reason: {}", groupId, i, s);
+            groupHelper.invalidateGroup(groupId);
+        }
+
+        @Override
+        public void onCreated(PHGroup phGroup) {
+
+        }
+
+        @Override
+        public void onReceivingGroupDetails(PHGroup phGroup) {
+
+        }
+
+        @Override
+        public void onReceivingAllGroups(List<PHBridgeResource> list) {
+
+        }
+
+        @Override
+        public void onSuccess() {
+
+        }
+
+        @Override
+        public void onStateUpdate(Map<String, String> map, List<PHHueError> list) {
+
+        }
+    }
+}
@@ -11,7 +11,6 @@ import com.oberasoftware.home.api.types.Value;
 import com.oberasoftware.home.hue.HueConnector;
 import com.oberasoftware.home.hue.HueExtension;
 import com.philips.lighting.model.PHBridge;
-import com.philips.lighting.model.PHGroup;
 import com.philips.lighting.model.PHLight;
 import com.philips.lighting.model.PHLightState;
 import org.slf4j.Logger;
@@ -37,6 +36,12 @@ public class SwitchCommandAction implements HueCommandAction<SwitchCommand> {
     @Autowired
     private AutomationBus automationBus;
 
+    @Autowired
+    private GroupHelper groupHelper;
+
+    @Autowired
+    private HueCommandBatcher commandBatcher;
+
     @Override
     public void receive(DeviceItem item, SwitchCommand switchCommand) {
         PHBridge bridge = hueConnector.getSdk().getSelectedBridge();
@@ -46,7 +51,7 @@ public class SwitchCommandAction implements HueCommandAction<SwitchCommand> {
 
         LOG.debug("Received a switch command for bulb: {} desired state: {}", item.getDeviceId(), switchCommand.getState());
         if(light.isPresent()) {
-            bridge.updateLightState(light.get(), getTargetState(switchCommand));
+            commandBatcher.updateLightState(light.get(), getTargetState(switchCommand));
 
             OnOffValue value = new OnOffValue(switchCommand.getState() == SwitchCommand.STATE.ON);
 
@@ -56,15 +61,18 @@ public class SwitchCommandAction implements HueCommandAction<SwitchCommand> {
 
     @Override
     public void receive(GroupItem groupItem, List<DeviceItem> items, SwitchCommand command) {
-        PHBridge bridge = hueConnector.getSdk().getSelectedBridge();
-
-        PHGroup group = GroupHelper.getOrCreateGroup(groupItem, hueConnector.getBridge(), items);
-        LOG.debug("Received a Switch group event: {} setting light state: {}", group, command.getState());
-
-        bridge.setLightStateForGroup(group.getIdentifier(), getTargetState(command));
-
-        Value value = new OnOffValue(command.getState() == SwitchCommand.STATE.ON);
-        items.forEach(i -> automationBus.publish(new ItemNumericValue(i.getId(), value, OnOffValue.LABEL)));
+        groupHelper.getOrCreateGroup(groupItem, items).whenComplete((group, e) -> {
+            if(group != null) {
+                LOG.debug("Received a Switch group event: {} setting light state: {}", group, command.getState());
+
+                commandBatcher.setLightStateForGroup(group.getIdentifier(), getTargetState(command));
+
+                Value value = new OnOffValue(command.getState() == SwitchCommand.STATE.ON);
+                items.forEach(i -> automationBus.publish(new ItemNumericValue(i.getId(), value, OnOffValue.LABEL)));
+            } else {
+                LOG.error("Unable to switch group: " + groupItem.getName(), e);
+            }
+        });
     }
 
     private PHLightState getTargetState(SwitchCommand switchCommand) {
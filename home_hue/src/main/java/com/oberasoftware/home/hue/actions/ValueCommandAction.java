@@ -46,11 +46,25 @@ public class ValueCommandAction implements HueCommandAction<ItemValueCommand> {
     @Autowired
     private AutomationBus automationBus;
 
+    @Autowired
+    private GroupHelper groupHelper;
+
+    @Autowired
+    private HueCommandBatcher commandBatcher;
+
     @Override
     public void receive(GroupItem groupItem, List<DeviceItem> items, ItemValueCommand command) {
-        PHBridge bridge = hueConnector.getSdk().getSelectedBridge();
+        groupHelper.getOrCreateGroup(groupItem, items).whenComplete((group, e) -> {
+            if(group != null) {
+                setGroupState(group, items, command);
+            } else {
+                LOG.error("Unable to set value on group: " + groupItem.getName(), e);
+            }
+        });
+    }
 
-        PHGroup group = GroupHelper.getOrCreateGroup(groupItem, hueConnector.getBridge(), items);
+    private void setGroupState(PHGroup group, List<DeviceItem> items, ItemValueCommand command) {
+        PHBridge bridge = hueConnector.getSdk().getSelectedBridge();
         LOG.debug("Received a Value group event: {} setting light state: {}", group, command);
 
         List<String> groupLightIds = group.getLightIdentifiers();
@@ -64,7 +78,7 @@ public class ValueCommandAction implements HueCommandAction<ItemValueCommand> {
             PHLight light = lights.get(firstLight);
             LOG.debug("Determined first light in group for determining capabilities: {}", light);
 
-            bridge.setLightStateForGroup(group.getIdentifier(),
+            commandBatcher.setLightStateForGroup(group.getIdentifier(),
                     getTargetState(v -> deviceItemIds
                                     .forEach(i -> automationBus.publish(new ItemNumericValue(i, v.value, v.label))),
                     light, command));
@@ -84,7 +98,7 @@ public class ValueCommandAction implements HueCommandAction<ItemValueCommand> {
 
         LOG.debug("Received a Value command for bulb: {} desired brightness level: {}", item.getDeviceId(), command.getValues());
         if(light.isPresent()) {
-            bridge.updateLightState(light.get(),
+            commandBatcher.updateLightState(light.get(),
                     getTargetState(v -> automationBus.publish(new DeviceValueEventImpl(item.getControllerId(),
                             item.getPluginId(), item.getDeviceId(), v.value, v.label)), light.get(), command));
         }
@@ -0,0 +1,182 @@
+package com.oberasoftware.home.hue;
+
+import com.oberasoftware.base.event.Event;
+import com.oberasoftware.home.api.AutomationBus;
+import com.oberasoftware.home.api.events.OnOffValue;
+import com.oberasoftware.home.api.events.devices.DeviceValueEvent;
+import com.philips.lighting.hue.sdk.PHHueSDK;
+import com.philips.lighting.hue.sdk.heartbeat.PHHeartbeatManager;
+import com.philips.lighting.model.PHBridge;
+import com.philips.lighting.model.PHBridgeResourcesCache;
+import com.philips.lighting.model.PHLight;
+import com.philips.lighting.model.PHLightState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author renarj
+ */
+public class HueLightMonitorTest {
+    private static final long FAST_INTERVAL = 20;
+    private static final long FAST_DURATION = 200;
+
+    private HueConnector hueConnector;
+    private AutomationBus bus;
+    private PHBridge bridge;
+    private PHBridgeResourcesCache resourcesCache;
+    private PHHeartbeatManager heartbeatManager;
+
+    private HueLightMonitor lightMonitor;
+
+    @Before
+    public void setUp() {
+        hueConnector = mock(HueConnector.class);
+        bus = mock(AutomationBus.class);
+        bridge = mock(PHBridge.class);
+        resourcesCache = mock(PHBridgeResourcesCache.class);
+        heartbeatManager = mock(PHHeartbeatManager.class);
+        PHHueSDK sdk = mock(PHHueSDK.class);
+
+        when(hueConnector.isConnected()).thenReturn(true);
+        when(hueConnector.getBridge()).thenReturn(bridge);
+        when(hueConnector.getSdk()).thenReturn(sdk);
+        when(hueConnector.whenConnected()).thenReturn(new CompletableFuture<>());
+        when(sdk.getHeartbeatManager()).thenReturn(heartbeatManager);
+        when(bridge.getResourceCache()).thenReturn(resourcesCache);
+        when(bus.getControllerId()).thenReturn("controller1");
+
+        lightMonitor = new HueLightMonitor();
+        ReflectionTestUtils.setField(lightMonitor, "hueConnector", hueConnector);
+        ReflectionTestUtils.setField(lightMonitor, "bus", bus);
+        ReflectionTestUtils.setField(lightMonitor, "idleInterval", 3600000L);
+        ReflectionTestUtils.setField(lightMonitor, "fastInterval", FAST_INTERVAL);
+        ReflectionTestUtils.setField(lightMonitor, "fastDuration", FAST_DURATION);
+    }
+
+    @After
+    public void tearDown() {
+        lightMonitor.stop();
+    }
+
+    @Test
+    public void firstStatePublished() {
+        lightMonitor.checkLightState(light("1", true, 255));
+
+        List<DeviceValueEvent> events = publishedEvents(2);
+        assertThat(events.get(0).getDeviceId(), is("1"));
+        assertThat(events.get(0).getLabel(), is(OnOffValue.LABEL));
+        assertThat(((OnOffValue) events.get(0).getValue()).isOn(), is(true));
+        assertThat(events.get(1).getLabel(), is("value"));
+        assertThat(events.get(1).getValue().getValue(), is(100));
+    }
+
+    @Test
+    public void unchangedStateNotPublished() {
+        lightMonitor.checkLightState(light("1", true, 128));
+        reset(bus);
+
+        lightMonitor.checkLightState(light("1", true, 128));
+        //a brightness change below the resolution of the percentage is not a change
+        lightMonitor.checkLightState(light("1", true, 129));
+        verify(bus, never()).publish(any(Event.class));
+    }
+
+    @Test
+    public void onlyChangedValuesPublished() {
+        lightMonitor.checkLightState(light("1", true, 255));
+        lightMonitor.checkLightState(light("2", true, 255));
+        reset(bus);
+
+        lightMonitor.checkLightState(light("1", false, 255));
+        List<DeviceValueEvent> events = publishedEvents(1);
+        assertThat(events.get(0).getLabel(), is(OnOffValue.LABEL));
+        assertThat(((OnOffValue) events.get(0).getValue()).isOn(), is(false));
+        reset(bus);
+
+        lightMonitor.checkLightState(light("2", true, 51));
+        events = publishedEvents(1);
+        assertThat(events.get(0).getDeviceId(), is("2"));
+        assertThat(events.get(0).getLabel(), is("value"));
+        assertThat(events.get(0).getValue().getValue(), is(20));
+    }
+
+    @Test
+    public void unknownStateIgnored() {
+        PHLight light = new PHLight("light", "1", "1", "LCT001");
+        lightMonitor.checkLightState(light);
+
+        light.setLastKnownLightState(new PHLightState());
+        lightMonitor.checkLightState(light);
+        verify(bus, never()).publish(any(Event.class));
+    }
+
+    @Test
+    public void checkAllLightsSkippedWhenDisconnected() {
+        when(hueConnector.isConnected()).thenReturn(false);
+        lightMonitor.checkAllLightStates();
+
+        verify(resourcesCache, never()).getAllLights();
+    }
+
+    @Test
+    public void fastPollingAfterCommand() {
+        when(resourcesCache.getAllLights()).thenReturn(newArrayList(light("1", true, 255)));
+        lightMonitor.start();
+        verify(resourcesCache, timeout(5000).times(1)).getAllLights();
+
+        lightMonitor.commandSent();
+        lightMonitor.commandSent();
+        verify(heartbeatManager, times(1)).enableLightsHeartbeat(bridge, FAST_INTERVAL);
+
+        //the lights are checked at the fast interval until the fast duration expired
+        verify(resourcesCache, timeout(5000).atLeast(4)).getAllLights();
+        verify(heartbeatManager, timeout(5000)).disableLightsHeartbeat(bridge);
+
+        lightMonitor.commandSent();
+        verify(heartbeatManager, times(2)).enableLightsHeartbeat(bridge, FAST_INTERVAL);
+        verify(bus, times(2)).publish(any(Event.class));
+    }
+
+    @Test
+    public void noFastPollingWhenDisconnected() {
+        when(hueConnector.isConnected()).thenReturn(false);
+        lightMonitor.commandSent();
+
+        verify(heartbeatManager, never()).enableLightsHeartbeat(any(PHBridge.class), anyLong());
+    }
+
+    private List<DeviceValueEvent> publishedEvents(int expected) {
+        ArgumentCaptor<DeviceValueEvent> captor = ArgumentCaptor.forClass(DeviceValueEvent.class);
+        verify(bus, times(expected)).publish(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private static PHLight light(String id, boolean on, int brightness) {
+        PHLightState state = new PHLightState();
+        state.setOn(on);
+        state.setBrightness(brightness);
+
+        PHLight light = new PHLight("light " + id, id, "1", "LCT001");
+        light.setLastKnownLightState(state);
+        return light;
+    }
+}
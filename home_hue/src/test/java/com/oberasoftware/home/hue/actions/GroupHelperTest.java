@@ -0,0 +1,175 @@
+package com.oberasoftware.home.hue.actions;
+
+import com.oberasoftware.home.api.model.storage.DeviceItem;
+import com.oberasoftware.home.api.model.storage.GroupItem;
+import com.oberasoftware.home.hue.HueConnector;
+import com.philips.lighting.hue.listener.PHGroupListener;
+import com.philips.lighting.model.PHBridge;
+import com.philips.lighting.model.PHBridgeResourcesCache;
+import com.philips.lighting.model.PHGroup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Renze de Vries
+ */
+public class GroupHelperTest {
+    private HueConnector hueConnector;
+    private PHBridge bridge;
+    private final List<PHGroup> bridgeGroups = new ArrayList<>();
+
+    private GroupHelper groupHelper;
+
+    @Before
+    public void setUp() {
+        hueConnector = mock(HueConnector.class);
+        bridge = mock(PHBridge.class);
+        PHBridgeResourcesCache resourcesCache = mock(PHBridgeResourcesCache.class);
+        when(hueConnector.getBridge()).thenReturn(bridge);
+        when(bridge.getResourceCache()).thenReturn(resourcesCache);
+        when(resourcesCache.getAllGroups()).thenAnswer(invocation -> new ArrayList<>(bridgeGroups));
+
+        groupHelper = new GroupHelper();
+        ReflectionTestUtils.setField(groupHelper, "hueConnector", hueConnector);
+        ReflectionTestUtils.setField(groupHelper, "createTimeout", 200L);
+    }
+
+    @After
+    public void tearDown() {
+        groupHelper.stop();
+    }
+
+    @Test
+    public void existingGroupIsCached() throws Exception {
+        PHGroup existing = group("1", "1", "2");
+        bridgeGroups.add(existing);
+
+        CompletableFuture<PHGroup> group = groupHelper.getOrCreateGroup(groupItem(), devices("2", "1"));
+        assertThat(group.get(1, TimeUnit.SECONDS), sameInstance(existing));
+        assertThat(groupHelper.getOrCreateGroup(groupItem(), devices("1", "2")), sameInstance(group));
+
+        verify(bridge, times(1)).getResourceCache();
+    }
+
+    @Test
+    public void createdGroupIsCached() throws Exception {
+        CompletableFuture<PHGroup> group = groupHelper.getOrCreateGroup(groupItem(), devices("1", "2"));
+        PHGroupListener listener = captureListener(1);
+        assertThat(group.isDone(), is(false));
+
+        PHGroup created = group("3", "1", "2");
+        listener.onCreated(created);
+        assertThat(group.get(1, TimeUnit.SECONDS), sameInstance(created));
+
+        //the timeout is cancelled once the group is created
+        Thread.sleep(400);
+        assertThat(group.isCompletedExceptionally(), is(false));
+        assertThat(groupHelper.getOrCreateGroup(groupItem(), devices("1", "2")), sameInstance(group));
+    }
+
+    @Test
+    public void failedCreationIsRetried() throws Exception {
+        CompletableFuture<PHGroup> group = groupHelper.getOrCreateGroup(groupItem(), devices("1", "2"));
+        captureListener(1).onError(901, "Bridge internal error");
+        assertFailed(group, Exception.class);
+
+        CompletableFuture<PHGroup> retry = groupHelper.getOrCreateGroup(groupItem(), devices("1", "2"));
+        assertThat(retry, not(sameInstance(group)));
+        PHGroup created = group("3", "1", "2");
+        captureListener(2).onCreated(created);
+        assertThat(retry.get(1, TimeUnit.SECONDS), sameInstance(created));
+    }
+
+    @Test
+    public void creationTimesOut() throws Exception {
+        CompletableFuture<PHGroup> group = groupHelper.getOrCreateGroup(groupItem(), devices("1", "2"));
+        assertFailed(group, TimeoutException.class);
+
+        assertThat(groupHelper.getOrCreateGroup(groupItem(), devices("1", "2")), not(sameInstance(group)));
+    }
+
+    @Test
+    public void unavailableBridgeFailsGroup() throws Exception {
+        when(hueConnector.getBridge()).thenReturn(null);
+
+        CompletableFuture<PHGroup> group = groupHelper.getOrCreateGroup(groupItem(), devices("1", "2"));
+        assertFailed(group, NullPointerException.class);
+
+        when(hueConnector.getBridge()).thenReturn(bridge);
+        PHGroup existing = group("1", "1", "2");
+        bridgeGroups.add(existing);
+        assertThat(groupHelper.getOrCreateGroup(groupItem(), devices("1", "2")).get(1, TimeUnit.SECONDS), sameInstance(existing));
+    }
+
+    @Test
+    public void invalidateGroup() throws Exception {
+        PHGroup existing = group("1", "1", "2");
+        bridgeGroups.add(existing);
+        CompletableFuture<PHGroup> group = groupHelper.getOrCreateGroup(groupItem(), devices("1", "2"));
+        group.get(1, TimeUnit.SECONDS);
+
+        groupHelper.invalidateGroup("1");
+        assertThat(groupHelper.getOrCreateGroup(groupItem(), devices("1", "2")), not(sameInstance(group)));
+    }
+
+    private PHGroupListener captureListener(int invocations) {
+        ArgumentCaptor<PHGroupListener> listener = ArgumentCaptor.forClass(PHGroupListener.class);
+        verify(bridge, times(invocations)).createGroup(anyString(), anyListOf(String.class), listener.capture());
+        return listener.getValue();
+    }
+
+    private static void assertFailed(CompletableFuture<PHGroup> group, Class<? extends Throwable> cause) throws Exception {
+        try {
+            group.get(5, TimeUnit.SECONDS);
+            fail("Group resolution should have failed");
+        } catch(ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(cause));
+        }
+    }
+
+    private static PHGroup group(String id, String... lightIds) {
+        PHGroup group = new PHGroup("group " + id, id);
+        group.setLightIdentifiers(newArrayList(lightIds));
+        return group;
+    }
+
+    private static GroupItem groupItem() {
+        GroupItem groupItem = mock(GroupItem.class);
+        when(groupItem.getName()).thenReturn("living room");
+        return groupItem;
+    }
+
+    private static List<DeviceItem> devices(String... deviceIds) {
+        List<DeviceItem> devices = new ArrayList<>();
+        for(String deviceId : deviceIds) {
+            DeviceItem device = mock(DeviceItem.class);
+            when(device.getDeviceId()).thenReturn(deviceId);
+            devices.add(device);
+        }
+        return devices;
+    }
+}
@@ -0,0 +1,125 @@
+package com.oberasoftware.home.hue.actions;
+
+import com.oberasoftware.home.hue.HueConnector;
+import com.philips.lighting.hue.listener.PHGroupListener;
+import com.philips.lighting.model.PHBridge;
+import com.philips.lighting.model.PHLight;
+import com.philips.lighting.model.PHLightState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Renze de Vries
+ */
+public class HueCommandBatcherTest {
+    private PHBridge bridge;
+
+    private HueCommandBatcher commandBatcher;
+
+    @Before
+    public void setUp() {
+        HueConnector hueConnector = mock(HueConnector.class);
+        bridge = mock(PHBridge.class);
+        when(hueConnector.getBridge()).thenReturn(bridge);
+
+        commandBatcher = new HueCommandBatcher();
+        ReflectionTestUtils.setField(commandBatcher, "hueConnector", hueConnector);
+        ReflectionTestUtils.setField(commandBatcher, "groupHelper", mock(GroupHelper.class));
+        ReflectionTestUtils.setField(commandBatcher, "commandWindow", 100L);
+    }
+
+    @After
+    public void tearDown() {
+        commandBatcher.stop();
+    }
+
+    @Test
+    public void sameLightMergedInWindow() throws Exception {
+        PHLight light = light("1");
+        commandBatcher.updateLightState(light, state(true, 100, null));
+        commandBatcher.updateLightState(light, state(null, 200, 5000));
+
+        ArgumentCaptor<PHLightState> captor = ArgumentCaptor.forClass(PHLightState.class);
+        verify(bridge, timeout(1000)).updateLightState(eq(light), captor.capture());
+        PHLightState sent = captor.getValue();
+        assertThat(sent.isOn(), is(true));
+        assertThat(sent.getBrightness(), is(200));
+        assertThat(sent.getHue(), is(5000));
+
+        Thread.sleep(300);
+        verify(bridge, times(1)).updateLightState(any(PHLight.class), any(PHLightState.class));
+    }
+
+    @Test
+    public void laterStateWins() throws Exception {
+        PHLight light = light("1");
+        commandBatcher.updateLightState(light, state(true, 100, null));
+        commandBatcher.updateLightState(light, state(false, null, null));
+
+        ArgumentCaptor<PHLightState> captor = ArgumentCaptor.forClass(PHLightState.class);
+        verify(bridge, timeout(1000)).updateLightState(eq(light), captor.capture());
+        assertThat(captor.getValue().isOn(), is(false));
+        assertThat(captor.getValue().getBrightness(), is(100));
+    }
+
+    @Test
+    public void lightsAndGroupsSeparate() throws Exception {
+        PHLight light = light("1");
+        commandBatcher.updateLightState(light, state(true, null, null));
+        commandBatcher.setLightStateForGroup("1", state(false, null, null));
+        commandBatcher.updateLightState(light("2"), state(true, null, null));
+
+        ArgumentCaptor<PHLightState> groupCaptor = ArgumentCaptor.forClass(PHLightState.class);
+        verify(bridge, timeout(1000)).setLightStateForGroup(eq("1"), groupCaptor.capture(), any(PHGroupListener.class));
+        assertThat(groupCaptor.getValue().isOn(), is(false));
+
+        ArgumentCaptor<PHLightState> lightCaptor = ArgumentCaptor.forClass(PHLightState.class);
+        verify(bridge, timeout(1000)).updateLightState(eq(light), lightCaptor.capture());
+        assertThat(lightCaptor.getValue().isOn(), is(true));
+        verify(bridge, timeout(1000).times(2)).updateLightState(any(PHLight.class), any(PHLightState.class));
+    }
+
+    @Test
+    public void callerStateNotChanged() throws Exception {
+        PHLight light = light("1");
+        PHLightState first = state(true, 100, null);
+        PHLightState second = state(null, 200, 5000);
+        commandBatcher.updateLightState(light, first);
+        commandBatcher.updateLightState(light, second);
+
+        verify(bridge, timeout(1000)).updateLightState(eq(light), any(PHLightState.class));
+        assertThat(first.isOn(), is(true));
+        assertThat(first.getBrightness(), is(100));
+        assertThat(first.getHue(), nullValue());
+        assertThat(second.isOn(), nullValue());
+        assertThat(second.getBrightness(), is(200));
+    }
+
+    private static PHLight light(String identifier) {
+        PHLight light = mock(PHLight.class);
+        when(light.getIdentifier()).thenReturn(identifier);
+        return light;
+    }
+
+    private static PHLightState state(Boolean on, Integer brightness, Integer hue) {
+        PHLightState state = new PHLightState();
+        state.setOn(on);
+        state.setBrightness(brightness);
+        state.setHue(hue);
+        return state;
+    }
+}
@@ -2,41 +2,91 @@ package com.oberasoftware.home.mqtt;
 
 import com.oberasoftware.home.api.exceptions.HomeAutomationException;
 import org.eclipse.paho.client.mqttv3.*;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.eclipse.paho.client.mqttv3.persist.MqttDefaultFilePersistence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
+ * Connection to a single MQTT broker. When the connection is lost it is re-established with an exponential
+ * backoff and all topics are subscribed again. With a persistent session the broker queues the messages
+ * of the subscriptions while the client is disconnected, and delivers them once the session is resumed.
+ *
+ * Published messages awaiting acknowledgement are limited to the in-flight window of the settings.
+ *
  * @author Renze de Vries
  */
 public class MQTTBroker {
     private static final Logger LOG = LoggerFactory.getLogger(MQTTBroker.class);
 
+    //the number of messages in flight the client supports before rejecting publishes
+    private static final int CLIENT_MAX_INFLIGHT = 10;
+
+    private static final long CONNECT_TIMEOUT = 30000;
+
     private final String host;
-    private MqttClient client;
+    private final MQTTBrokerSettings settings;
+    private final ClientFactory clientFactory;
+    private IMqttAsyncClient client;
     private final AtomicBoolean connected = new AtomicBoolean(false);
+    private final AtomicBoolean reconnecting = new AtomicBoolean(false);
+    private volatile boolean running;
+
+    private final MQTTTopicRouter router = new MQTTTopicRouter();
+    private final Set<String> topics = new CopyOnWriteArraySet<>();
+    private final Semaphore inflight;
+
+    private final ScheduledExecutorService reconnectService = Executors.newSingleThreadScheduledExecutor();
+    private long reconnectDelay;
 
-    private List<MQTTListener> listeners = new CopyOnWriteArrayList<>();
+    public MQTTBroker(String host, MQTTBrokerSettings settings) {
+        this(host, settings, MqttAsyncClient::new);
+    }
 
-    public MQTTBroker(String host) {
+    MQTTBroker(String host, MQTTBrokerSettings settings, ClientFactory clientFactory) {
         this.host = host;
+        this.settings = settings;
+        this.clientFactory = clientFactory;
+
+        int maxInflight = settings.getMaxInflight();
+        if(maxInflight > CLIENT_MAX_INFLIGHT) {
+            LOG.warn("Max inflight: {} for broker: {} exceeds the client limit, using: {}", maxInflight, host, CLIENT_MAX_INFLIGHT);
+            maxInflight = CLIENT_MAX_INFLIGHT;
+        }
+        this.inflight = new Semaphore(Math.max(1, maxInflight));
+        this.reconnectDelay = settings.getReconnectMinDelay();
     }
 
     public synchronized void connect() throws HomeAutomationException {
         try {
-            client = new MqttClient(host, "haas");
+            MqttClientPersistence persistence = settings.getPersistenceDir() != null ?
+                    new MqttDefaultFilePersistence(settings.getPersistenceDir()) : new MemoryPersistence();
+            client = clientFactory.create(host, settings.getClientId(), persistence);
             client.setCallback(new MqttCallback() {
                 @Override
                 public void connectionLost(Throwable throwable) {
-                    LOG.warn("Connect lost to host: {}", host);
+                    LOG.warn("Connect lost to host: {}", host, throwable);
+                    connected.set(false);
+                    scheduleReconnect();
                 }
 
                 @Override
                 public void messageArrived(String s, MqttMessage mqttMessage) throws Exception {
-                    listeners.forEach(l -> l.receive(s, new String(mqttMessage.getPayload())));
+                    try {
+                        router.route(s, mqttMessage.getPayload());
+                    } catch(RuntimeException e) {
+                        //the client drops the connection when a message can not be handled, so only log it
+                        LOG.error("Unable to handle MQTT message on topic: " + s, e);
+                    }
                 }
 
                 @Override
@@ -44,32 +94,152 @@ public class MQTTBroker {
                     LOG.debug("delivery complete");
                 }
             });
-            client.connect();
-            connected.set(true);
         } catch (MqttException e) {
-            throw new HomeAutomationException("Could not connect to MQTT broker: " + host);
+            throw new HomeAutomationException("Could not create MQTT client for broker: " + host, e);
+        }
+
+        running = true;
+        if(!tryConnect()) {
+            LOG.warn("Could not connect to MQTT broker: {}, retrying in the background", host);
+            scheduleReconnect();
         }
     }
 
-    public void disconnect() {
-        if(connected.get()) {
+    public synchronized void disconnect() {
+        running = false;
+        reconnectService.shutdownNow();
+        if(client != null) {
             try {
-                client.disconnect();
+                if(connected.getAndSet(false)) {
+                    client.disconnect().waitForCompletion(CONNECT_TIMEOUT);
+                }
+                client.close();
             } catch (MqttException e) {
                 LOG.error("Could not safely disconnect from MQTT broker: " + host);
             }
         }
     }
 
-    public void subscribeTopic(String topic, MQTTListener listener) {
-        if(connected.get()) {
-            listeners.add(listener);
+    public boolean isConnected() {
+        return connected.get();
+    }
+
+    public synchronized void subscribeTopic(String topic, MQTTListener listener) {
+        router.subscribe(topic, listener);
+        topics.add(topic);
 
+        if(connected.get()) {
             try {
-                client.subscribe(topic);
+                client.subscribe(topic, settings.getQos());
             } catch (MqttException e) {
                 LOG.error("Could not subscribe to topic: " + topic, e);
             }
         }
     }
+
+    /**
+     * Publishes a message with the QoS of the broker settings. Blocks while the in-flight window is full.
+     *
+     * @param topic The topic to publish to
+     * @param payload The message payload
+     * @param retained If the broker should retain the message for new subscribers
+     * @throws HomeAutomationException If not connected or the message could not be handed to the client
+     */
+    public void publish(String topic, byte[] payload, boolean retained) throws HomeAutomationException {
+        if(!connected.get()) {
+            throw new HomeAutomationException("Not connected to MQTT broker: " + host);
+        }
+
+        try {
+            inflight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HomeAutomationException("Interrupted waiting for in-flight window of broker: " + host, e);
+        }
+
+        try {
+            client.publish(topic, payload, settings.getQos(), retained, null, new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken token) {
+                    inflight.release();
+                }
+
+                @Override
+                public void onFailure(IMqttToken token, Throwable throwable) {
+                    inflight.release();
+                    LOG.warn("Could not deliver MQTT message to topic: {}", topic, throwable);
+                }
+            });
+        } catch (MqttException e) {
+            inflight.release();
+            throw new HomeAutomationException("Could not publish MQTT message to topic: " + topic, e);
+        }
+    }
+
+    private synchronized boolean tryConnect() {
+        if(!running || connected.get()) {
+            return true;
+        }
+
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setCleanSession(settings.isCleanSession());
+        options.setKeepAliveInterval(settings.getKeepAlive());
+
+        try {
+            client.connect(options).waitForCompletion(CONNECT_TIMEOUT);
+        } catch (MqttException e) {
+            LOG.debug("Could not connect to MQTT broker: {}", host, e);
+            return false;
+        }
+        LOG.info("Connected to MQTT broker: {} with client: {}", host, settings.getClientId());
+
+        try {
+            resubscribe();
+            connected.set(true);
+            return true;
+        } catch (MqttException e) {
+            LOG.error("Could not subscribe to topics on MQTT broker: " + host + ", reconnecting", e);
+            try {
+                client.disconnectForcibly();
+            } catch (MqttException de) {
+                LOG.debug("Could not disconnect from MQTT broker: {}", host, de);
+            }
+            return false;
+        }
+    }
+
+    private void resubscribe() throws MqttException {
+        if(!topics.isEmpty()) {
+            String[] topicFilters = topics.toArray(new String[topics.size()]);
+            int[] qos = new int[topicFilters.length];
+            Arrays.fill(qos, settings.getQos());
+
+            client.subscribe(topicFilters, qos).waitForCompletion(CONNECT_TIMEOUT);
+            LOG.info("Subscribed to: {} topics on MQTT broker: {}", topicFilters.length, host);
+        }
+    }
+
+    private void scheduleReconnect() {
+        if(running && reconnecting.compareAndSet(false, true)) {
+            reconnectService.schedule(this::reconnect, reconnectDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void reconnect() {
+        reconnecting.set(false);
+        if(tryConnect()) {
+            reconnectDelay = settings.getReconnectMinDelay();
+        } else {
+            reconnectDelay = Math.min(reconnectDelay * 2, settings.getReconnectMaxDelay());
+            LOG.warn("Reconnect to MQTT broker: {} failed, retrying in: {} ms", host, reconnectDelay);
+            scheduleReconnect();
+        }
+    }
+
+    /**
+     * Creates the MQTT client of a broker connection
+     */
+    interface ClientFactory {
+        IMqttAsyncClient create(String host, String clientId, MqttClientPersistence persistence) throws MqttException;
+    }
 }
@@ -0,0 +1,85 @@
+package com.oberasoftware.home.mqtt;
+
+/**
+ * Connection settings of a single MQTT broker.
+ *
+ * @author Renze de Vries
+ */
+public class MQTTBrokerSettings {
+    private final String clientId;
+    private final int qos;
+    private final boolean cleanSession;
+    private final int maxInflight;
+    private final String persistenceDir;
+    private final int keepAlive;
+    private final long reconnectMinDelay;
+    private final long reconnectMaxDelay;
+
+    /**
+     * @param clientId The client id, must be stable for the broker to resume a persistent session
+     * @param qos The QoS used for subscriptions and published messages
+     * @param cleanSession If false the broker keeps subscriptions and queued messages while disconnected
+     * @param maxInflight The maximum number of published messages awaiting acknowledgement
+     * @param persistenceDir Directory storing messages in flight, null to keep them in memory
+     * @param keepAlive The keep alive interval in seconds
+     * @param reconnectMinDelay The delay in ms before the first reconnect attempt
+     * @param reconnectMaxDelay The maximum delay in ms between reconnect attempts
+     */
+    public MQTTBrokerSettings(String clientId, int qos, boolean cleanSession, int maxInflight, String persistenceDir,
+                              int keepAlive, long reconnectMinDelay, long reconnectMaxDelay) {
+        this.clientId = clientId;
+        this.qos = qos;
+        this.cleanSession = cleanSession;
+        this.maxInflight = maxInflight;
+        this.persistenceDir = persistenceDir;
+        this.keepAlive = keepAlive;
+        this.reconnectMinDelay = reconnectMinDelay;
+        this.reconnectMaxDelay = reconnectMaxDelay;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public int getQos() {
+        return qos;
+    }
+
+    public boolean isCleanSession() {
+        return cleanSession;
+    }
+
+    public int getMaxInflight() {
+        return maxInflight;
+    }
+
+    public String getPersistenceDir() {
+        return persistenceDir;
+    }
+
+    public int getKeepAlive() {
+        return keepAlive;
+    }
+
+    public long getReconnectMinDelay() {
+        return reconnectMinDelay;
+    }
+
+    public long getReconnectMaxDelay() {
+        return reconnectMaxDelay;
+    }
+
+    @Override
+    public String toString() {
+        return "MQTTBrokerSettings{" +
+                "clientId='" + clientId + '\'' +
+                ", qos=" + qos +
+                ", cleanSession=" + cleanSession +
+                ", maxInflight=" + maxInflight +
+                ", persistenceDir='" + persistenceDir + '\'' +
+                ", keepAlive=" + keepAlive +
+                ", reconnectMinDelay=" + reconnectMinDelay +
+                ", reconnectMaxDelay=" + reconnectMaxDelay +
+                '}';
+    }
+}
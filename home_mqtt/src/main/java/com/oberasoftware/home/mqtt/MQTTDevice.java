@@ -0,0 +1,47 @@
+package com.oberasoftware.home.mqtt;
+
+import com.oberasoftware.home.api.model.Device;
+import com.oberasoftware.home.api.model.Status;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Device discovered from the topic of an incoming MQTT message
+ *
+ * @author Renze de Vries
+ */
+public class MQTTDevice implements Device {
+    private final String id;
+
+    public MQTTDevice(String id) {
+        this.id = id;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String getName() {
+        return id;
+    }
+
+    @Override
+    public Status getStatus() {
+        return Status.ACTIVE;
+    }
+
+    @Override
+    public Map<String, String> getProperties() {
+        return new HashMap<>();
+    }
+
+    @Override
+    public String toString() {
+        return "MQTTDevice{" +
+                "id='" + id + '\'' +
+                '}';
+    }
+}
@@ -3,9 +3,6 @@ package com.oberasoftware.home.mqtt;
 import com.oberasoftware.home.api.AutomationBus;
 import com.oberasoftware.home.api.exceptions.HomeAutomationException;
 import com.oberasoftware.home.api.exceptions.RuntimeHomeAutomationException;
-import com.oberasoftware.home.api.managers.ItemManager;
-import com.oberasoftware.home.api.model.storage.ControllerItem;
-import com.oberasoftware.home.api.storage.HomeDAO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,9 +12,8 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 
 import static java.util.Arrays.asList;
@@ -30,13 +26,13 @@ import static nl.renarj.core.utilities.StringUtils.stringNotEmpty;
 public class MQTTExtension {
     private static final Logger LOG = LoggerFactory.getLogger(MQTTExtension.class);
 
-    private List<MQTTBroker> activeBrokers = new ArrayList<>();
+    //client ids have to be unique per broker, otherwise the broker disconnects the other client with the same id
+    private static final String DEFAULT_CLIENT_ID_PREFIX = "haas-";
 
-    @Autowired
-    private ItemManager itemManager;
+    private Map<String, MQTTBroker> activeBrokers = new LinkedHashMap<>();
 
     @Autowired
-    private HomeDAO homeDAO;
+    private MQTTItemProvisioner itemProvisioner;
 
     @Autowired
     private AutomationBus automationBus;
@@ -62,7 +58,11 @@ public class MQTTExtension {
     @PreDestroy
     public void shutDownBrokers() {
         LOG.info("Shutting down MQTT connectors");
-        activeBrokers.forEach(MQTTBroker::disconnect);
+        activeBrokers.values().forEach(MQTTBroker::disconnect);
+    }
+
+    public Optional<MQTTBroker> getBroker(String brokerId) {
+        return Optional.ofNullable(activeBrokers.get(brokerId));
     }
 
     private void loadBroker(String brokerId) {
@@ -70,12 +70,13 @@ public class MQTTExtension {
         String channels = environment.getProperty("mqtt." + brokerId + ".channels");
         LOG.info("Broker: {} on url: {} channels: {}", brokerId, url, channels);
         if(stringNotEmpty(url) && stringNotEmpty(channels)) {
-            MQTTBroker broker = new MQTTBroker(url);
-            activeBrokers.add(broker);
+            MQTTBroker broker = new MQTTBroker(url, loadSettings(brokerId));
+            activeBrokers.put(brokerId, broker);
             try {
-                broker.connect();
-
+                //listeners are registered before connecting, a resumed session delivers queued messages right away
                 asList(channels.split(",")).forEach(c -> loadChannels(broker, brokerId, c));
+
+                broker.connect();
             } catch (HomeAutomationException e) {
                 throw new RuntimeHomeAutomationException("Unable to connect", e);
             }
@@ -84,6 +85,23 @@ public class MQTTExtension {
         }
     }
 
+    private MQTTBrokerSettings loadSettings(String brokerId) {
+        String baseId = "mqtt." + brokerId + ".";
+        String persistenceDir = environment.getProperty(baseId + "persistence.dir", "mqtt-persistence");
+
+        MQTTBrokerSettings settings = new MQTTBrokerSettings(
+                environment.getProperty(baseId + "clientId", DEFAULT_CLIENT_ID_PREFIX + automationBus.getControllerId()),
+                environment.getProperty(baseId + "qos", Integer.class, 1),
+                environment.getProperty(baseId + "cleanSession", Boolean.class, false),
+                environment.getProperty(baseId + "maxInflight", Integer.class, 10),
+                stringNotEmpty(persistenceDir) ? persistenceDir : null,
+                environment.getProperty(baseId + "keepAlive", Integer.class, 60),
+                environment.getProperty(baseId + "reconnect.min.delay", Long.class, 1000L),
+                environment.getProperty(baseId + "reconnect.max.delay", Long.class, 60000L));
+        LOG.info("Broker: {} settings: {}", brokerId, settings);
+        return settings;
+    }
+
     private void loadChannels(MQTTBroker broker, String brokerId, String channelId) {
         String baseId = brokerId + "." + channelId + ".";
         String topic = environment.getProperty(baseId + "subscribeTopic");
@@ -99,33 +117,10 @@ public class MQTTExtension {
             MQTTMessage mqttMessage = messageFormatter.format(topic1, payload);
             LOG.debug("Received MQTT message: {}", mqttMessage);
 
-            if (mqttMessage.getEvent() != null) {
+            if (mqttMessage != null && mqttMessage.getEvent() != null) {
                 LOG.debug("We have an event to send to the bus: {}", mqttMessage.getEvent());
-                ensureItems(mqttMessage);
-                automationBus.publish(mqttMessage.getEvent());
+                itemProvisioner.publish(mqttMessage);
             }
         });
     }
-
-    private synchronized void ensureItems(MQTTMessage message) {
-        String controllerId = message.getControllerId();
-
-        try {
-
-            Optional<ControllerItem> controllerItem = itemManager.findControllers()
-                    .stream().filter(c -> c.getControllerId().equals(controllerId)).findAny();
-            if(!controllerItem.isPresent()) {
-                LOG.debug("Controller not existing, creating");
-                itemManager.createOrUpdateController(controllerId);
-                itemManager.createOrUpdatePlugin(controllerId, message.getPluginId(), "MQ TT Broker", new HashMap<>());
-            }
-
-            if(!homeDAO.findDevice(controllerId, message.getPluginId(), message.getDeviceId()).isPresent()) {
-                itemManager.createOrUpdateDevice(controllerId, message.getPluginId(), message.getDeviceId(),
-                        message.getDeviceId(), new HashMap<>());
-            }
-        } catch (HomeAutomationException e) {
-            LOG.error("Could not persist", e);
-        }
-    }
 }
@@ -1,10 +1,16 @@
 package com.oberasoftware.home.mqtt;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 /**
  * @author Renze de Vries
  */
 public interface MQTTFormatter {
     void configure(String pattern);
 
-    MQTTMessage format(String incomingTopic, String incomingPayload);
+    MQTTMessage format(String incomingTopic, byte[] incomingPayload);
+
+    default MQTTMessage format(String incomingTopic, String incomingPayload) {
+        return format(incomingTopic, incomingPayload.getBytes(UTF_8));
+    }
 }
@@ -0,0 +1,222 @@
+package com.oberasoftware.home.mqtt;
+
+import com.oberasoftware.base.event.Event;
+import com.oberasoftware.home.api.AutomationBus;
+import com.oberasoftware.home.api.exceptions.HomeAutomationException;
+import com.oberasoftware.home.api.managers.ItemManager;
+import com.oberasoftware.home.api.model.Device;
+import com.oberasoftware.home.api.model.storage.DeviceItem;
+import com.oberasoftware.home.api.storage.HomeDAO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the events of incoming MQTT messages and makes sure the devices they refer to exist. Events of known
+ * devices are published directly from memory. The devices of unknown devices are provisioned in batches on a
+ * background thread, their latest event is held back until the device exists so it is not dropped by the bus.
+ *
+ * The known devices are periodically validated against the stored devices, so a device that has been deleted
+ * is provisioned again on its next event.
+ *
+ * @author Renze de Vries
+ */
+@Component
+public class MQTTItemProvisioner {
+    private static final Logger LOG = LoggerFactory.getLogger(MQTTItemProvisioner.class);
+
+    private static final String PLUGIN_NAME = "MQ TT Broker";
+
+    @Autowired
+    private ItemManager itemManager;
+
+    @Autowired
+    private HomeDAO homeDAO;
+
+    @Autowired
+    private AutomationBus automationBus;
+
+    @Value("${mqtt.provisioning.interval:250}")
+    private long provisioningInterval;
+
+    @Value("${mqtt.provisioning.queue.depth:10000}")
+    private int queueDepth;
+
+    @Value("${mqtt.provisioning.validation.interval:30000}")
+    private long validationInterval;
+
+    private final Set<DeviceKey> knownDevices = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<DeviceKey, Event> pendingDevices = new ConcurrentHashMap<>();
+    private final Set<String> knownPlugins = new HashSet<>();
+
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    private final ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+
+    @PostConstruct
+    public void start() {
+        scheduledExecutorService.scheduleWithFixedDelay(this::provision, provisioningInterval, provisioningInterval, TimeUnit.MILLISECONDS);
+        scheduledExecutorService.scheduleWithFixedDelay(this::validateKnownDevices, validationInterval, validationInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduledExecutorService.shutdown();
+    }
+
+    public void publish(MQTTMessage message) {
+        DeviceKey key = new DeviceKey(message.getControllerId(), message.getPluginId(), message.getDeviceId());
+        if(knownDevices.contains(key)) {
+            automationBus.publish(message.getEvent());
+        } else if(pendingDevices.size() < queueDepth || pendingDevices.containsKey(key)) {
+            //the device can become known concurrently, which is checked atomically with the provisioning of the key
+            pendingDevices.compute(key, (k, event) -> {
+                if(knownDevices.contains(k)) {
+                    automationBus.publish(message.getEvent());
+                    return null;
+                }
+                LOG.debug("Device: {} is not yet known, holding event until it is provisioned", k);
+                return message.getEvent();
+            });
+        } else {
+            long dropped = droppedEvents.incrementAndGet();
+            LOG.warn("Provisioning queue is full, dropping event for device: {} total dropped: {}", key, dropped);
+        }
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    public int getPendingDevices() {
+        return pendingDevices.size();
+    }
+
+    void provision() {
+        if(pendingDevices.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<DeviceKey>> pluginDevices = new HashMap<>();
+        pendingDevices.keySet().forEach(k -> pluginDevices.computeIfAbsent(k.controllerId + "/" + k.pluginId, p -> new ArrayList<>()).add(k));
+
+        pluginDevices.values().forEach(keys -> {
+            try {
+                provision(keys);
+            } catch(HomeAutomationException | RuntimeException e) {
+                LOG.error("Unable to provision MQTT devices, retrying on next run", e);
+            }
+        });
+    }
+
+    void validateKnownDevices() {
+        Map<String, List<DeviceKey>> pluginDevices = new HashMap<>();
+        knownDevices.forEach(k -> pluginDevices.computeIfAbsent(k.controllerId + "/" + k.pluginId, p -> new ArrayList<>()).add(k));
+
+        pluginDevices.forEach((plugin, keys) -> {
+            try {
+                Set<String> existingDevices = new HashSet<>();
+                homeDAO.findDevices(keys.get(0).controllerId, keys.get(0).pluginId).stream()
+                        .map(DeviceItem::getDeviceId).forEach(existingDevices::add);
+
+                keys.stream().filter(k -> !existingDevices.contains(k.deviceId)).forEach(k -> {
+                    LOG.info("MQTT device: {} no longer exists, provisioning it again on its next event", k);
+                    knownDevices.remove(k);
+                    knownPlugins.remove(plugin);
+                });
+            } catch(RuntimeException e) {
+                LOG.error("Unable to validate MQTT devices of plugin: " + plugin, e);
+            }
+        });
+    }
+
+    private void provision(List<DeviceKey> keys) throws HomeAutomationException {
+        String controllerId = keys.get(0).controllerId;
+        String pluginId = keys.get(0).pluginId;
+        ensurePlugin(controllerId, pluginId);
+
+        Set<String> existingDevices = new HashSet<>();
+        homeDAO.findDevices(controllerId, pluginId).stream().map(DeviceItem::getDeviceId).forEach(existingDevices::add);
+
+        List<Device> newDevices = new ArrayList<>();
+        keys.stream().filter(k -> !existingDevices.contains(k.deviceId)).forEach(k -> newDevices.add(new MQTTDevice(k.deviceId)));
+        if(!newDevices.isEmpty()) {
+            LOG.info("Provisioning: {} new MQTT devices for controller: {}", newDevices.size(), controllerId);
+            itemManager.createOrUpdateDevices(controllerId, pluginId, newDevices);
+        }
+
+        //publish the held back event and mark the device as known atomically, so newer events cannot overtake it
+        keys.forEach(k -> pendingDevices.compute(k, (key, event) -> {
+            if(event != null) {
+                automationBus.publish(event);
+            }
+            knownDevices.add(key);
+            return null;
+        }));
+    }
+
+    private void ensurePlugin(String controllerId, String pluginId) throws HomeAutomationException {
+        if(!knownPlugins.contains(controllerId + "/" + pluginId)) {
+            if(!homeDAO.findController(controllerId).isPresent()) {
+                LOG.debug("Controller: {} not existing, creating", controllerId);
+                itemManager.createOrUpdateController(controllerId);
+            }
+            itemManager.createOrUpdatePlugin(controllerId, pluginId, PLUGIN_NAME, new HashMap<>());
+            knownPlugins.add(controllerId + "/" + pluginId);
+        }
+    }
+
+    private static final class DeviceKey {
+        private final String controllerId;
+        private final String pluginId;
+        private final String deviceId;
+
+        private DeviceKey(String controllerId, String pluginId, String deviceId) {
+            this.controllerId = controllerId;
+            this.pluginId = pluginId;
+            this.deviceId = deviceId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            DeviceKey deviceKey = (DeviceKey) o;
+
+            if (!controllerId.equals(deviceKey.controllerId)) return false;
+            if (!pluginId.equals(deviceKey.pluginId)) return false;
+            return deviceId.equals(deviceKey.deviceId);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = controllerId.hashCode();
+            result = 31 * result + pluginId.hashCode();
+            result = 31 * result + deviceId.hashCode();
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return controllerId + "/" + pluginId + "/" + deviceId;
+        }
+    }
+}
@@ -4,5 +4,5 @@ package com.oberasoftware.home.mqtt;
  * @author Renze de Vries
  */
 public interface MQTTListener {
-    void receive(String topic, String payload);
+    void receive(String topic, byte[] payload);
 }
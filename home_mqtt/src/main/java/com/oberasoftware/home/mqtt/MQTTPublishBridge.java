@@ -0,0 +1,225 @@
+package com.oberasoftware.home.mqtt;
+
+import com.oberasoftware.base.event.EventHandler;
+import com.oberasoftware.base.event.EventSubscribe;
+import com.oberasoftware.home.api.AutomationBus;
+import com.oberasoftware.home.api.commands.BasicCommand;
+import com.oberasoftware.home.api.commands.ItemCommand;
+import com.oberasoftware.home.api.commands.ItemValueCommand;
+import com.oberasoftware.home.api.events.devices.ItemCommandEvent;
+import com.oberasoftware.home.api.events.devices.StateUpdateEvent;
+import com.oberasoftware.home.api.exceptions.HomeAutomationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static nl.renarj.core.utilities.StringUtils.stringNotEmpty;
+
+/**
+ * Publishes state updates and item commands from the automation bus to a configured MQTT broker. Events are
+ * only queued on the bus thread, a background thread publishes them once per flush window. Within a window
+ * only the latest value of each state topic is published, as a retained message so new subscribers receive
+ * the last known state. Commands are published in order and not retained.
+ *
+ * Both queues are bounded, when full further messages are dropped instead of blocking the bus. The dropped
+ * messages are reported once per flush window to not flood the log.
+ *
+ * @author Renze de Vries
+ */
+@Component
+public class MQTTPublishBridge implements EventHandler {
+    private static final Logger LOG = LoggerFactory.getLogger(MQTTPublishBridge.class);
+
+    private static final String CONTROLLER_ID = "{controllerId}";
+    private static final String ITEM_ID = "{itemId}";
+    private static final String LABEL = "{label}";
+
+    @Autowired
+    private MQTTExtension mqttExtension;
+
+    @Autowired
+    private AutomationBus automationBus;
+
+    @Value("${mqtt.publish.broker:}")
+    private String brokerId;
+
+    @Value("${mqtt.publish.stateTopic:/{controllerId}/state/{itemId}/{label}}")
+    private String stateTopic;
+
+    @Value("${mqtt.publish.commandTopic:/{controllerId}/command/{itemId}/{label}}")
+    private String commandTopic;
+
+    @Value("${mqtt.publish.flush.interval:100}")
+    private long flushInterval;
+
+    @Value("${mqtt.publish.queue.depth:10000}")
+    private int queueDepth;
+
+    private final ConcurrentMap<String, byte[]> pendingStates = new ConcurrentHashMap<>();
+    private BlockingQueue<OutboundMessage> pendingCommands;
+
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private long reportedDrops = 0;
+
+    private final ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+    private volatile MQTTBroker broker;
+
+    @PostConstruct
+    public void start() {
+        if(stringNotEmpty(brokerId)) {
+            broker = mqttExtension.getBroker(brokerId).orElse(null);
+            if(broker != null) {
+                String controllerId = automationBus.getControllerId();
+                stateTopic = stateTopic.replace(CONTROLLER_ID, controllerId);
+                commandTopic = commandTopic.replace(CONTROLLER_ID, controllerId);
+                pendingCommands = new ArrayBlockingQueue<>(queueDepth);
+
+                LOG.info("Publishing states to: {} and commands to: {} on MQTT broker: {}", stateTopic, commandTopic, brokerId);
+                scheduledExecutorService.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+            } else {
+                LOG.warn("MQTT publish broker: {} is not configured, not publishing", brokerId);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduledExecutorService.shutdown();
+        try {
+            if(scheduledExecutorService.awaitTermination(flushInterval * 10, TimeUnit.MILLISECONDS) && broker != null) {
+                flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @EventSubscribe
+    public void receive(StateUpdateEvent event) {
+        if(broker != null) {
+            String itemTopic = stateTopic.replace(ITEM_ID, event.getItemId());
+            event.getState().getStateItems().forEach(s -> {
+                String topic = itemTopic.replace(LABEL, s.getLabel());
+                byte[] payload = s.getValue().asString().getBytes(UTF_8);
+                if(pendingStates.size() < queueDepth || pendingStates.containsKey(topic)) {
+                    pendingStates.put(topic, payload);
+                } else {
+                    dropped(topic);
+                }
+            });
+        }
+    }
+
+    @EventSubscribe
+    public void receive(ItemCommandEvent event) {
+        if(broker != null) {
+            ItemCommand command = event.getCommand();
+            String itemTopic = commandTopic.replace(ITEM_ID, event.getItemId());
+            if(command instanceof ItemValueCommand) {
+                ((ItemValueCommand) command).getValues().forEach((label, value) ->
+                        queueCommand(itemTopic.replace(LABEL, label), value.asString()));
+            } else if(command instanceof BasicCommand) {
+                BasicCommand basicCommand = (BasicCommand) command;
+                String properties = basicCommand.getProperties().entrySet().stream()
+                        .map(e -> e.getKey() + "=" + e.getValue()).collect(Collectors.joining(","));
+                queueCommand(itemTopic.replace(LABEL, basicCommand.getCommandType()), properties);
+            } else {
+                LOG.debug("Command: {} has no MQTT representation, not publishing", command);
+            }
+        }
+    }
+
+    public long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    private void queueCommand(String topic, String payload) {
+        if(!pendingCommands.offer(new OutboundMessage(topic, payload.getBytes(UTF_8)))) {
+            dropped(topic);
+        }
+    }
+
+    private void dropped(String topic) {
+        droppedMessages.incrementAndGet();
+        LOG.debug("MQTT publish queue is full, dropping message for topic: {}", topic);
+    }
+
+    void flush() {
+        reportDrops();
+        if(!broker.isConnected()) {
+            LOG.debug("MQTT broker: {} not connected, postponing publish of: {} states", brokerId, pendingStates.size());
+            return;
+        }
+
+        List<OutboundMessage> commands = new ArrayList<>();
+        pendingCommands.drainTo(commands);
+
+        List<OutboundMessage> states = new ArrayList<>();
+        Iterator<Map.Entry<String, byte[]>> it = pendingStates.entrySet().iterator();
+        while(it.hasNext()) {
+            Map.Entry<String, byte[]> entry = it.next();
+            //only removes the state if it was not replaced by a newer one meanwhile
+            if(pendingStates.remove(entry.getKey(), entry.getValue())) {
+                states.add(new OutboundMessage(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        if(!commands.isEmpty() || !states.isEmpty()) {
+            LOG.debug("Publishing: {} commands and: {} states", commands.size(), states.size());
+            commands.forEach(m -> publish(m, false));
+            states.forEach(m -> {
+                if(!publish(m, true)) {
+                    //retry on the next flush unless a newer state arrived
+                    pendingStates.putIfAbsent(m.topic, m.payload);
+                }
+            });
+        }
+    }
+
+    private void reportDrops() {
+        long dropped = droppedMessages.get();
+        if(dropped > reportedDrops) {
+            LOG.warn("MQTT publish queue was full, dropped: {} messages total dropped: {}", dropped - reportedDrops, dropped);
+            reportedDrops = dropped;
+        }
+    }
+
+    private boolean publish(OutboundMessage message, boolean retained) {
+        try {
+            broker.publish(message.topic, message.payload, retained);
+            return true;
+        } catch(HomeAutomationException e) {
+            LOG.warn("Could not publish MQTT message to topic: {}", message.topic, e);
+            return false;
+        }
+    }
+
+    private static final class OutboundMessage {
+        private final String topic;
+        private final byte[] payload;
+
+        private OutboundMessage(String topic, byte[] payload) {
+            this.topic = topic;
+            this.payload = payload;
+        }
+    }
+}
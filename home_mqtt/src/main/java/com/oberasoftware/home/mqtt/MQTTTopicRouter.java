@@ -0,0 +1,127 @@
+package com.oberasoftware.home.mqtt;
+
+import java.util.Arrays;
+
+/**
+ * Routes incoming messages to the listeners whose topic filter matches the topic. The topic filters are
+ * compiled into a trie of topic levels, supporting the MQTT single level '+' and multi level '#' wildcards.
+ * Routing walks the levels of the topic in place, so no intermediate strings are created per message.
+ *
+ * Subscribing is synchronized and replaces the affected nodes, routing is lock free.
+ *
+ * @author Renze de Vries
+ */
+public class MQTTTopicRouter {
+    private static final String SINGLE_LEVEL = "+";
+    private static final String MULTI_LEVEL = "#";
+
+    private final Node root = new Node(null);
+
+    public synchronized void subscribe(String topicFilter, MQTTListener listener) {
+        String[] levels = topicFilter.split("/", -1);
+        Node node = root;
+        for(int i = 0; i < levels.length; i++) {
+            String level = levels[i];
+            if(level.equals(MULTI_LEVEL)) {
+                if(i != levels.length - 1) {
+                    throw new IllegalArgumentException("Multi level wildcard must be the last level of topic filter: " + topicFilter);
+                }
+                node.multiLevelListeners = append(node.multiLevelListeners, listener);
+                return;
+            } else if(level.equals(SINGLE_LEVEL)) {
+                if(node.singleLevel == null) {
+                    node.singleLevel = new Node(SINGLE_LEVEL);
+                }
+                node = node.singleLevel;
+            } else if(level.contains(SINGLE_LEVEL) || level.contains(MULTI_LEVEL)) {
+                throw new IllegalArgumentException("Wildcards must occupy an entire level of topic filter: " + topicFilter);
+            } else {
+                node = node.getOrAddChild(level);
+            }
+        }
+        node.listeners = append(node.listeners, listener);
+    }
+
+    public void route(String topic, byte[] payload) {
+        //topics starting with '$' are reserved for the broker and are not matched by wildcards on the first level
+        route(root, topic, 0, payload, !topic.isEmpty() && topic.charAt(0) == '$');
+    }
+
+    private static void route(Node node, String topic, int start, byte[] payload, boolean reserved) {
+        if(!reserved) {
+            for(MQTTListener listener : node.multiLevelListeners) {
+                listener.receive(topic, payload);
+            }
+        }
+
+        int end = topic.indexOf('/', start);
+        boolean last = end == -1;
+        if(last) {
+            end = topic.length();
+        }
+
+        Node child = node.findChild(topic, start, end - start);
+        if(child != null) {
+            dispatch(child, topic, end, last, payload);
+        }
+        if(node.singleLevel != null && !reserved) {
+            dispatch(node.singleLevel, topic, end, last, payload);
+        }
+    }
+
+    private static void dispatch(Node node, String topic, int end, boolean last, byte[] payload) {
+        if(last) {
+            for(MQTTListener listener : node.listeners) {
+                listener.receive(topic, payload);
+            }
+            //a multi level wildcard also matches the parent level
+            for(MQTTListener listener : node.multiLevelListeners) {
+                listener.receive(topic, payload);
+            }
+        } else {
+            route(node, topic, end + 1, payload, false);
+        }
+    }
+
+    private static MQTTListener[] append(MQTTListener[] listeners, MQTTListener listener) {
+        MQTTListener[] result = Arrays.copyOf(listeners, listeners.length + 1);
+        result[listeners.length] = listener;
+        return result;
+    }
+
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final MQTTListener[] NO_LISTENERS = new MQTTListener[0];
+
+        private final String level;
+
+        private volatile Node[] children = NO_CHILDREN;
+        private volatile Node singleLevel;
+        private volatile MQTTListener[] listeners = NO_LISTENERS;
+        private volatile MQTTListener[] multiLevelListeners = NO_LISTENERS;
+
+        private Node(String level) {
+            this.level = level;
+        }
+
+        private Node findChild(String topic, int start, int length) {
+            for(Node child : children) {
+                if(child.level.length() == length && topic.regionMatches(start, child.level, 0, length)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        private Node getOrAddChild(String level) {
+            Node child = findChild(level, 0, level.length());
+            if(child == null) {
+                child = new Node(level);
+                Node[] result = Arrays.copyOf(children, children.length + 1);
+                result[children.length] = child;
+                children = result;
+            }
+            return child;
+        }
+    }
+}
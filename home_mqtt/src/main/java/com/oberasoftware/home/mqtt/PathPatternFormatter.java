@@ -1,78 +1,167 @@
 package com.oberasoftware.home.mqtt;
 
-import com.google.common.primitives.Doubles;
-import com.google.common.primitives.Ints;
 import com.oberasoftware.base.event.Event;
 import com.oberasoftware.home.api.events.devices.DeviceValueEventImpl;
-import com.oberasoftware.home.api.types.VALUE_TYPE;
 import com.oberasoftware.home.api.types.Value;
-import com.oberasoftware.home.core.types.ValueImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
+ * Formats messages on topics matching a path pattern like /{controllerId}/out/{itemId}/{type}. The pattern
+ * is compiled into its topic levels once, each level holds a literal text or a placeholder with an optional
+ * literal prefix and suffix. Matching compares the levels in place against the incoming topic.
+ *
  * @author Renze de Vries
  */
 @Component("PathPatternFormatter")
+@Scope("prototype")
 public class PathPatternFormatter implements MQTTFormatter {
     private static final Logger LOG = LoggerFactory.getLogger(PathPatternFormatter.class);
 
+    private static final String STATE_TYPE = "state";
+
+    private enum PLACEHOLDER {
+        CONTROLLER("{controllerId}"),
+        ITEM("{itemId}"),
+        TYPE("{type}");
+
+        private final String token;
+
+        PLACEHOLDER(String token) {
+            this.token = token;
+        }
+    }
+
     private String pattern;
-    private Pattern regexPattern;
+    private Level[] levels;
 
     @Override
     public void configure(String pattern) {
         this.pattern = pattern;
 
-        String regexPattern = pattern
-                .replace("{controllerId}", "(.*)")
-                .replace("{itemId}", "(.*)")
-                .replace("{type}", "(.*)");
+        String[] parts = pattern.split("/", -1);
+        Level[] compiled = new Level[parts.length];
+        boolean[] found = new boolean[PLACEHOLDER.values().length];
+        for(int i = 0; i < parts.length; i++) {
+            compiled[i] = Level.compile(parts[i], pattern);
+            if(compiled[i].placeholder != null) {
+                found[compiled[i].placeholder.ordinal()] = true;
+            }
+        }
+        for(PLACEHOLDER placeholder : PLACEHOLDER.values()) {
+            if(!found[placeholder.ordinal()]) {
+                throw new IllegalArgumentException("Pattern: " + pattern + " does not contain placeholder: " + placeholder.token);
+            }
+        }
 
-        LOG.info("Using regex pattern: {}", regexPattern);
-        this.regexPattern = Pattern.compile(regexPattern);
+        LOG.info("Using path pattern: {} with: {} levels", pattern, compiled.length);
+        this.levels = compiled;
     }
 
     @Override
-    public MQTTMessage format(String incomingTopic, String incomingPayload) {
+    public MQTTMessage format(String incomingTopic, byte[] incomingPayload) {
         LOG.debug("Incoming topic: {}", incomingTopic);
 
+        String controllerId = null;
+        String itemId = null;
+        boolean stateType = false;
+
+        int start = 0;
+        for(int i = 0; i < levels.length; i++) {
+            int end = incomingTopic.indexOf('/', start);
+            boolean last = i == levels.length - 1;
+            if(last != (end == -1)) {
+                return invalid(incomingTopic, incomingPayload);
+            }
+            if(last) {
+                end = incomingTopic.length();
+            }
+
+            Level level = levels[i];
+            if(!level.matches(incomingTopic, start, end)) {
+                return invalid(incomingTopic, incomingPayload);
+            }
+            if(level.placeholder == PLACEHOLDER.CONTROLLER) {
+                controllerId = level.extract(incomingTopic, start, end);
+            } else if(level.placeholder == PLACEHOLDER.ITEM) {
+                itemId = level.extract(incomingTopic, start, end);
+            } else if(level.placeholder == PLACEHOLDER.TYPE) {
+                stateType = level.valueEquals(incomingTopic, start, end, STATE_TYPE);
+                if(!stateType) {
+                    LOG.warn("Received an unsupported MQTT even type: {}", level.extract(incomingTopic, start, end));
+                    return null;
+                }
+            }
+            start = end + 1;
+        }
+
+        if(stateType) {
+            Value value = PayloadParser.parse(incomingPayload);
+
+            Event event = new DeviceValueEventImpl(controllerId, "mqtt", itemId, value, "value");
+            return new MQTTMessageImpl(controllerId, itemId, "mqtt", event);
+        }
+        return null;
+    }
+
+    private MQTTMessage invalid(String incomingTopic, byte[] incomingPayload) {
+        LOG.warn("Invalid MQTT message received for pattern: {}, topic: {} message: {}", pattern, incomingTopic,
+                new String(incomingPayload, UTF_8));
+        return null;
+    }
 
-        Matcher matcher = regexPattern.matcher(incomingTopic);
-        if(matcher.find()) {
-            String controllerId = matcher.group(1);
-            String itemId = matcher.group(2);
-            String type = matcher.group(3);
+    private static final class Level {
+        private final String prefix;
+        private final PLACEHOLDER placeholder;
+        private final String suffix;
 
-            if(type.equals("state")) {
+        private Level(String prefix, PLACEHOLDER placeholder, String suffix) {
+            this.prefix = prefix;
+            this.placeholder = placeholder;
+            this.suffix = suffix;
+        }
 
-                Value value = new ValueImpl(VALUE_TYPE.STRING, incomingPayload);
-                Double decimal = Doubles.tryParse(incomingPayload);
-                if(decimal != null) {
-                    value = new ValueImpl(VALUE_TYPE.DECIMAL, decimal);
-                } else {
-                    Integer number = Ints.tryParse(incomingPayload);
-                    if(number != null) {
-                        value = new ValueImpl(VALUE_TYPE.NUMBER, number);
+        private static Level compile(String level, String pattern) {
+            PLACEHOLDER found = null;
+            int index = -1;
+            for(PLACEHOLDER placeholder : PLACEHOLDER.values()) {
+                int placeholderIndex = level.indexOf(placeholder.token);
+                if(placeholderIndex != -1) {
+                    if(found != null) {
+                        throw new IllegalArgumentException("Pattern: " + pattern + " has more than one placeholder in level: " + level);
                     }
+                    found = placeholder;
+                    index = placeholderIndex;
                 }
+            }
 
-                Event event = new DeviceValueEventImpl(controllerId, "mqtt", itemId, value, "value");
-                return new MQTTMessageImpl(controllerId, itemId, "mqtt", event);
-            } else {
-                LOG.warn("Received an unsupported MQTT even type: {}", type);
-                return null;
+            if(found == null) {
+                return new Level(level, null, "");
             }
-        } else {
-            LOG.warn("Invalid MQTT message received, topic: {} message: {}", incomingTopic, incomingPayload);
-            return null;
+            return new Level(level.substring(0, index), found, level.substring(index + found.token.length()));
         }
 
-    }
+        private boolean matches(String topic, int start, int end) {
+            int length = end - start;
+            if(placeholder == null) {
+                return length == prefix.length() && topic.regionMatches(start, prefix, 0, length);
+            }
+            return length > prefix.length() + suffix.length()
+                    && topic.regionMatches(start, prefix, 0, prefix.length())
+                    && topic.regionMatches(end - suffix.length(), suffix, 0, suffix.length());
+        }
 
+        private boolean valueEquals(String topic, int start, int end, String value) {
+            int valueStart = start + prefix.length();
+            return end - suffix.length() - valueStart == value.length() && topic.regionMatches(valueStart, value, 0, value.length());
+        }
 
+        private String extract(String topic, int start, int end) {
+            return topic.substring(start + prefix.length(), end - suffix.length());
+        }
+    }
 }
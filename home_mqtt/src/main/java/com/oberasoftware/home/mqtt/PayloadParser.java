@@ -0,0 +1,134 @@
+package com.oberasoftware.home.mqtt;
+
+import com.oberasoftware.home.api.types.VALUE_TYPE;
+import com.oberasoftware.home.api.types.Value;
+import com.oberasoftware.home.core.types.ValueImpl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Converts MQTT payloads into values. Decimal numbers are parsed straight from the payload bytes, other
+ * payloads become string values.
+ *
+ * @author Renze de Vries
+ */
+final class PayloadParser {
+    //powers of ten that are exactly representable as a double
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    //mantissas up to 2^53 are exactly representable as a double
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private static final int MAX_DIGITS = 18;
+
+    private PayloadParser() {
+    }
+
+    static Value parse(byte[] payload) {
+        if(isDecimal(payload)) {
+            return new ValueImpl(VALUE_TYPE.DECIMAL, parseDecimal(payload));
+        }
+        return new ValueImpl(VALUE_TYPE.STRING, new String(payload, UTF_8));
+    }
+
+    /**
+     * Checks the payload is a decimal number: an optional sign, digits with an optional fraction and an
+     * optional exponent.
+     */
+    static boolean isDecimal(byte[] payload) {
+        int i = 0;
+        int length = payload.length;
+        if(i < length && (payload[i] == '-' || payload[i] == '+')) {
+            i++;
+        }
+
+        int digits = 0;
+        for(; i < length && isDigit(payload[i]); i++) {
+            digits++;
+        }
+        if(i < length && payload[i] == '.') {
+            for(i++; i < length && isDigit(payload[i]); i++) {
+                digits++;
+            }
+        }
+        if(digits == 0) {
+            return false;
+        }
+
+        if(i < length && (payload[i] == 'e' || payload[i] == 'E')) {
+            i++;
+            if(i < length && (payload[i] == '-' || payload[i] == '+')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            for(; i < length && isDigit(payload[i]); i++) {
+                exponentDigits++;
+            }
+            if(exponentDigits == 0) {
+                return false;
+            }
+        }
+        return i == length;
+    }
+
+    /**
+     * Parses a payload for which {@link #isDecimal(byte[])} holds. Numbers whose digits and scale fit a
+     * double exactly are computed in place, the rest are handed to {@link Double#parseDouble(String)} to
+     * keep correct rounding.
+     */
+    static double parseDecimal(byte[] payload) {
+        int i = 0;
+        boolean negative = false;
+        if(payload[i] == '-' || payload[i] == '+') {
+            negative = payload[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        for(; i < payload.length; i++) {
+            byte b = payload[i];
+            if(b == '.') {
+                fraction = true;
+            } else if(isDigit(b)) {
+                if(mantissa == 0 && b == '0') {
+                    //leading zeros do not count towards the precision
+                    if(fraction) {
+                        scale--;
+                    }
+                    continue;
+                }
+                if(++digits > MAX_DIGITS) {
+                    return slowParse(payload);
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if(fraction) {
+                    scale--;
+                }
+            } else {
+                //exponent notation
+                return slowParse(payload);
+            }
+        }
+
+        if(mantissa > MAX_EXACT_MANTISSA || -scale >= POWERS_OF_TEN.length) {
+            return slowParse(payload);
+        }
+
+        double value = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[-scale];
+        return negative ? -value : value;
+    }
+
+    private static double slowParse(byte[] payload) {
+        return Double.parseDouble(new String(payload, UTF_8));
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
@@ -0,0 +1,225 @@
+package com.oberasoftware.home.mqtt;
+
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Renze de Vries
+ */
+public class MQTTBrokerTest {
+    private static final String HOST = "tcp://localhost:1883";
+
+    private IMqttAsyncClient client;
+    private IMqttToken connectToken;
+    private IMqttToken subscribeToken;
+    private final List<Long> connectAttempts = new CopyOnWriteArrayList<>();
+
+    private MQTTBroker broker;
+
+    @Before
+    public void setUp() throws MqttException {
+        client = mock(IMqttAsyncClient.class);
+        connectToken = mock(IMqttToken.class);
+        subscribeToken = mock(IMqttToken.class);
+
+        doAnswer(invocation -> {
+            connectAttempts.add(System.currentTimeMillis());
+            return connectToken;
+        }).when(client).connect(any(MqttConnectOptions.class));
+        when(client.subscribe(any(String[].class), any(int[].class))).thenReturn(subscribeToken);
+        when(client.disconnect()).thenReturn(mock(IMqttToken.class));
+    }
+
+    @After
+    public void tearDown() {
+        if(broker != null) {
+            broker.disconnect();
+        }
+    }
+
+    @Test
+    public void connectAndSubscribe() throws Exception {
+        broker = createBroker(50, 200);
+        broker.subscribeTopic("/openHAB/out/#", (t, p) -> {});
+        broker.connect();
+
+        assertThat(broker.isConnected(), is(true));
+        verify(client).subscribe(aryEq(new String[]{"/openHAB/out/#"}), aryEq(new int[]{1}));
+
+        ArgumentCaptor<MqttConnectOptions> options = ArgumentCaptor.forClass(MqttConnectOptions.class);
+        verify(client).connect(options.capture());
+        assertThat(options.getValue().isCleanSession(), is(false));
+
+        broker.subscribeTopic("/other/out/#", (t, p) -> {});
+        verify(client).subscribe("/other/out/#", 1);
+    }
+
+    @Test
+    public void reconnectWithBackoff() throws Exception {
+        MqttException failure = new MqttException(MqttException.REASON_CODE_SERVER_CONNECT_ERROR);
+        doThrow(failure).doThrow(failure).doThrow(failure).doThrow(failure).doNothing()
+                .when(connectToken).waitForCompletion(anyLong());
+
+        broker = createBroker(50, 100);
+        broker.subscribeTopic("/openHAB/out/#", (t, p) -> {});
+        broker.connect();
+        assertThat(broker.isConnected(), is(false));
+
+        verify(client, timeout(5000).times(1)).subscribe(any(String[].class), any(int[].class));
+        waitForConnected();
+        assertThat(connectAttempts.size(), is(5));
+
+        //the delay doubles after every failed attempt up to the maximum delay
+        long[] minimumDelays = {50, 50, 100, 100};
+        for(int i=0; i<minimumDelays.length; i++) {
+            long delay = connectAttempts.get(i + 1) - connectAttempts.get(i);
+            assertThat("Delay: " + delay + " before attempt: " + (i + 1), delay >= minimumDelays[i], is(true));
+        }
+    }
+
+    @Test
+    public void connectionLostResubscribes() throws Exception {
+        broker = createBroker(10, 100);
+        broker.subscribeTopic("/openHAB/out/#", (t, p) -> {});
+        broker.subscribeTopic("/other/out/#", (t, p) -> {});
+        broker.connect();
+
+        ArgumentCaptor<MqttCallback> callback = ArgumentCaptor.forClass(MqttCallback.class);
+        verify(client).setCallback(callback.capture());
+
+        callback.getValue().connectionLost(new MqttException(MqttException.REASON_CODE_CONNECTION_LOST));
+        assertThat(broker.isConnected(), is(false));
+
+        verify(client, timeout(5000).times(2)).subscribe(any(String[].class), any(int[].class));
+        waitForConnected();
+        assertThat(connectAttempts.size(), is(2));
+
+        ArgumentCaptor<String[]> topics = ArgumentCaptor.forClass(String[].class);
+        verify(client, times(2)).subscribe(topics.capture(), any(int[].class));
+        assertThat(topics.getValue().length, is(2));
+    }
+
+    @Test
+    public void failedResubscribeReconnects() throws Exception {
+        doThrow(new MqttException(MqttException.REASON_CODE_CLIENT_TIMEOUT)).doNothing()
+                .when(subscribeToken).waitForCompletion(anyLong());
+
+        broker = createBroker(10, 100);
+        broker.subscribeTopic("/openHAB/out/#", (t, p) -> {});
+        broker.connect();
+        assertThat(broker.isConnected(), is(false));
+        verify(client).disconnectForcibly();
+
+        verify(client, timeout(5000).times(2)).subscribe(any(String[].class), any(int[].class));
+        waitForConnected();
+        assertThat(connectAttempts.size(), is(2));
+    }
+
+    @Test
+    public void subscribeDuringResubscribe() throws Exception {
+        CountDownLatch resubscribing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            resubscribing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(subscribeToken).waitForCompletion(anyLong());
+
+        broker = createBroker(10, 100);
+        broker.subscribeTopic("/openHAB/out/#", (t, p) -> {});
+        Thread connectThread = new Thread(() -> {
+            try {
+                broker.connect();
+            } catch(Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        connectThread.start();
+        assertThat(resubscribing.await(5, TimeUnit.SECONDS), is(true));
+
+        //the topic arrives after the resubscribe took its snapshot, but before the broker is marked connected
+        Thread subscribeThread = new Thread(() -> broker.subscribeTopic("/late/out/#", (t, p) -> {}));
+        subscribeThread.start();
+        Thread.sleep(50);
+        release.countDown();
+
+        connectThread.join(5000);
+        subscribeThread.join(5000);
+
+        assertThat(broker.isConnected(), is(true));
+        verify(client).subscribe(aryEq(new String[]{"/openHAB/out/#"}), aryEq(new int[]{1}));
+        verify(client).subscribe("/late/out/#", 1);
+    }
+
+    @Test
+    public void listenerFailureDoesNotDropConnection() throws Exception {
+        List<String> received = new ArrayList<>();
+        broker = createBroker(10, 100);
+        broker.subscribeTopic("/openHAB/out/#", (t, p) -> {
+            received.add(t);
+            throw new IllegalStateException("Unable to handle message");
+        });
+        broker.connect();
+
+        ArgumentCaptor<MqttCallback> callback = ArgumentCaptor.forClass(MqttCallback.class);
+        verify(client).setCallback(callback.capture());
+
+        callback.getValue().messageArrived("/openHAB/out/light/state", new MqttMessage("ON".getBytes()));
+        assertThat(received.size(), is(1));
+        assertThat(broker.isConnected(), is(true));
+    }
+
+    @Test
+    public void disconnectStopsReconnecting() throws Exception {
+        doThrow(new MqttException(MqttException.REASON_CODE_SERVER_CONNECT_ERROR)).when(connectToken).waitForCompletion(anyLong());
+
+        broker = createBroker(50, 50);
+        broker.connect();
+        broker.disconnect();
+        Thread.sleep(200);
+
+        assertThat(connectAttempts.size(), is(1));
+        verify(client).close();
+    }
+
+    private void waitForConnected() throws InterruptedException {
+        //the connected flag is set right after subscribing
+        long deadline = System.currentTimeMillis() + 5000;
+        while(!broker.isConnected() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(broker.isConnected(), is(true));
+    }
+
+    private MQTTBroker createBroker(long minDelay, long maxDelay) {
+        MQTTBrokerSettings settings = new MQTTBrokerSettings("haas-test", 1, false, 10, null, 60, minDelay, maxDelay);
+        return new MQTTBroker(HOST, settings, (host, clientId, persistence) -> client);
+    }
+}
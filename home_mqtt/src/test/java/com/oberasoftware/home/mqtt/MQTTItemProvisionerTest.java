@@ -0,0 +1,186 @@
+package com.oberasoftware.home.mqtt;
+
+import com.oberasoftware.base.event.Event;
+import com.oberasoftware.home.api.AutomationBus;
+import com.oberasoftware.home.api.exceptions.HomeAutomationException;
+import com.oberasoftware.home.api.managers.ItemManager;
+import com.oberasoftware.home.api.model.Device;
+import com.oberasoftware.home.api.model.storage.DeviceItem;
+import com.oberasoftware.home.api.storage.HomeDAO;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Renze de Vries
+ */
+public class MQTTItemProvisionerTest {
+    private static final String CONTROLLER_ID = "controller1";
+    private static final String PLUGIN_ID = "openHAB";
+
+    private ItemManager itemManager;
+    private HomeDAO homeDAO;
+    private AutomationBus automationBus;
+
+    private final List<DeviceItem> storedDevices = new ArrayList<>();
+
+    private MQTTItemProvisioner provisioner;
+
+    @Before
+    public void setUp() throws HomeAutomationException {
+        itemManager = mock(ItemManager.class);
+        homeDAO = mock(HomeDAO.class);
+        automationBus = mock(AutomationBus.class);
+
+        when(homeDAO.findController(anyString())).thenReturn(Optional.empty());
+        when(homeDAO.findDevices(CONTROLLER_ID, PLUGIN_ID)).thenAnswer(invocation -> new ArrayList<>(storedDevices));
+
+        provisioner = new MQTTItemProvisioner();
+        ReflectionTestUtils.setField(provisioner, "itemManager", itemManager);
+        ReflectionTestUtils.setField(provisioner, "homeDAO", homeDAO);
+        ReflectionTestUtils.setField(provisioner, "automationBus", automationBus);
+        ReflectionTestUtils.setField(provisioner, "queueDepth", 2);
+    }
+
+    @Test
+    public void holdEventUntilProvisioned() throws HomeAutomationException {
+        Event event = mock(Event.class);
+        provisioner.publish(message("light1", event));
+
+        verify(automationBus, never()).publish(any(Event.class));
+        assertThat(provisioner.getPendingDevices(), is(1));
+
+        provisioner.provision();
+
+        InOrder order = inOrder(itemManager, automationBus);
+        order.verify(itemManager).createOrUpdateController(CONTROLLER_ID);
+        order.verify(itemManager).createOrUpdatePlugin(eq(CONTROLLER_ID), eq(PLUGIN_ID), anyString(), anyMapOf(String.class, String.class));
+        order.verify(itemManager).createOrUpdateDevices(eq(CONTROLLER_ID), eq(PLUGIN_ID), anyListOf(Device.class));
+        order.verify(automationBus).publish(event);
+        assertThat(provisioner.getPendingDevices(), is(0));
+    }
+
+    @Test
+    public void onlyLatestEventIsHeld() throws HomeAutomationException {
+        Event first = mock(Event.class);
+        Event latest = mock(Event.class);
+        provisioner.publish(message("light1", first));
+        provisioner.publish(message("light1", latest));
+
+        provisioner.provision();
+
+        verify(automationBus, never()).publish(first);
+        verify(automationBus).publish(latest);
+        verify(itemManager, times(1)).createOrUpdateDevices(anyString(), anyString(), anyListOf(Device.class));
+    }
+
+    @Test
+    public void knownDevicePublishedDirectly() throws HomeAutomationException {
+        provisioner.publish(message("light1", mock(Event.class)));
+        provisioner.provision();
+
+        Event event = mock(Event.class);
+        provisioner.publish(message("light1", event));
+        verify(automationBus).publish(event);
+        assertThat(provisioner.getPendingDevices(), is(0));
+
+        provisioner.provision();
+        verify(itemManager, times(1)).createOrUpdateDevices(anyString(), anyString(), anyListOf(Device.class));
+    }
+
+    @Test
+    public void existingDeviceNotCreated() throws HomeAutomationException {
+        storedDevices.add(device("light1"));
+        Event event = mock(Event.class);
+        provisioner.publish(message("light1", event));
+
+        provisioner.provision();
+
+        verify(itemManager, never()).createOrUpdateDevices(anyString(), anyString(), anyListOf(Device.class));
+        verify(automationBus).publish(event);
+    }
+
+    @Test
+    public void failedProvisioningIsRetried() throws HomeAutomationException {
+        when(itemManager.createOrUpdateDevices(anyString(), anyString(), anyListOf(Device.class)))
+                .thenThrow(new HomeAutomationException("Unable to store devices"))
+                .thenReturn(new ArrayList<>());
+
+        Event event = mock(Event.class);
+        provisioner.publish(message("light1", event));
+
+        provisioner.provision();
+        verify(automationBus, never()).publish(any(Event.class));
+        assertThat(provisioner.getPendingDevices(), is(1));
+
+        provisioner.provision();
+        verify(automationBus).publish(event);
+        assertThat(provisioner.getPendingDevices(), is(0));
+    }
+
+    @Test
+    public void fullQueueDropsEvents() {
+        provisioner.publish(message("light1", mock(Event.class)));
+        provisioner.publish(message("light2", mock(Event.class)));
+        provisioner.publish(message("light3", mock(Event.class)));
+        assertThat(provisioner.getDroppedEvents(), is(1L));
+
+        //a device already held can still replace its event
+        provisioner.publish(message("light2", mock(Event.class)));
+        assertThat(provisioner.getDroppedEvents(), is(1L));
+        assertThat(provisioner.getPendingDevices(), is(2));
+    }
+
+    @Test
+    public void deletedDeviceIsProvisionedAgain() throws HomeAutomationException {
+        provisioner.publish(message("light1", mock(Event.class)));
+        provisioner.provision();
+        storedDevices.add(device("light1"));
+
+        provisioner.validateKnownDevices();
+        Event event = mock(Event.class);
+        provisioner.publish(message("light1", event));
+        verify(automationBus).publish(event);
+
+        storedDevices.clear();
+        provisioner.validateKnownDevices();
+
+        Event deletedEvent = mock(Event.class);
+        provisioner.publish(message("light1", deletedEvent));
+        verify(automationBus, never()).publish(deletedEvent);
+
+        provisioner.provision();
+        verify(itemManager, times(2)).createOrUpdateDevices(anyString(), anyString(), anyListOf(Device.class));
+        verify(itemManager, times(2)).createOrUpdatePlugin(anyString(), anyString(), anyString(), anyMapOf(String.class, String.class));
+        verify(automationBus).publish(deletedEvent);
+    }
+
+    private static MQTTMessage message(String deviceId, Event event) {
+        return new MQTTMessageImpl(CONTROLLER_ID, deviceId, PLUGIN_ID, event);
+    }
+
+    private static DeviceItem device(String deviceId) {
+        DeviceItem deviceItem = mock(DeviceItem.class);
+        when(deviceItem.getDeviceId()).thenReturn(deviceId);
+        return deviceItem;
+    }
+}
@@ -0,0 +1,168 @@
+package com.oberasoftware.home.mqtt;
+
+import com.google.common.collect.ImmutableMap;
+import com.oberasoftware.home.api.AutomationBus;
+import com.oberasoftware.home.api.events.devices.ItemCommandEvent;
+import com.oberasoftware.home.api.events.devices.StateUpdateEvent;
+import com.oberasoftware.home.api.exceptions.HomeAutomationException;
+import com.oberasoftware.home.api.model.Status;
+import com.oberasoftware.home.api.types.VALUE_TYPE;
+import com.oberasoftware.home.core.commands.ValueCommandImpl;
+import com.oberasoftware.home.core.model.StateImpl;
+import com.oberasoftware.home.core.model.StateItemImpl;
+import com.oberasoftware.home.core.types.ValueImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Renze de Vries
+ */
+public class MQTTPublishBridgeTest {
+    private MQTTBroker broker;
+    private MQTTPublishBridge bridge;
+
+    @Before
+    public void setUp() {
+        broker = mock(MQTTBroker.class);
+        when(broker.isConnected()).thenReturn(true);
+
+        MQTTExtension extension = mock(MQTTExtension.class);
+        when(extension.getBroker("publisher")).thenReturn(Optional.of(broker));
+
+        AutomationBus automationBus = mock(AutomationBus.class);
+        when(automationBus.getControllerId()).thenReturn("controller1");
+
+        bridge = new MQTTPublishBridge();
+        ReflectionTestUtils.setField(bridge, "mqttExtension", extension);
+        ReflectionTestUtils.setField(bridge, "automationBus", automationBus);
+        ReflectionTestUtils.setField(bridge, "brokerId", "publisher");
+        ReflectionTestUtils.setField(bridge, "stateTopic", "/{controllerId}/state/{itemId}/{label}");
+        ReflectionTestUtils.setField(bridge, "commandTopic", "/{controllerId}/command/{itemId}/{label}");
+        //flushes are triggered by the tests
+        ReflectionTestUtils.setField(bridge, "flushInterval", 3600000L);
+        ReflectionTestUtils.setField(bridge, "queueDepth", 2);
+        bridge.start();
+    }
+
+    @After
+    public void tearDown() {
+        bridge.stop();
+    }
+
+    @Test
+    public void latestStatePublishedRetained() throws HomeAutomationException {
+        bridge.receive(stateUpdate("light1", "on-off", "off"));
+        bridge.receive(stateUpdate("light1", "on-off", "on"));
+        bridge.flush();
+
+        verify(broker, times(1)).publish(eq("/controller1/state/light1/on-off"), any(byte[].class), anyBoolean());
+        verify(broker).publish(eq("/controller1/state/light1/on-off"), aryEq(bytes("on")), eq(true));
+
+        bridge.flush();
+        verify(broker, times(1)).publish(anyString(), any(byte[].class), anyBoolean());
+    }
+
+    @Test
+    public void commandsPublishedInOrderBeforeStates() throws HomeAutomationException {
+        bridge.receive(stateUpdate("light1", "value", "10"));
+        bridge.receive(command("light1", "value", "20"));
+        bridge.receive(command("light1", "value", "30"));
+        bridge.flush();
+
+        InOrder order = inOrder(broker);
+        order.verify(broker).publish(eq("/controller1/command/light1/value"), aryEq(bytes("20")), eq(false));
+        order.verify(broker).publish(eq("/controller1/command/light1/value"), aryEq(bytes("30")), eq(false));
+        order.verify(broker).publish(eq("/controller1/state/light1/value"), aryEq(bytes("10")), eq(true));
+    }
+
+    @Test
+    public void postponedWhileDisconnected() throws HomeAutomationException {
+        when(broker.isConnected()).thenReturn(false);
+        bridge.receive(stateUpdate("light1", "on-off", "on"));
+        bridge.flush();
+        verify(broker, never()).publish(anyString(), any(byte[].class), anyBoolean());
+
+        when(broker.isConnected()).thenReturn(true);
+        bridge.flush();
+        verify(broker).publish(eq("/controller1/state/light1/on-off"), aryEq(bytes("on")), eq(true));
+    }
+
+    @Test
+    public void failedStateRetriedUnlessReplaced() throws HomeAutomationException {
+        doThrow(new HomeAutomationException("Not connected")).doNothing()
+                .when(broker).publish(eq("/controller1/state/light1/on-off"), any(byte[].class), eq(true));
+        doThrow(new HomeAutomationException("Not connected")).doNothing()
+                .when(broker).publish(eq("/controller1/state/light2/on-off"), any(byte[].class), eq(true));
+
+        bridge.receive(stateUpdate("light1", "on-off", "on"));
+        bridge.receive(stateUpdate("light2", "on-off", "on"));
+        bridge.flush();
+
+        bridge.receive(stateUpdate("light2", "on-off", "off"));
+        bridge.flush();
+
+        verify(broker, times(2)).publish(eq("/controller1/state/light1/on-off"), aryEq(bytes("on")), eq(true));
+        verify(broker, times(1)).publish(eq("/controller1/state/light2/on-off"), aryEq(bytes("on")), eq(true));
+        verify(broker, times(1)).publish(eq("/controller1/state/light2/on-off"), aryEq(bytes("off")), eq(true));
+    }
+
+    @Test
+    public void queuesAreBounded() throws HomeAutomationException {
+        bridge.receive(stateUpdate("light1", "on-off", "on"));
+        bridge.receive(stateUpdate("light2", "on-off", "on"));
+        bridge.receive(stateUpdate("light3", "on-off", "on"));
+        //a pending state topic can still be replaced
+        bridge.receive(stateUpdate("light2", "on-off", "off"));
+
+        bridge.receive(command("light1", "value", "1"));
+        bridge.receive(command("light1", "value", "2"));
+        bridge.receive(command("light1", "value", "3"));
+        assertThat(bridge.getDroppedMessages(), is(2L));
+
+        bridge.flush();
+        verify(broker, never()).publish(eq("/controller1/state/light3/on-off"), any(byte[].class), anyBoolean());
+        verify(broker).publish(eq("/controller1/state/light2/on-off"), aryEq(bytes("off")), eq(true));
+        verify(broker, times(2)).publish(eq("/controller1/command/light1/value"), any(byte[].class), eq(false));
+
+        bridge.receive(stateUpdate("light3", "on-off", "on"));
+        bridge.flush();
+        verify(broker).publish(eq("/controller1/state/light3/on-off"), aryEq(bytes("on")), eq(true));
+        assertThat(bridge.getDroppedMessages(), is(2L));
+    }
+
+    private static StateUpdateEvent stateUpdate(String itemId, String label, String value) {
+        StateImpl state = new StateImpl(itemId, Status.ACTIVE);
+        state.updateIfChanged(label, new StateItemImpl(label, new ValueImpl(VALUE_TYPE.STRING, value)));
+        return new StateUpdateEvent(state);
+    }
+
+    private static ItemCommandEvent command(String itemId, String label, String value) {
+        return new ItemCommandEvent(itemId, new ValueCommandImpl(itemId,
+                ImmutableMap.of(label, new ValueImpl(VALUE_TYPE.STRING, value))));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(UTF_8);
+    }
+}
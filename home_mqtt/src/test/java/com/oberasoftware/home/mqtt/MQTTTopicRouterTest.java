@@ -0,0 +1,60 @@
+package com.oberasoftware.home.mqtt;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Renze de Vries
+ */
+public class MQTTTopicRouterTest {
+    private static final byte[] PAYLOAD = "ON".getBytes();
+
+    @Test
+    public void testRouteToMatchingFilters() {
+        MQTTTopicRouter router = new MQTTTopicRouter();
+        List<String> openHab = new ArrayList<>();
+        List<String> states = new ArrayList<>();
+        List<String> exact = new ArrayList<>();
+        List<String> all = new ArrayList<>();
+        router.subscribe("/openHAB/out/#", (t, p) -> openHab.add(t));
+        router.subscribe("/+/out/+/state", (t, p) -> states.add(t));
+        router.subscribe("/openHAB/out/weatherState/state", (t, p) -> exact.add(t));
+        router.subscribe("#", (t, p) -> all.add(t));
+
+        router.route("/openHAB/out/weatherState/state", PAYLOAD);
+        router.route("/openHAB/out/weatherState/command", PAYLOAD);
+        router.route("/other/out/light/state", PAYLOAD);
+        router.route("/openHAB/out", PAYLOAD);
+        router.route("/openHAB/in/light/state", PAYLOAD);
+
+        assertThat(openHab.size(), is(3));
+        assertThat(states.size(), is(2));
+        assertThat(exact.size(), is(1));
+        assertThat(all.size(), is(5));
+    }
+
+    @Test
+    public void testReservedTopicsNotMatchedByWildcards() {
+        MQTTTopicRouter router = new MQTTTopicRouter();
+        List<String> all = new ArrayList<>();
+        List<String> system = new ArrayList<>();
+        router.subscribe("#", (t, p) -> all.add(t));
+        router.subscribe("+/broker/uptime", (t, p) -> all.add(t));
+        router.subscribe("$SYS/#", (t, p) -> system.add(t));
+
+        router.route("$SYS/broker/uptime", PAYLOAD);
+
+        assertThat(all.size(), is(0));
+        assertThat(system.size(), is(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMultiLevelWildcard() {
+        new MQTTTopicRouter().subscribe("/openHAB/#/state", (t, p) -> {});
+    }
+}
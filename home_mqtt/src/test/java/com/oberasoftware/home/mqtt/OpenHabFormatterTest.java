@@ -1,10 +1,12 @@
 package com.oberasoftware.home.mqtt;
 
 import com.oberasoftware.home.api.events.devices.DeviceValueEvent;
+import com.oberasoftware.home.api.types.VALUE_TYPE;
 import org.junit.Test;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -24,4 +26,34 @@ public class OpenHabFormatterTest {
         DeviceValueEvent valueEvent = (DeviceValueEvent) message.getEvent();
         assertThat(valueEvent.getValue().asString(), is("ON"));
     }
+
+    @Test
+    public void testParseNumericPayload() {
+        PathPatternFormatter formatter = new PathPatternFormatter();
+        formatter.configure("/{controllerId}/out/{itemId}/{type}");
+
+        DeviceValueEvent valueEvent = (DeviceValueEvent) formatter.format("/openHAB/out/temperature/state", "-21.05").getEvent();
+        assertThat(valueEvent.getValue().getType(), is(VALUE_TYPE.DECIMAL));
+        assertThat(valueEvent.getValue().getValue(), is(-21.05));
+
+        valueEvent = (DeviceValueEvent) formatter.format("/openHAB/out/temperature/state", "1.5e3").getEvent();
+        assertThat(valueEvent.getValue().getValue(), is(1500.0));
+
+        valueEvent = (DeviceValueEvent) formatter.format("/openHAB/out/temperature/state", "12.").getEvent();
+        assertThat(valueEvent.getValue().getValue(), is(12.0));
+
+        valueEvent = (DeviceValueEvent) formatter.format("/openHAB/out/temperature/state", "1.2.3").getEvent();
+        assertThat(valueEvent.getValue().getType(), is(VALUE_TYPE.STRING));
+    }
+
+    @Test
+    public void testInvalidTopics() {
+        PathPatternFormatter formatter = new PathPatternFormatter();
+        formatter.configure("/{controllerId}/out/{itemId}/{type}");
+
+        assertThat(formatter.format("/openHAB/in/weatherState/state", "ON"), nullValue());
+        assertThat(formatter.format("/openHAB/out/weatherState/command", "ON"), nullValue());
+        assertThat(formatter.format("/openHAB/out/weather/State/state", "ON"), nullValue());
+        assertThat(formatter.format("/openHAB/out/weatherState", "ON"), nullValue());
+    }
 }
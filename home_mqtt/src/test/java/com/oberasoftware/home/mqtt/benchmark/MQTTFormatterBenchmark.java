@@ -0,0 +1,79 @@
+package com.oberasoftware.home.mqtt.benchmark;
+
+import com.oberasoftware.home.mqtt.MQTTMessage;
+import com.oberasoftware.home.mqtt.MQTTTopicRouter;
+import com.oberasoftware.home.mqtt.PathPatternFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the handling of a single incoming message on the OpenHab topic shape, both formatting alone
+ * and routing through the topic router into the formatter, for a string and a numeric payload.
+ *
+ * Run using the main method from the test classpath of this module.
+ *
+ * @author Renze de Vries
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MQTTFormatterBenchmark {
+    private static final String PATTERN = "/{controllerId}/out/{itemId}/{type}";
+    private static final String TOPIC = "/openHAB/out/weatherState/state";
+
+    private static final byte[] STRING_PAYLOAD = "ON".getBytes();
+    private static final byte[] NUMERIC_PAYLOAD = "21.5".getBytes();
+
+    private PathPatternFormatter formatter;
+    private MQTTTopicRouter router;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+
+        formatter = new PathPatternFormatter();
+        formatter.configure(PATTERN);
+
+        router = new MQTTTopicRouter();
+        router.subscribe("/openHAB/in/#", (t, p) -> this.blackhole.consume(p));
+        router.subscribe("/openHAB/out/#", (t, p) -> this.blackhole.consume(formatter.format(t, p)));
+        router.subscribe("/zigbee/+/state", (t, p) -> this.blackhole.consume(p));
+    }
+
+    @Benchmark
+    public MQTTMessage formatString() {
+        return formatter.format(TOPIC, STRING_PAYLOAD);
+    }
+
+    @Benchmark
+    public MQTTMessage formatNumeric() {
+        return formatter.format(TOPIC, NUMERIC_PAYLOAD);
+    }
+
+    @Benchmark
+    public void routeNumeric() {
+        router.route(TOPIC, NUMERIC_PAYLOAD);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MQTTFormatterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
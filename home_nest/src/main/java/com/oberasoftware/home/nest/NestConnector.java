@@ -13,6 +13,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.slf4j.LoggerFactory.getLogger;
@@ -31,6 +32,7 @@ public class NestConnector {
     private AutomationBus automationBus;
 
     private AtomicBoolean connected = new AtomicBoolean(false);
+    private final CompletableFuture<Void> connectedFuture = new CompletableFuture<>();
 
     private Firebase firebase;
 
@@ -48,6 +50,7 @@ public class NestConnector {
             public void onAuthSuccess(Object o) {
                 LOG.debug("Authentication was successful");
                 connected.set(true);
+                connectedFuture.complete(null);
 
                 monitorThermostats();
             }
@@ -87,6 +90,10 @@ public class NestConnector {
         return connected.get();
     }
 
+    public CompletableFuture<Void> whenConnected() {
+        return connectedFuture;
+    }
+
     public Firebase getFirebase() {
         return firebase;
     }
@@ -11,6 +11,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Renze de Vries
@@ -54,6 +55,11 @@ public class NestExtension implements DeviceExtension {
         return nestConnector.isConnected();
     }
 
+    @Override
+    public CompletableFuture<Void> whenReady() {
+        return nestConnector.whenConnected();
+    }
+
     @Override
     public void activate(Optional<PluginItem> pluginItem) {
         nestConnector.activate();
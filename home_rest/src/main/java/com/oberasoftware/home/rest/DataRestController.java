@@ -3,11 +3,13 @@ package com.oberasoftware.home.rest;
 import com.oberasoftware.home.api.managers.ItemManager;
 import com.oberasoftware.home.api.managers.StateManager;
 import com.oberasoftware.home.api.model.State;
+import com.oberasoftware.home.api.model.StateSnapshot;
 import com.oberasoftware.home.api.model.storage.ControllerItem;
 import com.oberasoftware.home.api.model.storage.DeviceItem;
 import com.oberasoftware.home.api.model.storage.Item;
 import com.oberasoftware.home.api.model.storage.PluginItem;
 import com.oberasoftware.home.rest.model.RestItemDevice;
+import com.oberasoftware.home.rest.model.RestStateChanges;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -39,8 +41,9 @@ public class DataRestController {
 
         List<DeviceItem> deviceItems = itemManager.findDevices(controllerId, pluginId);
 
+        StateSnapshot snapshot = stateManager.getSnapshot();
         return deviceItems.stream()
-                .map(d -> new RestItemDevice(d, stateManager.getState(d.getId())))
+                .map(d -> new RestItemDevice(d, snapshot.getState(d.getId())))
                 .collect(Collectors.toList());
     }
 
@@ -49,8 +52,9 @@ public class DataRestController {
         LOG.debug("Requested list of all devices");
 
         List<DeviceItem> deviceItems = itemManager.findDevices(controllerId);
+        StateSnapshot snapshot = stateManager.getSnapshot();
         return deviceItems.stream()
-                .map(d -> new RestItemDevice(d, stateManager.getState(d.getId())))
+                .map(d -> new RestItemDevice(d, snapshot.getState(d.getId())))
                 .collect(Collectors.toList());
     }
 
@@ -78,4 +82,18 @@ public class DataRestController {
         return stateManager.getState(itemId);
     }
 
+    @RequestMapping("/states")
+    public RestStateChanges getStates() {
+        StateSnapshot snapshot = stateManager.getSnapshot();
+        return new RestStateChanges(snapshot.getVersion(), snapshot.getStates().values());
+    }
+
+    @RequestMapping("/states/since({version})")
+    public RestStateChanges getStateChanges(@PathVariable long version) {
+        LOG.debug("Requested state changes since version: {}", version);
+
+        StateSnapshot snapshot = stateManager.getSnapshot();
+        return new RestStateChanges(snapshot.getVersion(), snapshot.getChangesSince(version).values());
+    }
+
 }
@@ -5,7 +5,6 @@ import com.oberasoftware.base.event.EventSubscribe;
 import com.oberasoftware.home.api.events.devices.StateUpdateEvent;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
 import static org.slf4j.LoggerFactory.getLogger;
@@ -18,11 +17,11 @@ public class StateController implements EventHandler {
     private static final Logger LOG = getLogger(StateController.class);
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private StatePublisher statePublisher;
 
     @EventSubscribe
     public void receiveStateUpdate(StateUpdateEvent stateUpdateEvent) {
         LOG.debug("Received state: {}", stateUpdateEvent);
-        messagingTemplate.convertAndSend("/topic/state", stateUpdateEvent.getState());
+        statePublisher.publish(stateUpdateEvent.getState());
     }
 }
@@ -0,0 +1,156 @@
+package com.oberasoftware.home.rest;
+
+import com.oberasoftware.home.api.model.State;
+import com.oberasoftware.home.api.model.StateItem;
+import com.oberasoftware.home.core.model.StateImpl;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Coalesces state updates towards the websocket dashboards. Only the latest state per item is kept
+ * and all pending states are sent as a single batched frame once per flush window. In delta mode
+ * a state only carries the state items that changed since the last frame sent for that item, a state
+ * where only the device status changed is sent as well. When a dashboard subscribes in delta mode the
+ * next frame carries the full states of all known items, so late subscribers get a complete baseline.
+ *
+ * @author renarj
+ */
+@Component
+public class StatePublisher implements ApplicationListener<SessionSubscribeEvent> {
+    private static final Logger LOG = getLogger(StatePublisher.class);
+
+    public static final String STATE_TOPIC = "/topic/state";
+
+    private static final String DELTA_MODE = "delta";
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Value("${websocket.state.flush.interval:100}")
+    private long flushInterval;
+
+    @Value("${websocket.state.mode:full}")
+    private String mode;
+
+    private final ConcurrentMap<String, State> pendingStates = new ConcurrentHashMap<>();
+
+    private final Map<String, State> sentStates = new HashMap<>();
+
+    private volatile boolean resync;
+
+    private ScheduledExecutorService scheduledExecutorService;
+
+    private boolean deltaMode;
+
+    @PostConstruct
+    public void start() {
+        deltaMode = DELTA_MODE.equalsIgnoreCase(mode);
+        LOG.info("Publishing websocket state updates with flush interval: {} ms in mode: {}",
+                flushInterval, deltaMode ? DELTA_MODE : "full");
+
+        if(flushInterval > 0) {
+            scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+            scheduledExecutorService.scheduleAtFixedRate(this::flushSafely, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if(scheduledExecutorService != null) {
+            scheduledExecutorService.shutdown();
+        }
+    }
+
+    public void publish(State state) {
+        pendingStates.put(state.getItemId(), state);
+
+        if(flushInterval <= 0) {
+            flush();
+        }
+    }
+
+    @Override
+    public void onApplicationEvent(SessionSubscribeEvent event) {
+        String destination = SimpMessageHeaderAccessor.wrap(event.getMessage()).getDestination();
+        if(deltaMode && STATE_TOPIC.equals(destination)) {
+            LOG.debug("New subscriber on: {}, sending full states in next frame", STATE_TOPIC);
+            resync = true;
+        }
+    }
+
+    public synchronized void flush() {
+        Map<String, State> states = new LinkedHashMap<>();
+        if(resync) {
+            resync = false;
+            states.putAll(sentStates);
+            sentStates.clear();
+        }
+        for(String itemId : newArrayList(pendingStates.keySet())) {
+            State state = pendingStates.remove(itemId);
+            if(state != null) {
+                states.put(itemId, state);
+            }
+        }
+
+        List<State> batch = new ArrayList<>();
+        for(State state : states.values()) {
+            State payload = deltaMode ? getDelta(state) : state;
+            if(payload != null) {
+                batch.add(payload);
+            }
+        }
+
+        if(!batch.isEmpty()) {
+            LOG.debug("Sending batch of: {} states to websocket", batch.size());
+            messagingTemplate.convertAndSend(STATE_TOPIC, batch);
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch(RuntimeException e) {
+            LOG.error("Unable to send state updates to websocket", e);
+        }
+    }
+
+    private State getDelta(State state) {
+        State previous = sentStates.put(state.getItemId(), state);
+        if(previous == null) {
+            return state;
+        }
+
+        StateImpl delta = new StateImpl(state.getItemId(), state.getDeviceStatus());
+        state.getStateItems().forEach(si -> {
+            StateItem sent = previous.getStateItem(si.getLabel());
+            if(sent == null || !sent.equals(si)) {
+                delta.updateIfChanged(si.getLabel(), si);
+            }
+        });
+
+        boolean statusChanged = previous.getDeviceStatus() != state.getDeviceStatus();
+        return statusChanged || !delta.getStateItems().isEmpty() ? delta : null;
+    }
+}
@@ -0,0 +1,28 @@
+package com.oberasoftware.home.rest.model;
+
+import com.oberasoftware.home.api.model.State;
+
+import java.util.Collection;
+
+/**
+ * States of a snapshot, the version can be used to only request the states changed after this snapshot
+ *
+ * @author renarj
+ */
+public class RestStateChanges {
+    private final long version;
+    private final Collection<State> states;
+
+    public RestStateChanges(long version, Collection<State> states) {
+        this.version = version;
+        this.states = states;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Collection<State> getStates() {
+        return states;
+    }
+}
@@ -0,0 +1,182 @@
+package com.oberasoftware.home.rest;
+
+import com.oberasoftware.home.api.model.State;
+import com.oberasoftware.home.api.model.Status;
+import com.oberasoftware.home.api.types.VALUE_TYPE;
+import com.oberasoftware.home.core.model.StateImpl;
+import com.oberasoftware.home.core.model.StateItemImpl;
+import com.oberasoftware.home.core.types.ValueImpl;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author renarj
+ */
+public class StatePublisherTest {
+    private static final long WINDOW = TimeUnit.HOURS.toMillis(1);
+
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+
+    private StatePublisher statePublisher;
+
+    @After
+    public void tearDown() {
+        statePublisher.stop();
+    }
+
+    @Test
+    public void coalesceWithinWindow() {
+        start(WINDOW, "full");
+
+        statePublisher.publish(state("item1", Status.ACTIVE, "on-off", "on"));
+        statePublisher.publish(state("item1", Status.ACTIVE, "on-off", "off"));
+        verify(messagingTemplate, never()).convertAndSend(eq(StatePublisher.STATE_TOPIC), any(Object.class));
+
+        List<State> batch = flush();
+        assertThat(batch.size(), is(1));
+        assertThat(batch.get(0).getStateItem("on-off").getValue().getValue(), is("off"));
+    }
+
+    @Test
+    public void batchItems() {
+        start(WINDOW, "full");
+
+        statePublisher.publish(state("item1", Status.ACTIVE, "on-off", "on"));
+        statePublisher.publish(state("item2", Status.ACTIVE, "on-off", "off"));
+
+        List<State> batch = flush();
+        assertThat(batch.size(), is(2));
+        assertThat(find(batch, "item1").getStateItem("on-off").getValue().getValue(), is("on"));
+        assertThat(find(batch, "item2").getStateItem("on-off").getValue().getValue(), is("off"));
+
+        reset(messagingTemplate);
+        statePublisher.flush();
+        verify(messagingTemplate, never()).convertAndSend(eq(StatePublisher.STATE_TOPIC), any(Object.class));
+    }
+
+    @Test
+    public void deltaContents() {
+        start(WINDOW, "delta");
+
+        statePublisher.publish(state("item1", Status.ACTIVE, "on-off", "on", "value", "10"));
+        assertThat(flush().get(0).getStateItems().size(), is(2));
+
+        reset(messagingTemplate);
+        statePublisher.publish(state("item1", Status.ACTIVE, "on-off", "on", "value", "20"));
+        State delta = flush().get(0);
+        assertThat(delta.getStateItems().size(), is(1));
+        assertThat(delta.getStateItem("value").getValue().getValue(), is("20"));
+        assertThat(delta.getStateItem("on-off"), nullValue());
+
+        reset(messagingTemplate);
+        statePublisher.publish(state("item1", Status.ACTIVE, "on-off", "on", "value", "20"));
+        statePublisher.flush();
+        verify(messagingTemplate, never()).convertAndSend(eq(StatePublisher.STATE_TOPIC), any(Object.class));
+    }
+
+    @Test
+    public void deltaStatusOnlyChange() {
+        start(WINDOW, "delta");
+
+        statePublisher.publish(state("item1", Status.ACTIVE, "on-off", "on"));
+        flush();
+
+        reset(messagingTemplate);
+        statePublisher.publish(state("item1", Status.UNKNOWN, "on-off", "on"));
+        State delta = flush().get(0);
+        assertThat(delta.getDeviceStatus(), is(Status.UNKNOWN));
+        assertThat(delta.getStateItems().isEmpty(), is(true));
+    }
+
+    @Test
+    public void deltaFullStatesForNewSubscriber() {
+        start(WINDOW, "delta");
+
+        statePublisher.publish(state("item1", Status.ACTIVE, "on-off", "on", "value", "10"));
+        statePublisher.publish(state("item2", Status.ACTIVE, "on-off", "off"));
+        flush();
+
+        reset(messagingTemplate);
+        statePublisher.onApplicationEvent(subscribe("/topic/other"));
+        statePublisher.flush();
+        verify(messagingTemplate, never()).convertAndSend(eq(StatePublisher.STATE_TOPIC), any(Object.class));
+
+        statePublisher.onApplicationEvent(subscribe(StatePublisher.STATE_TOPIC));
+        statePublisher.publish(state("item1", Status.ACTIVE, "on-off", "on", "value", "20"));
+        List<State> batch = flush();
+        assertThat(batch.size(), is(2));
+        assertThat(find(batch, "item1").getStateItems().size(), is(2));
+        assertThat(find(batch, "item1").getStateItem("value").getValue().getValue(), is("20"));
+        assertThat(find(batch, "item2").getStateItems().size(), is(1));
+
+        reset(messagingTemplate);
+        statePublisher.publish(state("item1", Status.ACTIVE, "on-off", "off", "value", "20"));
+        assertThat(flush().get(0).getStateItems().size(), is(1));
+    }
+
+    @Test
+    public void sendImmediatelyWithoutWindow() {
+        start(0, "full");
+
+        statePublisher.publish(state("item1", Status.ACTIVE, "on-off", "on"));
+        statePublisher.publish(state("item1", Status.ACTIVE, "on-off", "off"));
+
+        verify(messagingTemplate, times(2)).convertAndSend(eq(StatePublisher.STATE_TOPIC), any(Object.class));
+    }
+
+    private void start(long flushInterval, String mode) {
+        statePublisher = new StatePublisher();
+        ReflectionTestUtils.setField(statePublisher, "messagingTemplate", messagingTemplate);
+        ReflectionTestUtils.setField(statePublisher, "flushInterval", flushInterval);
+        ReflectionTestUtils.setField(statePublisher, "mode", mode);
+        statePublisher.start();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<State> flush() {
+        statePublisher.flush();
+
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate).convertAndSend(eq(StatePublisher.STATE_TOPIC), captor.capture());
+        return (List<State>) captor.getValue();
+    }
+
+    private static State find(List<State> batch, String itemId) {
+        return batch.stream().filter(s -> s.getItemId().equals(itemId)).findFirst().get();
+    }
+
+    private static State state(String itemId, Status status, String... labelValues) {
+        StateImpl state = new StateImpl(itemId, status);
+        for(int i = 0; i < labelValues.length; i += 2) {
+            state.updateIfChanged(labelValues[i], new StateItemImpl(labelValues[i], new ValueImpl(VALUE_TYPE.STRING, labelValues[i + 1])));
+        }
+        return state;
+    }
+
+    private static SessionSubscribeEvent subscribe(String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setDestination(destination);
+        return new SessionSubscribeEvent(StatePublisherTest.class, MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+}
@@ -11,6 +11,12 @@ public interface RuleEngine {
 
     void evalRule(String id);
 
+    /**
+     * Evaluates the currently registered version of a rule, a rule that was removed is not evaluated
+     * @param rule The rule to evaluate
+     */
+    void evalRule(Rule rule);
+
     void removeRule(String id);
 
     void onStarted();
@@ -1,19 +1,18 @@
 package com.oberasoftware.home.rules;
 
 import com.oberasoftware.home.api.exceptions.HomeAutomationException;
-import com.oberasoftware.home.rules.api.Block;
 import com.oberasoftware.home.rules.api.general.Rule;
+import com.oberasoftware.home.rules.evaluators.CompiledEvaluator;
 import com.oberasoftware.home.rules.evaluators.EvalException;
 import com.oberasoftware.home.rules.evaluators.EvaluatorFactory;
-import com.oberasoftware.home.rules.evaluators.blocks.BlockEvaluator;
 import com.oberasoftware.home.rules.triggers.TriggerProcessor;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.slf4j.LoggerFactory.getLogger;
@@ -31,21 +30,29 @@ public class RuleEngineImpl implements RuleEngine {
     @Autowired
     private List<TriggerProcessor> triggerProcessors;
 
-    private List<Rule> rules = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<String, RegisteredRule> rules = new ConcurrentHashMap<>();
 
     @Override
     public void register(Rule rule) throws HomeAutomationException {
         checkNotNull(rule);
 
-        if(rules.stream().anyMatch(r -> r.getId().equals(rule.getId()))) {
-            LOG.info("Updating existing rule, removing old rule: {}", rule.getId());
-            removeRule(rule.getId());
+        LOG.info("Registering rule: {}", rule);
+        RegisteredRule registeredRule;
+        try {
+            registeredRule = new RegisteredRule(rule, evaluatorFactory.compile(rule.getBlock()));
+        } catch(EvalException e) {
+            throw new HomeAutomationException("Unable to compile rule: " + rule.getId(), e);
         }
 
-        LOG.info("Registering rule: {}", rule);
-        processTriggers(rule);
+        rules.compute(rule.getId(), (id, existingRule) -> {
+            if(existingRule != null) {
+                LOG.info("Updating existing rule, removing old rule: {}", id);
+                removeTriggers(existingRule.getRule());
+            }
+            processTriggers(rule);
 
-        this.rules.add(rule);
+            return registeredRule;
+        });
     }
 
     private void processTriggers(Rule rule) {
@@ -59,25 +66,37 @@ public class RuleEngineImpl implements RuleEngine {
     public void evalRule(String id) {
         checkNotNull(id);
 
-        Optional<Rule> optionalRule = rules.stream().filter(r -> r.getId().equals(id)).findFirst();
-        if(optionalRule.isPresent()) {
-            eval(optionalRule.get());
+        RegisteredRule registeredRule = rules.get(id);
+        if(registeredRule != null) {
+            eval(registeredRule.getRule(), registeredRule.getCompiledRule());
         } else {
             LOG.warn("Could not evaluate rule: {} was not found", id);
         }
     }
 
     @Override
-    public void removeRule(String id) {
-        Optional<Rule> rule = this.rules.stream().filter(r -> r.getId().equals(id)).findFirst();
-        if(rule.isPresent()) {
-            LOG.debug("Removing rule: {}", rule);
+    public void evalRule(Rule rule) {
+        checkNotNull(rule);
 
-            removeTriggers(rule.get());
-            this.rules.remove(rule.get());
+        //a queued or stale rule instance always evaluates the currently registered version
+        RegisteredRule registeredRule = rules.get(rule.getId());
+        if(registeredRule != null) {
+            eval(registeredRule.getRule(), registeredRule.getCompiledRule());
+        } else {
+            LOG.warn("Could not evaluate rule: {} was not found", rule.getId());
         }
     }
 
+    @Override
+    public void removeRule(String id) {
+        rules.computeIfPresent(id, (k, registeredRule) -> {
+            LOG.debug("Removing rule: {}", registeredRule.getRule());
+
+            removeTriggers(registeredRule.getRule());
+            return null;
+        });
+    }
+
     @Override
     public void onStarted() {
         triggerProcessors.forEach(TriggerProcessor::onStarted);
@@ -96,15 +115,32 @@ public class RuleEngineImpl implements RuleEngine {
         });
     }
 
-    private void eval(Rule rule) {
+    private void eval(Rule rule, CompiledEvaluator<Boolean> compiledRule) {
         LOG.debug("Evaluating rule: {}", rule);
-        BlockEvaluator<Block> b = evaluatorFactory.getEvaluator(rule.getBlock());
         try {
-            boolean eval = b.eval(rule.getBlock());
+            boolean eval = compiledRule.eval();
 
             LOG.debug("Rule: {} was evaluated: {}", rule, eval);
         } catch(EvalException e) {
             LOG.debug("Rule could not be evaluated: {}", e.getMessage());
         }
     }
+
+    private static final class RegisteredRule {
+        private final Rule rule;
+        private final CompiledEvaluator<Boolean> compiledRule;
+
+        private RegisteredRule(Rule rule, CompiledEvaluator<Boolean> compiledRule) {
+            this.rule = rule;
+            this.compiledRule = compiledRule;
+        }
+
+        public Rule getRule() {
+            return rule;
+        }
+
+        public CompiledEvaluator<Boolean> getCompiledRule() {
+            return compiledRule;
+        }
+    }
 }
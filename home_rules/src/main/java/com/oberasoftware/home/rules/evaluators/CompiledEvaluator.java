@@ -0,0 +1,12 @@
+package com.oberasoftware.home.rules.evaluators;
+
+/**
+ * An evaluator bound to a single rule element, all child evaluators are resolved when it is compiled
+ * so evaluating it does not require any evaluator lookups.
+ *
+ * @author Renze de Vries
+ */
+@FunctionalInterface
+public interface CompiledEvaluator<R> {
+    R eval();
+}
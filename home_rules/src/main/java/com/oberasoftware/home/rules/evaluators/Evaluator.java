@@ -9,6 +9,14 @@ import java.util.Set;
 public interface Evaluator<T, R> {
     R eval(T input);
 
+    /**
+     * Compiles the input into an evaluator that no longer needs to resolve the evaluators of its children.
+     * By default the input is bound to this evaluator.
+     */
+    default CompiledEvaluator<R> compile(T input) {
+        return () -> eval(input);
+    }
+
     default Set<String> getDependentItems(T input) {
         return new HashSet<>();
     }
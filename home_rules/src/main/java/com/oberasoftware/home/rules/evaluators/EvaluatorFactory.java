@@ -11,6 +11,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static java.util.Arrays.stream;
 import static java.util.Optional.ofNullable;
@@ -28,6 +30,11 @@ public class EvaluatorFactory {
 
     private Map<String, Evaluator<?, ?>> evaluatorMap = new HashMap<>();
 
+    /**
+     * Evaluators resolved per concrete input class, an empty value marks a class without evaluator
+     */
+    private final ConcurrentMap<Class<?>, Optional<Evaluator<?, ?>>> resolvedEvaluators = new ConcurrentHashMap<>();
+
     @PostConstruct
     public void processEvaluators() {
         evaluators.forEach(this::processEvaluator);
@@ -72,25 +79,38 @@ public class EvaluatorFactory {
 //    }
 
     public <T extends Evaluator<E, ?>, E> T getEvaluator(E input) {
-        LOG.debug("Finding evaluator for type: {}", input.getClass());
+        Optional<Evaluator<?, ?>> evaluator = resolvedEvaluators.computeIfAbsent(input.getClass(), this::resolveEvaluator);
+        if(evaluator.isPresent()) {
+            return (T) evaluator.get();
+        }
+
+        throw new EvalException("Could not find evaluator for type: " + input.getClass());
+    }
 
-        return (T) getEvaluator(input.getClass());
+    /**
+     * Compiles the input and all its children into a single evaluator
+     * @throws EvalException If there is no evaluator for the input or one of its children
+     */
+    public <E, R> CompiledEvaluator<R> compile(E input) {
+        Evaluator<E, R> evaluator = getEvaluator(input);
+        return evaluator.compile(input);
     }
 
-    private Evaluator getEvaluator(Class<?> evalType) {
+    private Optional<Evaluator<?, ?>> resolveEvaluator(Class<?> evalType) {
         for(TypeToken t : TypeToken.of(evalType).getTypes()) {
             String typeName = t.getRawType().getName();
             LOG.debug("Checking an evaluator for type: {}", typeName);
 
-            Optional<Evaluator> evaluator = ofNullable(evaluatorMap.get(typeName));
+            Optional<Evaluator<?, ?>> evaluator = ofNullable(evaluatorMap.get(typeName));
             if (evaluator.isPresent()) {
                 LOG.debug("Found Evaluator: {} for type: {}", evaluator.get(), evalType);
 
-                return evaluator.get();
+                return evaluator;
             }
         }
 
-        throw new EvalException("Could not find evaluator for type: " + evalType);
+        LOG.debug("No evaluator found for type: {}", evalType);
+        return Optional.empty();
     }
 
 }
@@ -3,9 +3,18 @@ package com.oberasoftware.home.rules.evaluators.blocks;
 import com.oberasoftware.home.rules.api.Block;
 import com.oberasoftware.home.rules.evaluators.Evaluator;
 
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * @author Renze de Vries
  */
 public interface BlockEvaluator<T extends Block> extends Evaluator<T, Boolean> {
 
+    /**
+     * @return The items this block can send commands to
+     */
+    default Set<String> getTargetItems(T input) {
+        return new HashSet<>();
+    }
 }
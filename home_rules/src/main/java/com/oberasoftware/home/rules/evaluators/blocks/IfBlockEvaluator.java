@@ -4,6 +4,7 @@ import com.oberasoftware.home.rules.api.Block;
 import com.oberasoftware.home.rules.api.Condition;
 import com.oberasoftware.home.rules.api.logic.IfBlock;
 import com.oberasoftware.home.rules.api.logic.IfBranch;
+import com.oberasoftware.home.rules.evaluators.CompiledEvaluator;
 import com.oberasoftware.home.rules.evaluators.EvaluatorFactory;
 import com.oberasoftware.home.rules.evaluators.conditions.ConditionEvaluator;
 import org.slf4j.Logger;
@@ -40,6 +41,38 @@ public class IfBlockEvaluator implements BlockEvaluator<IfBlock> {
         return false;
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompiledEvaluator<Boolean> compile(IfBlock input) {
+        List<IfBranch> branches = input.getBranches();
+        int size = branches.size();
+
+        CompiledEvaluator<Boolean>[] conditions = new CompiledEvaluator[size];
+        CompiledEvaluator<Boolean>[][] statements = new CompiledEvaluator[size][];
+        for(int i=0; i<size; i++) {
+            IfBranch branch = branches.get(i);
+            conditions[i] = branch.getCondition() != null ? evaluatorFactory.compile(branch.getCondition()) : () -> true;
+
+            List<Block> branchStatements = branch.getStatements();
+            statements[i] = new CompiledEvaluator[branchStatements.size()];
+            for(int j=0; j<branchStatements.size(); j++) {
+                statements[i][j] = evaluatorFactory.compile(branchStatements.get(j));
+            }
+        }
+
+        return () -> {
+            for(int i=0; i<conditions.length; i++) {
+                if(conditions[i].eval()) {
+                    for(CompiledEvaluator<Boolean> statement : statements[i]) {
+                        statement.eval();
+                    }
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
     private boolean evalCondition(Condition condition, List<Block> statements) {
         boolean eval;
         if(condition != null) {
@@ -80,4 +113,15 @@ public class IfBlockEvaluator implements BlockEvaluator<IfBlock> {
 
         return dependentItems;
     }
+
+    @Override
+    public Set<String> getTargetItems(IfBlock input) {
+        Set<String> targetItems = new HashSet<>();
+        input.getBranches().forEach(b -> b.getStatements().forEach(s -> {
+            BlockEvaluator<Block> evaluator = evaluatorFactory.getEvaluator(s);
+            targetItems.addAll(evaluator.getTargetItems(s));
+        }));
+
+        return targetItems;
+    }
 }
@@ -9,6 +9,7 @@ import com.oberasoftware.home.core.commands.ValueCommandImpl;
 import com.oberasoftware.home.rules.api.general.SetState;
 import com.oberasoftware.home.rules.api.values.ItemValue;
 import com.oberasoftware.home.rules.api.values.ResolvableValue;
+import com.oberasoftware.home.rules.evaluators.CompiledEvaluator;
 import com.oberasoftware.home.rules.evaluators.EvaluatorFactory;
 import com.oberasoftware.home.rules.evaluators.values.ValueEvaluator;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,12 +37,26 @@ public class SetStateEvaluator implements BlockEvaluator<SetState> {
         ItemValue targetItem = input.getItemValue();
 
         ValueEvaluator<ResolvableValue> valueEvaluator = evaluatorFactory.getEvaluator(input.getResolvableValue());
+
+        return setState(targetItem.getItemId(), targetItem.getLabel(), valueEvaluator.eval(input.getResolvableValue()));
+    }
+
+    @Override
+    public CompiledEvaluator<Boolean> compile(SetState input) {
+        String itemId = input.getItemValue().getItemId();
+        String label = input.getItemValue().getLabel();
+        CompiledEvaluator<Value> value = evaluatorFactory.compile(input.getResolvableValue());
+
+        return () -> setState(itemId, label, value.eval());
+    }
+
+    private boolean setState(String itemId, String label, Value value) {
         Map<String, Value> values = new HashMap<>();
-        values.put(targetItem.getLabel(), valueEvaluator.eval(input.getResolvableValue()));
+        values.put(label, value);
 
-        ItemCommand itemCommand = new ValueCommandImpl(targetItem.getItemId(), values);
+        ItemCommand itemCommand = new ValueCommandImpl(itemId, values);
 
-        automationBus.publish(new ItemCommandEvent(targetItem.getItemId(), itemCommand));
+        automationBus.publish(new ItemCommandEvent(itemId, itemCommand));
 
         return true;
     }
@@ -54,4 +69,9 @@ public class SetStateEvaluator implements BlockEvaluator<SetState> {
         dependentItems.add(input.getItemValue().getItemId());
         return dependentItems;
     }
+
+    @Override
+    public Set<String> getTargetItems(SetState input) {
+        return Sets.newHashSet(input.getItemValue().getItemId());
+    }
 }
@@ -9,6 +9,9 @@ import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.Set;
+
+import static com.google.common.collect.Sets.newHashSet;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -31,4 +34,9 @@ public class SwitchItemEvaluator implements BlockEvaluator<SwitchItem> {
 
         return true;
     }
+
+    @Override
+    public Set<String> getTargetItems(SwitchItem input) {
+        return newHashSet(input.getItemId());
+    }
 }
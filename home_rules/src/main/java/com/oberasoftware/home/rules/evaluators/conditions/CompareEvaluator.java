@@ -5,6 +5,7 @@ import com.oberasoftware.home.api.types.Value;
 import com.oberasoftware.home.rules.api.logic.CompareCondition;
 import com.oberasoftware.home.rules.api.Operator;
 import com.oberasoftware.home.rules.api.values.ResolvableValue;
+import com.oberasoftware.home.rules.evaluators.CompiledEvaluator;
 import com.oberasoftware.home.rules.evaluators.EvalException;
 import com.oberasoftware.home.rules.evaluators.EvaluatorFactory;
 import com.oberasoftware.home.rules.evaluators.values.ValueEvaluator;
@@ -46,6 +47,15 @@ public class CompareEvaluator implements ConditionEvaluator<CompareCondition> {
         return compareValues(leftValue, rightValue, input.getOperator());
     }
 
+    @Override
+    public CompiledEvaluator<Boolean> compile(CompareCondition input) {
+        CompiledEvaluator<Value> leftValue = evaluatorFactory.compile(input.getLeftValue());
+        CompiledEvaluator<Value> rightValue = evaluatorFactory.compile(input.getRightValue());
+        Operator operator = input.getOperator();
+
+        return () -> compareValues(leftValue.eval(), rightValue.eval(), operator);
+    }
+
     private Set<String> getDependentItems(ResolvableValue value) {
         ValueEvaluator<ResolvableValue> valueEvaluator = evaluatorFactory.getEvaluator(value);
         return valueEvaluator.getDependentItems(value);
@@ -2,6 +2,7 @@ package com.oberasoftware.home.rules.evaluators.conditions;
 
 import com.oberasoftware.home.rules.api.Condition;
 import com.oberasoftware.home.rules.api.logic.LogicCondition;
+import com.oberasoftware.home.rules.evaluators.CompiledEvaluator;
 import com.oberasoftware.home.rules.evaluators.EvaluatorFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -35,6 +36,36 @@ public class LogicEvaluator implements ConditionEvaluator<LogicCondition> {
         }
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompiledEvaluator<Boolean> compile(LogicCondition input) {
+        List<Condition> conditions = input.getConditions();
+        CompiledEvaluator<Boolean>[] compiled = new CompiledEvaluator[conditions.size()];
+        for(int i=0; i<compiled.length; i++) {
+            compiled[i] = evaluatorFactory.compile(conditions.get(i));
+        }
+
+        if(input.getType() == LogicCondition.TYPE.AND) {
+            return () -> {
+                for(CompiledEvaluator<Boolean> condition : compiled) {
+                    if(!condition.eval()) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        } else {
+            return () -> {
+                for(CompiledEvaluator<Boolean> condition : compiled) {
+                    if(condition.eval()) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+    }
+
     @Override
     public Set<String> getDependentItems(LogicCondition input) {
         Set<String> dependentItems = new HashSet<>();
@@ -6,6 +6,7 @@ import com.oberasoftware.home.api.model.State;
 import com.oberasoftware.home.api.model.StateItem;
 import com.oberasoftware.home.api.types.Value;
 import com.oberasoftware.home.rules.api.values.ItemValue;
+import com.oberasoftware.home.rules.evaluators.CompiledEvaluator;
 import com.oberasoftware.home.rules.evaluators.EvalException;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,6 +33,18 @@ public class ItemValueEvaluator implements ValueEvaluator<ItemValue> {
 
         LOG.debug("Retrieving item: {} state value for label: {}", itemId, label);
 
+        return resolve(itemId, label);
+    }
+
+    @Override
+    public CompiledEvaluator<Value> compile(ItemValue input) {
+        String itemId = input.getItemId();
+        String label = input.getLabel();
+
+        return () -> resolve(itemId, label);
+    }
+
+    private Value resolve(String itemId, String label) {
         State state = stateManager.getState(itemId);
         if(state != null) {
             StateItem stateItem = state.getStateItem(label);
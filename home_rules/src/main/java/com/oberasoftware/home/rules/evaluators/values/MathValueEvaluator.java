@@ -2,8 +2,10 @@ package com.oberasoftware.home.rules.evaluators.values;
 
 import com.oberasoftware.home.api.types.VALUE_TYPE;
 import com.oberasoftware.home.api.types.Value;
+import com.oberasoftware.home.rules.api.MathOperator;
 import com.oberasoftware.home.rules.api.values.MathValue;
 import com.oberasoftware.home.rules.api.values.ResolvableValue;
+import com.oberasoftware.home.rules.evaluators.CompiledEvaluator;
 import com.oberasoftware.home.rules.evaluators.EvalException;
 import com.oberasoftware.home.rules.evaluators.EvaluatorFactory;
 import com.oberasoftware.home.rules.evaluators.conditions.NumberTypeOperator;
@@ -26,17 +28,27 @@ public class MathValueEvaluator implements ValueEvaluator<MathValue> {
 
     @Override
     public Value eval(MathValue input) {
-        Value leftValue = resolve(input.getLeftValue());
-        Value rightValue = resolve(input.getRightValue());
+        return calculate(resolve(input.getLeftValue()), resolve(input.getRightValue()), input.getOperator());
+    }
+
+    @Override
+    public CompiledEvaluator<Value> compile(MathValue input) {
+        CompiledEvaluator<Value> leftValue = evaluatorFactory.compile(input.getLeftValue());
+        CompiledEvaluator<Value> rightValue = evaluatorFactory.compile(input.getRightValue());
+        MathOperator operator = input.getOperator();
+
+        return () -> calculate(leftValue.eval(), rightValue.eval(), operator);
+    }
 
+    private Value calculate(Value leftValue, Value rightValue, MathOperator operator) {
         if(leftValue.getType() == VALUE_TYPE.NUMBER && rightValue.getType() == VALUE_TYPE.NUMBER) {
-            switch(input.getOperator()) {
+            switch(operator) {
                 case PLUS:
                     return NUMBER_COMPARATOR.plus(leftValue, rightValue);
                 case MINUS:
                     return NUMBER_COMPARATOR.minus(leftValue, rightValue);
                 default:
-                    throw new EvalException("Unsupport operator: " + input.getOperator());
+                    throw new EvalException("Unsupport operator: " + operator);
             }
         } else {
             throw new EvalException("Math operation can only be done on numbers");
@@ -3,6 +3,7 @@ package com.oberasoftware.home.rules.evaluators.values;
 import com.oberasoftware.home.api.types.Value;
 import com.oberasoftware.home.core.types.ValueImpl;
 import com.oberasoftware.home.rules.api.values.StaticValue;
+import com.oberasoftware.home.rules.evaluators.CompiledEvaluator;
 import org.springframework.stereotype.Component;
 
 import java.util.HashSet;
@@ -18,6 +19,12 @@ public class StaticValueEvaluator implements ValueEvaluator<StaticValue> {
         return new ValueImpl(input.getType(), input.getValue());
     }
 
+    @Override
+    public CompiledEvaluator<Value> compile(StaticValue input) {
+        Value value = eval(input);
+        return () -> value;
+    }
+
     @Override
     public Set<String> getDependentItems(StaticValue input) {
         return new HashSet<>();
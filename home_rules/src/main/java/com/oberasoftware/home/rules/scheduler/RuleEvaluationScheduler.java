@@ -0,0 +1,202 @@
+package com.oberasoftware.home.rules.scheduler;
+
+import com.google.common.util.concurrent.Striped;
+import com.oberasoftware.home.rules.RuleEngine;
+import com.oberasoftware.home.rules.api.Block;
+import com.oberasoftware.home.rules.api.general.Rule;
+import com.oberasoftware.home.rules.evaluators.EvalException;
+import com.oberasoftware.home.rules.evaluators.EvaluatorFactory;
+import com.oberasoftware.home.rules.evaluators.blocks.BlockEvaluator;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Schedules rule evaluations that are caused by item state changes. Evaluations of the same rule that are
+ * requested within the collapse window result in a single evaluation against the latest state. Rules are
+ * evaluated in parallel on a bounded pool, but rules that send commands to the same item are evaluated
+ * one at a time so their commands are not interleaved.
+ *
+ * @author Renze de Vries
+ */
+@Component
+public class RuleEvaluationScheduler {
+    private static final Logger LOG = getLogger(RuleEvaluationScheduler.class);
+
+    private static final int LOCK_STRIPES = 64;
+
+    @Autowired
+    private RuleEngine ruleEngine;
+
+    @Autowired
+    private EvaluatorFactory evaluatorFactory;
+
+    @Value("${rules.evaluation.window:50}")
+    private long collapseWindow;
+
+    @Value("${rules.evaluation.threads:4}")
+    private int threads;
+
+    @Value("${rules.evaluation.queue.depth:1000}")
+    private int queueDepth;
+
+    private final ConcurrentMap<String, Rule> pendingRules = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, RuleStatistics> statistics = new ConcurrentHashMap<>();
+    private final Striped<Lock> targetLocks = Striped.lock(LOCK_STRIPES);
+
+    private ScheduledExecutorService collapseExecutor;
+    private ThreadPoolExecutor evaluationExecutor;
+
+    @PostConstruct
+    public void start() {
+        LOG.info("Starting rule evaluation scheduler with: {} threads and a collapse window of: {} ms", threads, collapseWindow);
+        collapseExecutor = Executors.newSingleThreadScheduledExecutor(r -> createThread(r, "rule-collapse"));
+
+        AtomicInteger counter = new AtomicInteger();
+        evaluationExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueDepth), r -> createThread(r, "rule-eval-" + counter.incrementAndGet()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        LOG.info("Stopping rule evaluation scheduler, pending evaluations: {}", pendingRules.size());
+        collapseExecutor.shutdownNow();
+        evaluationExecutor.shutdown();
+    }
+
+    /**
+     * Schedules an evaluation of the rule, if an evaluation of the rule is already pending it is skipped
+     * and the pending evaluation will use the latest state.
+     * @param rule The rule to evaluate
+     */
+    public void schedule(Rule rule) {
+        String ruleId = rule.getId();
+        if(pendingRules.put(ruleId, rule) == null) {
+            LOG.debug("Scheduling evaluation of rule: {} in: {} ms", ruleId, collapseWindow);
+            try {
+                collapseExecutor.schedule(() -> submit(ruleId), collapseWindow, TimeUnit.MILLISECONDS);
+            } catch(RejectedExecutionException e) {
+                LOG.warn("Rule evaluation scheduler is stopped, not evaluating rule: {}", ruleId);
+                pendingRules.remove(ruleId);
+            }
+        } else {
+            LOG.debug("Evaluation of rule: {} already pending, skipping", ruleId);
+            getStatistics(ruleId).skipped();
+        }
+    }
+
+    /**
+     * @return The evaluation statistics of every rule that was scheduled, indexed on rule id
+     */
+    public Map<String, RuleEvaluationStats> getStats() {
+        Map<String, RuleEvaluationStats> stats = new HashMap<>();
+        statistics.forEach((id, s) -> stats.put(id, s.snapshot(id)));
+        return stats;
+    }
+
+    @Scheduled(fixedDelayString = "${rules.evaluation.stats.interval:300000}")
+    public void reportStats() {
+        Map<String, RuleEvaluationStats> stats = getStats();
+        if(!stats.isEmpty()) {
+            long evaluations = stats.values().stream().mapToLong(RuleEvaluationStats::getEvaluations).sum();
+            long skipped = stats.values().stream().mapToLong(RuleEvaluationStats::getSkipped).sum();
+            LOG.info("Rule evaluations: {} skipped: {} for: {} rules, queued: {}", evaluations, skipped, stats.size(),
+                    evaluationExecutor.getQueue().size());
+            stats.values().forEach(s -> LOG.debug("{}", s));
+        }
+    }
+
+    private void submit(String ruleId) {
+        Rule rule = pendingRules.remove(ruleId);
+        if(rule != null) {
+            try {
+                evaluationExecutor.execute(() -> evaluate(rule));
+            } catch(RejectedExecutionException e) {
+                LOG.warn("Rule evaluation queue is full, dropping evaluation of rule: {}", ruleId);
+                getStatistics(ruleId).skipped();
+            }
+        }
+    }
+
+    private void evaluate(Rule rule) {
+        List<Lock> locks = newArrayList(targetLocks.bulkGet(getTargetItems(rule)));
+        locks.forEach(Lock::lock);
+        try {
+            long start = System.nanoTime();
+            ruleEngine.evalRule(rule);
+            long latency = System.nanoTime() - start;
+
+            getStatistics(rule.getId()).evaluated(latency);
+            LOG.debug("Evaluated rule: {} in: {} ns", rule.getId(), latency);
+        } catch(RuntimeException e) {
+            LOG.error("Unexpected failure evaluating rule: " + rule.getId(), e);
+        } finally {
+            locks.forEach(Lock::unlock);
+        }
+    }
+
+    private Iterable<String> getTargetItems(Rule rule) {
+        try {
+            BlockEvaluator<Block> evaluator = evaluatorFactory.getEvaluator(rule.getBlock());
+            return evaluator.getTargetItems(rule.getBlock());
+        } catch(EvalException e) {
+            LOG.debug("Unable to determine target items of rule: {}", rule.getId());
+            return newArrayList();
+        }
+    }
+
+    private RuleStatistics getStatistics(String ruleId) {
+        return statistics.computeIfAbsent(ruleId, k -> new RuleStatistics());
+    }
+
+    private static Thread createThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static final class RuleStatistics {
+        private long evaluations;
+        private long skipped;
+        private long totalLatency;
+        private long lastLatency;
+        private long maxLatency;
+
+        private synchronized void evaluated(long latency) {
+            evaluations++;
+            totalLatency += latency;
+            lastLatency = latency;
+            maxLatency = Math.max(maxLatency, latency);
+        }
+
+        private synchronized void skipped() {
+            skipped++;
+        }
+
+        private synchronized RuleEvaluationStats snapshot(String ruleId) {
+            long meanLatency = evaluations > 0 ? totalLatency / evaluations : 0;
+            return new RuleEvaluationStats(ruleId, evaluations, skipped, lastLatency, meanLatency, maxLatency);
+        }
+    }
+}
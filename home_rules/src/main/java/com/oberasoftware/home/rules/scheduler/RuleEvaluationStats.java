@@ -0,0 +1,63 @@
+package com.oberasoftware.home.rules.scheduler;
+
+/**
+ * Evaluation statistics of a single rule, latencies are in nanoseconds
+ *
+ * @author Renze de Vries
+ */
+public class RuleEvaluationStats {
+    private final String ruleId;
+    private final long evaluations;
+    private final long skipped;
+    private final long lastLatency;
+    private final long meanLatency;
+    private final long maxLatency;
+
+    public RuleEvaluationStats(String ruleId, long evaluations, long skipped, long lastLatency, long meanLatency, long maxLatency) {
+        this.ruleId = ruleId;
+        this.evaluations = evaluations;
+        this.skipped = skipped;
+        this.lastLatency = lastLatency;
+        this.meanLatency = meanLatency;
+        this.maxLatency = maxLatency;
+    }
+
+    public String getRuleId() {
+        return ruleId;
+    }
+
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return The amount of requested evaluations that were collapsed into a pending evaluation or dropped
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public long getLastLatency() {
+        return lastLatency;
+    }
+
+    public long getMeanLatency() {
+        return meanLatency;
+    }
+
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    @Override
+    public String toString() {
+        return "RuleEvaluationStats{" +
+                "ruleId='" + ruleId + '\'' +
+                ", evaluations=" + evaluations +
+                ", skipped=" + skipped +
+                ", lastLatency=" + lastLatency +
+                ", meanLatency=" + meanLatency +
+                ", maxLatency=" + maxLatency +
+                '}';
+    }
+}
@@ -5,13 +5,13 @@ import com.oberasoftware.base.event.EventSubscribe;
 import com.oberasoftware.home.api.events.DeviceEvent;
 import com.oberasoftware.home.api.managers.DeviceManager;
 import com.oberasoftware.home.api.model.storage.DeviceItem;
-import com.oberasoftware.home.rules.RuleEngine;
 import com.oberasoftware.home.rules.api.Block;
 import com.oberasoftware.home.rules.api.general.Rule;
 import com.oberasoftware.home.rules.api.trigger.DeviceTrigger;
 import com.oberasoftware.home.rules.api.trigger.Trigger;
 import com.oberasoftware.home.rules.evaluators.EvaluatorFactory;
 import com.oberasoftware.home.rules.evaluators.blocks.BlockEvaluator;
+import com.oberasoftware.home.rules.scheduler.RuleEvaluationScheduler;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -33,7 +33,7 @@ public class DeviceTriggerProcessor implements TriggerProcessor, EventHandler {
     private static final Logger LOG = getLogger(DeviceTriggerProcessor.class);
 
     @Autowired
-    private RuleEngine ruleEngine;
+    private RuleEvaluationScheduler ruleEvaluationScheduler;
 
     @Autowired
     private DeviceManager deviceManager;
@@ -82,7 +82,7 @@ public class DeviceTriggerProcessor implements TriggerProcessor, EventHandler {
         if(itemRules != null && !itemRules.isEmpty()) {
             LOG.debug("Rules: {} mapped to item: {}", itemRules.size(), itemId);
 
-            itemRules.forEach(r -> ruleEngine.evalRule(r.getId()));
+            itemRules.forEach(ruleEvaluationScheduler::schedule);
         } else {
             LOG.debug("No rules mapped for item: {}", itemId);
         }
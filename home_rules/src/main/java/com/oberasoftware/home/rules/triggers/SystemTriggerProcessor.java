@@ -46,6 +46,6 @@ public class SystemTriggerProcessor implements TriggerProcessor {
     }
 
     private void evalRules() {
-        systemRules.forEach(r -> ruleEngine.evalRule(r.getId()));
+        systemRules.forEach(ruleEngine::evalRule);
     }
 }
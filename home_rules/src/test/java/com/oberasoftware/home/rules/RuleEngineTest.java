@@ -16,6 +16,7 @@ import com.oberasoftware.home.rules.api.Condition;
 import com.oberasoftware.home.rules.api.trigger.DeviceTrigger;
 import com.oberasoftware.home.rules.api.logic.IfBlock;
 import com.oberasoftware.home.rules.api.logic.IfBranch;
+import com.oberasoftware.home.rules.api.logic.LogicCondition;
 import com.oberasoftware.home.rules.api.values.ItemValue;
 import com.oberasoftware.home.rules.api.Operator;
 import com.oberasoftware.home.rules.api.general.Rule;
@@ -167,4 +168,96 @@ public class RuleEngineTest {
 
     }
 
+    @Test
+    public void testLogicConditionElseBranch() throws Exception {
+        Trigger trigger = new DeviceTrigger(DeviceTrigger.TRIGGER_TYPE.DEVICE_STATE_CHANGE);
+
+        Condition condition = new LogicCondition(LogicCondition.TYPE.AND, newArrayList(
+                new CompareCondition(new ItemValue(MY_ITEM_ID, "on-off"), Operator.EQUALS, new StaticValue("on", VALUE_TYPE.STRING)),
+                new CompareCondition(new ItemValue(MY_ITEM_ID, LUMINANCE_LABEL), Operator.SMALLER_THAN, new StaticValue(10l, VALUE_TYPE.NUMBER))));
+
+        IfBranch branch = new IfBranch(condition, newArrayList(new SwitchItem("LightId", SwitchCommand.STATE.ON)));
+        IfBranch elseBranch = new IfBranch(null, newArrayList(new SwitchItem("LightId", SwitchCommand.STATE.OFF)));
+        String ruleId = randomUUID().toString();
+        Rule rule = new Rule(ruleId, "Light on with movement in the dark", new IfBlock(newArrayList(branch, elseBranch)), Lists.newArrayList(trigger));
+
+        StateImpl itemState = new StateImpl(MY_ITEM_ID, Status.ACTIVE);
+        itemState.updateIfChanged("on-off", new StateItemImpl("on-off", new ValueImpl(VALUE_TYPE.STRING, "on")));
+        itemState.updateIfChanged(LUMINANCE_LABEL, new StateItemImpl(LUMINANCE_LABEL, new ValueImpl(VALUE_TYPE.NUMBER, 20l)));
+        mockStateManager.addState(itemState);
+
+        ruleEngine.register(rule);
+        ruleEngine.evalRule(ruleId);
+
+        List<Event> publishedEvents = mockAutomationBus.getPublishedEvents();
+        assertThat(publishedEvents.size(), is(1));
+
+        ItemCommandEvent switchCommand = (ItemCommandEvent) publishedEvents.get(0);
+        assertThat(((SwitchCommand)switchCommand.getCommand()).getState(), is(SwitchCommand.STATE.OFF));
+    }
+
+    @Test
+    public void testReplaceRule() throws Exception {
+        Trigger trigger = new DeviceTrigger(DeviceTrigger.TRIGGER_TYPE.DEVICE_STATE_CHANGE);
+        Condition condition = new CompareCondition(
+                new ItemValue(MY_ITEM_ID, "on-off"),
+                Operator.EQUALS,
+                new StaticValue("on", VALUE_TYPE.STRING));
+
+        String ruleId = randomUUID().toString();
+        IfBranch onBranch = new IfBranch(condition, newArrayList(new SwitchItem("LightId", SwitchCommand.STATE.ON)));
+        ruleEngine.register(new Rule(ruleId, "Light on with movement", new IfBlock(newArrayList(onBranch)), Lists.newArrayList(trigger)));
+
+        IfBranch offBranch = new IfBranch(condition, newArrayList(new SwitchItem("LightId", SwitchCommand.STATE.OFF)));
+        Rule replacedRule = new Rule(ruleId, "Light off with movement", new IfBlock(newArrayList(offBranch)), Lists.newArrayList(trigger));
+        ruleEngine.register(replacedRule);
+
+        StateImpl itemState = new StateImpl(MY_ITEM_ID, Status.ACTIVE);
+        itemState.updateIfChanged("on-off", new StateItemImpl("on-off", new ValueImpl(VALUE_TYPE.STRING, "on")));
+        mockStateManager.addState(itemState);
+
+        ruleEngine.evalRule(replacedRule);
+
+        List<Event> publishedEvents = mockAutomationBus.getPublishedEvents();
+        assertThat(publishedEvents.size(), is(1));
+
+        ItemCommandEvent switchCommand = (ItemCommandEvent) publishedEvents.get(0);
+        assertThat(((SwitchCommand)switchCommand.getCommand()).getState(), is(SwitchCommand.STATE.OFF));
+
+        ruleEngine.removeRule(ruleId);
+        ruleEngine.evalRule(ruleId);
+        assertThat(mockAutomationBus.getPublishedEvents().size(), is(1));
+    }
+
+    @Test
+    public void testEvalStaleRule() throws Exception {
+        Trigger trigger = new DeviceTrigger(DeviceTrigger.TRIGGER_TYPE.DEVICE_STATE_CHANGE);
+        Condition condition = new CompareCondition(
+                new ItemValue(MY_ITEM_ID, "on-off"),
+                Operator.EQUALS,
+                new StaticValue("on", VALUE_TYPE.STRING));
+
+        String ruleId = randomUUID().toString();
+        IfBranch onBranch = new IfBranch(condition, newArrayList(new SwitchItem("LightId", SwitchCommand.STATE.ON)));
+        Rule originalRule = new Rule(ruleId, "Light on with movement", new IfBlock(newArrayList(onBranch)), Lists.newArrayList(trigger));
+        ruleEngine.register(originalRule);
+
+        IfBranch offBranch = new IfBranch(condition, newArrayList(new SwitchItem("LightId", SwitchCommand.STATE.OFF)));
+        ruleEngine.register(new Rule(ruleId, "Light off with movement", new IfBlock(newArrayList(offBranch)), Lists.newArrayList(trigger)));
+
+        StateImpl itemState = new StateImpl(MY_ITEM_ID, Status.ACTIVE);
+        itemState.updateIfChanged("on-off", new StateItemImpl("on-off", new ValueImpl(VALUE_TYPE.STRING, "on")));
+        mockStateManager.addState(itemState);
+
+        ruleEngine.evalRule(originalRule);
+
+        List<Event> publishedEvents = mockAutomationBus.getPublishedEvents();
+        assertThat(publishedEvents.size(), is(1));
+        ItemCommandEvent switchCommand = (ItemCommandEvent) publishedEvents.get(0);
+        assertThat(((SwitchCommand)switchCommand.getCommand()).getState(), is(SwitchCommand.STATE.OFF));
+
+        ruleEngine.removeRule(ruleId);
+        ruleEngine.evalRule(originalRule);
+        assertThat(mockAutomationBus.getPublishedEvents().size(), is(1));
+    }
 }
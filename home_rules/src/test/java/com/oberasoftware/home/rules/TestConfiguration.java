@@ -1,7 +1,9 @@
 package com.oberasoftware.home.rules;
 
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
 
 /**
  * @author Renze de Vries
@@ -9,4 +11,8 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 @ComponentScan
 public class TestConfiguration {
+    @Bean
+    public static PropertySourcesPlaceholderConfigurer propertySourcesPlaceholderConfigurer() {
+        return new PropertySourcesPlaceholderConfigurer();
+    }
 }
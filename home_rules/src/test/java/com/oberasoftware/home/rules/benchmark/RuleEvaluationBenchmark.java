@@ -0,0 +1,146 @@
+package com.oberasoftware.home.rules.benchmark;
+
+import com.oberasoftware.home.api.model.Status;
+import com.oberasoftware.home.api.types.VALUE_TYPE;
+import com.oberasoftware.home.core.model.StateImpl;
+import com.oberasoftware.home.core.model.StateItemImpl;
+import com.oberasoftware.home.core.types.ValueImpl;
+import com.oberasoftware.home.rules.RuleConfiguration;
+import com.oberasoftware.home.rules.TestConfiguration;
+import com.oberasoftware.home.rules.api.Block;
+import com.oberasoftware.home.rules.api.MathOperator;
+import com.oberasoftware.home.rules.api.Operator;
+import com.oberasoftware.home.rules.api.general.SetState;
+import com.oberasoftware.home.rules.api.logic.CompareCondition;
+import com.oberasoftware.home.rules.api.logic.IfBlock;
+import com.oberasoftware.home.rules.api.logic.IfBranch;
+import com.oberasoftware.home.rules.api.logic.LogicCondition;
+import com.oberasoftware.home.rules.api.values.ItemValue;
+import com.oberasoftware.home.rules.api.values.MathValue;
+import com.oberasoftware.home.rules.api.values.StaticValue;
+import com.oberasoftware.home.rules.evaluators.CompiledEvaluator;
+import com.oberasoftware.home.rules.evaluators.Evaluator;
+import com.oberasoftware.home.rules.evaluators.EvaluatorFactory;
+import com.oberasoftware.home.rules.evaluators.blocks.BlockEvaluator;
+import com.oberasoftware.home.rules.test.MockStateManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * Measures the cost of a single evaluation of a nested rule, through the evaluator lookups with and
+ * without the resolved evaluator cache and through the compiled rule. The condition is built so that all its values are resolved but
+ * the rule does not fire, so no commands are published during the benchmark.
+ *
+ * Run using the main method from the test classpath of this module.
+ *
+ * @author Renze de Vries
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleEvaluationBenchmark {
+    private static final String SENSOR_ID = "sensor";
+    private static final String METER_ID = "meter";
+
+    private AnnotationConfigApplicationContext context;
+    private AnnotationConfigApplicationContext uncachedContext;
+    private EvaluatorFactory evaluatorFactory;
+    private EvaluatorFactory uncachedEvaluatorFactory;
+
+    private Block block;
+    private CompiledEvaluator<Boolean> compiledBlock;
+
+    @Setup
+    public void setup() {
+        context = new AnnotationConfigApplicationContext(RuleConfiguration.class, TestConfiguration.class);
+        evaluatorFactory = context.getBean(EvaluatorFactory.class);
+
+        //separate context, so the evaluators of the children also go through the factory without cache
+        uncachedContext = new AnnotationConfigApplicationContext(RuleConfiguration.class, TestConfiguration.class);
+        uncachedEvaluatorFactory = uncachedContext.getBean(EvaluatorFactory.class);
+        ReflectionTestUtils.setField(uncachedEvaluatorFactory, "resolvedEvaluators", new UncachedEvaluators());
+
+        StateImpl sensorState = new StateImpl(SENSOR_ID, Status.ACTIVE);
+        sensorState.updateIfChanged("luminance", new StateItemImpl("luminance", new ValueImpl(VALUE_TYPE.NUMBER, 5l)));
+        sensorState.updateIfChanged("on-off", new StateItemImpl("on-off", new ValueImpl(VALUE_TYPE.STRING, "on")));
+        StateImpl meterState = new StateImpl(METER_ID, Status.ACTIVE);
+        meterState.updateIfChanged("energy", new StateItemImpl("energy", new ValueImpl(VALUE_TYPE.NUMBER, 1200l)));
+        meterState.updateIfChanged("powerstart", new StateItemImpl("powerstart", new ValueImpl(VALUE_TYPE.NUMBER, 1000l)));
+
+        for(MockStateManager stateManager : newArrayList(context.getBean(MockStateManager.class), uncachedContext.getBean(MockStateManager.class))) {
+            stateManager.addState(sensorState);
+            stateManager.addState(meterState);
+        }
+
+        MathValue powerUsed = new MathValue(new ItemValue(METER_ID, "energy"), new ItemValue(METER_ID, "powerstart"), MathOperator.MINUS);
+        LogicCondition condition = new LogicCondition(LogicCondition.TYPE.AND, newArrayList(
+                new CompareCondition(new ItemValue(SENSOR_ID, "on-off"), Operator.EQUALS, new StaticValue("on", VALUE_TYPE.STRING)),
+                new CompareCondition(new ItemValue(SENSOR_ID, "luminance"), Operator.SMALLER_THAN_EQUALS, new StaticValue(10l, VALUE_TYPE.NUMBER)),
+                new CompareCondition(powerUsed, Operator.LARGER_THAN, new StaticValue(500l, VALUE_TYPE.NUMBER))));
+
+        IfBranch branch = new IfBranch(condition, newArrayList(new SetState(new ItemValue(METER_ID, "powerused"), powerUsed)));
+        block = new IfBlock(newArrayList(branch));
+        compiledBlock = evaluatorFactory.compile(block);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        uncachedContext.close();
+    }
+
+    @Benchmark
+    public boolean evaluateWithLookups() {
+        BlockEvaluator<Block> evaluator = evaluatorFactory.getEvaluator(block);
+        return evaluator.eval(block);
+    }
+
+    @Benchmark
+    public boolean evaluateWithUncachedLookups() {
+        BlockEvaluator<Block> evaluator = uncachedEvaluatorFactory.getEvaluator(block);
+        return evaluator.eval(block);
+    }
+
+    @Benchmark
+    public boolean evaluateCompiled() {
+        return compiledBlock.eval();
+    }
+
+    /**
+     * Resolves the evaluator through the type hierarchy of the input on every lookup
+     */
+    private static class UncachedEvaluators extends ConcurrentHashMap<Class<?>, Optional<Evaluator<?, ?>>> {
+        @Override
+        public Optional<Evaluator<?, ?>> computeIfAbsent(Class<?> key, Function<? super Class<?>, ? extends Optional<Evaluator<?, ?>>> mappingFunction) {
+            return mappingFunction.apply(key);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RuleEvaluationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,250 @@
+package com.oberasoftware.home.rules.scheduler;
+
+import com.google.common.collect.Lists;
+import com.oberasoftware.home.api.commands.SwitchCommand;
+import com.oberasoftware.home.api.model.Status;
+import com.oberasoftware.home.api.types.VALUE_TYPE;
+import com.oberasoftware.home.core.model.StateImpl;
+import com.oberasoftware.home.core.model.StateItemImpl;
+import com.oberasoftware.home.core.types.ValueImpl;
+import com.oberasoftware.home.rules.RuleConfiguration;
+import com.oberasoftware.home.rules.RuleEngine;
+import com.oberasoftware.home.rules.TestConfiguration;
+import com.oberasoftware.home.rules.api.Block;
+import com.oberasoftware.home.rules.api.Condition;
+import com.oberasoftware.home.rules.api.Operator;
+import com.oberasoftware.home.rules.api.general.Rule;
+import com.oberasoftware.home.rules.api.general.SwitchItem;
+import com.oberasoftware.home.rules.api.logic.CompareCondition;
+import com.oberasoftware.home.rules.api.logic.IfBlock;
+import com.oberasoftware.home.rules.api.logic.IfBranch;
+import com.oberasoftware.home.rules.api.trigger.DeviceTrigger;
+import com.oberasoftware.home.rules.api.values.ItemValue;
+import com.oberasoftware.home.rules.api.values.StaticValue;
+import com.oberasoftware.home.rules.evaluators.EvaluatorFactory;
+import com.oberasoftware.home.rules.evaluators.blocks.BlockEvaluator;
+import com.oberasoftware.home.rules.test.MockAutomationBus;
+import com.oberasoftware.home.rules.test.MockStateManager;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.UUID.randomUUID;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Renze de Vries
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {RuleConfiguration.class, TestConfiguration.class})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class RuleEvaluationSchedulerTest {
+    private static final String MY_ITEM_ID = "ff8daadb-5a35-4e39-ad99-5eefe73a18a7";
+
+    @Autowired
+    private RuleEngine ruleEngine;
+
+    @Autowired
+    private RuleEvaluationScheduler ruleEvaluationScheduler;
+
+    @Autowired
+    private MockAutomationBus mockAutomationBus;
+
+    @Autowired
+    private MockStateManager mockStateManager;
+
+    private final RuleEngine blockingRuleEngine = mock(RuleEngine.class);
+    private final BlockEvaluator<Block> blockEvaluator = mock(BlockEvaluator.class);
+    private final Map<String, CountDownLatch> started = new ConcurrentHashMap<>();
+    private final Map<String, CountDownLatch> released = new ConcurrentHashMap<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    private RuleEvaluationScheduler scheduler;
+
+    @After
+    public void tearDown() {
+        released.values().forEach(CountDownLatch::countDown);
+        if(scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testCollapseEvaluations() throws Exception {
+        Condition condition = new CompareCondition(
+                new ItemValue(MY_ITEM_ID, "on-off"),
+                Operator.EQUALS,
+                new StaticValue("on", VALUE_TYPE.STRING));
+
+        IfBranch branch = new IfBranch(condition, newArrayList(new SwitchItem("LightId", SwitchCommand.STATE.ON)));
+        String ruleId = randomUUID().toString();
+        Rule rule = new Rule(ruleId, "Light on with movement", new IfBlock(newArrayList(branch)),
+                Lists.newArrayList(new DeviceTrigger(DeviceTrigger.TRIGGER_TYPE.DEVICE_STATE_CHANGE)));
+        ruleEngine.register(rule);
+
+        StateImpl itemState = new StateImpl(MY_ITEM_ID, Status.ACTIVE);
+        itemState.updateIfChanged("on-off", new StateItemImpl("on-off", new ValueImpl(VALUE_TYPE.STRING, "on")));
+        mockStateManager.addState(itemState);
+
+        for(int i=0; i<5; i++) {
+            ruleEvaluationScheduler.schedule(rule);
+        }
+
+        long timeout = System.currentTimeMillis() + 5000;
+        while(ruleEvaluationScheduler.getStats().get(ruleId).getEvaluations() == 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+
+        RuleEvaluationStats stats = ruleEvaluationScheduler.getStats().get(ruleId);
+        assertThat(stats.getEvaluations(), is(1l));
+        assertThat(stats.getSkipped(), is(4l));
+        assertThat(mockAutomationBus.getPublishedEvents().size(), is(1));
+    }
+
+    @Test
+    public void sameTargetEvaluatedSerially() throws Exception {
+        startScheduler(2, 10);
+        Rule first = blockingRule("first", "lamp");
+        Rule second = blockingRule("second", "lamp");
+
+        scheduler.schedule(first);
+        assertThat(started.get("first").await(5, TimeUnit.SECONDS), is(true));
+        scheduler.schedule(second);
+
+        assertThat(started.get("second").await(200, TimeUnit.MILLISECONDS), is(false));
+        released.get("first").countDown();
+        assertThat(started.get("second").await(5, TimeUnit.SECONDS), is(true));
+        released.get("second").countDown();
+
+        waitFor(() -> getEvaluations("second") == 1);
+        assertThat(maxRunning.get(), is(1));
+    }
+
+    @Test
+    public void independentRulesEvaluatedInParallel() throws Exception {
+        startScheduler(2, 10);
+        Rule first = blockingRule("first", "lamp");
+        Rule second = blockingRule("second", "heater");
+
+        scheduler.schedule(first);
+        scheduler.schedule(second);
+
+        assertThat(started.get("first").await(5, TimeUnit.SECONDS), is(true));
+        assertThat(started.get("second").await(5, TimeUnit.SECONDS), is(true));
+        assertThat(maxRunning.get(), is(2));
+
+        released.get("first").countDown();
+        released.get("second").countDown();
+        waitFor(() -> getEvaluations("first") == 1 && getEvaluations("second") == 1);
+    }
+
+    @Test
+    public void fullQueueSkipsEvaluation() throws Exception {
+        startScheduler(1, 1);
+        Rule busy = blockingRule("busy", "lamp");
+        Rule queued = blockingRule("queued", "heater");
+        Rule dropped = blockingRule("dropped", "fan");
+
+        scheduler.schedule(busy);
+        assertThat(started.get("busy").await(5, TimeUnit.SECONDS), is(true));
+        scheduler.schedule(queued);
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) ReflectionTestUtils.getField(scheduler, "evaluationExecutor");
+        waitFor(() -> executor.getQueue().size() == 1);
+
+        scheduler.schedule(dropped);
+        waitFor(() -> getSkipped("dropped") == 1);
+
+        released.values().forEach(CountDownLatch::countDown);
+        waitFor(() -> getEvaluations("queued") == 1);
+        assertThat(getEvaluations("busy"), is(1l));
+        assertThat(getEvaluations("dropped"), is(0l));
+    }
+
+    @Test
+    public void latencyStatistics() throws Exception {
+        startScheduler(1, 10);
+        Rule rule = blockingRule("rule", "lamp");
+
+        scheduler.schedule(rule);
+        assertThat(started.get("rule").await(5, TimeUnit.SECONDS), is(true));
+        Thread.sleep(50);
+        released.get("rule").countDown();
+        waitFor(() -> getEvaluations("rule") == 1);
+
+        RuleEvaluationStats stats = scheduler.getStats().get("rule");
+        assertThat(stats.getSkipped(), is(0l));
+        assertThat(stats.getLastLatency() >= TimeUnit.MILLISECONDS.toNanos(50), is(true));
+        assertThat(stats.getMeanLatency(), is(stats.getLastLatency()));
+        assertThat(stats.getMaxLatency(), is(stats.getLastLatency()));
+    }
+
+    private void startScheduler(int threads, int queueDepth) {
+        EvaluatorFactory evaluatorFactory = mock(EvaluatorFactory.class);
+        doReturn(blockEvaluator).when(evaluatorFactory).getEvaluator(any());
+        doAnswer(invocation -> {
+            Rule rule = (Rule) invocation.getArguments()[0];
+            int current = running.incrementAndGet();
+            maxRunning.accumulateAndGet(current, Math::max);
+            started.get(rule.getId()).countDown();
+            released.get(rule.getId()).await(5, TimeUnit.SECONDS);
+            running.decrementAndGet();
+            return null;
+        }).when(blockingRuleEngine).evalRule(any(Rule.class));
+
+        scheduler = new RuleEvaluationScheduler();
+        ReflectionTestUtils.setField(scheduler, "ruleEngine", blockingRuleEngine);
+        ReflectionTestUtils.setField(scheduler, "evaluatorFactory", evaluatorFactory);
+        ReflectionTestUtils.setField(scheduler, "collapseWindow", 0l);
+        ReflectionTestUtils.setField(scheduler, "threads", threads);
+        ReflectionTestUtils.setField(scheduler, "queueDepth", queueDepth);
+        scheduler.start();
+    }
+
+    private Rule blockingRule(String ruleId, String targetItem) {
+        Block block = mock(Block.class);
+        when(blockEvaluator.getTargetItems(block)).thenReturn(newHashSet(targetItem));
+        started.put(ruleId, new CountDownLatch(1));
+        released.put(ruleId, new CountDownLatch(1));
+        return new Rule(ruleId, ruleId, block, newArrayList());
+    }
+
+    private long getEvaluations(String ruleId) {
+        RuleEvaluationStats stats = scheduler.getStats().get(ruleId);
+        return stats != null ? stats.getEvaluations() : 0;
+    }
+
+    private long getSkipped(String ruleId) {
+        RuleEvaluationStats stats = scheduler.getStats().get(ruleId);
+        return stats != null ? stats.getSkipped() : 0;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 5000;
+        while(!condition.getAsBoolean() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.getAsBoolean(), is(true));
+    }
+}
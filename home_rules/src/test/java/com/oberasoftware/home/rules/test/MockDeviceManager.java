@@ -25,6 +25,11 @@ public class MockDeviceManager implements DeviceManager {
         return null;
     }
 
+    @Override
+    public List<DeviceItem> registerDevices(String pluginId, List<Device> devices) throws HomeAutomationException {
+        return new ArrayList<>();
+    }
+
     public void addDevice(DeviceItem deviceItem) {
         this.deviceItems.add(deviceItem);
     }
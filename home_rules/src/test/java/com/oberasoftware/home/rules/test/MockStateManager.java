@@ -2,11 +2,13 @@ package com.oberasoftware.home.rules.test;
 
 import com.oberasoftware.home.api.managers.StateManager;
 import com.oberasoftware.home.api.model.State;
+import com.oberasoftware.home.api.model.StateSnapshot;
 import com.oberasoftware.home.api.model.Status;
 import com.oberasoftware.home.api.model.storage.DeviceItem;
 import com.oberasoftware.home.api.types.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -35,7 +37,7 @@ public class MockStateManager implements StateManager {
 
     @Override
     public Map<String, State> getStates() {
-        return null;
+        return new HashMap<>(stateMap);
     }
 
     @Override
@@ -43,6 +45,32 @@ public class MockStateManager implements StateManager {
         return stateMap.get(itemId);
     }
 
+    @Override
+    public StateSnapshot getSnapshot() {
+        Map<String, State> states = getStates();
+        return new StateSnapshot() {
+            @Override
+            public long getVersion() {
+                return 0;
+            }
+
+            @Override
+            public State getState(String itemId) {
+                return states.get(itemId);
+            }
+
+            @Override
+            public Map<String, State> getStates() {
+                return Collections.unmodifiableMap(states);
+            }
+
+            @Override
+            public Map<String, State> getChangesSince(long version) {
+                return version < 0 ? getStates() : Collections.emptyMap();
+            }
+        };
+    }
+
     public void addState(State state) {
         this.stateMap.put(state.getItemId(), state);
     }
@@ -62,20 +62,21 @@ public class DashboardManagerImpl implements DashboardManager {
 
     @Override
     public Dashboard store(Dashboard dashboard) {
-        centralDatastore.beginTransaction();
+        String dashboardId = dashboard.getId();
+        centralDatastore.beginTransaction(DashboardImpl.class, dashboardId);
         try {
             return centralDatastore.store(dashboard);
         } catch (DataStoreException e) {
             LOG.error("", e);
         } finally {
-            centralDatastore.commitTransaction();
+            centralDatastore.commitTransaction(DashboardImpl.class, dashboardId);
         }
         return null;
     }
 
     @Override
     public void delete(String dashboardId) {
-        centralDatastore.beginTransaction();
+        centralDatastore.beginTransaction(DashboardImpl.class, dashboardId);
         try {
             LOG.debug("Deleting containers for dashboard: {}", dashboardId);
             uiManager.getDashboardContainers(dashboardId).forEach(c -> uiManager.deleteContainer(c.getId()));
@@ -85,7 +86,7 @@ public class DashboardManagerImpl implements DashboardManager {
         } catch (DataStoreException e) {
             LOG.error("", e);
         } finally {
-            centralDatastore.commitTransaction();
+            centralDatastore.commitTransaction(DashboardImpl.class, dashboardId);
         }
     }
 }
@@ -13,6 +13,7 @@ import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -48,6 +49,20 @@ public class DeviceManagerImpl implements DeviceManager {
         }
     }
 
+    @Override
+    public List<DeviceItem> registerDevices(String pluginId, List<Device> devices) throws HomeAutomationException {
+        LOG.debug("Registering: {} devices for plugin: {}", devices.size(), pluginId);
+        String controllerId = automationBus.getControllerId();
+
+        Optional<PluginItem> plugin = homeDAO.findPlugin(controllerId, pluginId);
+        if(plugin.isPresent()) {
+            return itemManager.createOrUpdateDevices(controllerId, plugin.get().getPluginId(), devices);
+        } else {
+            LOG.error("Unable to register: {} devices for plugin: {}", devices.size(), pluginId);
+            return new ArrayList<>();
+        }
+    }
+
     @Override
     public DeviceItem findDevice(String deviceId) {
         Optional<DeviceItemImpl> d =  homeDAO.findItem(DeviceItemImpl.class, deviceId);
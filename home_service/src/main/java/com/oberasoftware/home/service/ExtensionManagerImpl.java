@@ -11,17 +11,23 @@ import com.oberasoftware.home.api.managers.ItemManager;
 import com.oberasoftware.home.api.model.Device;
 import com.oberasoftware.home.api.storage.HomeDAO;
 import com.oberasoftware.home.api.model.storage.PluginItem;
+import com.oberasoftware.home.service.startup.ExtensionTiming;
+import com.oberasoftware.home.service.startup.StartupReport;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
-import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -46,8 +52,13 @@ public class ExtensionManagerImpl implements ExtensionManager {
     @Autowired
     private AutomationBus automationBus;
 
+    @Autowired
+    private StartupReport startupReport;
+
     private ExecutorService executorService = Executors.newCachedThreadPool();
 
+    private final CompletableFuture<Void> activated = new CompletableFuture<>();
+
     @Override
     public List<AutomationExtension> getExtensions() {
         return extensions;
@@ -67,42 +78,98 @@ public class ExtensionManagerImpl implements ExtensionManager {
     public void activateExtensions() throws HomeAutomationException {
         LOG.info("Activating all installed extensions");
         if(extensions != null) {
-            extensions.forEach(this::activateExtension);
+            Map<String, AutomationExtension> extensionIndex = new HashMap<>();
+            extensions.forEach(e -> extensionIndex.put(e.getId(), e));
+
+            Map<String, CompletableFuture<Void>> activations = new HashMap<>();
+            extensions.forEach(e -> activateExtension(e, extensionIndex, activations, new ArrayDeque<>()));
+
+            CompletableFuture<?>[] settled = activations.values().stream()
+                    .map(f -> f.handle((v, e) -> null)).toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(settled).thenRun(() -> activated.complete(null));
+        } else {
+            activated.complete(null);
         }
     }
 
-    private void activateExtension(AutomationExtension extension)  {
-        executorService.submit(() -> {
-            LOG.info("Registering extension: {}", extension);
-            itemManager.createOrUpdatePlugin(automationBus.getControllerId(), extension.getId(), extension.getName(), extension.getProperties());
+    @Override
+    public CompletableFuture<Void> whenActivated() {
+        return activated;
+    }
 
-            Optional<PluginItem> pluginItem = homeDAO.findPlugin(automationBus.getControllerId(), extension.getId());
-            LOG.info("Activating plugin: {}", pluginItem);
-            extension.activate(pluginItem);
+    /**
+     * Activates an extension once all of its dependencies are ready, the activation of the dependencies is
+     * started first so every extension is activated exactly once.
+     */
+    private CompletableFuture<Void> activateExtension(AutomationExtension extension, Map<String, AutomationExtension> extensionIndex,
+                                                      Map<String, CompletableFuture<Void>> activations, Deque<String> path) {
+        String extensionId = extension.getId();
+        CompletableFuture<Void> activation = activations.get(extensionId);
+        if(activation != null) {
+            return activation;
+        }
+        if(path.contains(extensionId)) {
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new RuntimeHomeAutomationException("Circular extension dependency: " + path + " -> " + extensionId));
+            return failed;
+        }
 
-            while (!extension.isReady()) {
-                LOG.debug("Extension: {} is not ready yet", extension.getId());
-                sleepUninterruptibly(1, TimeUnit.SECONDS);
+        path.push(extensionId);
+        List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+        for(String dependencyId : extension.getDependencies()) {
+            AutomationExtension dependency = extensionIndex.get(dependencyId);
+            if(dependency != null) {
+                dependencies.add(activateExtension(dependency, extensionIndex, activations, path));
+            } else {
+                LOG.warn("Extension: {} depends on extension: {} which is not installed", extensionId, dependencyId);
             }
+        }
+        path.pop();
+
+        ExtensionTiming timing = startupReport.startExtension(extensionId);
+        activation = CompletableFuture.allOf(dependencies.toArray(new CompletableFuture[dependencies.size()]))
+                .thenRunAsync(() -> {
+                    timing.started();
+                    activatePlugin(extension);
+                    timing.activated();
+                }, executorService)
+                .thenCompose(v -> extension.whenReady())
+                .thenRunAsync(() -> {
+                    timing.ready();
+                    LOG.info("Extension: {} is ready", extensionId);
+                    if (extension instanceof DeviceExtension) {
+                        registerDevices((DeviceExtension) extension);
+                    }
+                }, executorService)
+                .whenComplete((v, e) -> {
+                    timing.finished(e == null);
+                    if(e != null) {
+                        LOG.error("Unable to activate extension: " + extensionId, e);
+                    }
+                });
+        activations.put(extensionId, activation);
+        return activation;
+    }
 
-            if (extension instanceof DeviceExtension) {
-                registerDevices((DeviceExtension) extension);
-            }
+    private void activatePlugin(AutomationExtension extension) {
+        LOG.info("Registering extension: {}", extension);
+        try {
+            itemManager.createOrUpdatePlugin(automationBus.getControllerId(), extension.getId(), extension.getName(), extension.getProperties());
+        } catch(HomeAutomationException e) {
+            throw new RuntimeHomeAutomationException("Unable to register extension: " + extension.getId(), e);
+        }
 
-            return null;
-        });
+        Optional<PluginItem> pluginItem = homeDAO.findPlugin(automationBus.getControllerId(), extension.getId());
+        LOG.info("Activating plugin: {}", pluginItem);
+        extension.activate(pluginItem);
     }
 
     private void registerDevices(DeviceExtension deviceExtension) {
         List<Device> devices = deviceExtension.getDevices();
-        devices.forEach(d -> {
-            try {
-                deviceManager.registerDevice(deviceExtension.getId(), d);
-            } catch (HomeAutomationException e) {
-                throw new RuntimeHomeAutomationException("Unable to store plugin devices", e);
-            }
-        });
+        try {
+            deviceManager.registerDevices(deviceExtension.getId(), devices);
+        } catch (HomeAutomationException e) {
+            throw new RuntimeHomeAutomationException("Unable to store plugin devices", e);
+        }
     }
-
-
 }
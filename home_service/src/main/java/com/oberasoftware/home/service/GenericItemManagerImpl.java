@@ -51,13 +51,13 @@ public abstract class GenericItemManagerImpl<T extends VirtualItem> implements G
 
     @Override
     public void delete(String groupId) {
-        centralDatastore.beginTransaction();
+        centralDatastore.beginTransaction(getType(), groupId);
         try {
             centralDatastore.delete(getType(), groupId);
         } catch (DataStoreException e) {
             LOG.error("", e);
         } finally {
-            centralDatastore.commitTransaction();
+            centralDatastore.commitTransaction(getType(), groupId);
         }
     }
 
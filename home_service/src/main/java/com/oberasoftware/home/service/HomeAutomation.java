@@ -9,6 +9,7 @@ import com.oberasoftware.home.api.extensions.SpringExtension;
 import com.oberasoftware.home.core.CoreConfiguation;
 import com.oberasoftware.home.rest.RestConfiguration;
 import com.oberasoftware.home.rules.RuleConfiguration;
+import com.oberasoftware.home.service.startup.StartupReport;
 import com.oberasoftware.home.storage.jasdb.JasDBConfiguration;
 import com.oberasoftware.home.web.WebConfiguration;
 import org.slf4j.Logger;
@@ -21,6 +22,9 @@ import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Import;
 
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 import static org.slf4j.LoggerFactory.getLogger;
@@ -35,33 +39,63 @@ import static org.slf4j.LoggerFactory.getLogger;
 public class HomeAutomation {
     private static final Logger LOG = getLogger(HomeAutomation.class);
 
+    private static final String STARTUP_TIMEOUT_PROPERTY = "extensions.startup.timeout";
+    private static final long DEFAULT_STARTUP_TIMEOUT = 60000;
+
     public HomeAutomation() {
 
     }
 
     public void start(String[] args) {
         LOG.info("Starting HomeAutomation system");
+        long start = System.currentTimeMillis();
 
         try {
             List<SpringExtension> springExtensions = ExtensionServiceLoaderUtil.getExtensions();
             List<Class<?>> c = springExtensions.stream().map(SpringExtension::getClass).collect(Collectors.toList());
             c.add(HomeAutomation.class);
+            long extensionsLoaded = System.currentTimeMillis();
 
             LOG.debug("Starting spring context with configuration classes: {}", c);
             ApplicationContext context = SpringApplication.run(c.toArray(), args);
+            long contextStarted = System.currentTimeMillis();
 
             String controllerId = context.getBean(AutomationBus.class).getControllerId();
 
             ExtensionManager extensionManager = context.getBean(ExtensionManager.class);
             extensionManager.activateController(controllerId);
+            long controllerActivated = System.currentTimeMillis();
 
             extensionManager.activateExtensions();
+            awaitExtensions(extensionManager, context.getEnvironment().getProperty(STARTUP_TIMEOUT_PROPERTY, Long.class, DEFAULT_STARTUP_TIMEOUT));
+            long extensionsActivated = System.currentTimeMillis();
+
+            StartupReport startupReport = context.getBean(StartupReport.class);
+            startupReport.recordPhase("Loading extensions", extensionsLoaded - start);
+            startupReport.recordPhase("Spring context", contextStarted - extensionsLoaded);
+            startupReport.recordPhase("Controller activation", controllerActivated - contextStarted);
+            startupReport.recordPhase("Extension activation", extensionsActivated - controllerActivated);
+            startupReport.recordPhase("Total", extensionsActivated - start);
+            startupReport.log();
+
             LOG.info("HomeAutomation system Started and ready for duty");
         } catch (HomeAutomationException | RuntimeHomeAutomationException e) {
             LOG.error("Could not start the HomeAutomationSystem", e);
         }
     }
 
+    private void awaitExtensions(ExtensionManager extensionManager, long timeout) {
+        try {
+            extensionManager.whenActivated().get(timeout, TimeUnit.MILLISECONDS);
+        } catch(TimeoutException e) {
+            LOG.warn("Not all extensions were activated within: {} ms, continuing in the background", timeout);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch(ExecutionException e) {
+            LOG.error("Unable to activate extensions", e);
+        }
+    }
+
     public static void main(String[] args) {
         HomeAutomation automation = new HomeAutomation();
         automation.start(args);
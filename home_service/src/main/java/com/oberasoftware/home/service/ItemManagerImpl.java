@@ -5,6 +5,7 @@ import com.google.common.collect.Maps;
 import com.oberasoftware.home.api.exceptions.DataStoreException;
 import com.oberasoftware.home.api.exceptions.HomeAutomationException;
 import com.oberasoftware.home.api.managers.ItemManager;
+import com.oberasoftware.home.api.model.Device;
 import com.oberasoftware.home.core.model.storage.ControllerItemImpl;
 import com.oberasoftware.home.core.model.storage.DeviceItemImpl;
 import com.oberasoftware.home.core.model.storage.PluginItemImpl;
@@ -19,6 +20,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -37,7 +39,7 @@ public class ItemManagerImpl implements ItemManager {
 
     @Override
     public ControllerItem createOrUpdateController(String controllerId) throws HomeAutomationException {
-        centralDatastore.beginTransaction();
+        centralDatastore.beginTransaction(ControllerItem.class, controllerId);
         try {
             Optional<ControllerItem> controllerItem = homeDAO.findController(controllerId);
             if (!controllerItem.isPresent()) {
@@ -48,13 +50,13 @@ public class ItemManagerImpl implements ItemManager {
                 return controllerItem.get();
             }
         } finally {
-            centralDatastore.commitTransaction();
+            centralDatastore.commitTransaction(ControllerItem.class, controllerId);
         }
     }
 
     @Override
     public PluginItem createOrUpdatePlugin(String controllerId, String pluginId, String name, Map<String, String> properties) throws HomeAutomationException {
-        centralDatastore.beginTransaction();
+        centralDatastore.beginTransaction(PluginItem.class, pluginKey(controllerId, pluginId));
         try {
             Optional<PluginItem> optionalPlugin = homeDAO.findPlugin(controllerId, pluginId);
             if (!optionalPlugin.isPresent()) {
@@ -74,7 +76,7 @@ public class ItemManagerImpl implements ItemManager {
                 }
             }
         } finally {
-            centralDatastore.commitTransaction();
+            centralDatastore.commitTransaction(PluginItem.class, pluginKey(controllerId, pluginId));
         }
     }
 
@@ -91,7 +93,7 @@ public class ItemManagerImpl implements ItemManager {
 
     @Override
     public DeviceItem createOrUpdateDevice(String controllerId, String pluginId, String deviceId, String name, Map<String, String> properties) throws HomeAutomationException {
-        centralDatastore.beginTransaction();
+        centralDatastore.beginTransaction(DeviceItem.class, deviceKey(controllerId, pluginId, deviceId));
         try {
             Optional<DeviceItem> deviceItem = homeDAO.findDevice(controllerId, pluginId, deviceId);
             if(deviceItem.isPresent()) {
@@ -112,7 +114,54 @@ public class ItemManagerImpl implements ItemManager {
                         name, properties));
             }
         } finally {
-            centralDatastore.commitTransaction();
+            centralDatastore.commitTransaction(DeviceItem.class, deviceKey(controllerId, pluginId, deviceId));
+        }
+    }
+
+    @Override
+    public List<DeviceItem> createOrUpdateDevices(String controllerId, String pluginId, List<Device> devices) throws HomeAutomationException {
+        List<String> deviceKeys = devices.stream().map(d -> deviceKey(controllerId, pluginId, d.getId()))
+                .distinct().sorted().collect(Collectors.toList());
+
+        //locks are taken in a fixed order so concurrent batches cannot deadlock
+        List<String> lockedKeys = new ArrayList<>();
+        try {
+            deviceKeys.forEach(k -> {
+                centralDatastore.beginTransaction(DeviceItem.class, k);
+                lockedKeys.add(k);
+            });
+
+            Map<String, DeviceItem> existingDevices = new HashMap<>();
+            homeDAO.findDevices(controllerId, pluginId).forEach(d -> existingDevices.put(d.getDeviceId(), d));
+
+            List<DeviceItem> results = new ArrayList<>(devices.size());
+            //a device listed more than once is only stored with its last version
+            Map<String, DeviceItem> changedDevices = new LinkedHashMap<>();
+            for(Device device : devices) {
+                DeviceItem item = existingDevices.get(device.getId());
+                if(item == null) {
+                    DeviceItem newItem = new DeviceItemImpl(generateId(), controllerId, pluginId, device.getId(),
+                            device.getName(), device.getProperties());
+                    changedDevices.put(device.getId(), newItem);
+                    results.add(newItem);
+                    existingDevices.put(device.getId(), newItem);
+                } else if(havePropertiesChanged(item.getProperties(), device.getProperties()) || !item.getName().equals(device.getName())) {
+                    DeviceItem updatedItem = new DeviceItemImpl(item.getId(), controllerId, pluginId, device.getId(),
+                            device.getName(), device.getProperties());
+                    changedDevices.put(device.getId(), updatedItem);
+                    results.add(updatedItem);
+                    existingDevices.put(device.getId(), updatedItem);
+                } else {
+                    results.add(item);
+                }
+            }
+
+            LOG.debug("Registering: {} devices for plugin: {}, {} new or changed", devices.size(), pluginId, changedDevices.size());
+            centralDatastore.store(new ArrayList<>(changedDevices.values()));
+
+            return results;
+        } finally {
+            lockedKeys.forEach(k -> centralDatastore.commitTransaction(DeviceItem.class, k));
         }
     }
 
@@ -145,9 +194,17 @@ public class ItemManagerImpl implements ItemManager {
         return UUID.randomUUID().toString();
     }
 
+    private static String pluginKey(String controllerId, String pluginId) {
+        return controllerId + "/" + pluginId;
+    }
+
+    private static String deviceKey(String controllerId, String pluginId, String deviceId) {
+        return controllerId + "/" + pluginId + "/" + deviceId;
+    }
+
     private boolean havePropertiesChanged(Map<String, String> previousProperties, Map<String, String> newProperties) {
         MapDifference<String, String> diff = Maps.difference(previousProperties, newProperties);
 
-        return !diff.entriesOnlyOnRight().isEmpty();
+        return !diff.entriesOnlyOnRight().isEmpty() || !diff.entriesDiffering().isEmpty();
     }
 }
@@ -5,25 +5,51 @@ import com.oberasoftware.base.event.EventHandler;
 import com.oberasoftware.base.event.impl.LocalEventBus;
 import com.oberasoftware.home.api.AutomationBus;
 import com.oberasoftware.home.api.exceptions.RuntimeHomeAutomationException;
+import com.oberasoftware.home.service.bus.PartitionedEventBus;
 import nl.renarj.core.utilities.StringUtils;
+import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 
+import static org.slf4j.LoggerFactory.getLogger;
+
 /**
  * @author renarj
  */
 @Component
 public class LocalAutomationBus implements AutomationBus {
+    private static final Logger LOG = getLogger(LocalAutomationBus.class);
+
+    private static final String PARTITIONED_MODE = "partitioned";
+
     @Autowired
     private LocalEventBus eventBus;
 
+    @Autowired
+    private PartitionedEventBus partitionedEventBus;
+
     @Value("${controller.id:}")
     private String controllerId;
 
+    @Value("${automation.bus.mode:local}")
+    private String busMode;
+
+    private boolean partitioned;
+
+    @PostConstruct
+    public void startBus() {
+        partitioned = PARTITIONED_MODE.equalsIgnoreCase(busMode);
+        LOG.info("Automation bus running in mode: {}", partitioned ? PARTITIONED_MODE : "local");
+        if(partitioned) {
+            partitionedEventBus.start();
+        }
+    }
+
     @Override
     public String getControllerId() {
         if(StringUtils.stringEmpty(controllerId)) {
@@ -39,11 +65,19 @@ public class LocalAutomationBus implements AutomationBus {
 
     @Override
     public void publish(Event event) {
-        eventBus.publish(event);
+        if(partitioned) {
+            partitionedEventBus.publish(event);
+        } else {
+            eventBus.publish(event);
+        }
     }
 
     @Override
     public void registerHandler(EventHandler handler) {
-        eventBus.registerHandler(handler);
+        if(partitioned) {
+            partitionedEventBus.registerHandler(handler);
+        } else {
+            eventBus.registerHandler(handler);
+        }
     }
 }
@@ -85,7 +85,8 @@ public class RuleManagerImpl implements RuleManager {
     public RuleItem store(RuleItem ruleItem) throws HomeAutomationException {
         RuleItem storeItem = preProcessRule(ruleItem);
 
-        centralDatastore.beginTransaction();
+        String ruleId = storeItem.getId();
+        centralDatastore.beginTransaction(RuleItemImpl.class, ruleId);
         try {
             RuleItem item = centralDatastore.store(storeItem);
             LOG.debug("Stored rule: {} triggering rule engine", item);
@@ -96,19 +97,19 @@ public class RuleManagerImpl implements RuleManager {
             LOG.error("Unable to store rule", e);
             throw new HomeAutomationException("Unable to store rule: " + ruleItem);
         } finally {
-            centralDatastore.commitTransaction();
+            centralDatastore.commitTransaction(RuleItemImpl.class, ruleId);
         }
     }
 
     @Override
     public void delete(String ruleId) {
-        centralDatastore.beginTransaction();
+        centralDatastore.beginTransaction(RuleItemImpl.class, ruleId);
         try {
             centralDatastore.delete(RuleItemImpl.class, ruleId);
         } catch (DataStoreException e) {
             throw new RuntimeHomeAutomationException("Unable to delete rule: " + ruleId);
         } finally {
-            centralDatastore.commitTransaction();
+            centralDatastore.commitTransaction(RuleItemImpl.class, ruleId);
 
             ruleEngine.removeRule(ruleId);
         }
@@ -1,24 +1,22 @@
 package com.oberasoftware.home.service;
 
-import com.google.common.collect.Maps;
 import com.oberasoftware.home.api.AutomationBus;
 import com.oberasoftware.home.api.events.devices.StateUpdateEvent;
 import com.oberasoftware.home.api.managers.StateManager;
 import com.oberasoftware.home.api.managers.StateStore;
 import com.oberasoftware.home.api.model.State;
+import com.oberasoftware.home.api.model.StateSnapshot;
 import com.oberasoftware.home.api.model.Status;
 import com.oberasoftware.home.api.model.storage.DeviceItem;
 import com.oberasoftware.home.api.types.Value;
-import com.oberasoftware.home.core.model.StateImpl;
-import com.oberasoftware.home.core.model.StateItemImpl;
+import com.oberasoftware.home.service.state.StateTable;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -29,7 +27,7 @@ import static org.slf4j.LoggerFactory.getLogger;
 public class StateManagerImpl implements StateManager {
     private static final Logger LOG = getLogger(StateManagerImpl.class);
 
-    private ConcurrentMap<String, StateImpl> itemStates = new ConcurrentHashMap<>();
+    private final StateTable stateTable = new StateTable();
 
     @Autowired(required = false)
     private List<StateStore> stateStores;
@@ -37,32 +35,45 @@ public class StateManagerImpl implements StateManager {
     @Autowired
     private AutomationBus automationBus;
 
+    @PostConstruct
+    public void restoreStates() {
+        if(stateStores != null) {
+            stateStores.stream().filter(s -> s.getSupportedOperations() == StateStore.SUPPORTED_OPERATIONS.READWRITE).forEach(s -> {
+                long start = System.currentTimeMillis();
+                Map<String, State> states = s.getStates();
+                states.values().forEach(state -> state.getStateItems()
+                        .forEach(i -> stateTable.update(state.getItemId(), i.getLabel(), i.getValue())));
+
+                LOG.info("Restored state of: {} items from: {} in: {} ms", states.size(), s.getClass().getSimpleName(),
+                        System.currentTimeMillis() - start);
+            });
+        }
+    }
+
     private boolean updateState(String itemId, String label, Value value) {
         LOG.debug("Updating state of item: {} with label: {} to value: {}", itemId, label, value);
-        itemStates.putIfAbsent(itemId, new StateImpl(itemId, Status.UNKNOWN));
-        StateImpl state = itemStates.get(itemId);
 
-        return state.updateIfChanged(label, new StateItemImpl(label, value));
+        return stateTable.update(itemId, label, value);
     }
 
 
     @Override
     public State updateItemState(String itemId, String label, Value value) {
         boolean updated = updateState(itemId, label, value);
-        State state = itemStates.get(itemId);
+        State state = stateTable.getStateView(itemId);
 
         if(updated) {
             automationBus.publish(new StateUpdateEvent(state));
         }
 
-        return itemStates.get(itemId);
+        return state;
     }
 
     @Override
     public State updateDeviceState(DeviceItem item, String label, Value value) {
         boolean updated = updateState(item.getId(), label, value);
 
-        StateImpl state = itemStates.get(item.getId());
+        State state = stateTable.getStateView(item.getId());
         if(updated) {
             updateStateStores(item, label, value);
 
@@ -74,31 +85,24 @@ public class StateManagerImpl implements StateManager {
 
     @Override
     public State updateStatus(DeviceItem item, Status newStatus) {
-        String itemId = item.getId();
-
-        if(itemStates.containsKey(itemId)) {
-            State oldState = itemStates.get(itemId);
-
-            StateImpl newState = new StateImpl(itemId, newStatus);
-            oldState.getStateItems().forEach(si -> newState.updateIfChanged(si.getLabel(), si));
-
-            itemStates.put(itemId, newState);
-        } else {
-            itemStates.put(itemId, new StateImpl(itemId, newStatus));
-        }
-
+        stateTable.updateStatus(item.getId(), newStatus);
 
         return null;
     }
 
     @Override
     public Map<String, State> getStates() {
-        return Maps.newHashMap(itemStates);
+        return stateTable.getSnapshot().getStates();
     }
 
     @Override
     public State getState(String itemId) {
-        return itemStates.get(itemId);
+        return stateTable.getState(itemId);
+    }
+
+    @Override
+    public StateSnapshot getSnapshot() {
+        return stateTable.getSnapshot();
     }
 
     private void updateStateStores(DeviceItem item, String label, Value value) {
@@ -4,16 +4,19 @@ import com.oberasoftware.home.api.exceptions.DataStoreException;
 import com.oberasoftware.home.api.exceptions.RuntimeHomeAutomationException;
 import com.oberasoftware.home.api.managers.UIManager;
 import com.oberasoftware.home.api.model.storage.Container;
+import com.oberasoftware.home.api.model.storage.HomeEntity;
 import com.oberasoftware.home.api.model.storage.MutableItem;
 import com.oberasoftware.home.api.model.storage.Widget;
 import com.oberasoftware.home.api.storage.CentralDatastore;
 import com.oberasoftware.home.api.storage.HomeDAO;
 import com.oberasoftware.home.core.model.storage.ContainerImpl;
+import com.oberasoftware.home.core.model.storage.DashboardImpl;
 import com.oberasoftware.home.core.model.storage.WidgetImpl;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,6 +25,10 @@ import java.util.Optional;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
+ * Writes that place an item in a container or dashboard also lock that parent, so an item can not be
+ * moved to or created in a parent that is being deleted. Locks are always taken from the dashboard down
+ * to the containers and widgets, the same order in which deletes lock them.
+ *
  * @author renarj
  */
 @Component
@@ -75,7 +82,7 @@ public class UIManagerImpl implements UIManager {
     }
 
     private <T extends MutableItem> void setItemProperty(Class<T> type, String itemId, String property, String value) {
-        centralDatastore.beginTransaction();
+        centralDatastore.beginTransaction(type, itemId);
         try {
             Optional<T> optionalItem = homeDAO.findItem(type, itemId);
             if(optionalItem.isPresent()) {
@@ -84,33 +91,44 @@ public class UIManagerImpl implements UIManager {
                 properties.put(property, value);
 
                 item.setProperties(properties);
-                store(item);
+                //the parent does not change, locking it here would take the locks out of order
+                storeItem(item);
             }
 
         } finally {
-            centralDatastore.commitTransaction();
+            centralDatastore.commitTransaction(type, itemId);
         }
     }
 
     @Override
     public void setParentContainer(String itemId, String parentContainerId) {
-        centralDatastore.beginTransaction();
+        centralDatastore.beginTransaction(ContainerImpl.class, parentContainerId);
         try {
-            Optional<WidgetImpl> item = homeDAO.findItem(WidgetImpl.class, itemId);
-            if (item.isPresent()) {
-                WidgetImpl uiItem = item.get();
-                uiItem.setContainerId(parentContainerId);
-                store(uiItem);
+            if(!homeDAO.findItem(ContainerImpl.class, parentContainerId).isPresent()) {
+                LOG.warn("Unable to move widget: {} container: {} does not exist", itemId, parentContainerId);
+                return;
+            }
+
+            centralDatastore.beginTransaction(WidgetImpl.class, itemId);
+            try {
+                Optional<WidgetImpl> item = homeDAO.findItem(WidgetImpl.class, itemId);
+                if (item.isPresent()) {
+                    WidgetImpl uiItem = item.get();
+                    uiItem.setContainerId(parentContainerId);
+                    storeItem(uiItem);
+                }
+            } finally {
+                centralDatastore.commitTransaction(WidgetImpl.class, itemId);
             }
         } finally {
-            centralDatastore.commitTransaction();
+            centralDatastore.commitTransaction(ContainerImpl.class, parentContainerId);
         }
     }
 
 
     @Override
     public void deleteContainer(String containerId) {
-        centralDatastore.beginTransaction();
+        centralDatastore.beginTransaction(ContainerImpl.class, containerId);
         try {
             List<Container> children = getChildren(containerId);
             children.forEach(c -> deleteContainer(c.getId()));
@@ -118,7 +136,7 @@ public class UIManagerImpl implements UIManager {
             getItems(containerId).forEach(i -> delete(WidgetImpl.class, i.getId()));
             delete(ContainerImpl.class, containerId);
         } finally {
-            centralDatastore.commitTransaction();
+            centralDatastore.commitTransaction(ContainerImpl.class, containerId);
         }
     }
 
@@ -128,20 +146,40 @@ public class UIManagerImpl implements UIManager {
     }
 
     private void delete(Class<?> type, String itemId) {
-        centralDatastore.beginTransaction();
+        centralDatastore.beginTransaction(type, itemId);
         try {
 
             centralDatastore.delete(type, itemId);
         } catch (DataStoreException e) {
             LOG.error("", e);
         } finally {
-            centralDatastore.commitTransaction();
+            centralDatastore.commitTransaction(type, itemId);
         }
     }
 
     @Override
     public <T extends MutableItem> T store(T item) {
-        centralDatastore.beginTransaction();
+        List<ParentKey> parents = getParents(item);
+        parents.forEach(p -> centralDatastore.beginTransaction(p.type, p.id));
+        try {
+            Optional<ParentKey> missingParent = parents.stream()
+                    .filter(p -> !homeDAO.findItem(p.type, p.id).isPresent()).findFirst();
+            if(missingParent.isPresent()) {
+                LOG.warn("Unable to store item: {} parent: {} does not exist", item.getId(), missingParent.get().id);
+                return null;
+            }
+
+            return storeItem(item);
+        } finally {
+            for(int i = parents.size() - 1; i >= 0; i--) {
+                centralDatastore.commitTransaction(parents.get(i).type, parents.get(i).id);
+            }
+        }
+    }
+
+    private <T extends MutableItem> T storeItem(T item) {
+        String itemId = item.getId();
+        centralDatastore.beginTransaction(item.getClass(), itemId);
         try {
             return centralDatastore.store(item);
         } catch (DataStoreException e) {
@@ -149,8 +187,36 @@ public class UIManagerImpl implements UIManager {
         } catch(Exception ex) {
             LOG.error("", ex);
         } finally {
-            centralDatastore.commitTransaction();
+            centralDatastore.commitTransaction(item.getClass(), itemId);
         }
         return null;
     }
+
+    private static List<ParentKey> getParents(MutableItem item) {
+        List<ParentKey> parents = new ArrayList<>();
+        if(item instanceof Container) {
+            Container container = (Container) item;
+            addParent(parents, DashboardImpl.class, container.getDashboardId());
+            addParent(parents, ContainerImpl.class, container.getParentContainerId());
+        } else if(item instanceof Widget) {
+            addParent(parents, ContainerImpl.class, ((Widget) item).getContainerId());
+        }
+        return parents;
+    }
+
+    private static void addParent(List<ParentKey> parents, Class<? extends HomeEntity> type, String id) {
+        if(id != null && !id.isEmpty()) {
+            parents.add(new ParentKey(type, id));
+        }
+    }
+
+    private static final class ParentKey {
+        private final Class<? extends HomeEntity> type;
+        private final String id;
+
+        private ParentKey(Class<? extends HomeEntity> type, String id) {
+            this.type = type;
+            this.id = id;
+        }
+    }
 }
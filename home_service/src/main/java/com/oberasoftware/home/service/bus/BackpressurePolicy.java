@@ -0,0 +1,32 @@
+package com.oberasoftware.home.service.bus;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Determines what happens when an event is published on a partition that has reached its queue depth.
+ *
+ * @author renarj
+ */
+public enum BackpressurePolicy {
+    /**
+     * The publishing thread waits until the partition has room again. Events published by a bus worker
+     * do not wait, they may overflow the partition up to twice its depth after which the oldest event is dropped.
+     */
+    BLOCK,
+
+    /**
+     * The oldest pending event on the partition is dropped to make room
+     */
+    DROP_OLDEST,
+
+    /**
+     * A pending value or state event for the same item and label is replaced by the newer one,
+     * any other event waits for room like {@link #BLOCK}
+     */
+    COALESCE;
+
+    public static BackpressurePolicy fromName(String name) {
+        return asList(values()).stream().filter(p -> p.name().equalsIgnoreCase(name))
+                .findFirst().orElseGet(() -> BLOCK);
+    }
+}
@@ -0,0 +1,25 @@
+package com.oberasoftware.home.service.bus;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * @author renarj
+ */
+@RestController
+@RequestMapping("/bus")
+public class BusRestController {
+    @Autowired
+    private PartitionedEventBus partitionedEventBus;
+
+    /**
+     * @return The queue size, lag and drop counters of each partition, empty when the bus is not partitioned
+     */
+    @RequestMapping("/partitions")
+    public List<PartitionStats> getPartitionStats() {
+        return partitionedEventBus.getPartitionStats();
+    }
+}
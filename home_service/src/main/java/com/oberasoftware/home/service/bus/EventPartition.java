@@ -0,0 +1,202 @@
+package com.oberasoftware.home.service.bus;
+
+import com.oberasoftware.base.event.Event;
+import org.slf4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * A single ordered lane of the {@link PartitionedEventBus}, events are queued and dispatched
+ * one at a time by a dedicated worker thread.
+ *
+ * @author renarj
+ */
+class EventPartition implements Runnable {
+    private static final Logger LOG = getLogger(EventPartition.class);
+
+    private final int partition;
+    private final int queueDepth;
+    private final int overflowDepth;
+    private final BackpressurePolicy policy;
+    private final BiConsumer<Event, Object[]> dispatcher;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private final Deque<PendingEvent> queue = new ArrayDeque<>();
+    private final Map<Object, PendingEvent> pendingByKey = new HashMap<>();
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private volatile long lastLagNanos;
+    private volatile long maxLagNanos;
+
+    private volatile boolean running = true;
+
+    EventPartition(int partition, int queueDepth, BackpressurePolicy policy, BiConsumer<Event, Object[]> dispatcher) {
+        this.partition = partition;
+        this.queueDepth = queueDepth;
+        this.overflowDepth = queueDepth * 2;
+        this.policy = policy;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Queues an event for dispatch on this partition.
+     *
+     * @param event The event to dispatch
+     * @param args The additional arguments passed to the event handlers
+     * @param coalesceKey The key identifying events that may replace each other, null if the event cannot be coalesced
+     * @param reentrant True if the event is published from a bus worker, these never wait for room to prevent
+     *                  a worker from waiting on its own queue. They may fill the queue up to twice its depth,
+     *                  beyond that the oldest pending event is dropped.
+     * @return True if the event was queued or coalesced, false if the partition was shut down
+     */
+    boolean offer(Event event, Object[] args, Object coalesceKey, boolean reentrant) {
+        lock.lock();
+        try {
+            if(coalesceKey != null && policy == BackpressurePolicy.COALESCE) {
+                PendingEvent pending = pendingByKey.get(coalesceKey);
+                if(pending != null) {
+                    pending.event = event;
+                    pending.args = args;
+                    coalesced.incrementAndGet();
+                    return true;
+                }
+            }
+
+            while(running && queue.size() >= queueDepth) {
+                if(policy == BackpressurePolicy.DROP_OLDEST || (reentrant && queue.size() >= overflowDepth)) {
+                    PendingEvent droppedEvent = queue.pollFirst();
+                    removeKey(droppedEvent);
+                    dropped.incrementAndGet();
+                    LOG.debug("Partition: {} is full, dropped event: {}", partition, droppedEvent.event);
+                } else if(reentrant) {
+                    break;
+                } else {
+                    notFull.awaitUninterruptibly();
+                }
+            }
+            if(!running) {
+                LOG.warn("Partition: {} is shut down, not dispatching event: {}", partition, event);
+                return false;
+            }
+
+            PendingEvent pendingEvent = new PendingEvent(event, args, coalesceKey, System.nanoTime());
+            queue.addLast(pendingEvent);
+            if(coalesceKey != null && policy == BackpressurePolicy.COALESCE) {
+                pendingByKey.put(coalesceKey, pendingEvent);
+            }
+            notEmpty.signal();
+
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void run() {
+        LOG.debug("Starting event partition: {}", partition);
+        PendingEvent pendingEvent;
+        while((pendingEvent = take()) != null) {
+            long lag = System.nanoTime() - pendingEvent.enqueued;
+            lastLagNanos = lag;
+            if(lag > maxLagNanos) {
+                maxLagNanos = lag;
+            }
+
+            try {
+                dispatcher.accept(pendingEvent.event, pendingEvent.args);
+            } catch(RuntimeException e) {
+                LOG.error("Unable to dispatch event: " + pendingEvent.event, e);
+            }
+            processed.incrementAndGet();
+        }
+        LOG.debug("Event partition: {} stopped", partition);
+    }
+
+    private PendingEvent take() {
+        lock.lock();
+        try {
+            while(queue.isEmpty()) {
+                if(!running) {
+                    return null;
+                }
+                notEmpty.awaitUninterruptibly();
+            }
+
+            PendingEvent pendingEvent = queue.pollFirst();
+            removeKey(pendingEvent);
+            notFull.signal();
+
+            return pendingEvent;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeKey(PendingEvent pendingEvent) {
+        if(pendingEvent.coalesceKey != null) {
+            pendingByKey.remove(pendingEvent.coalesceKey, pendingEvent);
+        }
+    }
+
+    /**
+     * Stops accepting new events, the worker finishes dispatching the events that are already queued
+     */
+    void shutdown() {
+        lock.lock();
+        try {
+            running = false;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    PartitionStats getStats() {
+        lock.lock();
+        try {
+            PendingEvent oldest = queue.peekFirst();
+            long pendingLag = oldest != null ? System.nanoTime() - oldest.enqueued : 0;
+
+            return new PartitionStats(partition, queue.size(), toMillis(pendingLag), toMillis(lastLagNanos),
+                    toMillis(maxLagNanos), processed.get(), dropped.get(), coalesced.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static class PendingEvent {
+        private Event event;
+        private Object[] args;
+        private final Object coalesceKey;
+        private final long enqueued;
+
+        private PendingEvent(Event event, Object[] args, Object coalesceKey, long enqueued) {
+            this.event = event;
+            this.args = args;
+            this.coalesceKey = coalesceKey;
+            this.enqueued = enqueued;
+        }
+    }
+}
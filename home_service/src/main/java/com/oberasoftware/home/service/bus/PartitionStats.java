@@ -0,0 +1,81 @@
+package com.oberasoftware.home.service.bus;
+
+/**
+ * Point in time metrics of a single partition of the {@link PartitionedEventBus}
+ *
+ * @author renarj
+ */
+public class PartitionStats {
+    private final int partition;
+    private final int queueSize;
+    private final long pendingLagMillis;
+    private final long lastLagMillis;
+    private final long maxLagMillis;
+    private final long processed;
+    private final long dropped;
+    private final long coalesced;
+
+    public PartitionStats(int partition, int queueSize, long pendingLagMillis, long lastLagMillis, long maxLagMillis,
+                          long processed, long dropped, long coalesced) {
+        this.partition = partition;
+        this.queueSize = queueSize;
+        this.pendingLagMillis = pendingLagMillis;
+        this.lastLagMillis = lastLagMillis;
+        this.maxLagMillis = maxLagMillis;
+        this.processed = processed;
+        this.dropped = dropped;
+        this.coalesced = coalesced;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * @return The time the oldest pending event on this partition has been waiting for dispatch
+     */
+    public long getPendingLagMillis() {
+        return pendingLagMillis;
+    }
+
+    /**
+     * @return The time the last dispatched event waited in the queue before dispatch started
+     */
+    public long getLastLagMillis() {
+        return lastLagMillis;
+    }
+
+    public long getMaxLagMillis() {
+        return maxLagMillis;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    @Override
+    public String toString() {
+        return "PartitionStats{" +
+                "partition=" + partition +
+                ", queueSize=" + queueSize +
+                ", pendingLagMillis=" + pendingLagMillis +
+                ", lastLagMillis=" + lastLagMillis +
+                ", maxLagMillis=" + maxLagMillis +
+                ", processed=" + processed +
+                ", dropped=" + dropped +
+                ", coalesced=" + coalesced +
+                '}';
+    }
+}
@@ -0,0 +1,267 @@
+package com.oberasoftware.home.service.bus;
+
+import com.google.common.reflect.TypeToken;
+import com.oberasoftware.base.event.Event;
+import com.oberasoftware.base.event.EventBus;
+import com.oberasoftware.base.event.EventFilter;
+import com.oberasoftware.base.event.EventHandler;
+import com.oberasoftware.base.event.EventSubscribe;
+import com.oberasoftware.base.event.HandlerEntry;
+import com.oberasoftware.base.event.impl.HandlerEntryImpl;
+import com.oberasoftware.home.api.events.DeviceEvent;
+import com.oberasoftware.home.api.events.ItemEvent;
+import com.oberasoftware.home.api.events.ValueEvent;
+import com.oberasoftware.home.api.events.devices.StateUpdateEvent;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.stream;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Event bus that dispatches events on a fixed number of partitions, each served by a single worker thread.
+ * Events are hashed on their item or device id, so all events of a single item or device are handled in
+ * publish order while events of different devices are handled in parallel. Events without an item or device
+ * id are all handled on the first partition, so they also keep their publish order.
+ *
+ * @author renarj
+ */
+@Component
+public class PartitionedEventBus implements EventBus {
+    private static final Logger LOG = getLogger(PartitionedEventBus.class);
+
+    private static final ThreadLocal<Boolean> BUS_WORKER = new ThreadLocal<>();
+
+    @Autowired(required = false)
+    private List<EventHandler> eventHandlers;
+
+    @Autowired(required = false)
+    private List<EventFilter> eventFilters;
+
+    @Value("${automation.bus.partitions:0}")
+    private int partitionCount;
+
+    @Value("${automation.bus.queue.depth:1000}")
+    private int queueDepth;
+
+    @Value("${automation.bus.backpressure:block}")
+    private String backpressure;
+
+    private final Map<Class<?>, List<HandlerEntry>> handlerEntries = new ConcurrentHashMap<>();
+    private final Map<Class<?>, List<HandlerEntry>> resolvedHandlers = new ConcurrentHashMap<>();
+    private final List<EventFilter> activeFilters = new CopyOnWriteArrayList<>();
+
+    private volatile List<EventPartition> partitions = new ArrayList<>();
+    private List<Thread> workers = new ArrayList<>();
+
+    public synchronized void start() {
+        if(!partitions.isEmpty()) {
+            return;
+        }
+
+        int count = partitionCount > 0 ? partitionCount : Runtime.getRuntime().availableProcessors();
+        BackpressurePolicy policy = BackpressurePolicy.fromName(backpressure);
+        LOG.info("Starting partitioned event bus with: {} partitions, queue depth: {} and backpressure policy: {}",
+                count, queueDepth, policy);
+
+        if(eventHandlers != null) {
+            eventHandlers.forEach(this::registerHandler);
+        }
+        if(eventFilters != null) {
+            eventFilters.forEach(this::registerFilter);
+        }
+
+        List<EventPartition> newPartitions = new ArrayList<>();
+        for(int i=0; i<count; i++) {
+            EventPartition partition = new EventPartition(i, queueDepth, policy, this::dispatch);
+            newPartitions.add(partition);
+
+            Thread worker = new Thread(() -> {
+                BUS_WORKER.set(true);
+                partition.run();
+            }, "automation-bus-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+        }
+        partitions = newPartitions;
+        workers.forEach(Thread::start);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        LOG.info("Stopping partitioned event bus, draining pending events");
+        partitions.forEach(EventPartition::shutdown);
+        workers.forEach(w -> {
+            try {
+                w.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        workers.clear();
+    }
+
+    @Override
+    public void publish(Event event, Object... args) {
+        List<EventPartition> currentPartitions = partitions;
+        if(currentPartitions.isEmpty()) {
+            LOG.warn("Partitioned event bus is not started, cannot publish event: {}", event);
+            return;
+        }
+
+        Optional<String> key = getPartitionKey(event);
+        int index = key.isPresent() ? Math.abs(key.get().hashCode() % currentPartitions.size()) : 0;
+        EventPartition partition = currentPartitions.get(index);
+
+        partition.offer(event, args, getCoalesceKey(event, key), BUS_WORKER.get() != null);
+    }
+
+    @Override
+    public void registerHandler(EventHandler handler) {
+        LOG.debug("Registering handler: {}", handler);
+        stream(handler.getClass().getMethods())
+                .filter(m -> m.getDeclaredAnnotation(EventSubscribe.class) != null)
+                .filter(m -> !m.isBridge())
+                .forEach(m -> addHandlerEntry(handler, m));
+        resolvedHandlers.clear();
+    }
+
+    @Override
+    public void registerFilter(EventFilter filter) {
+        LOG.debug("Registering filter: {}", filter);
+        activeFilters.add(filter);
+    }
+
+    public List<PartitionStats> getPartitionStats() {
+        return partitions.stream().map(EventPartition::getStats).collect(Collectors.toList());
+    }
+
+    private void addHandlerEntry(Object handler, Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        if(parameterTypes.length > 0) {
+            LOG.debug("Handler: {} interested in message type: {}", handler, parameterTypes[0].getSimpleName());
+            handlerEntries.computeIfAbsent(parameterTypes[0], t -> new CopyOnWriteArrayList<>())
+                    .add(new HandlerEntryImpl(handler, method));
+        }
+    }
+
+    private void dispatch(Event event, Object[] args) {
+        for(HandlerEntry entry : resolvedHandlers.computeIfAbsent(event.getClass(), this::resolveHandlers)) {
+            if(!isFiltered(entry, event)) {
+                try {
+                    handleResult(entry.executeHandler(event, args));
+                } catch(RuntimeException e) {
+                    LOG.error("Handler: " + entry + " failed on event: " + event, e);
+                }
+            }
+        }
+    }
+
+    private List<HandlerEntry> resolveHandlers(Class<?> eventType) {
+        Set<String> handlerNames = new HashSet<>();
+        List<HandlerEntry> handlers = new ArrayList<>();
+
+        for(TypeToken<?> t : TypeToken.of(eventType).getTypes()) {
+            for(HandlerEntry entry : handlerEntries.getOrDefault(t.getRawType(), new ArrayList<>())) {
+                String handlerName = entry.getListenerInstance().getClass().getName() + "." + entry.getEventMethod().getName();
+                if(handlerNames.add(handlerName)) {
+                    handlers.add(entry);
+                }
+            }
+        }
+        LOG.debug("Resolved handlers: {} for event type: {}", handlers, eventType);
+
+        return handlers;
+    }
+
+    private boolean isFiltered(HandlerEntry entry, Event event) {
+        return activeFilters.stream().anyMatch(f -> f.isFiltered(event, entry));
+    }
+
+    private void handleResult(Optional<?> result) {
+        if(result.isPresent()) {
+            Object value = result.get();
+            if(value instanceof Collection) {
+                ((Collection<?>) value).forEach(this::publishResult);
+            } else {
+                publishResult(value);
+            }
+        }
+    }
+
+    private void publishResult(Object result) {
+        if(result instanceof Event) {
+            LOG.debug("Handler produced a result of type Event, sending to bus: {}", result);
+            publish((Event) result);
+        }
+    }
+
+    private Optional<String> getPartitionKey(Event event) {
+        if(event instanceof ItemEvent) {
+            return Optional.ofNullable(((ItemEvent) event).getItemId());
+        } else if(event instanceof DeviceEvent) {
+            DeviceEvent deviceEvent = (DeviceEvent) event;
+            return Optional.of(deviceEvent.getPluginId() + "/" + deviceEvent.getDeviceId());
+        }
+        return Optional.empty();
+    }
+
+    private Object getCoalesceKey(Event event, Optional<String> key) {
+        if(key.isPresent()) {
+            if(event instanceof ValueEvent) {
+                return new CoalesceKey(event.getClass(), key.get(), ((ValueEvent) event).getLabel());
+            } else if(event instanceof StateUpdateEvent) {
+                return new CoalesceKey(event.getClass(), key.get(), null);
+            }
+        }
+        return null;
+    }
+
+    private static final class CoalesceKey {
+        private final Class<?> eventType;
+        private final String key;
+        private final String label;
+
+        private CoalesceKey(Class<?> eventType, String key, String label) {
+            this.eventType = eventType;
+            this.key = key;
+            this.label = label;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            CoalesceKey that = (CoalesceKey) o;
+
+            if (!eventType.equals(that.eventType)) return false;
+            if (!key.equals(that.key)) return false;
+            return Objects.equals(label, that.label);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = eventType.hashCode();
+            result = 31 * result + key.hashCode();
+            result = 31 * result + Objects.hashCode(label);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.oberasoftware.home.service.startup;
+
+/**
+ * Timing of the activation of a single extension, all durations are in ms and are -1 while the step
+ * has not been reached.
+ *
+ * @author renarj
+ */
+public class ExtensionTiming {
+    public enum STATUS {
+        PENDING,
+        ACTIVE,
+        FAILED
+    }
+
+    private final String extensionId;
+    private final long created = System.currentTimeMillis();
+
+    private volatile long started = -1;
+    private volatile long activated = -1;
+    private volatile long ready = -1;
+    private volatile long finished = -1;
+    private volatile STATUS status = STATUS.PENDING;
+
+    public ExtensionTiming(String extensionId) {
+        this.extensionId = extensionId;
+    }
+
+    public void started() {
+        started = System.currentTimeMillis();
+    }
+
+    public void activated() {
+        activated = System.currentTimeMillis();
+    }
+
+    public void ready() {
+        ready = System.currentTimeMillis();
+    }
+
+    public void finished(boolean success) {
+        finished = System.currentTimeMillis();
+        status = success ? STATUS.ACTIVE : STATUS.FAILED;
+    }
+
+    public String getExtensionId() {
+        return extensionId;
+    }
+
+    public STATUS getStatus() {
+        return status;
+    }
+
+    /**
+     * @return Time spent waiting for the dependencies of the extension
+     */
+    public long getDependencyWait() {
+        return duration(created, started);
+    }
+
+    /**
+     * @return Time spent registering and activating the extension
+     */
+    public long getActivation() {
+        return duration(started, activated);
+    }
+
+    /**
+     * @return Time between activation and the extension reporting it is ready
+     */
+    public long getReadyWait() {
+        return duration(activated, ready);
+    }
+
+    /**
+     * @return Time spent registering the devices of the extension
+     */
+    public long getDeviceRegistration() {
+        return duration(ready, finished);
+    }
+
+    public long getTotal() {
+        return duration(created, finished);
+    }
+
+    private static long duration(long from, long to) {
+        return from >= 0 && to >= 0 ? to - from : -1;
+    }
+
+    @Override
+    public String toString() {
+        return "ExtensionTiming{" +
+                "extensionId='" + extensionId + '\'' +
+                ", status=" + status +
+                ", dependencyWait=" + getDependencyWait() +
+                ", activation=" + getActivation() +
+                ", readyWait=" + getReadyWait() +
+                ", deviceRegistration=" + getDeviceRegistration() +
+                ", total=" + getTotal() +
+                '}';
+    }
+}
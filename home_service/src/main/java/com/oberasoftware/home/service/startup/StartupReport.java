@@ -0,0 +1,95 @@
+package com.oberasoftware.home.service.startup;
+
+import org.slf4j.Logger;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Collects the timings of the startup phases, the activation of the extensions and the initialisation of
+ * the slowest Spring beans, which are logged as a single report once startup has finished.
+ *
+ * @author renarj
+ */
+@Component
+public class StartupReport implements BeanPostProcessor {
+    private static final Logger LOG = getLogger(StartupReport.class);
+
+    private static final int SLOWEST_BEANS = 10;
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private final List<ExtensionTiming> extensionTimings = new CopyOnWriteArrayList<>();
+
+    private final ConcurrentMap<String, Long> beanInitStarts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> beanInitTimes = new ConcurrentHashMap<>();
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        beanInitStarts.put(beanName, System.nanoTime());
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        Long start = beanInitStarts.remove(beanName);
+        if(start != null) {
+            beanInitTimes.put(beanName, (System.nanoTime() - start) / 1000000);
+        }
+        return bean;
+    }
+
+    public synchronized void recordPhase(String phase, long durationMs) {
+        phases.put(phase, durationMs);
+    }
+
+    public ExtensionTiming startExtension(String extensionId) {
+        ExtensionTiming timing = new ExtensionTiming(extensionId);
+        extensionTimings.add(timing);
+        return timing;
+    }
+
+    public synchronized Map<String, Long> getPhases() {
+        return new LinkedHashMap<>(phases);
+    }
+
+    public List<ExtensionTiming> getExtensionTimings() {
+        return new ArrayList<>(extensionTimings);
+    }
+
+    public List<Map.Entry<String, Long>> getSlowestBeans() {
+        List<Map.Entry<String, Long>> beans = new ArrayList<>(beanInitTimes.entrySet());
+        beans.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        return beans.subList(0, Math.min(SLOWEST_BEANS, beans.size()));
+    }
+
+    public void log() {
+        StringBuilder report = new StringBuilder("Startup report");
+
+        report.append("\n  Phases (ms):");
+        getPhases().forEach((phase, duration) -> report.append(String.format("%n    %-30s %8d", phase, duration)));
+
+        report.append("\n  Extensions (ms):");
+        report.append(String.format("%n    %-20s %-8s %10s %10s %10s %10s %10s", "extension", "status",
+                "depends", "activate", "ready", "devices", "total"));
+        List<ExtensionTiming> timings = getExtensionTimings();
+        timings.sort(Comparator.comparingLong(ExtensionTiming::getTotal).reversed());
+        timings.forEach(t -> report.append(String.format("%n    %-20s %-8s %10d %10d %10d %10d %10d", t.getExtensionId(),
+                t.getStatus(), t.getDependencyWait(), t.getActivation(), t.getReadyWait(), t.getDeviceRegistration(), t.getTotal())));
+
+        report.append("\n  Slowest bean initialisations (ms):");
+        getSlowestBeans().forEach(b -> report.append(String.format("%n    %-50s %8d", b.getKey(), b.getValue())));
+
+        LOG.info(report.toString());
+    }
+}
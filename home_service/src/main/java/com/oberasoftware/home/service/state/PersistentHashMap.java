@@ -0,0 +1,220 @@
+package com.oberasoftware.home.service.state;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable hash array mapped trie, a put or remove returns a new map that shares all unchanged nodes
+ * with the previous map. This makes taking a point in time view of the map a matter of keeping a reference.
+ *
+ * Keys and values cannot be null.
+ *
+ * @author renarj
+ */
+final class PersistentHashMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final int MAX_SHIFT = 30;
+
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(Node.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(Object key) {
+        return (V) root.find(hash(key), key, 0);
+    }
+
+    PersistentHashMap<K, V> put(K key, V value) {
+        boolean[] added = new boolean[1];
+        Node newRoot = root.put(hash(key), key, value, 0, added);
+        return newRoot == root ? this : new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    PersistentHashMap<K, V> remove(Object key) {
+        Node newRoot = root.remove(hash(key), key, 0);
+        return newRoot == root ? this : new PersistentHashMap<>(newRoot, size - 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Node of the trie, the array holds a key and value pair per entry. A pair with a null key
+     * holds a child node as value. Below the maximum shift all hash bits are used, the node then
+     * holds the colliding keys without a bitmap.
+     */
+    private static final class Node {
+        private static final Node EMPTY = new Node(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] array;
+
+        private Node(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private Object find(int hash, Object key, int shift) {
+            Node node = this;
+            while(true) {
+                if(shift > MAX_SHIFT) {
+                    for(int i=0; i<node.array.length; i+=2) {
+                        if(key.equals(node.array[i])) {
+                            return node.array[i + 1];
+                        }
+                    }
+                    return null;
+                }
+
+                int bit = bit(hash, shift);
+                if((node.bitmap & bit) == 0) {
+                    return null;
+                }
+
+                int index = node.index(bit);
+                Object k = node.array[index];
+                if(k == null) {
+                    node = (Node) node.array[index + 1];
+                    shift += BITS;
+                } else {
+                    return key.equals(k) ? node.array[index + 1] : null;
+                }
+            }
+        }
+
+        private Node put(int hash, Object key, Object value, int shift, boolean[] added) {
+            if(shift > MAX_SHIFT) {
+                for(int i=0; i<array.length; i+=2) {
+                    if(key.equals(array[i])) {
+                        return array[i + 1] == value ? this : with(i + 1, value);
+                    }
+                }
+                added[0] = true;
+                return insert(array.length, key, value, 0);
+            }
+
+            int bit = bit(hash, shift);
+            int index = index(bit);
+            if((bitmap & bit) == 0) {
+                added[0] = true;
+                return insert(index, key, value, bit);
+            }
+
+            Object k = array[index];
+            Object v = array[index + 1];
+            if(k == null) {
+                Node child = (Node) v;
+                Node newChild = child.put(hash, key, value, shift + BITS, added);
+                return newChild == child ? this : with(index + 1, newChild);
+            } else if(key.equals(k)) {
+                return v == value ? this : with(index + 1, value);
+            }
+
+            //two different keys in the same position, push both down into a new child node
+            Node child = EMPTY.put(hash(k), k, v, shift + BITS, new boolean[1])
+                    .put(hash, key, value, shift + BITS, added);
+            Object[] newArray = array.clone();
+            newArray[index] = null;
+            newArray[index + 1] = child;
+            return new Node(bitmap, newArray);
+        }
+
+        private Node remove(int hash, Object key, int shift) {
+            if(shift > MAX_SHIFT) {
+                for(int i=0; i<array.length; i+=2) {
+                    if(key.equals(array[i])) {
+                        return without(i, 0);
+                    }
+                }
+                return this;
+            }
+
+            int bit = bit(hash, shift);
+            if((bitmap & bit) == 0) {
+                return this;
+            }
+
+            int index = index(bit);
+            Object k = array[index];
+            if(k == null) {
+                Node child = (Node) array[index + 1];
+                Node newChild = child.remove(hash, key, shift + BITS);
+                if(newChild == child) {
+                    return this;
+                } else if(newChild.array.length == 0) {
+                    return without(index, bit);
+                } else if(newChild.array.length == 2 && newChild.array[0] != null) {
+                    //a single remaining key moves up into this node
+                    Object[] newArray = array.clone();
+                    newArray[index] = newChild.array[0];
+                    newArray[index + 1] = newChild.array[1];
+                    return new Node(bitmap, newArray);
+                }
+                return with(index + 1, newChild);
+            }
+            return key.equals(k) ? without(index, bit) : this;
+        }
+
+        private void forEach(BiConsumer<Object, Object> action) {
+            for(int i=0; i<array.length; i+=2) {
+                if(array[i] == null) {
+                    ((Node) array[i + 1]).forEach(action);
+                } else {
+                    action.accept(array[i], array[i + 1]);
+                }
+            }
+        }
+
+        private Node with(int index, Object value) {
+            Object[] newArray = array.clone();
+            newArray[index] = value;
+            return new Node(bitmap, newArray);
+        }
+
+        private Node without(int index, int bit) {
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, index);
+            System.arraycopy(array, index + 2, newArray, index, array.length - index - 2);
+            return new Node(bitmap & ~bit, newArray);
+        }
+
+        private Node insert(int index, Object key, Object value, int bit) {
+            Object[] newArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, newArray, 0, index);
+            newArray[index] = key;
+            newArray[index + 1] = value;
+            System.arraycopy(array, index, newArray, index + 2, array.length - index);
+            return new Node(bitmap | bit, newArray);
+        }
+
+        private int index(int bit) {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+    }
+}
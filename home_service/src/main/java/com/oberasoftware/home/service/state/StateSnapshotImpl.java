@@ -0,0 +1,121 @@
+package com.oberasoftware.home.service.state;
+
+import com.oberasoftware.home.api.model.State;
+import com.oberasoftware.home.api.model.StateSnapshot;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * @author renarj
+ */
+class StateSnapshotImpl implements StateSnapshot {
+    private final PersistentHashMap<String, VersionedState> states;
+    private final long version;
+
+    StateSnapshotImpl(PersistentHashMap<String, VersionedState> states, long version) {
+        this.states = states;
+        this.version = version;
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public State getState(String itemId) {
+        VersionedState state = states.get(itemId);
+        return state != null ? state.getState() : null;
+    }
+
+    @Override
+    public Map<String, State> getStates() {
+        return new StateMap();
+    }
+
+    @Override
+    public Map<String, State> getChangesSince(long version) {
+        Map<String, State> changes = new HashMap<>();
+        states.forEach((itemId, state) -> {
+            if(state.getVersion() > version) {
+                changes.put(itemId, state.getState());
+            }
+        });
+        return changes;
+    }
+
+    @Override
+    public String toString() {
+        return "StateSnapshotImpl{" +
+                "version=" + version +
+                ", items=" + states.size() +
+                '}';
+    }
+
+    /**
+     * Read only map view on the snapshot, lookups go directly to the snapshot and the entries are
+     * only collected when the map is iterated
+     */
+    private class StateMap extends AbstractMap<String, State> {
+        private Set<Entry<String, State>> entries;
+
+        @Override
+        public State get(Object key) {
+            VersionedState state = states.get(key);
+            return state != null ? state.getState() : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return states.get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return states.size();
+        }
+
+        @Override
+        public Set<Entry<String, State>> entrySet() {
+            if(entries == null) {
+                Map<String, State> copy = new HashMap<>();
+                states.forEach((itemId, state) -> copy.put(itemId, state.getState()));
+                entries = Collections.unmodifiableMap(copy).entrySet();
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * A published version of the state of an item, the state is built on first access
+     */
+    static final class VersionedState {
+        private final Supplier<State> stateSupplier;
+        private final long version;
+        private volatile State state;
+
+        VersionedState(Supplier<State> stateSupplier, long version) {
+            this.stateSupplier = stateSupplier;
+            this.version = version;
+        }
+
+        State getState() {
+            State current = state;
+            if(current == null) {
+                //concurrent readers may both build the state, they build an equal immutable state
+                current = stateSupplier.get();
+                state = current;
+            }
+            return current;
+        }
+
+        long getVersion() {
+            return version;
+        }
+    }
+}
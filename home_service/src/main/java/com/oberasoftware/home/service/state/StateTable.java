@@ -0,0 +1,278 @@
+package com.oberasoftware.home.service.state;
+
+import com.oberasoftware.home.api.model.State;
+import com.oberasoftware.home.api.model.StateItem;
+import com.oberasoftware.home.api.model.StateSnapshot;
+import com.oberasoftware.home.api.model.Status;
+import com.oberasoftware.home.api.types.VALUE_TYPE;
+import com.oberasoftware.home.api.types.Value;
+import com.oberasoftware.home.core.model.ImmutableState;
+import com.oberasoftware.home.core.model.StateItemImpl;
+import com.oberasoftware.home.core.types.ValueImpl;
+import com.oberasoftware.home.service.state.StateSnapshotImpl.VersionedState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Table holding the current state of all items. Item ids are interned to int handles, each item row maps
+ * its own labels case insensitively to slots and keeps numeric values in primitive slots, so checking and
+ * applying an update does not allocate. When an item changes a frozen copy of its row is published in a
+ * new versioned {@link StateSnapshot} that shares all unchanged items with the previous snapshot, the
+ * immutable {@link State} of a version is only built when it is read. The frozen copy shares the kinds,
+ * types and labels of a row, those are only copied again when one of them changes.
+ *
+ * @author renarj
+ */
+public class StateTable {
+    private static final int INITIAL_ROWS = 64;
+    private static final int INITIAL_SLOTS = 4;
+
+    private static final byte LONG = 1;
+    private static final byte INTEGER = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte OBJECT = 4;
+
+    private final ConcurrentMap<String, Integer> itemHandles = new ConcurrentHashMap<>();
+
+    private volatile ItemRow[] rows = new ItemRow[INITIAL_ROWS];
+
+    private final Object publishLock = new Object();
+    private PersistentHashMap<String, VersionedState> states = PersistentHashMap.empty();
+    private volatile StateSnapshotImpl snapshot = new StateSnapshotImpl(states, 0);
+
+    /**
+     * Updates the value of an item label
+     * @return True if the value or the case of the label was changed, false if both were the same as the current ones
+     */
+    public boolean update(String itemId, String label, Value value) {
+        ItemRow row = getOrCreateRow(itemId);
+        if(row.update(label, value)) {
+            publish(row);
+            return true;
+        }
+        return false;
+    }
+
+    public void updateStatus(String itemId, Status status) {
+        ItemRow row = getOrCreateRow(itemId);
+        row.updateStatus(status);
+        publish(row);
+    }
+
+    /**
+     * @return The state of the item, or null if there is no state for the item
+     */
+    public State getState(String itemId) {
+        return snapshot.getState(itemId);
+    }
+
+    /**
+     * @return A view on the state of the item in the current snapshot, the state is only built once the
+     * view is read
+     */
+    public State getStateView(String itemId) {
+        return new StateView(snapshot, itemId);
+    }
+
+    /**
+     * @return The current snapshot of all states, the snapshot does not change with later updates
+     */
+    public StateSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    private void publish(ItemRow row) {
+        synchronized (publishLock) {
+            long version = snapshot.getVersion() + 1;
+            states = states.put(row.itemId, new VersionedState(row.freeze(), version));
+            snapshot = new StateSnapshotImpl(states, version);
+        }
+    }
+
+    private ItemRow getOrCreateRow(String itemId) {
+        Integer handle = itemHandles.get(itemId);
+        if(handle == null) {
+            handle = createRow(itemId);
+        }
+        return rows[handle];
+    }
+
+    private synchronized int createRow(String itemId) {
+        Integer handle = itemHandles.get(itemId);
+        if(handle == null) {
+            handle = itemHandles.size();
+            ItemRow[] currentRows = rows;
+            if(handle >= currentRows.length) {
+                currentRows = Arrays.copyOf(currentRows, currentRows.length * 2);
+            }
+            currentRows[handle] = new ItemRow(itemId);
+            rows = currentRows;
+
+            //only publish the handle once the row is visible to readers
+            itemHandles.put(itemId, handle);
+        }
+        return handle;
+    }
+
+    private static final class ItemRow {
+        private final String itemId;
+        private Status status = Status.UNKNOWN;
+
+        //both the labels as received and their lower case form map to the slot of the label
+        private final Map<String, Integer> slots = new HashMap<>();
+        private int slotCount;
+
+        private byte[] kinds = new byte[INITIAL_SLOTS];
+        private long[] numbers = new long[INITIAL_SLOTS];
+        private VALUE_TYPE[] types = new VALUE_TYPE[INITIAL_SLOTS];
+        private Value[] values = new Value[INITIAL_SLOTS];
+        private String[] labels = new String[INITIAL_SLOTS];
+
+        //kinds, types and labels are shared with the last frozen row until one of them changes
+        private boolean shared;
+
+        private ItemRow(String itemId) {
+            this.itemId = itemId;
+        }
+
+        private synchronized boolean update(String label, Value value) {
+            int slot = getSlot(label);
+
+            Object raw = value.getValue();
+            byte kind;
+            long bits = 0;
+            if(raw instanceof Long) {
+                kind = LONG;
+                bits = (Long) raw;
+            } else if(raw instanceof Integer) {
+                kind = INTEGER;
+                bits = (Integer) raw;
+            } else if(raw instanceof Double) {
+                kind = DOUBLE;
+                bits = Double.doubleToLongBits((Double) raw);
+            } else {
+                kind = OBJECT;
+            }
+
+            boolean changed;
+            if(kind == OBJECT) {
+                changed = kinds[slot] != OBJECT || !values[slot].equals(value);
+                values[slot] = value;
+            } else {
+                changed = kinds[slot] != kind || numbers[slot] != bits || types[slot] != value.getType();
+                numbers[slot] = bits;
+                values[slot] = null;
+            }
+
+            if(kinds[slot] != kind || types[slot] != value.getType() || !label.equals(labels[slot])) {
+                changed = true;
+                unshare();
+                kinds[slot] = kind;
+                types[slot] = value.getType();
+                labels[slot] = label;
+            }
+
+            return changed;
+        }
+
+        private int getSlot(String label) {
+            Integer slot = slots.get(label);
+            if(slot == null) {
+                String normalisedLabel = label.toLowerCase();
+                slot = slots.get(normalisedLabel);
+                if(slot == null) {
+                    slot = slotCount++;
+                    ensureCapacity(slotCount);
+                    slots.put(normalisedLabel, slot);
+                }
+                slots.put(label, slot);
+            }
+            return slot;
+        }
+
+        private synchronized void updateStatus(Status status) {
+            this.status = status;
+        }
+
+        private synchronized FrozenRow freeze() {
+            shared = true;
+            return new FrozenRow(itemId, status, slotCount, kinds, Arrays.copyOf(numbers, slotCount),
+                    types, Arrays.copyOf(values, slotCount), labels);
+        }
+
+        private void unshare() {
+            if(shared) {
+                kinds = Arrays.copyOf(kinds, kinds.length);
+                types = Arrays.copyOf(types, types.length);
+                labels = Arrays.copyOf(labels, labels.length);
+                shared = false;
+            }
+        }
+
+        private void ensureCapacity(int size) {
+            if(size > kinds.length) {
+                int newSize = kinds.length * 2;
+                kinds = Arrays.copyOf(kinds, newSize);
+                numbers = Arrays.copyOf(numbers, newSize);
+                types = Arrays.copyOf(types, newSize);
+                values = Arrays.copyOf(values, newSize);
+                labels = Arrays.copyOf(labels, newSize);
+                shared = false;
+            }
+        }
+    }
+
+    /**
+     * Copy of the first slots of a row at the moment it was published
+     */
+    private static final class FrozenRow implements Supplier<State> {
+        private final String itemId;
+        private final Status status;
+        private final int size;
+        private final byte[] kinds;
+        private final long[] numbers;
+        private final VALUE_TYPE[] types;
+        private final Value[] values;
+        private final String[] labels;
+
+        private FrozenRow(String itemId, Status status, int size, byte[] kinds, long[] numbers, VALUE_TYPE[] types, Value[] values, String[] labels) {
+            this.itemId = itemId;
+            this.status = status;
+            this.size = size;
+            this.kinds = kinds;
+            this.numbers = numbers;
+            this.types = types;
+            this.values = values;
+            this.labels = labels;
+        }
+
+        @Override
+        public State get() {
+            List<StateItem> stateItems = new ArrayList<>(size);
+            for(int slot=0; slot<size; slot++) {
+                stateItems.add(new StateItemImpl(labels[slot], getValue(slot)));
+            }
+            return new ImmutableState(itemId, status, stateItems);
+        }
+
+        private Value getValue(int slot) {
+            switch(kinds[slot]) {
+                case LONG:
+                    return new ValueImpl(types[slot], numbers[slot]);
+                case INTEGER:
+                    return new ValueImpl(types[slot], (int) numbers[slot]);
+                case DOUBLE:
+                    return new ValueImpl(types[slot], Double.longBitsToDouble(numbers[slot]));
+                default:
+                    return values[slot];
+            }
+        }
+    }
+}
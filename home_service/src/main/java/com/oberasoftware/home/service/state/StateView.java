@@ -0,0 +1,49 @@
+package com.oberasoftware.home.service.state;
+
+import com.oberasoftware.home.api.model.State;
+import com.oberasoftware.home.api.model.StateItem;
+import com.oberasoftware.home.api.model.StateSnapshot;
+import com.oberasoftware.home.api.model.Status;
+
+import java.util.List;
+
+/**
+ * State of an item in a snapshot, the item id is known up front and the state itself is only
+ * built by the snapshot when any of its other properties are read.
+ *
+ * @author renarj
+ */
+class StateView implements State {
+    private final StateSnapshot snapshot;
+    private final String itemId;
+
+    StateView(StateSnapshot snapshot, String itemId) {
+        this.snapshot = snapshot;
+        this.itemId = itemId;
+    }
+
+    @Override
+    public String getItemId() {
+        return itemId;
+    }
+
+    @Override
+    public List<StateItem> getStateItems() {
+        return snapshot.getState(itemId).getStateItems();
+    }
+
+    @Override
+    public StateItem getStateItem(String label) {
+        return snapshot.getState(itemId).getStateItem(label);
+    }
+
+    @Override
+    public Status getDeviceStatus() {
+        return snapshot.getState(itemId).getDeviceStatus();
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(snapshot.getState(itemId));
+    }
+}
@@ -0,0 +1,201 @@
+package com.oberasoftware.home.service;
+
+import com.google.common.collect.Sets;
+import com.oberasoftware.home.api.AutomationBus;
+import com.oberasoftware.home.api.commands.handlers.CommandHandler;
+import com.oberasoftware.home.api.extensions.AutomationExtension;
+import com.oberasoftware.home.api.managers.DeviceManager;
+import com.oberasoftware.home.api.managers.ItemManager;
+import com.oberasoftware.home.api.model.storage.PluginItem;
+import com.oberasoftware.home.api.storage.HomeDAO;
+import com.oberasoftware.home.service.startup.ExtensionTiming;
+import com.oberasoftware.home.service.startup.StartupReport;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author renarj
+ */
+public class ExtensionManagerImplTest {
+    private final List<String> activations = new CopyOnWriteArrayList<>();
+
+    private ExtensionManagerImpl extensionManager;
+    private StartupReport startupReport;
+
+    @Before
+    public void setUp() {
+        HomeDAO homeDAO = mock(HomeDAO.class);
+        when(homeDAO.findPlugin(anyString(), anyString())).thenReturn(Optional.empty());
+
+        startupReport = new StartupReport();
+        extensionManager = new ExtensionManagerImpl();
+        ReflectionTestUtils.setField(extensionManager, "homeDAO", homeDAO);
+        ReflectionTestUtils.setField(extensionManager, "deviceManager", mock(DeviceManager.class));
+        ReflectionTestUtils.setField(extensionManager, "itemManager", mock(ItemManager.class));
+        ReflectionTestUtils.setField(extensionManager, "automationBus", mock(AutomationBus.class));
+        ReflectionTestUtils.setField(extensionManager, "startupReport", startupReport);
+    }
+
+    @Test
+    public void dependenciesActivatedFirst() throws Exception {
+        StubExtension light = new StubExtension("light", "bridge");
+        StubExtension bridge = new StubExtension("bridge");
+        StubExtension standalone = new StubExtension("standalone");
+        activate(light, bridge, standalone);
+
+        standalone.ready.complete(null);
+        standalone.activated.get(5, TimeUnit.SECONDS);
+        bridge.activated.get(5, TimeUnit.SECONDS);
+        assertThat(light.activated.isDone(), is(false));
+        assertThat(extensionManager.whenActivated().isDone(), is(false));
+
+        bridge.ready.complete(null);
+        light.activated.get(5, TimeUnit.SECONDS);
+        assertThat(activations.indexOf("bridge") < activations.indexOf("light"), is(true));
+
+        light.ready.complete(null);
+        extensionManager.whenActivated().get(5, TimeUnit.SECONDS);
+        assertThat(activations.size(), is(3));
+        assertThat(getStatuses().get("light"), is(ExtensionTiming.STATUS.ACTIVE));
+        assertThat(getStatuses().get("bridge"), is(ExtensionTiming.STATUS.ACTIVE));
+    }
+
+    @Test
+    public void circularDependency() throws Exception {
+        StubExtension first = new StubExtension("first", "second");
+        StubExtension second = new StubExtension("second", "first");
+        StubExtension standalone = new StubExtension("standalone");
+        standalone.ready.complete(null);
+        activate(first, second, standalone);
+
+        extensionManager.whenActivated().get(5, TimeUnit.SECONDS);
+        assertThat(activations, is(Arrays.asList("standalone")));
+        assertThat(getStatuses().get("first"), is(ExtensionTiming.STATUS.FAILED));
+        assertThat(getStatuses().get("second"), is(ExtensionTiming.STATUS.FAILED));
+        assertThat(getStatuses().get("standalone"), is(ExtensionTiming.STATUS.ACTIVE));
+    }
+
+    @Test
+    public void failedDependencyFailsDependents() throws Exception {
+        StubExtension light = new StubExtension("light", "bridge");
+        StubExtension sensor = new StubExtension("sensor", "light");
+        StubExtension bridge = new StubExtension("bridge");
+        bridge.ready.completeExceptionally(new IllegalStateException("Bridge not reachable"));
+        activate(sensor, light, bridge);
+
+        extensionManager.whenActivated().get(5, TimeUnit.SECONDS);
+        assertThat(activations, is(Arrays.asList("bridge")));
+        assertThat(getStatuses().get("bridge"), is(ExtensionTiming.STATUS.FAILED));
+        assertThat(getStatuses().get("light"), is(ExtensionTiming.STATUS.FAILED));
+        assertThat(getStatuses().get("sensor"), is(ExtensionTiming.STATUS.FAILED));
+    }
+
+    @Test
+    public void failedActivation() throws Exception {
+        StubExtension light = new StubExtension("light", "bridge");
+        StubExtension bridge = new StubExtension("bridge");
+        bridge.failActivation = true;
+        activate(light, bridge);
+
+        extensionManager.whenActivated().get(5, TimeUnit.SECONDS);
+        assertThat(activations.isEmpty(), is(true));
+        assertThat(getStatuses().get("bridge"), is(ExtensionTiming.STATUS.FAILED));
+        assertThat(getStatuses().get("light"), is(ExtensionTiming.STATUS.FAILED));
+    }
+
+    @Test
+    public void missingDependencyIsIgnored() throws Exception {
+        StubExtension light = new StubExtension("light", "unknown");
+        light.ready.complete(null);
+        activate(light);
+
+        extensionManager.whenActivated().get(5, TimeUnit.SECONDS);
+        assertThat(activations, is(Arrays.asList("light")));
+        assertThat(getStatuses().get("light"), is(ExtensionTiming.STATUS.ACTIVE));
+    }
+
+    private void activate(AutomationExtension... extensions) throws Exception {
+        ReflectionTestUtils.setField(extensionManager, "extensions", Arrays.asList(extensions));
+        extensionManager.activateExtensions();
+    }
+
+    private Map<String, ExtensionTiming.STATUS> getStatuses() {
+        Map<String, ExtensionTiming.STATUS> statuses = new HashMap<>();
+        startupReport.getExtensionTimings().forEach(t -> statuses.put(t.getExtensionId(), t.getStatus()));
+        return statuses;
+    }
+
+    private class StubExtension implements AutomationExtension {
+        private final String id;
+        private final Set<String> dependencies;
+        private final CompletableFuture<Void> ready = new CompletableFuture<>();
+        private final CompletableFuture<Void> activated = new CompletableFuture<>();
+        private volatile boolean failActivation = false;
+
+        private StubExtension(String id, String... dependencies) {
+            this.id = id;
+            this.dependencies = Sets.newHashSet(dependencies);
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getName() {
+            return id;
+        }
+
+        @Override
+        public Map<String, String> getProperties() {
+            return new HashMap<>();
+        }
+
+        @Override
+        public CommandHandler getCommandHandler() {
+            return null;
+        }
+
+        @Override
+        public boolean isReady() {
+            return ready.isDone() && !ready.isCompletedExceptionally();
+        }
+
+        @Override
+        public CompletableFuture<Void> whenReady() {
+            return ready;
+        }
+
+        @Override
+        public Set<String> getDependencies() {
+            return dependencies;
+        }
+
+        @Override
+        public void activate(Optional<PluginItem> pluginItem) {
+            if(failActivation) {
+                throw new IllegalStateException("Unable to activate: " + id);
+            }
+            activations.add(id);
+            activated.complete(null);
+        }
+    }
+}
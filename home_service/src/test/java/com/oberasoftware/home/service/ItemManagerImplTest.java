@@ -0,0 +1,163 @@
+package com.oberasoftware.home.service;
+
+import com.oberasoftware.home.api.model.Device;
+import com.oberasoftware.home.api.model.storage.DeviceItem;
+import com.oberasoftware.home.api.storage.CentralDatastore;
+import com.oberasoftware.home.api.storage.HomeDAO;
+import com.oberasoftware.home.core.model.storage.DeviceItemImpl;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author renarj
+ */
+public class ItemManagerImplTest {
+    private static final String CONTROLLER = "controller1";
+    private static final String PLUGIN = "plugin1";
+
+    private final CentralDatastore centralDatastore = mock(CentralDatastore.class);
+    private final HomeDAO homeDAO = mock(HomeDAO.class);
+
+    private ItemManagerImpl itemManager;
+
+    @Before
+    public void setUp() {
+        itemManager = new ItemManagerImpl();
+        ReflectionTestUtils.setField(itemManager, "centralDatastore", centralDatastore);
+        ReflectionTestUtils.setField(itemManager, "homeDAO", homeDAO);
+    }
+
+    @Test
+    public void mixedNewChangedAndUnchanged() throws Exception {
+        DeviceItem unchanged = new DeviceItemImpl("id1", CONTROLLER, PLUGIN, "device1", "Lamp", properties("type", "light"));
+        DeviceItem changed = new DeviceItemImpl("id2", CONTROLLER, PLUGIN, "device2", "Sensor", properties("type", "sensor"));
+        when(homeDAO.findDevices(CONTROLLER, PLUGIN)).thenReturn(newArrayList(unchanged, changed));
+
+        List<DeviceItem> results = itemManager.createOrUpdateDevices(CONTROLLER, PLUGIN, newArrayList(
+                device("device1", "Lamp", properties("type", "light")),
+                device("device2", "Sensor", properties("type", "sensor", "battery", "80")),
+                device("device3", "Switch", properties("type", "switch"))));
+
+        assertThat(results.size(), is(3));
+        assertThat(results.get(0), sameInstance(unchanged));
+        assertThat(results.get(1).getId(), is("id2"));
+        assertThat(results.get(1).getProperties().get("battery"), is("80"));
+        assertThat(results.get(2).getDeviceId(), is("device3"));
+
+        List<DeviceItem> stored = captureStored();
+        assertThat(stored.size(), is(2));
+        assertThat(stored.get(0).getDeviceId(), is("device2"));
+        assertThat(stored.get(1).getDeviceId(), is("device3"));
+    }
+
+    @Test
+    public void unchangedDevicesNotStored() throws Exception {
+        DeviceItem existing = new DeviceItemImpl("id1", CONTROLLER, PLUGIN, "device1", "Lamp", properties("type", "light"));
+        when(homeDAO.findDevices(CONTROLLER, PLUGIN)).thenReturn(newArrayList(existing));
+
+        List<DeviceItem> results = itemManager.createOrUpdateDevices(CONTROLLER, PLUGIN, newArrayList(
+                device("device1", "Lamp", properties("type", "light"))));
+
+        assertThat(results.size(), is(1));
+        assertThat(results.get(0), sameInstance(existing));
+        assertThat(captureStored().isEmpty(), is(true));
+    }
+
+    @Test
+    public void changedNameKeepsId() throws Exception {
+        DeviceItem existing = new DeviceItemImpl("id1", CONTROLLER, PLUGIN, "device1", "Lamp", properties("type", "light"));
+        when(homeDAO.findDevices(CONTROLLER, PLUGIN)).thenReturn(newArrayList(existing));
+
+        List<DeviceItem> results = itemManager.createOrUpdateDevices(CONTROLLER, PLUGIN, newArrayList(
+                device("device1", "Hallway lamp", properties("type", "light"))));
+
+        List<DeviceItem> stored = captureStored();
+        assertThat(stored.size(), is(1));
+        assertThat(stored.get(0).getId(), is("id1"));
+        assertThat(stored.get(0).getName(), is("Hallway lamp"));
+        assertThat(results.get(0).getId(), is("id1"));
+    }
+
+    @Test
+    public void changedPropertiesKeepsId() throws Exception {
+        DeviceItem existing = new DeviceItemImpl("id1", CONTROLLER, PLUGIN, "device1", "Lamp", properties("type", "light"));
+        when(homeDAO.findDevices(CONTROLLER, PLUGIN)).thenReturn(newArrayList(existing));
+
+        itemManager.createOrUpdateDevices(CONTROLLER, PLUGIN, newArrayList(
+                device("device1", "Lamp", properties("type", "dimmer"))));
+
+        List<DeviceItem> stored = captureStored();
+        assertThat(stored.size(), is(1));
+        assertThat(stored.get(0).getId(), is("id1"));
+        assertThat(stored.get(0).getProperties().get("type"), is("dimmer"));
+    }
+
+    @Test
+    public void duplicateDeviceIds() throws Exception {
+        when(homeDAO.findDevices(CONTROLLER, PLUGIN)).thenReturn(newArrayList());
+
+        List<DeviceItem> results = itemManager.createOrUpdateDevices(CONTROLLER, PLUGIN, newArrayList(
+                device("device1", "Lamp", properties("type", "light")),
+                device("device1", "Hallway lamp", properties("type", "light"))));
+
+        assertThat(results.size(), is(2));
+        assertThat(results.get(0).getId(), is(results.get(1).getId()));
+        assertThat(results.get(1).getName(), is("Hallway lamp"));
+
+        List<DeviceItem> stored = captureStored();
+        assertThat(stored.size(), is(1));
+        assertThat(stored.get(0).getName(), is("Hallway lamp"));
+
+        verify(centralDatastore).beginTransaction(DeviceItem.class, CONTROLLER + "/" + PLUGIN + "/device1");
+        verify(centralDatastore).commitTransaction(DeviceItem.class, CONTROLLER + "/" + PLUGIN + "/device1");
+    }
+
+    @Test
+    public void newDevicesGetUniqueIds() throws Exception {
+        when(homeDAO.findDevices(CONTROLLER, PLUGIN)).thenReturn(newArrayList());
+
+        List<DeviceItem> results = itemManager.createOrUpdateDevices(CONTROLLER, PLUGIN, newArrayList(
+                device("device1", "Lamp", properties()), device("device2", "Switch", properties())));
+
+        assertThat(results.get(0).getId(), not(results.get(1).getId()));
+        assertThat(captureStored().size(), is(2));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<DeviceItem> captureStored() throws Exception {
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(centralDatastore).store(captor.capture());
+        return captor.getValue();
+    }
+
+    private static Device device(String id, String name, Map<String, String> properties) {
+        Device device = mock(Device.class);
+        when(device.getId()).thenReturn(id);
+        when(device.getName()).thenReturn(name);
+        when(device.getProperties()).thenReturn(properties);
+        return device;
+    }
+
+    private static Map<String, String> properties(String... keyValues) {
+        Map<String, String> properties = new HashMap<>();
+        for(int i = 0; i < keyValues.length; i += 2) {
+            properties.put(keyValues[i], keyValues[i + 1]);
+        }
+        return properties;
+    }
+}
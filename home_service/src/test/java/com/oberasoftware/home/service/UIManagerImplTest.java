@@ -0,0 +1,184 @@
+package com.oberasoftware.home.service;
+
+import com.oberasoftware.home.api.exceptions.DataStoreException;
+import com.oberasoftware.home.api.model.storage.Container;
+import com.oberasoftware.home.api.model.storage.Widget;
+import com.oberasoftware.home.core.model.storage.ContainerImpl;
+import com.oberasoftware.home.core.model.storage.DashboardImpl;
+import com.oberasoftware.home.core.model.storage.WidgetImpl;
+import com.oberasoftware.home.storage.jasdb.CachingHomeDAO;
+import com.oberasoftware.home.storage.jasdb.JasDBCentralDatastore;
+import com.oberasoftware.home.storage.jasdb.JasDBConfiguration;
+import com.oberasoftware.home.storage.jasdb.JasDBSessionFactory;
+import nl.renarj.jasdb.core.SimpleKernel;
+import nl.renarj.jasdb.core.exceptions.JasDBException;
+import nl.renarj.jasdb.core.platform.HomeLocatorUtil;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * @author renarj
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {JasDBConfiguration.class, UIManagerImpl.class})
+public class UIManagerImplTest {
+    private static final Logger LOG = getLogger(UIManagerImplTest.class);
+
+    @Autowired
+    private UIManagerImpl uiManager;
+
+    @Autowired
+    private JasDBCentralDatastore centralDatastore;
+
+    @Autowired
+    private CachingHomeDAO cachingHomeDAO;
+
+    @Autowired
+    private JasDBSessionFactory sessionFactory;
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        System.setProperty(HomeLocatorUtil.JASDB_HOME, folder.newFolder().toString());
+    }
+
+    @After
+    public void tearDown() throws JasDBException {
+        sessionFactory.closeIdleSessions();
+        SimpleKernel.shutdown();
+    }
+
+    @Test
+    public void moveWidget() throws DataStoreException {
+        String oldContainer = storeContainer(null);
+        String newContainer = storeContainer(null);
+        String id = UUID.randomUUID().toString();
+        centralDatastore.store(new WidgetImpl(id, "Moving widget", oldContainer, "switch", "item1", new HashMap<>(), 0));
+        assertThat(uiManager.getItems(oldContainer).size(), is(1));
+
+        uiManager.setParentContainer(id, newContainer);
+
+        assertThat(uiManager.getItems(oldContainer).size(), is(0));
+        List<Widget> widgets = uiManager.getItems(newContainer);
+        assertThat(widgets.size(), is(1));
+        assertThat(widgets.get(0).getId(), is(id));
+
+        cachingHomeDAO.invalidate(WidgetImpl.class);
+        assertThat(uiManager.getItems(oldContainer).size(), is(0));
+        assertThat(uiManager.getItems(newContainer).size(), is(1));
+    }
+
+    @Test
+    public void moveAndCreateWaitForContainerDelete() throws Exception {
+        String sourceContainer = storeContainer(null);
+        String deletedContainer = storeContainer(null);
+        String id = UUID.randomUUID().toString();
+        centralDatastore.store(new WidgetImpl(id, "Moving widget", sourceContainer, "switch", "item1", new HashMap<>(), 0));
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> move;
+            Future<Widget> create;
+            centralDatastore.beginTransaction(ContainerImpl.class, deletedContainer);
+            try {
+                move = executorService.submit(() -> uiManager.setParentContainer(id, deletedContainer));
+                create = executorService.submit(() -> uiManager.store((Widget) new WidgetImpl(UUID.randomUUID().toString(),
+                        "New widget", deletedContainer, "switch", "item2", new HashMap<>(), 0)));
+                try {
+                    move.get(200, TimeUnit.MILLISECONDS);
+                    fail("Moving a widget to a locked container should block");
+                } catch(TimeoutException e) {
+                    LOG.debug("Move to container is blocked as expected");
+                }
+
+                uiManager.deleteContainer(deletedContainer);
+            } finally {
+                centralDatastore.commitTransaction(ContainerImpl.class, deletedContainer);
+            }
+
+            move.get(5, TimeUnit.SECONDS);
+            assertThat(create.get(5, TimeUnit.SECONDS), nullValue());
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertThat(uiManager.getItems(deletedContainer).size(), is(0));
+        assertThat(uiManager.getItems(sourceContainer).size(), is(1));
+    }
+
+    @Test
+    public void createContainerWaitsForDashboardDelete() throws Exception {
+        String dashboardId = UUID.randomUUID().toString();
+        centralDatastore.store(new DashboardImpl(dashboardId, "Deleted dashboard", 0));
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> create;
+            centralDatastore.beginTransaction(DashboardImpl.class, dashboardId);
+            try {
+                create = executorService.submit(() -> storeContainer(dashboardId));
+                try {
+                    create.get(200, TimeUnit.MILLISECONDS);
+                    fail("Creating a container in a locked dashboard should block");
+                } catch(TimeoutException e) {
+                    LOG.debug("Container creation is blocked as expected");
+                }
+
+                centralDatastore.delete(DashboardImpl.class, dashboardId);
+            } finally {
+                centralDatastore.commitTransaction(DashboardImpl.class, dashboardId);
+            }
+
+            assertThat(create.get(5, TimeUnit.SECONDS), nullValue());
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertThat(uiManager.getDashboardContainers(dashboardId).size(), is(0));
+    }
+
+    @Test
+    public void setWidgetProperty() throws DataStoreException {
+        String containerId = storeContainer(null);
+        String id = UUID.randomUUID().toString();
+        centralDatastore.store(new WidgetImpl(id, "Property widget", containerId, "switch", "item2", new HashMap<>(), 0));
+
+        uiManager.setWidgetProperty(id, "color", "red");
+
+        assertThat(uiManager.getItems(containerId).get(0).getProperties().get("color"), is("red"));
+        cachingHomeDAO.invalidate(WidgetImpl.class);
+        assertThat(uiManager.getItems(containerId).get(0).getProperties().get("color"), is("red"));
+    }
+
+    private String storeContainer(String dashboardId) {
+        Container container = uiManager.store((Container) new ContainerImpl(UUID.randomUUID().toString(),
+                "Test container", dashboardId, null, new HashMap<>()));
+        return container != null ? container.getId() : null;
+    }
+}
@@ -0,0 +1,159 @@
+package com.oberasoftware.home.service.bus;
+
+import com.oberasoftware.base.event.Event;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author renarj
+ */
+public class EventPartitionTest {
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final List<String> dispatched = new CopyOnWriteArrayList<>();
+    private final List<Object[]> dispatchedArgs = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void blockWaitsForRoom() throws Exception {
+        EventPartition partition = createPartition(2, BackpressurePolicy.BLOCK);
+        partition.offer(new TestEvent("1"), NO_ARGS, null, false);
+        partition.offer(new TestEvent("2"), NO_ARGS, null, false);
+
+        CompletableFuture<Boolean> blocked = CompletableFuture.supplyAsync(() -> partition.offer(new TestEvent("3"), NO_ARGS, null, false));
+        try {
+            blocked.get(200, TimeUnit.MILLISECONDS);
+            fail("Publishing on a full partition should block");
+        } catch(TimeoutException e) {
+            //expected
+        }
+
+        startWorker(partition);
+        assertThat(blocked.get(5, TimeUnit.SECONDS), is(true));
+        awaitDispatched(3);
+        assertThat(dispatched, is(newArrayList("1", "2", "3")));
+        assertThat(partition.getStats().getDropped(), is(0l));
+    }
+
+    @Test
+    public void dropOldestMakesRoom() throws Exception {
+        EventPartition partition = createPartition(2, BackpressurePolicy.DROP_OLDEST);
+        partition.offer(new TestEvent("1"), NO_ARGS, null, false);
+        partition.offer(new TestEvent("2"), NO_ARGS, null, false);
+        partition.offer(new TestEvent("3"), NO_ARGS, null, false);
+
+        PartitionStats stats = partition.getStats();
+        assertThat(stats.getQueueSize(), is(2));
+        assertThat(stats.getDropped(), is(1l));
+
+        startWorker(partition);
+        awaitDispatched(2);
+        assertThat(dispatched, is(newArrayList("2", "3")));
+    }
+
+    @Test
+    public void coalesceReplacesPendingEvent() throws Exception {
+        EventPartition partition = createPartition(10, BackpressurePolicy.COALESCE);
+        partition.offer(new TestEvent("1"), new Object[]{"first"}, "item1", false);
+        partition.offer(new TestEvent("2"), NO_ARGS, "item2", false);
+        partition.offer(new TestEvent("3"), new Object[]{"second"}, "item1", false);
+        partition.offer(new TestEvent("4"), NO_ARGS, null, false);
+
+        assertThat(partition.getStats().getCoalesced(), is(1l));
+
+        startWorker(partition);
+        awaitDispatched(3);
+        assertThat(dispatched, is(newArrayList("3", "2", "4")));
+        assertThat(dispatchedArgs.get(0)[0], is("second"));
+    }
+
+    @Test
+    public void coalesceWaitsForRoomWithoutKey() throws Exception {
+        EventPartition partition = createPartition(1, BackpressurePolicy.COALESCE);
+        partition.offer(new TestEvent("1"), NO_ARGS, "item1", false);
+        partition.offer(new TestEvent("2"), NO_ARGS, "item1", false);
+
+        CompletableFuture<Boolean> blocked = CompletableFuture.supplyAsync(() -> partition.offer(new TestEvent("3"), NO_ARGS, null, false));
+        try {
+            blocked.get(200, TimeUnit.MILLISECONDS);
+            fail("Publishing an event without coalesce key on a full partition should block");
+        } catch(TimeoutException e) {
+            //expected
+        }
+
+        startWorker(partition);
+        assertThat(blocked.get(5, TimeUnit.SECONDS), is(true));
+        awaitDispatched(2);
+        assertThat(dispatched, is(newArrayList("2", "3")));
+    }
+
+    @Test
+    public void reentrantEventsOverflowUpToBound() throws Exception {
+        EventPartition partition = createPartition(2, BackpressurePolicy.BLOCK);
+        for(int i=1; i<=5; i++) {
+            assertThat(partition.offer(new TestEvent(String.valueOf(i)), NO_ARGS, null, true), is(true));
+        }
+
+        PartitionStats stats = partition.getStats();
+        assertThat(stats.getQueueSize(), is(4));
+        assertThat(stats.getDropped(), is(1l));
+
+        startWorker(partition);
+        awaitDispatched(4);
+        assertThat(dispatched, is(newArrayList("2", "3", "4", "5")));
+    }
+
+    @Test
+    public void shutdownRejectsNewEvents() throws Exception {
+        EventPartition partition = createPartition(2, BackpressurePolicy.BLOCK);
+        partition.offer(new TestEvent("1"), NO_ARGS, null, false);
+        partition.shutdown();
+
+        assertThat(partition.offer(new TestEvent("2"), NO_ARGS, null, false), is(false));
+
+        Thread worker = startWorker(partition);
+        worker.join(5000);
+        assertThat(worker.isAlive(), is(false));
+        assertThat(dispatched, is(newArrayList("1")));
+    }
+
+    private EventPartition createPartition(int depth, BackpressurePolicy policy) {
+        return new EventPartition(0, depth, policy, (e, args) -> {
+            dispatched.add(((TestEvent) e).id);
+            dispatchedArgs.add(args);
+        });
+    }
+
+    private Thread startWorker(EventPartition partition) {
+        Thread worker = new Thread(partition);
+        worker.setDaemon(true);
+        worker.start();
+        return worker;
+    }
+
+    private void awaitDispatched(int expected) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 5000;
+        while(dispatched.size() < expected && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertThat(dispatched.stream().collect(Collectors.joining(",")), dispatched.size(), is(expected));
+    }
+
+    private static class TestEvent implements Event {
+        private final String id;
+
+        private TestEvent(String id) {
+            this.id = id;
+        }
+    }
+}
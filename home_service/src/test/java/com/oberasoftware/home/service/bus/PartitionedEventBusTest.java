@@ -0,0 +1,139 @@
+package com.oberasoftware.home.service.bus;
+
+import com.oberasoftware.base.event.Event;
+import com.oberasoftware.base.event.EventHandler;
+import com.oberasoftware.base.event.EventSubscribe;
+import com.oberasoftware.home.api.events.ItemEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author renarj
+ */
+public class PartitionedEventBusTest {
+    private static final int ITEMS = 10;
+    private static final int EVENTS_PER_ITEM = 500;
+
+    private PartitionedEventBus eventBus;
+    private RecordingHandler handler;
+
+    @Before
+    public void setUp() {
+        eventBus = new PartitionedEventBus();
+        ReflectionTestUtils.setField(eventBus, "partitionCount", 4);
+        ReflectionTestUtils.setField(eventBus, "queueDepth", 16);
+        ReflectionTestUtils.setField(eventBus, "backpressure", "block");
+
+        handler = new RecordingHandler();
+        eventBus.registerHandler(handler);
+        eventBus.start();
+    }
+
+    @After
+    public void tearDown() {
+        eventBus.stop();
+    }
+
+    @Test
+    public void eventsOfOneItemKeepPublishOrder() throws Exception {
+        handler.latch = new CountDownLatch(ITEMS * EVENTS_PER_ITEM);
+        for(int i=0; i<EVENTS_PER_ITEM; i++) {
+            for(int item=0; item<ITEMS; item++) {
+                eventBus.publish(new TestItemEvent("item" + item, i));
+            }
+        }
+
+        assertThat(handler.latch.await(10, TimeUnit.SECONDS), is(true));
+        for(int item=0; item<ITEMS; item++) {
+            List<Integer> sequences = handler.itemSequences.get("item" + item);
+            assertThat(sequences.size(), is(EVENTS_PER_ITEM));
+            for(int i=0; i<EVENTS_PER_ITEM; i++) {
+                assertThat(sequences.get(i), is(i));
+            }
+        }
+    }
+
+    @Test
+    public void eventsWithoutKeyKeepPublishOrder() throws Exception {
+        int events = 1000;
+        handler.latch = new CountDownLatch(events);
+        for(int i=0; i<events; i++) {
+            eventBus.publish(new TestUnkeyedEvent(i));
+        }
+
+        assertThat(handler.latch.await(10, TimeUnit.SECONDS), is(true));
+        for(int i=0; i<events; i++) {
+            assertThat(handler.unkeyedSequences.get(i), is(i));
+        }
+    }
+
+    @Test
+    public void argumentsAreForwarded() throws Exception {
+        handler.latch = new CountDownLatch(2);
+        eventBus.publish(new TestUnkeyedEvent(0), "argument");
+
+        assertThat(handler.latch.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(handler.arguments, is(newArrayList("argument")));
+    }
+
+    public static class RecordingHandler implements EventHandler {
+        private final Map<String, List<Integer>> itemSequences = new ConcurrentHashMap<>();
+        private final List<Integer> unkeyedSequences = new CopyOnWriteArrayList<>();
+        private final List<String> arguments = new CopyOnWriteArrayList<>();
+        private volatile CountDownLatch latch;
+
+        @EventSubscribe
+        public void receiveItem(TestItemEvent event) {
+            itemSequences.computeIfAbsent(event.getItemId(), k -> new CopyOnWriteArrayList<>()).add(event.sequence);
+            latch.countDown();
+        }
+
+        @EventSubscribe
+        public void receiveUnkeyed(TestUnkeyedEvent event) {
+            unkeyedSequences.add(event.sequence);
+            latch.countDown();
+        }
+
+        @EventSubscribe
+        public void receiveArgument(TestUnkeyedEvent event, String argument) {
+            arguments.add(argument);
+            latch.countDown();
+        }
+    }
+
+    public static class TestItemEvent implements ItemEvent {
+        private final String itemId;
+        private final int sequence;
+
+        private TestItemEvent(String itemId, int sequence) {
+            this.itemId = itemId;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public String getItemId() {
+            return itemId;
+        }
+    }
+
+    public static class TestUnkeyedEvent implements Event {
+        private final int sequence;
+
+        private TestUnkeyedEvent(int sequence) {
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.oberasoftware.home.service.state;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author renarj
+ */
+public class PersistentHashMapTest {
+    @Test
+    public void putAndGet() {
+        PersistentHashMap<String, String> map = PersistentHashMap.<String, String>empty()
+                .put("key1", "value1").put("key2", "value2");
+
+        assertThat(map.size(), is(2));
+        assertThat(map.get("key1"), is("value1"));
+        assertThat(map.get("key2"), is("value2"));
+        assertThat(map.get("key3"), nullValue());
+        assertThat(PersistentHashMap.empty().size(), is(0));
+    }
+
+    @Test
+    public void overwrite() {
+        PersistentHashMap<String, String> original = PersistentHashMap.<String, String>empty().put("key1", "value1");
+        PersistentHashMap<String, String> overwritten = original.put("key1", "value2");
+
+        assertThat(overwritten.size(), is(1));
+        assertThat(overwritten.get("key1"), is("value2"));
+        assertThat(original.get("key1"), is("value1"));
+        assertThat(overwritten.put("key1", "value2"), sameInstance(overwritten));
+    }
+
+    @Test
+    public void remove() {
+        PersistentHashMap<String, String> original = PersistentHashMap.<String, String>empty()
+                .put("key1", "value1").put("key2", "value2");
+        PersistentHashMap<String, String> removed = original.remove("key1");
+
+        assertThat(removed.size(), is(1));
+        assertThat(removed.get("key1"), nullValue());
+        assertThat(removed.get("key2"), is("value2"));
+        assertThat(original.get("key1"), is("value1"));
+        assertThat(removed.remove("unknown"), sameInstance(removed));
+
+        PersistentHashMap<String, String> empty = removed.remove("key2");
+        assertThat(empty.size(), is(0));
+        assertThat(toMap(empty).isEmpty(), is(true));
+    }
+
+    @Test
+    public void hashCollisions() {
+        CollidingKey key1 = new CollidingKey("key1", 42);
+        CollidingKey key2 = new CollidingKey("key2", 42);
+        CollidingKey key3 = new CollidingKey("key3", 42);
+
+        PersistentHashMap<CollidingKey, String> map = PersistentHashMap.<CollidingKey, String>empty()
+                .put(key1, "value1").put(key2, "value2").put(key3, "value3");
+        assertThat(map.size(), is(3));
+        assertThat(map.get(key1), is("value1"));
+        assertThat(map.get(key2), is("value2"));
+        assertThat(map.get(key3), is("value3"));
+        assertThat(map.get(new CollidingKey("key4", 42)), nullValue());
+
+        PersistentHashMap<CollidingKey, String> overwritten = map.put(key2, "changed");
+        assertThat(overwritten.size(), is(3));
+        assertThat(overwritten.get(key2), is("changed"));
+        assertThat(map.get(key2), is("value2"));
+
+        PersistentHashMap<CollidingKey, String> removed = overwritten.remove(key1).remove(key3);
+        assertThat(removed.size(), is(1));
+        assertThat(removed.get(key1), nullValue());
+        assertThat(removed.get(key2), is("changed"));
+        assertThat(removed.get(key3), nullValue());
+        assertThat(overwritten.get(key1), is("value1"));
+
+        PersistentHashMap<CollidingKey, String> readded = removed.put(key1, "value1");
+        assertThat(readded.size(), is(2));
+        assertThat(readded.get(key1), is("value1"));
+        assertThat(readded.get(key2), is("changed"));
+    }
+
+    @Test
+    public void deepTrie() {
+        //after spreading both hashes only differ in the highest bit, so they split on the deepest level
+        CollidingKey key1 = new CollidingKey("key1", 0);
+        CollidingKey key2 = new CollidingKey("key2", 0x80008000);
+
+        PersistentHashMap<CollidingKey, String> map = PersistentHashMap.<CollidingKey, String>empty()
+                .put(key1, "value1").put(key2, "value2");
+        assertThat(map.size(), is(2));
+        assertThat(map.get(key1), is("value1"));
+        assertThat(map.get(key2), is("value2"));
+        assertThat(map.get(new CollidingKey("key3", 0)), nullValue());
+
+        PersistentHashMap<CollidingKey, String> removed = map.remove(key1);
+        assertThat(removed.get(key1), nullValue());
+        assertThat(removed.get(key2), is("value2"));
+        assertThat(removed.put(key1, "value3").get(key1), is("value3"));
+        assertThat(map.get(key1), is("value1"));
+    }
+
+    @Test
+    public void snapshotsDoNotChange() {
+        Random random = new Random(12345);
+        Map<Integer, String> expected = new HashMap<>();
+        PersistentHashMap<Integer, String> map = PersistentHashMap.empty();
+
+        List<PersistentHashMap<Integer, String>> snapshots = new ArrayList<>();
+        List<Map<Integer, String>> expectedSnapshots = new ArrayList<>();
+
+        for(int i=0; i<20000; i++) {
+            Integer key = random.nextInt(5000);
+            if(random.nextInt(4) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                String value = "value" + i;
+                expected.put(key, value);
+                map = map.put(key, value);
+            }
+
+            if(i % 1000 == 0) {
+                snapshots.add(map);
+                expectedSnapshots.add(new HashMap<>(expected));
+            }
+        }
+
+        assertThat(map.size(), is(expected.size()));
+        assertThat(toMap(map), is(expected));
+        for(int i=0; i<snapshots.size(); i++) {
+            assertThat(snapshots.get(i).size(), is(expectedSnapshots.get(i).size()));
+            assertThat(toMap(snapshots.get(i)), is(expectedSnapshots.get(i)));
+        }
+    }
+
+    private static <K, V> Map<K, V> toMap(PersistentHashMap<K, V> map) {
+        Map<K, V> result = new HashMap<>();
+        map.forEach(result::put);
+        return result;
+    }
+
+    private static final class CollidingKey {
+        private final String name;
+        private final int hash;
+
+        private CollidingKey(String name, int hash) {
+            this.name = name;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CollidingKey && name.equals(((CollidingKey) o).name);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.oberasoftware.home.service.state;
+
+import com.oberasoftware.home.api.model.State;
+import com.oberasoftware.home.api.model.StateSnapshot;
+import com.oberasoftware.home.api.model.Status;
+import com.oberasoftware.home.api.types.VALUE_TYPE;
+import com.oberasoftware.home.api.types.Value;
+import com.oberasoftware.home.core.types.ValueImpl;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author renarj
+ */
+public class StateTableTest {
+    private final StateTable stateTable = new StateTable();
+
+    @Test
+    public void detectsChangedValues() {
+        assertThat(stateTable.update("item1", "value", number(10l)), is(true));
+        assertThat(stateTable.update("item1", "value", number(10l)), is(false));
+        assertThat(stateTable.update("item1", "value", number(11l)), is(true));
+
+        assertThat(stateTable.update("item1", "text", string("on")), is(true));
+        assertThat(stateTable.update("item1", "text", string("on")), is(false));
+        assertThat(stateTable.update("item1", "text", string("off")), is(true));
+
+        assertThat(stateTable.update("item1", "decimal", new ValueImpl(VALUE_TYPE.DECIMAL, 1.5)), is(true));
+        assertThat(stateTable.update("item1", "decimal", new ValueImpl(VALUE_TYPE.DECIMAL, 1.5)), is(false));
+    }
+
+    @Test
+    public void detectsChangedTypes() {
+        stateTable.update("item1", "value", number(1l));
+
+        assertThat(stateTable.update("item1", "value", new ValueImpl(VALUE_TYPE.NUMBER, 1)), is(true));
+        assertThat(stateTable.update("item1", "value", new ValueImpl(VALUE_TYPE.DECIMAL, 1)), is(true));
+        assertThat(stateTable.update("item1", "value", string("1")), is(true));
+        assertThat(stateTable.update("item1", "value", new ValueImpl(VALUE_TYPE.NUMBER, 1)), is(true));
+    }
+
+    @Test
+    public void labelsAreCaseInsensitive() {
+        stateTable.update("item1", "Temperature", number(20l));
+
+        assertThat(stateTable.update("item1", "Temperature", number(20l)), is(false));
+        assertThat(stateTable.update("item1", "temperature", number(20l)), is(true));
+
+        State state = stateTable.getState("item1");
+        assertThat(state.getStateItems().size(), is(1));
+        assertThat(state.getStateItems().get(0).getLabel(), is("temperature"));
+        assertThat(state.getStateItem("TEMPERATURE").getValue().getValue(), is(20l));
+    }
+
+    @Test
+    public void keepsValuesAndTypes() {
+        stateTable.update("item1", "long", number(Long.MAX_VALUE));
+        stateTable.update("item1", "int", new ValueImpl(VALUE_TYPE.NUMBER, 42));
+        stateTable.update("item1", "double", new ValueImpl(VALUE_TYPE.DECIMAL, -0.25));
+        stateTable.update("item1", "string", string("on"));
+
+        State state = stateTable.getState("item1");
+        assertThat(state.getItemId(), is("item1"));
+        assertThat(state.getStateItems().size(), is(4));
+        assertThat(state.getStateItem("long").getValue(), is((Value) number(Long.MAX_VALUE)));
+        assertThat(state.getStateItem("int").getValue(), is((Value) new ValueImpl(VALUE_TYPE.NUMBER, 42)));
+        assertThat(state.getStateItem("double").getValue(), is((Value) new ValueImpl(VALUE_TYPE.DECIMAL, -0.25)));
+        assertThat(state.getStateItem("string").getValue(), is((Value) string("on")));
+    }
+
+    @Test
+    public void itemsOnlyContainTheirOwnLabels() {
+        for(int i=0; i<100; i++) {
+            stateTable.update("item" + i, "label" + i, number((long) i));
+        }
+
+        for(int i=0; i<100; i++) {
+            State state = stateTable.getState("item" + i);
+            assertThat(state.getStateItems().size(), is(1));
+            assertThat(state.getStateItem("label" + i).getValue().getValue(), is((long) i));
+        }
+    }
+
+    @Test
+    public void updatesStatus() {
+        assertThat(stateTable.getState("item1"), nullValue());
+
+        stateTable.updateStatus("item1", Status.ACTIVE);
+        assertThat(stateTable.getState("item1").getDeviceStatus(), is(Status.ACTIVE));
+        assertThat(stateTable.getState("item1").getStateItems().isEmpty(), is(true));
+
+        stateTable.update("item1", "value", number(1l));
+        stateTable.updateStatus("item1", Status.DISCOVERED);
+
+        State state = stateTable.getState("item1");
+        assertThat(state.getDeviceStatus(), is(Status.DISCOVERED));
+        assertThat(state.getStateItem("value").getValue().getValue(), is(1l));
+    }
+
+    @Test
+    public void snapshotsDoNotChange() {
+        stateTable.update("item1", "value", number(1l));
+        stateTable.update("item2", "value", number(2l));
+        StateSnapshot snapshot = stateTable.getSnapshot();
+
+        stateTable.update("item1", "value", number(3l));
+        stateTable.update("item3", "value", number(4l));
+        StateSnapshot latest = stateTable.getSnapshot();
+
+        assertThat(snapshot.getVersion(), is(2l));
+        assertThat(snapshot.getStates().size(), is(2));
+        assertThat(snapshot.getState("item1").getStateItem("value").getValue().getValue(), is(1l));
+        assertThat(snapshot.getState("item3"), nullValue());
+
+        assertThat(latest.getVersion(), is(4l));
+        assertThat(latest.getStates().size(), is(3));
+        assertThat(latest.getState("item1").getStateItem("value").getValue().getValue(), is(3l));
+        assertThat(latest.getState("item2"), is(snapshot.getState("item2")));
+    }
+
+    @Test
+    public void changesSinceVersion() {
+        stateTable.update("item1", "value", number(1l));
+        stateTable.update("item2", "value", number(2l));
+        long version = stateTable.getSnapshot().getVersion();
+
+        stateTable.update("item2", "value", number(2l));
+        stateTable.update("item3", "value", number(3l));
+
+        Map<String, State> changes = stateTable.getSnapshot().getChangesSince(version);
+        assertThat(changes.size(), is(1));
+        assertThat(changes.get("item3").getStateItem("value").getValue().getValue(), is(3l));
+    }
+
+    @Test
+    public void snapshotsKeepLabelsAndTypes() {
+        stateTable.update("item1", "Value", number(1l));
+        StateSnapshot snapshot = stateTable.getSnapshot();
+
+        stateTable.update("item1", "value", string("on"));
+
+        State state = snapshot.getState("item1");
+        assertThat(state.getStateItems().get(0).getLabel(), is("Value"));
+        assertThat(state.getStateItem("value").getValue(), is((Value) number(1l)));
+        assertThat(stateTable.getState("item1").getStateItems().get(0).getLabel(), is("value"));
+        assertThat(stateTable.getState("item1").getStateItem("value").getValue(), is((Value) string("on")));
+    }
+
+    @Test
+    public void stateViewOfSnapshot() {
+        stateTable.update("item1", "value", number(1l));
+        State view = stateTable.getStateView("item1");
+
+        stateTable.update("item1", "value", number(2l));
+
+        assertThat(view.getItemId(), is("item1"));
+        assertThat(view.getStateItem("value").getValue().getValue(), is(1l));
+        assertThat(stateTable.getStateView("item1").getStateItem("value").getValue().getValue(), is(2l));
+    }
+
+    private static Value number(long value) {
+        return new ValueImpl(VALUE_TYPE.NUMBER, value);
+    }
+
+    private static Value string(String value) {
+        return new ValueImpl(VALUE_TYPE.STRING, value);
+    }
+}
@@ -0,0 +1,273 @@
+package com.oberasoftware.home.storage.jasdb;
+
+import com.google.common.collect.ImmutableList;
+import com.oberasoftware.home.api.model.storage.*;
+import com.oberasoftware.home.api.storage.HomeDAO;
+import com.oberasoftware.home.core.model.storage.*;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Caching decorator of the JasDB DAO, all entities of a type are cached after the first lookup. The
+ * {@link JasDBCentralDatastore} writes stored and deleted entities through to this cache, entities
+ * written directly to JasDB by other means are not seen until the cache is invalidated. The device
+ * cache is indexed on the plugin identity of a device as well, it is the single in-memory source of
+ * the device items.
+ *
+ * @author renarj
+ */
+@Component
+@Primary
+public class CachingHomeDAO implements HomeDAO {
+    private static final Logger LOG = getLogger(CachingHomeDAO.class);
+
+    private static final String CONTROLLER_INDEX = "controllerId";
+    private static final String PARENT_INDEX = "parentContainerId";
+    private static final String DASHBOARD_INDEX = "dashboardId";
+    private static final String CONTAINER_INDEX = "containerId";
+    private static final String DEVICE_INDEX = "device";
+
+    private static final List<IndexDefinition> INDEX_DEFINITIONS = ImmutableList.of(
+            IndexDefinition.of(ControllerItem.class, CONTROLLER_INDEX, ControllerItem::getControllerId),
+            IndexDefinition.of(PluginItem.class, CONTROLLER_INDEX, PluginItem::getControllerId),
+            IndexDefinition.of(DeviceItem.class, CONTROLLER_INDEX, DeviceItem::getControllerId),
+            IndexDefinition.of(DeviceItem.class, DEVICE_INDEX, d -> deviceKey(d.getControllerId(), d.getPluginId(), d.getDeviceId())),
+            IndexDefinition.of(VirtualItem.class, CONTROLLER_INDEX, VirtualItem::getControllerId),
+            IndexDefinition.of(RuleItem.class, CONTROLLER_INDEX, RuleItem::getControllerId),
+            IndexDefinition.of(Container.class, PARENT_INDEX, Container::getParentContainerId),
+            IndexDefinition.of(Container.class, DASHBOARD_INDEX, Container::getDashboardId),
+            IndexDefinition.of(Widget.class, CONTAINER_INDEX, Widget::getContainerId));
+
+    @Autowired
+    private JasDBDAO jasDBDAO;
+
+    @Value("${storage.cache.stats.interval:300000}")
+    private long statsInterval;
+
+    private final ConcurrentMap<Class<?>, EntityCache<?>> caches = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+
+    @PostConstruct
+    public void startStatsReporting() {
+        scheduledExecutorService.scheduleWithFixedDelay(this::reportStats, statsInterval, statsInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduledExecutorService.shutdown();
+    }
+
+    @Override
+    public <T extends HomeEntity> Optional<T> findItem(Class<T> type, String id) {
+        if(isCacheable(type)) {
+            return getCache(type).get(id);
+        }
+        return jasDBDAO.findItem(type, id);
+    }
+
+    @Override
+    public Optional<Container> findContainer(String id) {
+        return getCache(ContainerImpl.class).get(id).map(c -> c);
+    }
+
+    @Override
+    public List<Container> findDashboardContainers(String dashboardId) {
+        return new ArrayList<>(getCache(ContainerImpl.class).find(DASHBOARD_INDEX, dashboardId));
+    }
+
+    @Override
+    public List<Container> findContainers() {
+        return new ArrayList<>(getCache(ContainerImpl.class).getAll());
+    }
+
+    @Override
+    public List<Container> findContainers(String parentId) {
+        return new ArrayList<>(getCache(ContainerImpl.class).find(PARENT_INDEX, parentId));
+    }
+
+    @Override
+    public List<Dashboard> findDashboards() {
+        return getCache(DashboardImpl.class).getAll().stream()
+                .sorted(Comparator.comparingLong(Dashboard::getWeight))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Widget> findWidgets(String containerId) {
+        return new ArrayList<>(getCache(WidgetImpl.class).find(CONTAINER_INDEX, containerId));
+    }
+
+    @Override
+    public Optional<ControllerItem> findController(String controllerId) {
+        return getCache(ControllerItemImpl.class).find(CONTROLLER_INDEX, controllerId).stream()
+                .map(c -> (ControllerItem) c).findFirst();
+    }
+
+    @Override
+    public Optional<PluginItem> findPlugin(String controllerId, String pluginId) {
+        return getCache(PluginItemImpl.class).find(CONTROLLER_INDEX, controllerId).stream()
+                .filter(p -> pluginId.equals(p.getPluginId()))
+                .map(p -> (PluginItem) p).findFirst();
+    }
+
+    @Override
+    public List<ControllerItem> findControllers() {
+        return new ArrayList<>(getCache(ControllerItemImpl.class).getAll());
+    }
+
+    @Override
+    public List<PluginItem> findPlugins(String controllerId) {
+        return new ArrayList<>(getCache(PluginItemImpl.class).find(CONTROLLER_INDEX, controllerId));
+    }
+
+    @Override
+    public List<DeviceItem> findDevices(String controllerId, String pluginId) {
+        return getCache(DeviceItemImpl.class).find(CONTROLLER_INDEX, controllerId).stream()
+                .filter(d -> pluginId.equals(d.getPluginId()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Optional<DeviceItem> findDevice(String controllerId, String pluginId, String deviceId) {
+        return getCache(DeviceItemImpl.class).find(DEVICE_INDEX, deviceKey(controllerId, pluginId, deviceId)).stream()
+                .map(d -> (DeviceItem) d).findFirst();
+    }
+
+    @Override
+    public List<DeviceItem> findDevices(String controllerId) {
+        return new ArrayList<>(getCache(DeviceItemImpl.class).find(CONTROLLER_INDEX, controllerId));
+    }
+
+    @Override
+    public <T extends VirtualItem> List<T> findVirtualItems(Class<T> type) {
+        if(isCacheable(type)) {
+            return getCache(type).getAll();
+        }
+        return jasDBDAO.findVirtualItems(type);
+    }
+
+    @Override
+    public <T extends VirtualItem> List<T> findVirtualItems(Class<T> type, String controllerId) {
+        if(isCacheable(type)) {
+            return getCache(type).find(CONTROLLER_INDEX, controllerId);
+        }
+        return jasDBDAO.findVirtualItems(type, controllerId);
+    }
+
+    @Override
+    public List<RuleItem> findRules(String controllerId) {
+        return new ArrayList<>(getCache(RuleItemImpl.class).find(CONTROLLER_INDEX, controllerId));
+    }
+
+    @Override
+    public List<RuleItem> findRules() {
+        return new ArrayList<>(getCache(RuleItemImpl.class).getAll());
+    }
+
+    /**
+     * Updates the cached entity after it has been stored
+     */
+    public void update(HomeEntity entity) {
+        EntityCache<?> cache = caches.get(entity.getClass());
+        if(cache != null) {
+            cache.put(entity);
+        }
+    }
+
+    /**
+     * Removes the entity from the cache of the given type, or all caches of subtypes in case
+     * of an interface type, after it has been deleted
+     */
+    public void remove(Class<?> type, String id) {
+        caches.forEach((cacheType, cache) -> {
+            if(type.isAssignableFrom(cacheType)) {
+                cache.remove(id);
+            }
+        });
+    }
+
+    /**
+     * Invalidates the cache of the given type, the entities are reloaded on the next lookup
+     */
+    public void invalidate(Class<?> type) {
+        caches.forEach((cacheType, cache) -> {
+            if(type.isAssignableFrom(cacheType)) {
+                cache.invalidate();
+            }
+        });
+    }
+
+    public Map<String, EntityCacheStats> getStats() {
+        Map<String, EntityCacheStats> stats = new HashMap<>();
+        caches.values().forEach(c -> {
+            EntityCacheStats cacheStats = c.getStats();
+            stats.put(cacheStats.getEntityType(), cacheStats);
+        });
+        return stats;
+    }
+
+    public void reportStats() {
+        getStats().values().forEach(s -> LOG.info("Entity cache statistics: {}", s));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends HomeEntity> EntityCache<T> getCache(Class<T> type) {
+        return (EntityCache<T>) caches.computeIfAbsent(type, t -> {
+            Map<String, Function<Object, String>> indexKeys = new HashMap<>();
+            INDEX_DEFINITIONS.stream().filter(d -> d.type.isAssignableFrom(type))
+                    .forEach(d -> indexKeys.put(d.name, d.keyFunction));
+
+            return new EntityCache<>(type, () -> jasDBDAO.findAll(type), indexKeys);
+        });
+    }
+
+    private static String deviceKey(String controllerId, String pluginId, String deviceId) {
+        return controllerId + "/" + pluginId + "/" + deviceId;
+    }
+
+    /**
+     * Only concrete entity types are cached, as writes are applied to the cache of the class of the entity
+     */
+    private static boolean isCacheable(Class<?> type) {
+        return !type.isInterface() && !Modifier.isAbstract(type.getModifiers());
+    }
+
+    private static final class IndexDefinition {
+        private final Class<?> type;
+        private final String name;
+        private final Function<Object, String> keyFunction;
+
+        private IndexDefinition(Class<?> type, String name, Function<Object, String> keyFunction) {
+            this.type = type;
+            this.name = name;
+            this.keyFunction = keyFunction;
+        }
+
+        private static <T> IndexDefinition of(Class<T> type, String name, Function<T, String> keyFunction) {
+            return new IndexDefinition(type, name, e -> keyFunction.apply(type.cast(e)));
+        }
+    }
+}
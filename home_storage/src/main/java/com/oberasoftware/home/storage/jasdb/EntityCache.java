@@ -0,0 +1,163 @@
+package com.oberasoftware.home.storage.jasdb;
+
+import com.oberasoftware.home.api.model.storage.HomeEntity;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static java.util.Optional.ofNullable;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Cache holding all entities of a single entity type. The cache is loaded in full on first access
+ * and is kept up to date by the writes of the central datastore. Next to the id lookup the cache
+ * maintains secondary indexes, so lookups on a parent key do not need to scan all entities.
+ *
+ * The cached instances are handed out to the callers, which can modify them before storing. The
+ * index keys are therefore recorded per entity when indexing, so a stored entity is removed from
+ * the index keys it was found under and not from the keys it has been changed to.
+ *
+ * @author renarj
+ */
+class EntityCache<T extends HomeEntity> {
+    private static final Logger LOG = getLogger(EntityCache.class);
+
+    private final Class<T> type;
+    private final Supplier<List<T>> loader;
+    private final Map<String, Function<Object, String>> indexKeys;
+
+    private final ConcurrentMap<String, T> entities = new ConcurrentHashMap<>();
+    private final Map<String, ConcurrentMap<String, Set<String>>> indexes = new HashMap<>();
+    private final Map<String, Map<String, String>> indexedKeys = new HashMap<>();
+    private volatile boolean loaded = false;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    EntityCache(Class<T> type, Supplier<List<T>> loader, Map<String, Function<Object, String>> indexKeys) {
+        this.type = type;
+        this.loader = loader;
+        this.indexKeys = indexKeys;
+        indexKeys.keySet().forEach(index -> indexes.put(index, new ConcurrentHashMap<>()));
+    }
+
+    Optional<T> get(String id) {
+        ensureLoaded();
+        return ofNullable(entities.get(id));
+    }
+
+    List<T> getAll() {
+        ensureLoaded();
+        return new ArrayList<>(entities.values());
+    }
+
+    List<T> find(String index, String key) {
+        ensureLoaded();
+        Set<String> ids = key != null ? indexes.get(index).get(key) : null;
+        if(ids == null) {
+            return new ArrayList<>();
+        }
+
+        List<T> results = new ArrayList<>(ids.size());
+        ids.forEach(id -> {
+            T entity = entities.get(id);
+            if(entity != null) {
+                results.add(entity);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Updates the cache with a stored entity, this is a no-op if the cache was not loaded yet
+     * as the next load will read the stored entity from the database.
+     */
+    synchronized void put(HomeEntity entity) {
+        if(loaded) {
+            if(entity.getId() == null) {
+                invalidate();
+            } else {
+                entities.put(entity.getId(), type.cast(entity));
+                unindex(entity.getId());
+                index(entity);
+            }
+        }
+    }
+
+    synchronized void remove(String id) {
+        entities.remove(id);
+        unindex(id);
+    }
+
+    synchronized void invalidate() {
+        LOG.debug("Invalidating cache of: {}", type.getSimpleName());
+        loaded = false;
+        entities.clear();
+        indexes.values().forEach(Map::clear);
+        indexedKeys.clear();
+    }
+
+    EntityCacheStats getStats() {
+        return new EntityCacheStats(type.getSimpleName(), hits.get(), misses.get(), entities.size());
+    }
+
+    private void ensureLoaded() {
+        if(loaded) {
+            hits.incrementAndGet();
+        } else {
+            load();
+        }
+    }
+
+    private synchronized void load() {
+        if(!loaded) {
+            misses.incrementAndGet();
+
+            long start = System.currentTimeMillis();
+            List<T> results = loader.get();
+            results.forEach(entity -> {
+                entities.put(entity.getId(), entity);
+                index(entity);
+            });
+            loaded = true;
+            LOG.debug("Loaded: {} entities of type: {} in: {} ms", results.size(), type.getSimpleName(),
+                    System.currentTimeMillis() - start);
+        } else {
+            hits.incrementAndGet();
+        }
+    }
+
+    private void index(HomeEntity entity) {
+        Map<String, String> keys = new HashMap<>();
+        indexKeys.forEach((index, keyFunction) -> {
+            String key = keyFunction.apply(entity);
+            if(key != null) {
+                indexes.get(index).computeIfAbsent(key, k -> Collections.newSetFromMap(new ConcurrentHashMap<>()))
+                        .add(entity.getId());
+                keys.put(index, key);
+            }
+        });
+        indexedKeys.put(entity.getId(), keys);
+    }
+
+    private void unindex(String id) {
+        Map<String, String> keys = indexedKeys.remove(id);
+        if(keys != null) {
+            keys.forEach((index, key) -> indexes.get(index).computeIfPresent(key, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            }));
+        }
+    }
+}
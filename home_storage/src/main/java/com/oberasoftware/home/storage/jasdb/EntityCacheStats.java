@@ -0,0 +1,50 @@
+package com.oberasoftware.home.storage.jasdb;
+
+/**
+ * @author renarj
+ */
+public class EntityCacheStats {
+    private final String entityType;
+    private final long hits;
+    private final long misses;
+    private final long size;
+
+    public EntityCacheStats(String entityType, long hits, long misses, long size) {
+        this.entityType = entityType;
+        this.hits = hits;
+        this.misses = misses;
+        this.size = size;
+    }
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests > 0 ? (double) hits / requests : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return "EntityCacheStats{" +
+                "entityType='" + entityType + '\'' +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", size=" + size +
+                ", hitRate=" + String.format("%.3f", getHitRate()) +
+                '}';
+    }
+}
@@ -0,0 +1,72 @@
+package com.oberasoftware.home.storage.jasdb;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reentrant locks per entity type and key. A lock only exists while it is held or waited on, so
+ * the number of locks is bounded by the number of concurrent writers and distinct entities never
+ * share a lock.
+ *
+ * @author renarj
+ */
+class EntityLocks {
+    private final ConcurrentMap<EntityKey, EntityLock> locks = new ConcurrentHashMap<>();
+
+    void lock(Class<?> type, String key) {
+        EntityLock entityLock = locks.compute(new EntityKey(type, key), (k, l) -> {
+            EntityLock lock = l != null ? l : new EntityLock();
+            lock.users++;
+            return lock;
+        });
+        entityLock.lock();
+    }
+
+    void unlock(Class<?> type, String key) {
+        EntityKey entityKey = new EntityKey(type, key);
+        EntityLock entityLock = locks.get(entityKey);
+        if(entityLock == null || !entityLock.isHeldByCurrentThread()) {
+            throw new IllegalMonitorStateException("Lock on entity: " + type.getSimpleName() + " with key: " + key + " is not held");
+        }
+
+        entityLock.unlock();
+        locks.computeIfPresent(entityKey, (k, l) -> --l.users == 0 ? null : l);
+    }
+
+    int size() {
+        return locks.size();
+    }
+
+    private static final class EntityLock extends ReentrantLock {
+        private int users;
+    }
+
+    private static final class EntityKey {
+        private final Class<?> type;
+        private final String key;
+
+        private EntityKey(Class<?> type, String key) {
+            this.type = type;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            EntityKey entityKey = (EntityKey) o;
+
+            if (!type.equals(entityKey.type)) return false;
+            return key.equals(entityKey.key);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = type.hashCode();
+            result = 31 * result + key.hashCode();
+            return result;
+        }
+    }
+}
@@ -2,11 +2,11 @@ package com.oberasoftware.home.storage.jasdb;
 
 import com.oberasoftware.home.api.exceptions.DataStoreException;
 import com.oberasoftware.home.api.model.storage.Container;
+import com.oberasoftware.home.api.model.storage.DeviceItem;
 import com.oberasoftware.home.api.model.storage.HomeEntity;
 import com.oberasoftware.home.api.storage.CentralDatastore;
 import com.oberasoftware.home.api.storage.HomeDAO;
 import com.oberasoftware.jasdb.api.entitymapper.EntityManager;
-import nl.renarj.jasdb.api.DBSession;
 import nl.renarj.jasdb.core.exceptions.JasDBStorageException;
 import nl.renarj.jasdb.index.keys.types.StringKeyType;
 import nl.renarj.jasdb.index.search.CompositeIndexField;
@@ -16,8 +16,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -34,20 +35,48 @@ public class JasDBCentralDatastore implements CentralDatastore {
     private JasDBSessionFactory jasDBSessionFactory;
 
     @Autowired
-    private JasDBDAO jasDBDAO;
+    private CachingHomeDAO cachingHomeDAO;
 
-    private Lock lock = new ReentrantLock();
+    private final ReadWriteLock globalLock = new ReentrantReadWriteLock();
+
+    private final EntityLocks entityLocks = new EntityLocks();
 
     @Override
     public void beginTransaction() {
         LOG.debug("Locking DB access");
-        lock.lock();
+        globalLock.writeLock().lock();
     }
 
     @Override
     public void commitTransaction() {
         LOG.debug("Unlock DB access");
-        lock.unlock();
+        globalLock.writeLock().unlock();
+    }
+
+    @Override
+    public void beginTransaction(Class<?> type, String key) {
+        LOG.debug("Locking entity: {} with key: {}", type.getSimpleName(), key);
+        globalLock.readLock().lock();
+        if(key != null) {
+            try {
+                entityLocks.lock(type, key);
+            } catch(RuntimeException e) {
+                globalLock.readLock().unlock();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void commitTransaction(Class<?> type, String key) {
+        LOG.debug("Unlock entity: {} with key: {}", type.getSimpleName(), key);
+        try {
+            if(key != null) {
+                entityLocks.unlock(type, key);
+            }
+        } finally {
+            globalLock.readLock().unlock();
+        }
     }
 
     @PostConstruct
@@ -55,13 +84,16 @@ public class JasDBCentralDatastore implements CentralDatastore {
         LOG.debug("Creating a composite index");
 
         try {
-            jasDBSessionFactory.createSession().createOrGetBag(ITEMS_BAG_NAME).ensureIndex(
-                    new CompositeIndexField(
-                            new IndexField("controllerId", new StringKeyType()),
-                            new IndexField("pluginId", new StringKeyType()),
-                            new IndexField("deviceId", new StringKeyType()),
-                            new IndexField("type", new StringKeyType())
-                    ), false);
+            jasDBSessionFactory.withSession(session -> {
+                session.createOrGetBag(ITEMS_BAG_NAME).ensureIndex(
+                        new CompositeIndexField(
+                                new IndexField("controllerId", new StringKeyType()),
+                                new IndexField("pluginId", new StringKeyType()),
+                                new IndexField("deviceId", new StringKeyType()),
+                                new IndexField("type", new StringKeyType())
+                        ), false);
+                return null;
+            });
         } catch (JasDBStorageException e) {
             LOG.error("", e);
         }
@@ -70,9 +102,12 @@ public class JasDBCentralDatastore implements CentralDatastore {
     @Override
     public void delete(Class<?> type, String id) throws DataStoreException {
         try {
-            DBSession session = jasDBSessionFactory.createSession();
-            EntityManager entityManager = session.getEntityManager();
-            entityManager.remove(entityManager.findEntity(type, id));
+            jasDBSessionFactory.withSession(session -> {
+                EntityManager entityManager = session.getEntityManager();
+                entityManager.remove(entityManager.findEntity(type, id));
+                return null;
+            });
+            cachingHomeDAO.remove(type, id);
         } catch (JasDBStorageException e) {
             LOG.error("", e);
             throw new DataStoreException("Unable to delete entity: " + id);
@@ -96,21 +131,48 @@ public class JasDBCentralDatastore implements CentralDatastore {
         return container;
     }
 
+    @Override
+    public <T extends HomeEntity> List<T> store(List<T> entities) throws DataStoreException {
+        if(entities.isEmpty()) {
+            return entities;
+        }
+
+        LOG.debug("Storing batch of: {} entities", entities.size());
+        try {
+            jasDBSessionFactory.withSession(session -> {
+                EntityManager entityManager = session.getEntityManager();
+                for(T entity : entities) {
+                    entityManager.persist(entity);
+                    cachingHomeDAO.update(entity);
+                }
+                return null;
+            });
+        } catch (JasDBStorageException | RuntimeException e) {
+            LOG.error("", e);
+            entities.stream().map(Object::getClass).distinct().forEach(cachingHomeDAO::invalidate);
+            throw new DataStoreException("Unable to store batch of: " + entities.size() + " entities", e);
+        }
+
+        return entities;
+    }
+
     private void createOrUpdate(HomeEntity entity) throws DataStoreException {
         try {
-            DBSession session = jasDBSessionFactory.createSession();
-            EntityManager entityManager = session.getEntityManager();
-            entityManager.persist(entity);
+            jasDBSessionFactory.withSession(session -> session.getEntityManager().persist(entity));
+            cachingHomeDAO.update(entity);
         } catch (JasDBStorageException e) {
             LOG.error("", e);
+            //the entity can be a cached instance that was changed before storing, so drop the unstored changes
+            cachingHomeDAO.invalidate(entity.getClass());
             throw new DataStoreException("Unable to store item: " + entity, e);
         } catch(RuntimeException e) {
             LOG.error("", e);
+            cachingHomeDAO.invalidate(entity.getClass());
         }
     }
 
     @Override
     public HomeDAO getDAO() {
-        return jasDBDAO;
+        return cachingHomeDAO;
     }
 }
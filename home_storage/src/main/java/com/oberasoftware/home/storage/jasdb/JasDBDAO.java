@@ -5,8 +5,6 @@ import com.google.common.collect.Iterables;
 import com.oberasoftware.home.api.model.storage.*;
 import com.oberasoftware.home.api.storage.HomeDAO;
 import com.oberasoftware.home.core.model.storage.*;
-import com.oberasoftware.jasdb.api.entitymapper.EntityManager;
-import nl.renarj.jasdb.api.DBSession;
 import nl.renarj.jasdb.api.query.QueryBuilder;
 import nl.renarj.jasdb.core.exceptions.JasDBStorageException;
 import org.slf4j.Logger;
@@ -38,10 +36,7 @@ public class JasDBDAO implements HomeDAO {
     @Override
     public <T extends HomeEntity> Optional<T> findItem(Class<T> type, String id) {
         try {
-            DBSession session = sessionFactory.createSession();
-            EntityManager entityManager = session.getEntityManager();
-
-            T result = entityManager.findEntity(type, id);
+            T result = sessionFactory.withSession(session -> session.getEntityManager().findEntity(type, id));
             return Optional.ofNullable(result);
         } catch(JasDBStorageException e) {
             LOG.error("Unable to load item", e);
@@ -52,10 +47,7 @@ public class JasDBDAO implements HomeDAO {
     @Override
     public Optional<Container> findContainer(String id) {
         try {
-            DBSession session = sessionFactory.createSession();
-            EntityManager entityManager = session.getEntityManager();
-
-            ContainerImpl container = entityManager.findEntity(ContainerImpl.class, id);
+            ContainerImpl container = sessionFactory.withSession(session -> session.getEntityManager().findEntity(ContainerImpl.class, id));
             return Optional.of(container);
         } catch(JasDBStorageException e) {
             LOG.error("Unable to load container", e);
@@ -168,6 +160,10 @@ public class JasDBDAO implements HomeDAO {
         return newArrayList(findItems(RuleItemImpl.class, new HashMap<>()));
     }
 
+    <T> List<T> findAll(Class<T> type) {
+        return findItems(type, new HashMap<>());
+    }
+
     private <T> T findItem(Class<T> type, Map<String, String> properties) {
         List<T> items = findItems(type, properties);
         return Iterables.getFirst(items, null);
@@ -181,14 +177,11 @@ public class JasDBDAO implements HomeDAO {
         List<T> results = new ArrayList<>();
 
         try {
-            DBSession session = sessionFactory.createSession();
-            EntityManager entityManager = session.getEntityManager();
-
             QueryBuilder queryBuilder = QueryBuilder.createBuilder();
             properties.forEach((k, v) -> queryBuilder.field(k).value(v));
             orderedBy.forEach(queryBuilder::sortBy);
 
-            return entityManager.findEntities(type, queryBuilder);
+            return sessionFactory.withSession(session -> session.getEntityManager().findEntities(type, queryBuilder));
         } catch (JasDBStorageException e) {
             LOG.error("Unable to query JasDB", e);
         }
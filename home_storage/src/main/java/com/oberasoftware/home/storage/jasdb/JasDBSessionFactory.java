@@ -8,10 +8,24 @@ import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Iterator;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
 import static nl.renarj.core.utilities.StringUtils.stringNotEmpty;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
+ * Pool of JasDB sessions, sessions are borrowed for the duration of a callback and returned afterwards
+ * so the session and any client state of a remote session is reused. Sessions that have been idle for
+ * a while are validated before they are handed out and evicted once they exceed the idle timeout.
+ *
  * @author renarj
  */
 @Component
@@ -33,8 +47,135 @@ public class JasDBSessionFactory {
     @Value("${jasdb.instance:default}")
     private String jasdbInstance;
 
+    @Value("${jasdb.pool.size:8}")
+    private int poolSize;
+
+    @Value("${jasdb.pool.borrow.timeout:5000}")
+    private long borrowTimeout;
+
+    @Value("${jasdb.pool.idle.timeout:300000}")
+    private long idleTimeout;
+
+    @Value("${jasdb.pool.validate.after:30000}")
+    private long validateAfter;
+
+    private final BlockingDeque<PooledSession> idleSessions = new LinkedBlockingDeque<>();
+
+    private final ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+
+    private Semaphore permits;
+
+    @PostConstruct
+    public void initialise() {
+        LOG.info("Starting JasDB session pool with a maximum of: {} sessions", poolSize);
+        permits = new Semaphore(poolSize, true);
+
+        long evictionInterval = Math.max(idleTimeout / 2, 1000);
+        scheduledExecutorService.scheduleWithFixedDelay(this::evictIdleSessions, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduledExecutorService.shutdown();
+        closeIdleSessions();
+    }
+
+    /**
+     * Closes all idle sessions, sessions that are in use are still returned to the pool
+     */
+    public void closeIdleSessions() {
+        PooledSession pooledSession;
+        while((pooledSession = idleSessions.pollFirst()) != null) {
+            close(pooledSession.session);
+        }
+    }
+
+    /**
+     * Executes the callback with a session borrowed from the pool. The session is returned to the pool
+     * when the callback completes, if the callback fails the session is closed instead as its state is unknown.
+     */
+    public <T> T withSession(SessionCallback<T> callback) throws JasDBStorageException {
+        DBSession session = borrowSession();
+        boolean healthy = false;
+        try {
+            T result = callback.doInSession(session);
+            healthy = true;
+            return result;
+        } finally {
+            returnSession(session, healthy);
+        }
+    }
+
+    public int getIdleSessions() {
+        return idleSessions.size();
+    }
+
+    private DBSession borrowSession() throws JasDBStorageException {
+        try {
+            if(!permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+                throw new JasDBStorageException("Timed out after: " + borrowTimeout + " ms waiting for a JasDB session");
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JasDBStorageException("Interrupted waiting for a JasDB session", e);
+        }
+
+        try {
+            PooledSession pooledSession;
+            while((pooledSession = idleSessions.pollFirst()) != null) {
+                if(System.currentTimeMillis() - pooledSession.lastUsed < validateAfter || isHealthy(pooledSession.session)) {
+                    return pooledSession.session;
+                }
 
-    public DBSession createSession() throws JasDBStorageException {
+                LOG.debug("Discarding unhealthy JasDB session");
+                close(pooledSession.session);
+            }
+            return createSession();
+        } catch(JasDBStorageException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void returnSession(DBSession session, boolean healthy) {
+        if(healthy) {
+            idleSessions.offerFirst(new PooledSession(session, System.currentTimeMillis()));
+        } else {
+            close(session);
+        }
+        permits.release();
+    }
+
+    private boolean isHealthy(DBSession session) {
+        try {
+            return session.getInstance(jasdbInstance) != null;
+        } catch(JasDBStorageException | RuntimeException e) {
+            LOG.debug("JasDB session health check failed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    void evictIdleSessions() {
+        long evictBefore = System.currentTimeMillis() - idleTimeout;
+        Iterator<PooledSession> sessions = idleSessions.descendingIterator();
+        while(sessions.hasNext()) {
+            PooledSession pooledSession = sessions.next();
+            if(pooledSession.lastUsed < evictBefore && idleSessions.removeLastOccurrence(pooledSession)) {
+                LOG.debug("Evicting JasDB session idle since: {}", pooledSession.lastUsed);
+                close(pooledSession.session);
+            }
+        }
+    }
+
+    private void close(DBSession session) {
+        try {
+            session.closeSession();
+        } catch(JasDBStorageException | RuntimeException e) {
+            LOG.warn("Unable to cleanly close JasDB session: {}", e.getMessage());
+        }
+    }
+
+    DBSession createSession() throws JasDBStorageException {
         DBSession session;
         if(stringNotEmpty(jasdbMode) && jasdbMode.equals("rest")) {
             LOG.debug("Creating JasDB REST session to host: {} port: {} instance: {}", jasdbHost, jasdbPort, jasdbInstance);
@@ -62,4 +203,19 @@ public class JasDBSessionFactory {
 //            });
         }
     }
+
+    @FunctionalInterface
+    public interface SessionCallback<T> {
+        T doInSession(DBSession session) throws JasDBStorageException;
+    }
+
+    private static final class PooledSession {
+        private final DBSession session;
+        private final long lastUsed;
+
+        private PooledSession(DBSession session, long lastUsed) {
+            this.session = session;
+            this.lastUsed = lastUsed;
+        }
+    }
 }
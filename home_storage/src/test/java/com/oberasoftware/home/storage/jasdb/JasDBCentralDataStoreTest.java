@@ -2,6 +2,7 @@ package com.oberasoftware.home.storage.jasdb;
 
 import com.oberasoftware.home.api.exceptions.DataStoreException;
 import com.oberasoftware.home.api.model.storage.DeviceItem;
+import com.oberasoftware.home.api.model.storage.Widget;
 import com.oberasoftware.home.core.model.storage.DeviceItemImpl;
 import com.oberasoftware.home.core.model.storage.WidgetImpl;
 import nl.renarj.jasdb.core.SimpleKernel;
@@ -20,11 +21,19 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import static com.google.common.collect.Lists.newArrayList;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -41,6 +50,12 @@ public class JasDBCentralDataStoreTest {
     @Autowired
     private JasDBDAO jasDBDAO;
 
+    @Autowired
+    private CachingHomeDAO cachingHomeDAO;
+
+    @Autowired
+    private JasDBSessionFactory sessionFactory;
+
     @ClassRule
     public static TemporaryFolder folder = new TemporaryFolder();
 
@@ -51,6 +66,7 @@ public class JasDBCentralDataStoreTest {
 
     @After
     public void tearDown() throws JasDBException {
+        sessionFactory.closeIdleSessions();
         SimpleKernel.shutdown();
     }
 
@@ -73,6 +89,27 @@ public class JasDBCentralDataStoreTest {
         assertThat(item.get().getName(), is("updated name"));
     }
 
+    @Test
+    public void deleteDeviceRemovesFromCache() throws JasDBException, DataStoreException {
+        String id = UUID.randomUUID().toString();
+
+        centralDatastore.store(new DeviceItemImpl(id, "controller1", "plugin1", "device2", "indexed device", new HashMap<>()));
+
+        assertThat(cachingHomeDAO.findDevice("controller1", "plugin1", "device2").isPresent(), is(true));
+        assertThat(cachingHomeDAO.findItem(DeviceItemImpl.class, id).isPresent(), is(true));
+
+        centralDatastore.store(new DeviceItemImpl(id, "controller1", "plugin1", "device3", "moved device", new HashMap<>()));
+
+        assertThat(cachingHomeDAO.findDevice("controller1", "plugin1", "device2").isPresent(), is(false));
+        assertThat(cachingHomeDAO.findDevice("controller1", "plugin1", "device3").get().getId(), is(id));
+
+        centralDatastore.delete(DeviceItemImpl.class, id);
+
+        assertThat(cachingHomeDAO.findDevice("controller1", "plugin1", "device3").isPresent(), is(false));
+        assertThat(cachingHomeDAO.findItem(DeviceItemImpl.class, id).isPresent(), is(false));
+        assertThat(jasDBDAO.findDevice("controller1", "plugin1", "device2").isPresent(), is(false));
+    }
+
     @Test
     public void storeAndUpdateUIItem() throws JasDBException, DataStoreException {
         String id1 = UUID.randomUUID().toString();
@@ -83,4 +120,97 @@ public class JasDBCentralDataStoreTest {
 
         assertThat(jasDBDAO.findWidgets("container1").size(), is(2));
     }
+
+    @Test
+    public void cachedWidgetsFollowWrites() throws JasDBException, DataStoreException {
+        String id1 = UUID.randomUUID().toString();
+        String id2 = UUID.randomUUID().toString();
+
+        centralDatastore.store(new WidgetImpl(id1, "Cached 1", "container2", "switch", "item1", new HashMap<>(), 0));
+        assertThat(cachingHomeDAO.findWidgets("container2").size(), is(1));
+
+        centralDatastore.store(new WidgetImpl(id2, "Cached 2", "container2", "switch", "item2", new HashMap<>(), 0));
+        assertThat(cachingHomeDAO.findWidgets("container2").size(), is(2));
+
+        centralDatastore.store(new WidgetImpl(id1, "Moved", "container3", "switch", "item1", new HashMap<>(), 0));
+        List<Widget> widgets = cachingHomeDAO.findWidgets("container3");
+        assertThat(widgets.size(), is(1));
+        assertThat(widgets.get(0).getName(), is("Moved"));
+        assertThat(cachingHomeDAO.findWidgets("container2").size(), is(1));
+
+        centralDatastore.delete(WidgetImpl.class, id2);
+        assertThat(cachingHomeDAO.findWidgets("container2").size(), is(0));
+        assertThat(cachingHomeDAO.findItem(WidgetImpl.class, id2).isPresent(), is(false));
+        assertThat(jasDBDAO.findWidgets("container3").size(), is(1));
+
+        assertThat(cachingHomeDAO.getStats().get("WidgetImpl").getMisses(), is(1L));
+    }
+
+    @Test
+    public void cachedDeviceLookup() throws JasDBException, DataStoreException {
+        String id = UUID.randomUUID().toString();
+
+        assertThat(cachingHomeDAO.findDevice("controller2", "plugin1", "device1").isPresent(), is(false));
+        centralDatastore.store(new DeviceItemImpl(id, "controller2", "plugin1", "device1", "cached device", new HashMap<>()));
+
+        Optional<DeviceItem> item = cachingHomeDAO.findDevice("controller2", "plugin1", "device1");
+        assertThat(item.isPresent(), is(true));
+        assertThat(item.get().getName(), is("cached device"));
+        assertThat(cachingHomeDAO.findDevices("controller2", "plugin2").size(), is(0));
+        assertThat(centralDatastore.getDAO().findDevices("controller2").size(), is(1));
+    }
+
+    @Test
+    public void sessionsAreReturnedToPool() throws JasDBException, DataStoreException {
+        sessionFactory.closeIdleSessions();
+
+        centralDatastore.store(new DeviceItemImpl(UUID.randomUUID().toString(), "controller3", "plugin1", "device1", "pooled device", new HashMap<>()));
+        assertThat(sessionFactory.getIdleSessions(), is(1));
+
+        assertThat(jasDBDAO.findDevices("controller3").size(), is(1));
+        assertThat(sessionFactory.getIdleSessions(), is(1));
+    }
+
+    @Test
+    public void entityTransactionsOnlyBlockSameEntity() throws Exception {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        centralDatastore.beginTransaction(WidgetImpl.class, "widget1");
+        try {
+            Future<?> otherEntity = executorService.submit(() -> {
+                centralDatastore.beginTransaction(WidgetImpl.class, "widget2");
+                centralDatastore.commitTransaction(WidgetImpl.class, "widget2");
+            });
+            otherEntity.get(5, TimeUnit.SECONDS);
+
+            Future<?> sameEntity = executorService.submit(() -> {
+                centralDatastore.beginTransaction(WidgetImpl.class, "widget1");
+                centralDatastore.commitTransaction(WidgetImpl.class, "widget1");
+            });
+            try {
+                sameEntity.get(200, TimeUnit.MILLISECONDS);
+                fail("Transaction on a locked entity should block");
+            } catch(TimeoutException e) {
+                LOG.debug("Transaction on same entity is blocked as expected");
+            }
+
+            centralDatastore.commitTransaction(WidgetImpl.class, "widget1");
+            sameEntity.get(5, TimeUnit.SECONDS);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void storeDeviceBatch() throws JasDBException, DataStoreException {
+        List<DeviceItem> devices = newArrayList(
+                new DeviceItemImpl(UUID.randomUUID().toString(), "controller4", "plugin1", "device1", "batch device 1", new HashMap<>()),
+                new DeviceItemImpl(UUID.randomUUID().toString(), "controller4", "plugin1", "device2", "batch device 2", new HashMap<>()),
+                new DeviceItemImpl(UUID.randomUUID().toString(), "controller4", "plugin2", "device1", "batch device 3", new HashMap<>()));
+
+        assertThat(centralDatastore.store(devices).size(), is(3));
+
+        assertThat(jasDBDAO.findDevices("controller4").size(), is(3));
+        assertThat(cachingHomeDAO.findDevices("controller4", "plugin1").size(), is(2));
+        assertThat(cachingHomeDAO.findDevice("controller4", "plugin2", "device1").get().getName(), is("batch device 3"));
+    }
 }
@@ -0,0 +1,127 @@
+package com.oberasoftware.home.storage.jasdb;
+
+import nl.renarj.jasdb.api.DBSession;
+import nl.renarj.jasdb.api.metadata.Instance;
+import nl.renarj.jasdb.core.exceptions.JasDBStorageException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+/**
+ * @author renarj
+ */
+public class JasDBSessionFactoryTest {
+
+    private final List<DBSession> createdSessions = new ArrayList<>();
+
+    private JasDBSessionFactory sessionFactory;
+
+    @Before
+    public void setUp() {
+        createdSessions.clear();
+        sessionFactory = new JasDBSessionFactory() {
+            @Override
+            DBSession createSession() throws JasDBStorageException {
+                DBSession session = mock(DBSession.class);
+                createdSessions.add(session);
+                return session;
+            }
+        };
+        setField(sessionFactory, "jasdbInstance", "default");
+        setField(sessionFactory, "poolSize", 1);
+        setField(sessionFactory, "borrowTimeout", 50L);
+        setField(sessionFactory, "idleTimeout", 300000L);
+        setField(sessionFactory, "validateAfter", 30000L);
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.shutdown();
+    }
+
+    @Test
+    public void borrowTimesOutWhenExhausted() throws Exception {
+        sessionFactory.initialise();
+
+        sessionFactory.withSession(outer -> {
+            try {
+                sessionFactory.withSession(inner -> inner);
+                fail("Expected the borrow to time out as the only session is in use");
+            } catch(JasDBStorageException e) {
+                assertThat(e.getMessage().contains("Timed out"), is(true));
+            }
+            return outer;
+        });
+
+        assertThat(createdSessions.size(), is(1));
+        assertThat(sessionFactory.getIdleSessions(), is(1));
+
+        DBSession session = sessionFactory.withSession(s -> s);
+        assertThat(session, sameInstance(createdSessions.get(0)));
+    }
+
+    @Test
+    public void unhealthyIdleSessionReplaced() throws Exception {
+        setField(sessionFactory, "validateAfter", 0L);
+        sessionFactory.initialise();
+
+        DBSession first = sessionFactory.withSession(s -> s);
+        when(first.getInstance(anyString())).thenReturn(null);
+        Thread.sleep(5);
+
+        DBSession second = sessionFactory.withSession(s -> s);
+
+        assertThat(createdSessions.size(), is(2));
+        assertThat(second, sameInstance(createdSessions.get(1)));
+        verify(first).closeSession();
+        assertThat(sessionFactory.getIdleSessions(), is(1));
+    }
+
+    @Test
+    public void healthyIdleSessionReused() throws Exception {
+        setField(sessionFactory, "validateAfter", 0L);
+        sessionFactory.initialise();
+
+        DBSession first = sessionFactory.withSession(s -> s);
+        when(first.getInstance("default")).thenReturn(mock(Instance.class));
+        Thread.sleep(5);
+
+        DBSession second = sessionFactory.withSession(s -> s);
+
+        assertThat(second, sameInstance(first));
+        assertThat(createdSessions.size(), is(1));
+        verify(first, never()).closeSession();
+    }
+
+    @Test
+    public void idleSessionEvicted() throws Exception {
+        setField(sessionFactory, "idleTimeout", 200L);
+        sessionFactory.initialise();
+
+        DBSession session = sessionFactory.withSession(s -> s);
+        assertThat(sessionFactory.getIdleSessions(), is(1));
+
+        sessionFactory.evictIdleSessions();
+        assertThat(sessionFactory.getIdleSessions(), is(1));
+
+        Thread.sleep(250);
+        sessionFactory.evictIdleSessions();
+
+        assertThat(sessionFactory.getIdleSessions(), is(0));
+        verify(session).closeSession();
+    }
+}
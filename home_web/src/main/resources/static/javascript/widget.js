@@ -13,7 +13,10 @@ function connect() {
     stompClient.connect({}, function(frame) {
         console.log('Connected: ' + frame);
         stompClient.subscribe('/topic/state', function(frame){
-            handleStateUpdate(JSON.parse(frame.body));
+            //state updates are sent in batches, one state per item
+            $.each(JSON.parse(frame.body), function(i, state) {
+                handleStateUpdate(state);
+            });
         });
     });
 }
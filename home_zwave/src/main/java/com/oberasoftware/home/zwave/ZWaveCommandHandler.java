@@ -1,6 +1,5 @@
 package com.oberasoftware.home.zwave;
 
-import com.oberasoftware.home.api.AutomationBus;
 import com.oberasoftware.home.api.commands.Command;
 import com.oberasoftware.home.api.commands.ItemValueCommand;
 import com.oberasoftware.home.api.commands.SwitchCommand;
@@ -8,14 +7,15 @@ import com.oberasoftware.home.api.commands.handlers.DeviceCommandHandler;
 import com.oberasoftware.home.api.model.storage.DeviceItem;
 import com.oberasoftware.home.api.types.VALUE_TYPE;
 import com.oberasoftware.home.api.types.Value;
+import com.oberasoftware.home.zwave.ZWaveCommandQueue.NodeAddress;
 import com.oberasoftware.home.zwave.api.actions.SwitchAction;
-import com.oberasoftware.home.zwave.api.events.devices.SwitchEvent;
-import com.oberasoftware.home.zwave.api.events.devices.SwitchLevelEvent;
-import com.oberasoftware.home.zwave.exceptions.HomeAutomationException;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import static com.oberasoftware.home.zwave.api.actions.SwitchAction.STATE.OFF;
 import static com.oberasoftware.home.zwave.api.actions.SwitchAction.STATE.ON;
 import static org.slf4j.LoggerFactory.getLogger;
@@ -28,10 +28,9 @@ public class ZWaveCommandHandler implements DeviceCommandHandler {
     private static final Logger LOG = getLogger(ZWaveCommandHandler.class);
 
     @Autowired
-    private ZWaveController zWaveController;
+    private ZWaveCommandQueue commandQueue;
 
-    @Autowired
-    private AutomationBus automationBus;
+    private final ConcurrentMap<String, NodeAddress> nodeAddresses = new ConcurrentHashMap<>();
 
     @Override
     public void receive(DeviceItem item, Command command) {
@@ -39,27 +38,15 @@ public class ZWaveCommandHandler implements DeviceCommandHandler {
 
         if(command instanceof SwitchCommand) {
             SwitchCommand switchCommand = (SwitchCommand) command;
-
-            String[] idParts = item.getDeviceId().split("-");
-            int nodeId = Integer.parseInt(idParts[0]);
-            int endpointId = Integer.parseInt(idParts[1]);
+            NodeAddress address = getAddress(item);
 
             SwitchAction.STATE desiredState = switchCommand.getState() == SwitchCommand.STATE.ON ? ON : OFF;
 
-            LOG.debug("Received a switch command for node: {} desired state: {}", nodeId, desiredState);
-
-            try {
-                zWaveController.send(new SwitchAction(nodeId, endpointId, desiredState));
-            } catch (HomeAutomationException e) {
-                LOG.error("", e);
-            } finally {
-                automationBus.publish(new SwitchEvent(nodeId, endpointId, desiredState == ON));
-            }
+            LOG.debug("Received a switch command for node: {} desired state: {}", address, desiredState);
+            commandQueue.queueSwitch(address, desiredState);
         } else if(command instanceof ItemValueCommand) {
             ItemValueCommand valueCommand = (ItemValueCommand) command;
-            String[] idParts = item.getDeviceId().split("-");
-            int nodeId = Integer.parseInt(idParts[0]);
-            int endpointId = Integer.parseInt(idParts[1]);
+            NodeAddress address = getAddress(item);
 
             long level;
             Value value = valueCommand.getValue("value");
@@ -69,13 +56,12 @@ public class ZWaveCommandHandler implements DeviceCommandHandler {
                 level = Long.parseLong(value.asString());
             }
 
-            try {
-                zWaveController.send(new SwitchAction(nodeId, endpointId, (int)level));
-            } catch(HomeAutomationException e) {
-                LOG.error("", e);
-            } finally {
-                automationBus.publish(new SwitchLevelEvent(nodeId, (int)level));
-            }
+            LOG.debug("Received a level command for node: {} level: {}", address, level);
+            commandQueue.queueLevel(address, (int)level);
         }
     }
+
+    private NodeAddress getAddress(DeviceItem item) {
+        return nodeAddresses.computeIfAbsent(item.getDeviceId(), NodeAddress::parse);
+    }
 }
@@ -0,0 +1,176 @@
+package com.oberasoftware.home.zwave;
+
+import com.oberasoftware.home.api.AutomationBus;
+import com.oberasoftware.home.zwave.api.actions.SwitchAction;
+import com.oberasoftware.home.zwave.api.events.devices.SwitchEvent;
+import com.oberasoftware.home.zwave.api.events.devices.SwitchLevelEvent;
+import com.oberasoftware.home.zwave.exceptions.HomeAutomationException;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.oberasoftware.home.zwave.api.actions.SwitchAction.STATE.ON;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Queues the switch and level commands for the ZWave nodes and sends them to the controller at a pace the
+ * radio can handle. Only the latest pending switch state and the latest pending level are kept per node
+ * endpoint, so a burst of level updates results in a single command. Switch commands are sent before level
+ * updates, a switch command replaces a pending level of the same endpoint so it can not be overtaken by it.
+ *
+ * @author renarj
+ */
+@Component
+public class ZWaveCommandQueue {
+    private static final Logger LOG = getLogger(ZWaveCommandQueue.class);
+
+    @Autowired
+    private ZWaveController zWaveController;
+
+    @Autowired
+    private AutomationBus automationBus;
+
+    @Value("${zwave.command.interval:100}")
+    private long commandInterval;
+
+    private final ConcurrentMap<NodeAddress, SwitchAction.STATE> pendingSwitches = new ConcurrentHashMap<>();
+    private final Queue<NodeAddress> switchOrder = new ConcurrentLinkedQueue<>();
+
+    private final ConcurrentMap<NodeAddress, Integer> pendingLevels = new ConcurrentHashMap<>();
+    private final Queue<NodeAddress> levelOrder = new ConcurrentLinkedQueue<>();
+
+    private final ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+
+    @PostConstruct
+    public void start() {
+        scheduledExecutorService.scheduleWithFixedDelay(this::sendNext, commandInterval, commandInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduledExecutorService.shutdown();
+    }
+
+    public void queueSwitch(NodeAddress address, SwitchAction.STATE state) {
+        pendingLevels.remove(address);
+        if(pendingSwitches.put(address, state) == null) {
+            switchOrder.add(address);
+        }
+    }
+
+    public void queueLevel(NodeAddress address, int level) {
+        if(pendingLevels.put(address, level) == null) {
+            levelOrder.add(address);
+        } else {
+            LOG.debug("Replaced pending level for node: {} with: {}", address, level);
+        }
+    }
+
+    private void sendNext() {
+        try {
+            if(!sendSwitch()) {
+                sendLevel();
+            }
+        } catch(RuntimeException e) {
+            LOG.error("Unable to send ZWave command", e);
+        }
+    }
+
+    private boolean sendSwitch() {
+        NodeAddress address;
+        while((address = switchOrder.poll()) != null) {
+            SwitchAction.STATE state = pendingSwitches.remove(address);
+            if(state != null) {
+                LOG.debug("Sending switch command for node: {} desired state: {}", address, state);
+                try {
+                    zWaveController.send(new SwitchAction(address.getNodeId(), address.getEndpointId(), state));
+                } catch (HomeAutomationException e) {
+                    LOG.error("Unable to send switch command to node: " + address, e);
+                } finally {
+                    automationBus.publish(new SwitchEvent(address.getNodeId(), address.getEndpointId(), state == ON));
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void sendLevel() {
+        NodeAddress address;
+        while((address = levelOrder.poll()) != null) {
+            //the level can be gone when a switch command replaced it
+            Integer level = pendingLevels.remove(address);
+            if(level != null) {
+                LOG.debug("Sending level command for node: {} level: {}", address, level);
+                try {
+                    zWaveController.send(new SwitchAction(address.getNodeId(), address.getEndpointId(), level));
+                } catch(HomeAutomationException e) {
+                    LOG.error("Unable to send level command to node: " + address, e);
+                } finally {
+                    automationBus.publish(new SwitchLevelEvent(address.getNodeId(), level));
+                }
+                return;
+            }
+        }
+    }
+
+    public static final class NodeAddress {
+        private final int nodeId;
+        private final int endpointId;
+
+        public NodeAddress(int nodeId, int endpointId) {
+            this.nodeId = nodeId;
+            this.endpointId = endpointId;
+        }
+
+        /**
+         * @param deviceId The device id in the form nodeId-endpointId
+         */
+        public static NodeAddress parse(String deviceId) {
+            String[] idParts = deviceId.split("-");
+            return new NodeAddress(Integer.parseInt(idParts[0]), Integer.parseInt(idParts[1]));
+        }
+
+        public int getNodeId() {
+            return nodeId;
+        }
+
+        public int getEndpointId() {
+            return endpointId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            NodeAddress that = (NodeAddress) o;
+
+            if (nodeId != that.nodeId) return false;
+            return endpointId == that.endpointId;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = nodeId;
+            result = 31 * result + endpointId;
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return nodeId + "-" + endpointId;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.oberasoftware.home.state.influxdb;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * A single buffered row waiting to be written to an InfluxDB serie
+ *
+ * @author renarj
+ */
+class InfluxDBPoint {
+    private static final String[] VALUE_COLUMNS = new String[]{"time", "itemId", "pluginId", "deviceId", "label", "value"};
+
+    private static final String SEPARATOR = "\t";
+    private static final String COLUMN_SEPARATOR = ",";
+
+    private final String serie;
+    private final String[] columns;
+    private final Object[] values;
+    private final long time;
+    private final long created = System.currentTimeMillis();
+
+    InfluxDBPoint(String serie, String[] columns, long time, Object... values) {
+        this.serie = serie;
+        this.columns = columns;
+        this.time = time;
+        this.values = values;
+    }
+
+    static InfluxDBPoint valuePoint(String controllerId, long time, String itemId, String pluginId, String deviceId, String label, double value) {
+        return new InfluxDBPoint(controllerId, VALUE_COLUMNS, time, time, itemId, pluginId, deviceId, label, value);
+    }
+
+    String getSerie() {
+        return serie;
+    }
+
+    String[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return The moment this point was buffered, used to determine the age of a batch
+     */
+    long getCreated() {
+        return created;
+    }
+
+    Object[] getValues() {
+        return values;
+    }
+
+    /**
+     * @return The point as a single line used for spilling the point to disk
+     */
+    String toLine() {
+        StringBuilder builder = new StringBuilder(serie).append(SEPARATOR)
+                .append(String.join(COLUMN_SEPARATOR, columns)).append(SEPARATOR).append(time);
+        for(Object value : values) {
+            builder.append(SEPARATOR).append(encode(value));
+        }
+        return builder.toString();
+    }
+
+    static Optional<InfluxDBPoint> fromLine(String line) {
+        String[] parts = line.split(SEPARATOR);
+        if(parts.length > 3) {
+            try {
+                String[] columns = parts[1].split(COLUMN_SEPARATOR);
+                Object[] values = new Object[parts.length - 3];
+                for(int i=0; i<values.length; i++) {
+                    values[i] = decode(parts[i + 3]);
+                }
+                return Optional.of(new InfluxDBPoint(parts[0], columns, Long.parseLong(parts[2]), values));
+            } catch(IllegalArgumentException e) {
+                return Optional.empty();
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static String encode(Object value) {
+        if(value instanceof Long || value instanceof Integer) {
+            return "l:" + value;
+        } else if(value instanceof Number) {
+            return "d:" + value;
+        } else {
+            return "s:" + value;
+        }
+    }
+
+    private static Object decode(String value) {
+        String data = value.substring(2);
+        if(value.startsWith("l:")) {
+            return Long.parseLong(data);
+        } else if(value.startsWith("d:")) {
+            return Double.parseDouble(data);
+        } else if(value.startsWith("s:")) {
+            return data;
+        }
+        throw new IllegalArgumentException("Unknown value encoding: " + value);
+    }
+
+    @Override
+    public String toString() {
+        return "InfluxDBPoint{" +
+                "serie='" + serie + '\'' +
+                ", columns=" + Arrays.toString(columns) +
+                ", values=" + Arrays.toString(values) +
+                '}';
+    }
+}
@@ -0,0 +1,20 @@
+package com.oberasoftware.home.state.influxdb;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * @author renarj
+ */
+@RestController
+@RequestMapping("/influxdb")
+public class InfluxDBRestController {
+    @Autowired
+    private InfluxDBWriter influxDBWriter;
+
+    @RequestMapping("/writer")
+    public InfluxDBWriterStats getWriterStats() {
+        return influxDBWriter.getStats();
+    }
+}
@@ -9,6 +9,7 @@ import org.influxdb.InfluxDB;
 import org.influxdb.InfluxDBFactory;
 import org.influxdb.dto.Serie;
 import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -16,12 +17,20 @@ import javax.annotation.PostConstruct;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
+ * Stores the time series in InfluxDB. Data points are read from the rollups of the requested grouping, only
+ * the part of a period before the rollups of a series started is aggregated from the raw values. The start
+ * of the rollups is looked up once per series and kept in memory, as it does not change afterwards.
+ *
  * @author renarj
  */
 @Component
@@ -43,9 +52,16 @@ public class InfluxDBStateStore implements TimeSeriesStore {
     @Value("${influxdb.port:0}")
     private int port;
 
+    @Autowired
+    private InfluxDBWriter influxDBWriter;
+
+    @Autowired
+    private RollupAggregator rollupAggregator;
 
     private InfluxDB influxDB;
 
+    private final ConcurrentMap<String, Long> rollupStarts = new ConcurrentHashMap<>();
+
     @PostConstruct
     public void initialise() {
         if(StringUtils.stringNotEmpty(host)) {
@@ -54,6 +70,7 @@ public class InfluxDBStateStore implements TimeSeriesStore {
             String connectionString = String.format("http://%s:%d", host, port);
 
             this.influxDB = InfluxDBFactory.connect(connectionString, user, password);
+            influxDBWriter.start(influxDB, database);
         } else {
             LOG.warn("InfluxDB present but not configured, not storing timeseries data");
         }
@@ -62,7 +79,7 @@ public class InfluxDBStateStore implements TimeSeriesStore {
     @Override
     public void store(String itemId, String controllerId, String pluginId, String deviceId, String label, com.oberasoftware.home.api.types.Value value) {
         if(influxDB!= null) {
-            LOG.debug("Writing time series: {} to InfluxDB", controllerId);
+            LOG.debug("Buffering time series: {} for InfluxDB", controllerId);
 
             double convertedValue = 0;
             switch (value.getType()) {
@@ -84,36 +101,127 @@ public class InfluxDBStateStore implements TimeSeriesStore {
                     }
             }
 
-            Serie serie = new Serie.Builder(controllerId)
-                    .columns("time", "itemId", "pluginId", "deviceId", "label", "value")
-                    .values(System.currentTimeMillis(), itemId, pluginId, deviceId, label, convertedValue)
-                    .build();
-
-            this.influxDB.write(database, TimeUnit.MILLISECONDS, serie);
+            long time = System.currentTimeMillis();
+            influxDBWriter.write(InfluxDBPoint.valuePoint(controllerId, time, itemId, pluginId, deviceId,
+                    label, convertedValue));
+            rollupAggregator.add(controllerId, itemId, label, time, convertedValue);
         }
     }
 
     @Override
     public List<DataPoint> findDataPoints(String controllerId, String itemId, String label, GROUPING grouping, long time, TimeUnit unit) {
+        List<DataPoint> dataPoints = new ArrayList<>();
         if(influxDB != null) {
-            StringBuilder builder = new StringBuilder("select mean(value), label from ");
-            builder.append(controllerId).append(" group by time(").append(grouping.getTimeString()).append("), label");
-            builder.append(" where label='").append(label).append("' and itemId='").append(itemId);
-            long hours = TimeUnit.HOURS.convert(time, unit);
-            builder.append("' and time>now() - ").append(hours).append("h order asc");
+            long from = System.currentTimeMillis() - unit.toMillis(time);
+            long firstBucket = from - Math.floorMod(from, RollupAggregator.getBucketMillis(grouping));
 
-            LOG.debug("Firing InfluxDB Query: {}", builder.toString());
+            Optional<Long> rollupStart = findRollupStart(controllerId, itemId, label, grouping);
 
-            List<Serie> result = this.influxDB.query(database, builder.toString(), TimeUnit.MILLISECONDS);
-            if(!result.isEmpty()) {
-                Serie serie = result.get(0);
-                return serie.getRows().stream().map(r -> new InfluxDBDataPoint(itemId, r)).collect(Collectors.toList());
+            //rollups only exist since they were introduced, older history is taken from the raw values
+            if(!rollupStart.isPresent() || rollupStart.get() > firstBucket) {
+                dataPoints.addAll(findRawDataPoints(controllerId, itemId, label, grouping, TimeUnit.HOURS.convert(time, unit), rollupStart));
+            }
+
+            if(rollupStart.isPresent()) {
+                findRollups(controllerId, itemId, label, grouping, firstBucket).values()
+                        .forEach(r -> dataPoints.add(new RollupDataPoint(itemId, label, r)));
             }
         }
 
+        return dataPoints;
+    }
+
+    private List<DataPoint> findRawDataPoints(String controllerId, String itemId, String label, GROUPING grouping, long hours, Optional<Long> until) {
+        StringBuilder builder = new StringBuilder("select mean(value), label from ");
+        builder.append(controllerId).append(" group by time(").append(grouping.getTimeString()).append("), label");
+        builder.append(" where label='").append(label).append("' and itemId='").append(itemId);
+        builder.append("' and time>now() - ").append(hours).append("h");
+        until.ifPresent(u -> builder.append(" and time<").append(TimeUnit.MILLISECONDS.toSeconds(u)).append("s"));
+        builder.append(" order asc");
+
+        LOG.debug("Firing InfluxDB Query: {}", builder.toString());
+
+        List<Serie> result = this.influxDB.query(database, builder.toString(), TimeUnit.MILLISECONDS);
+        if(!result.isEmpty()) {
+            Serie serie = result.get(0);
+            return serie.getRows().stream().map(r -> new InfluxDBDataPoint(itemId, r)).collect(Collectors.toList());
+        }
         return new ArrayList<>();
     }
 
+    /**
+     * Finds the start of the first rollup of a series, when no rollup was written yet this is the start of
+     * the rollup still in memory.
+     */
+    private Optional<Long> findRollupStart(String controllerId, String itemId, String label, GROUPING grouping) {
+        String key = RollupAggregator.getRollupSerie(controllerId, grouping) + "/" + itemId + "/" + label;
+        Long start = rollupStarts.get(key);
+        if(start != null) {
+            return Optional.of(start);
+        }
+
+        String query = "select vcount from \"" + RollupAggregator.getRollupSerie(controllerId, grouping) +
+                "\" where label='" + label + "' and itemId='" + itemId + "' order asc limit 1";
+        LOG.debug("Firing InfluxDB rollup start Query: {}", query);
+        try {
+            List<Serie> result = this.influxDB.query(database, query, TimeUnit.MILLISECONDS);
+            if(!result.isEmpty() && !result.get(0).getRows().isEmpty()) {
+                start = ((Number) result.get(0).getRows().get(0).get("time")).longValue();
+            } else {
+                start = rollupAggregator.getOpenRollup(controllerId, itemId, label, grouping).map(Rollup::getStart).orElse(null);
+            }
+        } catch(RuntimeException e) {
+            LOG.debug("Unable to load rollup start, falling back to raw data: {}", e.getMessage());
+            return Optional.empty();
+        }
+
+        if(start != null) {
+            rollupStarts.putIfAbsent(key, start);
+        }
+        return Optional.ofNullable(start);
+    }
+
+    /**
+     * Loads the pre-aggregated rollups of the requested grouping starting at the given bucket, the rollup
+     * of the current bucket is taken from memory as it has not been written yet.
+     */
+    private TreeMap<Long, Rollup> findRollups(String controllerId, String itemId, String label, GROUPING grouping, long firstBucket) {
+        String query = "select vmin, vmax, vmean, vcount from \"" + RollupAggregator.getRollupSerie(controllerId, grouping) +
+                "\" where label='" + label + "' and itemId='" + itemId + "' and time>" +
+                (TimeUnit.MILLISECONDS.toSeconds(firstBucket) - 1) + "s order asc";
+        LOG.debug("Firing InfluxDB rollup Query: {}", query);
+
+        TreeMap<Long, Rollup> rollups = new TreeMap<>();
+        try {
+            List<Serie> result = this.influxDB.query(database, query, TimeUnit.MILLISECONDS);
+            if(!result.isEmpty()) {
+                //a bucket can have multiple rows when late values or a restart split its rollup, these are merged
+                result.get(0).getRows().forEach(r -> {
+                    Rollup rollup = new Rollup(((Number) r.get("time")).longValue(), ((Number) r.get("vmin")).doubleValue(),
+                            ((Number) r.get("vmax")).doubleValue(), ((Number) r.get("vmean")).doubleValue(),
+                            ((Number) r.get("vcount")).longValue());
+                    mergeRollup(rollups, rollup);
+                });
+            }
+        } catch(RuntimeException e) {
+            LOG.debug("Unable to load rollups, falling back to raw data: {}", e.getMessage());
+            rollups.clear();
+        }
+
+        rollupAggregator.getOpenRollup(controllerId, itemId, label, grouping)
+                .filter(r -> r.getStart() >= firstBucket)
+                .ifPresent(r -> mergeRollup(rollups, r));
+
+        return rollups;
+    }
+
+    private static void mergeRollup(Map<Long, Rollup> rollups, Rollup rollup) {
+        rollups.merge(rollup.getStart(), rollup, (a, b) -> {
+            a.merge(b);
+            return a;
+        });
+    }
+
     @Override
     public Map<String, State> getStates() {
         throw new RuntimeHomeAutomationException("Retrieval of state from InfluxDB not supported");
@@ -0,0 +1,284 @@
+package com.oberasoftware.home.state.influxdb;
+
+import org.influxdb.InfluxDB;
+import org.influxdb.dto.Serie;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Write-behind buffer for InfluxDB. Points are buffered in a bounded queue and written by a single
+ * writer thread, a batch is flushed when it reaches the batch size or when its oldest point reaches
+ * the maximum age. All points of a batch are written as one multi-row serie per serie name.
+ *
+ * When InfluxDB cannot be reached the batch is spilled to disk and replayed once a retry succeeds.
+ *
+ * @author renarj
+ */
+@Component
+public class InfluxDBWriter {
+    private static final Logger LOG = getLogger(InfluxDBWriter.class);
+
+    private static final long SHUTDOWN_TIMEOUT = 10000;
+
+    @Value("${influxdb.buffer.size:10000}")
+    private int bufferSize;
+
+    @Value("${influxdb.batch.size:500}")
+    private int batchSize;
+
+    @Value("${influxdb.flush.age:1000}")
+    private long flushAge;
+
+    @Value("${influxdb.retry.interval:30000}")
+    private long retryInterval;
+
+    @Value("${influxdb.spill.file:influxdb-spill.dat}")
+    private String spillFile;
+
+    @Value("${influxdb.spill.maxsize:52428800}")
+    private long maxSpillSize;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+    private volatile long lastFlushLatency;
+    private volatile long maxFlushLatency;
+
+    private InfluxDB influxDB;
+    private String database;
+    private BlockingQueue<InfluxDBPoint> buffer;
+    private Path spillPath;
+    private long nextRetry;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public synchronized void start(InfluxDB influxDB, String database) {
+        this.influxDB = influxDB;
+        this.database = database;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.spillPath = Paths.get(spillFile);
+        this.running = true;
+
+        LOG.info("Starting InfluxDB writer with buffer size: {}, batch size: {} and flush age: {} ms",
+                bufferSize, batchSize, flushAge);
+        writerThread = new Thread(this::writeLoop, "influxdb-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if(writerThread != null) {
+            LOG.info("Stopping InfluxDB writer, draining: {} buffered points", buffer.size());
+            //not interrupted, an interrupt during a spill closes the spill file and loses the points
+            running = false;
+            try {
+                writerThread.join(SHUTDOWN_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writerThread = null;
+        }
+    }
+
+    /**
+     * Buffers a point for writing, if the buffer is full the oldest buffered point is dropped
+     */
+    void write(InfluxDBPoint point) {
+        if(!running) {
+            LOG.debug("InfluxDB writer not running, ignoring point: {}", point);
+            return;
+        }
+
+        while(!buffer.offer(point)) {
+            if(buffer.poll() != null) {
+                dropped.incrementAndGet();
+                LOG.debug("InfluxDB buffer is full, dropping oldest point");
+            }
+        }
+    }
+
+    public InfluxDBWriterStats getStats() {
+        int depth = buffer != null ? buffer.size() : 0;
+        return new InfluxDBWriterStats(depth, bufferSize, lastFlushLatency, maxFlushLatency,
+                written.get(), dropped.get(), spilled.get(), failedWrites.get());
+    }
+
+    private void writeLoop() {
+        while(running || !buffer.isEmpty()) {
+            List<InfluxDBPoint> batch = nextBatch();
+            if(!batch.isEmpty()) {
+                flush(batch);
+            }
+        }
+        LOG.info("InfluxDB writer stopped");
+    }
+
+    private List<InfluxDBPoint> nextBatch() {
+        List<InfluxDBPoint> batch = new ArrayList<>(batchSize);
+        try {
+            InfluxDBPoint first = running ? buffer.poll(flushAge, TimeUnit.MILLISECONDS) : buffer.poll();
+            if(first != null) {
+                batch.add(first);
+
+                long deadline = first.getCreated() + flushAge;
+                while(batch.size() < batchSize) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    InfluxDBPoint point = running && remaining > 0 ? buffer.poll(remaining, TimeUnit.MILLISECONDS) : buffer.poll();
+                    if(point == null) {
+                        break;
+                    }
+                    batch.add(point);
+                }
+            }
+        } catch(InterruptedException e) {
+            LOG.debug("InfluxDB writer interrupted, flushing remaining points");
+            buffer.drainTo(batch, batchSize - batch.size());
+        }
+        return batch;
+    }
+
+    private void flush(List<InfluxDBPoint> batch) {
+        if(System.currentTimeMillis() < nextRetry || !replaySpill()) {
+            spill(batch);
+            return;
+        }
+
+        if(!writeBatch(batch)) {
+            spill(batch);
+        }
+    }
+
+    private boolean writeBatch(List<InfluxDBPoint> batch) {
+        Map<String, Serie.Builder> builders = new LinkedHashMap<>();
+        batch.forEach(p -> builders.computeIfAbsent(p.getSerie() + "/" + String.join(",", p.getColumns()),
+                k -> new Serie.Builder(p.getSerie()).columns(p.getColumns())).values(p.getValues()));
+        Serie[] series = builders.values().stream().map(Serie.Builder::build).toArray(Serie[]::new);
+
+        long start = System.currentTimeMillis();
+        try {
+            influxDB.write(database, TimeUnit.MILLISECONDS, series);
+        } catch(RuntimeException e) {
+            LOG.warn("Unable to write: {} points to InfluxDB, retrying in: {} ms reason: {}", batch.size(), retryInterval, e.getMessage());
+            failedWrites.incrementAndGet();
+            nextRetry = System.currentTimeMillis() + retryInterval;
+            return false;
+        }
+
+        long latency = System.currentTimeMillis() - start;
+        lastFlushLatency = latency;
+        if(latency > maxFlushLatency) {
+            maxFlushLatency = latency;
+        }
+        written.addAndGet(batch.size());
+        LOG.debug("Written: {} points in: {} series to InfluxDB in: {} ms", batch.size(), series.length, latency);
+
+        return true;
+    }
+
+    private void spill(List<InfluxDBPoint> batch) {
+        List<String> lines = new ArrayList<>(batch.size());
+        batch.forEach(p -> lines.add(p.toLine()));
+        appendSpill(lines);
+    }
+
+    private void appendSpill(List<String> lines) {
+        try {
+            if(Files.exists(spillPath) && Files.size(spillPath) >= maxSpillSize) {
+                LOG.warn("InfluxDB spill file: {} is full, dropping: {} points", spillPath, lines.size());
+                dropped.addAndGet(lines.size());
+                return;
+            }
+
+            try(BufferedWriter writer = Files.newBufferedWriter(spillPath, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for(String line : lines) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+            spilled.addAndGet(lines.size());
+        } catch(IOException e) {
+            LOG.error("Unable to spill points to: " + spillPath + ", dropping: " + lines.size() + " points", e);
+            dropped.addAndGet(lines.size());
+        }
+    }
+
+    /**
+     * Replays all points from the spill file
+     * @return True if there are no spilled points left, false if InfluxDB could not be written to
+     */
+    private boolean replaySpill() {
+        if(!Files.exists(spillPath)) {
+            return true;
+        }
+
+        Path replayPath = spillPath.resolveSibling(spillPath.getFileName() + ".replay");
+        try {
+            Files.move(spillPath, replayPath, StandardCopyOption.REPLACE_EXISTING);
+            LOG.info("Replaying spilled InfluxDB points from: {}", spillPath);
+
+            try(BufferedReader reader = Files.newBufferedReader(replayPath, StandardCharsets.UTF_8)) {
+                List<InfluxDBPoint> batch = new ArrayList<>(batchSize);
+                String line;
+                while((line = reader.readLine()) != null) {
+                    InfluxDBPoint.fromLine(line).ifPresent(batch::add);
+
+                    if(batch.size() >= batchSize) {
+                        if(!writeBatch(batch)) {
+                            respill(batch, reader);
+                            return false;
+                        }
+                        batch.clear();
+                    }
+                }
+                if(!batch.isEmpty() && !writeBatch(batch)) {
+                    respill(batch, reader);
+                    return false;
+                }
+            } finally {
+                Files.deleteIfExists(replayPath);
+            }
+        } catch(IOException e) {
+            LOG.error("Unable to replay spilled InfluxDB points from: " + spillPath, e);
+        }
+        return true;
+    }
+
+    private void respill(List<InfluxDBPoint> batch, BufferedReader reader) throws IOException {
+        List<String> lines = new ArrayList<>();
+        batch.forEach(p -> lines.add(p.toLine()));
+
+        String line;
+        while((line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+        //these points were already counted when first spilled
+        spilled.addAndGet(-lines.size());
+        appendSpill(lines);
+    }
+}
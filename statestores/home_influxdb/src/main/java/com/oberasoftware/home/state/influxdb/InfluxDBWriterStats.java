@@ -0,0 +1,81 @@
+package com.oberasoftware.home.state.influxdb;
+
+/**
+ * Point in time metrics of the buffered {@link InfluxDBWriter}
+ *
+ * @author renarj
+ */
+public class InfluxDBWriterStats {
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final long lastFlushLatencyMillis;
+    private final long maxFlushLatencyMillis;
+    private final long written;
+    private final long dropped;
+    private final long spilled;
+    private final long failedWrites;
+
+    public InfluxDBWriterStats(int queueDepth, int queueCapacity, long lastFlushLatencyMillis, long maxFlushLatencyMillis,
+                               long written, long dropped, long spilled, long failedWrites) {
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.lastFlushLatencyMillis = lastFlushLatencyMillis;
+        this.maxFlushLatencyMillis = maxFlushLatencyMillis;
+        this.written = written;
+        this.dropped = dropped;
+        this.spilled = spilled;
+        this.failedWrites = failedWrites;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getLastFlushLatencyMillis() {
+        return lastFlushLatencyMillis;
+    }
+
+    public long getMaxFlushLatencyMillis() {
+        return maxFlushLatencyMillis;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * @return The amount of points lost because the buffer or the spill file was full
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return The amount of points written to the spill file while InfluxDB was unreachable
+     */
+    public long getSpilled() {
+        return spilled;
+    }
+
+    public long getFailedWrites() {
+        return failedWrites;
+    }
+
+    @Override
+    public String toString() {
+        return "InfluxDBWriterStats{" +
+                "queueDepth=" + queueDepth +
+                ", queueCapacity=" + queueCapacity +
+                ", lastFlushLatencyMillis=" + lastFlushLatencyMillis +
+                ", maxFlushLatencyMillis=" + maxFlushLatencyMillis +
+                ", written=" + written +
+                ", dropped=" + dropped +
+                ", spilled=" + spilled +
+                ", failedWrites=" + failedWrites +
+                '}';
+    }
+}
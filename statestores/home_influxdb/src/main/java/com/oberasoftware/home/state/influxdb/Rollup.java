@@ -0,0 +1,77 @@
+package com.oberasoftware.home.state.influxdb;
+
+/**
+ * Aggregate of all values of a series within a single time bucket
+ *
+ * @author renarj
+ */
+class Rollup {
+    private final long start;
+    private double min = Double.MAX_VALUE;
+    private double max = -Double.MAX_VALUE;
+    private double sum;
+    private long count;
+
+    Rollup(long start) {
+        this.start = start;
+    }
+
+    Rollup(long start, double min, double max, double mean, long count) {
+        this.start = start;
+        this.min = min;
+        this.max = max;
+        this.sum = mean * count;
+        this.count = count;
+    }
+
+    void add(double value) {
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum += value;
+        count++;
+    }
+
+    void merge(Rollup rollup) {
+        min = Math.min(min, rollup.min);
+        max = Math.max(max, rollup.max);
+        sum += rollup.sum;
+        count += rollup.count;
+    }
+
+    Rollup copy() {
+        Rollup copy = new Rollup(start);
+        copy.merge(this);
+        return copy;
+    }
+
+    long getStart() {
+        return start;
+    }
+
+    double getMin() {
+        return min;
+    }
+
+    double getMax() {
+        return max;
+    }
+
+    double getMean() {
+        return count > 0 ? sum / count : 0;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "Rollup{" +
+                "start=" + start +
+                ", min=" + min +
+                ", max=" + max +
+                ", mean=" + getMean() +
+                ", count=" + count +
+                '}';
+    }
+}
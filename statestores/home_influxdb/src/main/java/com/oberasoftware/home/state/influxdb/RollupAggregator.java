@@ -0,0 +1,145 @@
+package com.oberasoftware.home.state.influxdb;
+
+import com.oberasoftware.home.api.managers.TimeSeriesStore.GROUPING;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Maintains minute, hour and day rollups (min/max/mean/count) of every stored series. The rollup of the
+ * current bucket is kept in memory and written to a separate rollup serie once a value for a later bucket
+ * arrives, so graphs over long periods do not have to aggregate the raw values.
+ *
+ * @author renarj
+ */
+@Component
+public class RollupAggregator {
+    private static final Logger LOG = getLogger(RollupAggregator.class);
+
+    private static final String[] ROLLUP_COLUMNS = new String[]{"time", "itemId", "label", "vmin", "vmax", "vmean", "vcount"};
+
+    @Autowired
+    private InfluxDBWriter influxDBWriter;
+
+    private final ConcurrentMap<RollupKey, Rollup> openRollups = new ConcurrentHashMap<>();
+
+    void add(String controllerId, String itemId, String label, long time, double value) {
+        for(GROUPING grouping : GROUPING.values()) {
+            long start = time - Math.floorMod(time, getBucketMillis(grouping));
+            RollupKey key = new RollupKey(controllerId, itemId, label, grouping);
+
+            Rollup[] closed = new Rollup[1];
+            openRollups.compute(key, (k, rollup) -> {
+                if(rollup == null || rollup.getStart() < start) {
+                    closed[0] = rollup;
+                    rollup = new Rollup(start);
+                } else if(rollup.getStart() > start) {
+                    //late value for an already closed bucket, written as a separate rollup and merged on query
+                    closed[0] = new Rollup(start);
+                    closed[0].add(value);
+                    return rollup;
+                }
+                rollup.add(value);
+                return rollup;
+            });
+
+            if(closed[0] != null) {
+                write(key, closed[0]);
+            }
+        }
+    }
+
+    Optional<Rollup> getOpenRollup(String controllerId, String itemId, String label, GROUPING grouping) {
+        Rollup[] open = new Rollup[1];
+        openRollups.computeIfPresent(new RollupKey(controllerId, itemId, label, grouping), (k, rollup) -> {
+            open[0] = rollup.copy();
+            return rollup;
+        });
+        return Optional.ofNullable(open[0]);
+    }
+
+    @PreDestroy
+    public void flush() {
+        LOG.info("Writing: {} open rollups", openRollups.size());
+        openRollups.keySet().forEach(k -> openRollups.computeIfPresent(k, (key, rollup) -> {
+            write(key, rollup);
+            return null;
+        }));
+    }
+
+    static String getRollupSerie(String controllerId, GROUPING grouping) {
+        return controllerId + ".rollup." + grouping.name().toLowerCase();
+    }
+
+    static long getBucketMillis(GROUPING grouping) {
+        switch(grouping) {
+            case DAY:
+                return TimeUnit.DAYS.toMillis(1);
+            case HOUR:
+                return TimeUnit.HOURS.toMillis(1);
+            case MINUTE:
+            default:
+                return TimeUnit.MINUTES.toMillis(1);
+        }
+    }
+
+    private void write(RollupKey key, Rollup rollup) {
+        LOG.debug("Writing rollup: {} for: {}", rollup, key);
+        influxDBWriter.write(new InfluxDBPoint(getRollupSerie(key.controllerId, key.grouping), ROLLUP_COLUMNS, rollup.getStart(),
+                rollup.getStart(), key.itemId, key.label, rollup.getMin(), rollup.getMax(), rollup.getMean(), rollup.getCount()));
+    }
+
+    private static final class RollupKey {
+        private final String controllerId;
+        private final String itemId;
+        private final String label;
+        private final GROUPING grouping;
+
+        private RollupKey(String controllerId, String itemId, String label, GROUPING grouping) {
+            this.controllerId = controllerId;
+            this.itemId = itemId;
+            this.label = label;
+            this.grouping = grouping;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            RollupKey rollupKey = (RollupKey) o;
+
+            if (!controllerId.equals(rollupKey.controllerId)) return false;
+            if (!itemId.equals(rollupKey.itemId)) return false;
+            if (!label.equals(rollupKey.label)) return false;
+            return grouping == rollupKey.grouping;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = controllerId.hashCode();
+            result = 31 * result + itemId.hashCode();
+            result = 31 * result + label.hashCode();
+            result = 31 * result + grouping.hashCode();
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "RollupKey{" +
+                    "controllerId='" + controllerId + '\'' +
+                    ", itemId='" + itemId + '\'' +
+                    ", label='" + label + '\'' +
+                    ", grouping=" + grouping +
+                    '}';
+        }
+    }
+}
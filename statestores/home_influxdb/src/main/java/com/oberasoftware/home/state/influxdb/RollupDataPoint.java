@@ -0,0 +1,60 @@
+package com.oberasoftware.home.state.influxdb;
+
+import com.oberasoftware.home.api.model.DataPoint;
+
+/**
+ * Data point backed by a pre-aggregated rollup, the value is the mean of the bucket
+ *
+ * @author renarj
+ */
+public class RollupDataPoint implements DataPoint {
+    private final String itemId;
+    private final String label;
+    private final double timestamp;
+    private final double value;
+    private final double min;
+    private final double max;
+    private final long count;
+
+    RollupDataPoint(String itemId, String label, Rollup rollup) {
+        this.itemId = itemId;
+        this.label = label;
+        this.timestamp = rollup.getStart();
+        this.value = rollup.getMean();
+        this.min = rollup.getMin();
+        this.max = rollup.getMax();
+        this.count = rollup.getCount();
+    }
+
+    @Override
+    public double getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String getItemId() {
+        return itemId;
+    }
+
+    @Override
+    public String getLabel() {
+        return label;
+    }
+
+    @Override
+    public double getValue() {
+        return value;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
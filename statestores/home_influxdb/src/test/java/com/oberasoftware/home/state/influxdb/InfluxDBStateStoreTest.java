@@ -0,0 +1,154 @@
+package com.oberasoftware.home.state.influxdb;
+
+import com.oberasoftware.home.api.managers.TimeSeriesStore.GROUPING;
+import com.oberasoftware.home.api.model.DataPoint;
+import org.influxdb.InfluxDB;
+import org.influxdb.dto.Serie;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author renarj
+ */
+public class InfluxDBStateStoreTest {
+    private static final String DATABASE = "homeautomation";
+    private static final String CONTROLLER = "controller1";
+    private static final String ITEM = "item1";
+    private static final String LABEL = "temperature";
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private InfluxDBStateStore stateStore;
+    private InfluxDB influxDB;
+
+    @Before
+    public void setUp() {
+        influxDB = mock(InfluxDB.class);
+        RollupAggregator rollupAggregator = new RollupAggregator();
+        ReflectionTestUtils.setField(rollupAggregator, "influxDBWriter", mock(InfluxDBWriter.class));
+
+        stateStore = new InfluxDBStateStore();
+        ReflectionTestUtils.setField(stateStore, "influxDB", influxDB);
+        ReflectionTestUtils.setField(stateStore, "database", DATABASE);
+        ReflectionTestUtils.setField(stateStore, "rollupAggregator", rollupAggregator);
+    }
+
+    @Test
+    public void rollupsCoveringPeriod() {
+        long firstBucket = currentHour() - 24 * HOUR;
+        mockRollupStart(firstBucket);
+        mockRollups(firstBucket, firstBucket + HOUR);
+
+        List<DataPoint> dataPoints = stateStore.findDataPoints(CONTROLLER, ITEM, LABEL, GROUPING.HOUR, 24, TimeUnit.HOURS);
+
+        assertThat(dataPoints.size(), is(2));
+        assertThat(dataPoints.get(0).getTimestamp(), is((double) firstBucket));
+        verify(influxDB, never()).query(eq(DATABASE), startsWith("select mean"), any(TimeUnit.class));
+    }
+
+    @Test
+    public void rawDataBeforeFirstRollup() {
+        long rollupStart = currentHour() - 2 * HOUR;
+        mockRollupStart(rollupStart);
+        mockRollups(rollupStart, rollupStart + HOUR);
+        mockRaw(rollupStart - 10 * HOUR, rollupStart - 5 * HOUR);
+
+        List<DataPoint> dataPoints = stateStore.findDataPoints(CONTROLLER, ITEM, LABEL, GROUPING.HOUR, 24, TimeUnit.HOURS);
+
+        assertThat(dataPoints.size(), is(4));
+        assertThat(dataPoints.get(0), instanceOf(InfluxDBDataPoint.class));
+        assertThat(dataPoints.get(0).getTimestamp(), is((double) (rollupStart - 10 * HOUR)));
+        assertThat(dataPoints.get(1).getTimestamp(), is((double) (rollupStart - 5 * HOUR)));
+        assertThat(dataPoints.get(2), instanceOf(RollupDataPoint.class));
+        assertThat(dataPoints.get(2).getTimestamp(), is((double) rollupStart));
+
+        verify(influxDB).query(eq(DATABASE), contains("time<" + TimeUnit.MILLISECONDS.toSeconds(rollupStart) + "s"), any(TimeUnit.class));
+    }
+
+    @Test
+    public void rawDataWithoutRollups() {
+        long start = currentHour() - 10 * HOUR;
+        when(influxDB.query(eq(DATABASE), startsWith("select vcount"), any(TimeUnit.class))).thenReturn(new ArrayList<>());
+        mockRaw(start);
+
+        List<DataPoint> dataPoints = stateStore.findDataPoints(CONTROLLER, ITEM, LABEL, GROUPING.HOUR, 24, TimeUnit.HOURS);
+
+        assertThat(dataPoints.size(), is(1));
+        assertThat(dataPoints.get(0).getTimestamp(), is((double) start));
+        verify(influxDB, never()).query(eq(DATABASE), startsWith("select vmin"), any(TimeUnit.class));
+    }
+
+    @Test
+    public void sparseSeriesWithEmptyFirstBucket() {
+        long firstBucket = currentHour() - 24 * HOUR;
+        mockRollupStart(firstBucket - 48 * HOUR);
+        mockRollups(firstBucket + 5 * HOUR, firstBucket + 12 * HOUR);
+
+        List<DataPoint> dataPoints = stateStore.findDataPoints(CONTROLLER, ITEM, LABEL, GROUPING.HOUR, 24, TimeUnit.HOURS);
+
+        assertThat(dataPoints.size(), is(2));
+        assertThat(dataPoints.get(0), instanceOf(RollupDataPoint.class));
+        assertThat(dataPoints.get(0).getTimestamp(), is((double) (firstBucket + 5 * HOUR)));
+        verify(influxDB, never()).query(eq(DATABASE), startsWith("select mean"), any(TimeUnit.class));
+    }
+
+    @Test
+    public void rollupStartLoadedOnce() {
+        long firstBucket = currentHour() - 24 * HOUR;
+        mockRollupStart(firstBucket);
+        mockRollups(firstBucket);
+
+        stateStore.findDataPoints(CONTROLLER, ITEM, LABEL, GROUPING.HOUR, 24, TimeUnit.HOURS);
+        stateStore.findDataPoints(CONTROLLER, ITEM, LABEL, GROUPING.HOUR, 24, TimeUnit.HOURS);
+
+        verify(influxDB, times(1)).query(eq(DATABASE), startsWith("select vcount"), any(TimeUnit.class));
+        verify(influxDB, times(2)).query(eq(DATABASE), startsWith("select vmin"), any(TimeUnit.class));
+    }
+
+    private void mockRollupStart(long start) {
+        Serie serie = new Serie.Builder(RollupAggregator.getRollupSerie(CONTROLLER, GROUPING.HOUR))
+                .columns("time", "vcount").values((double) start, 10.0).build();
+        when(influxDB.query(eq(DATABASE), startsWith("select vcount"), any(TimeUnit.class))).thenReturn(newArrayList(serie));
+    }
+
+    private void mockRollups(long... buckets) {
+        Serie.Builder builder = new Serie.Builder(RollupAggregator.getRollupSerie(CONTROLLER, GROUPING.HOUR))
+                .columns("time", "vmin", "vmax", "vmean", "vcount");
+        for(long bucket : buckets) {
+            builder.values((double) bucket, 1.0, 3.0, 2.0, 10.0);
+        }
+        when(influxDB.query(eq(DATABASE), startsWith("select vmin"), any(TimeUnit.class))).thenReturn(newArrayList(builder.build()));
+    }
+
+    private void mockRaw(long... buckets) {
+        Serie.Builder builder = new Serie.Builder(CONTROLLER).columns("time", "mean", "label");
+        for(long bucket : buckets) {
+            builder.values((double) bucket, 2.0, LABEL);
+        }
+        when(influxDB.query(eq(DATABASE), startsWith("select mean"), any(TimeUnit.class))).thenReturn(newArrayList(builder.build()));
+    }
+
+    private static long currentHour() {
+        long now = System.currentTimeMillis();
+        return now - now % HOUR;
+    }
+}
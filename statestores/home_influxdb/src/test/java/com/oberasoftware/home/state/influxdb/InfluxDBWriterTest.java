@@ -0,0 +1,166 @@
+package com.oberasoftware.home.state.influxdb;
+
+import org.influxdb.InfluxDB;
+import org.influxdb.dto.Serie;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * @author renarj
+ */
+public class InfluxDBWriterTest {
+    private static final String CONTROLLER = "controller1";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Map<String, Object>> writtenRows = new CopyOnWriteArrayList<>();
+    private volatile boolean failing;
+
+    private InfluxDBWriter writer;
+    private Path spillPath;
+
+    @Before
+    public void setUp() throws IOException {
+        spillPath = folder.getRoot().toPath().resolve("spill.dat");
+
+        writer = new InfluxDBWriter();
+        ReflectionTestUtils.setField(writer, "bufferSize", 100);
+        ReflectionTestUtils.setField(writer, "batchSize", 10);
+        ReflectionTestUtils.setField(writer, "flushAge", 20L);
+        ReflectionTestUtils.setField(writer, "retryInterval", 100L);
+        ReflectionTestUtils.setField(writer, "spillFile", spillPath.toString());
+        ReflectionTestUtils.setField(writer, "maxSpillSize", 1024L * 1024L);
+
+        InfluxDB influxDB = mock(InfluxDB.class);
+        doAnswer(invocation -> {
+            if(failing) {
+                throw new RuntimeException("InfluxDB unreachable");
+            }
+            for(Object argument : invocation.getArguments()) {
+                if(argument instanceof Serie) {
+                    writtenRows.addAll(((Serie) argument).getRows());
+                } else if(argument instanceof Serie[]) {
+                    for(Serie serie : (Serie[]) argument) {
+                        writtenRows.addAll(serie.getRows());
+                    }
+                }
+            }
+            return null;
+        }).when(influxDB).write(anyString(), any(TimeUnit.class), (Serie[]) anyVararg());
+
+        writer.start(influxDB, "homeautomation");
+    }
+
+    @After
+    public void tearDown() {
+        writer.stop();
+    }
+
+    @Test
+    public void writesBufferedPoints() throws Exception {
+        for(int i=0; i<25; i++) {
+            writer.write(point(i));
+        }
+
+        await(() -> writer.getStats().getWritten() == 25);
+        assertThat(writtenRows.size(), is(25));
+        assertThat(writer.getStats().getSpilled(), is(0l));
+        assertThat(Files.exists(spillPath), is(false));
+    }
+
+    @Test
+    public void spillsAndReplaysWhenUnreachable() throws Exception {
+        failing = true;
+        for(int i=0; i<5; i++) {
+            writer.write(point(i));
+        }
+
+        await(() -> writer.getStats().getSpilled() == 5);
+        assertThat(writer.getStats().getFailedWrites(), is(1l));
+        assertThat(Files.readAllLines(spillPath).size(), is(5));
+        assertThat(writtenRows.isEmpty(), is(true));
+
+        failing = false;
+        Thread.sleep(150);
+        writer.write(point(5));
+
+        await(() -> writer.getStats().getWritten() == 6);
+        assertThat(Files.exists(spillPath), is(false));
+        for(int i=0; i<6; i++) {
+            assertThat(((Number) writtenRows.get(i).get("value")).intValue(), is(i));
+        }
+    }
+
+    @Test
+    public void keepsSpilledPointsWhenReplayFails() throws Exception {
+        failing = true;
+        for(int i=0; i<3; i++) {
+            writer.write(point(i));
+        }
+        await(() -> writer.getStats().getSpilled() == 3);
+
+        Thread.sleep(150);
+        writer.write(point(3));
+
+        await(() -> writer.getStats().getFailedWrites() == 2);
+        await(() -> writer.getStats().getSpilled() == 4);
+        assertThat(Files.readAllLines(spillPath).size(), is(4));
+    }
+
+    @Test
+    public void stopSpillsBufferedPoints() throws Exception {
+        failing = true;
+        for(int i=0; i<3; i++) {
+            writer.write(point(i));
+        }
+        writer.stop();
+
+        assertThat(writer.getStats().getSpilled(), is(3l));
+        assertThat(Files.readAllLines(spillPath).size(), is(3));
+    }
+
+    @Test
+    public void pointLineRoundTrip() {
+        InfluxDBPoint point = InfluxDBPoint.valuePoint(CONTROLLER, 1000, "item1", "plugin1", "device1", "label", 12.5);
+        InfluxDBPoint parsed = InfluxDBPoint.fromLine(point.toLine()).get();
+
+        assertThat(parsed.getSerie(), is(CONTROLLER));
+        assertThat(parsed.getColumns(), is(point.getColumns()));
+        assertThat(parsed.getValues(), is(point.getValues()));
+        assertThat(InfluxDBPoint.fromLine("invalid").isPresent(), is(false));
+    }
+
+    private static InfluxDBPoint point(int value) {
+        return InfluxDBPoint.valuePoint(CONTROLLER, System.currentTimeMillis(), "item1", "plugin1", "device1", "label", value);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 5000;
+        while(!condition.getAsBoolean() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.getAsBoolean(), is(true));
+    }
+}
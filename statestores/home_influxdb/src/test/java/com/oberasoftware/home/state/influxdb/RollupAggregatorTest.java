@@ -0,0 +1,128 @@
+package com.oberasoftware.home.state.influxdb;
+
+import com.oberasoftware.home.api.managers.TimeSeriesStore.GROUPING;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author renarj
+ */
+public class RollupAggregatorTest {
+    private static final String CONTROLLER = "controller1";
+    private static final String ITEM = "item1";
+    private static final String LABEL = "temperature";
+
+    private static final long DAY_START = TimeUnit.DAYS.toMillis(16000);
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private RollupAggregator aggregator;
+    private InfluxDBWriter writer;
+
+    @Before
+    public void setUp() {
+        writer = mock(InfluxDBWriter.class);
+        aggregator = new RollupAggregator();
+        ReflectionTestUtils.setField(aggregator, "influxDBWriter", writer);
+    }
+
+    @Test
+    public void aggregatesValuesOfBucket() {
+        aggregator.add(CONTROLLER, ITEM, LABEL, DAY_START + 1000, 1.0);
+        aggregator.add(CONTROLLER, ITEM, LABEL, DAY_START + 2000, 5.0);
+        aggregator.add(CONTROLLER, ITEM, LABEL, DAY_START + 3000, 3.0);
+
+        for(GROUPING grouping : GROUPING.values()) {
+            Rollup rollup = aggregator.getOpenRollup(CONTROLLER, ITEM, LABEL, grouping).get();
+            assertThat(rollup.getStart(), is(DAY_START));
+            assertThat(rollup.getMin(), is(1.0));
+            assertThat(rollup.getMax(), is(5.0));
+            assertThat(rollup.getMean(), is(3.0));
+            assertThat(rollup.getCount(), is(3l));
+        }
+        verify(writer, never()).write(any(InfluxDBPoint.class));
+    }
+
+    @Test
+    public void writesClosedBucket() {
+        aggregator.add(CONTROLLER, ITEM, LABEL, DAY_START + 1000, 2.0);
+        aggregator.add(CONTROLLER, ITEM, LABEL, DAY_START + 2000, 4.0);
+        aggregator.add(CONTROLLER, ITEM, LABEL, DAY_START + MINUTE + 1000, 10.0);
+
+        ArgumentCaptor<InfluxDBPoint> captor = ArgumentCaptor.forClass(InfluxDBPoint.class);
+        verify(writer, times(1)).write(captor.capture());
+
+        InfluxDBPoint point = captor.getValue();
+        assertThat(point.getSerie(), is("controller1.rollup.minute"));
+        assertThat(point.getValues(), is(new Object[]{DAY_START, ITEM, LABEL, 2.0, 4.0, 3.0, 2l}));
+
+        assertThat(aggregator.getOpenRollup(CONTROLLER, ITEM, LABEL, GROUPING.MINUTE).get().getStart(), is(DAY_START + MINUTE));
+        assertThat(aggregator.getOpenRollup(CONTROLLER, ITEM, LABEL, GROUPING.HOUR).get().getCount(), is(3l));
+    }
+
+    @Test
+    public void writesLateValueSeparately() {
+        aggregator.add(CONTROLLER, ITEM, LABEL, DAY_START + MINUTE, 10.0);
+        aggregator.add(CONTROLLER, ITEM, LABEL, DAY_START + 1000, 2.0);
+
+        ArgumentCaptor<InfluxDBPoint> captor = ArgumentCaptor.forClass(InfluxDBPoint.class);
+        verify(writer, times(1)).write(captor.capture());
+        assertThat(captor.getValue().getValues(), is(new Object[]{DAY_START, ITEM, LABEL, 2.0, 2.0, 2.0, 1l}));
+
+        Rollup open = aggregator.getOpenRollup(CONTROLLER, ITEM, LABEL, GROUPING.MINUTE).get();
+        assertThat(open.getStart(), is(DAY_START + MINUTE));
+        assertThat(open.getCount(), is(1l));
+    }
+
+    @Test
+    public void keepsSeriesApart() {
+        aggregator.add(CONTROLLER, ITEM, LABEL, DAY_START, 1.0);
+        aggregator.add(CONTROLLER, ITEM, "humidity", DAY_START, 50.0);
+        aggregator.add(CONTROLLER, "item2", LABEL, DAY_START, 20.0);
+
+        assertThat(aggregator.getOpenRollup(CONTROLLER, ITEM, LABEL, GROUPING.MINUTE).get().getMean(), is(1.0));
+        assertThat(aggregator.getOpenRollup(CONTROLLER, ITEM, "humidity", GROUPING.MINUTE).get().getMean(), is(50.0));
+        assertThat(aggregator.getOpenRollup(CONTROLLER, "item2", LABEL, GROUPING.MINUTE).get().getMean(), is(20.0));
+        assertThat(aggregator.getOpenRollup(CONTROLLER, "item3", LABEL, GROUPING.MINUTE).isPresent(), is(false));
+    }
+
+    @Test
+    public void openRollupIsACopy() {
+        aggregator.add(CONTROLLER, ITEM, LABEL, DAY_START, 1.0);
+        aggregator.getOpenRollup(CONTROLLER, ITEM, LABEL, GROUPING.MINUTE).get().add(100.0);
+
+        assertThat(aggregator.getOpenRollup(CONTROLLER, ITEM, LABEL, GROUPING.MINUTE).get().getCount(), is(1l));
+    }
+
+    @Test
+    public void flushWritesOpenRollups() {
+        aggregator.add(CONTROLLER, ITEM, LABEL, DAY_START, 1.0);
+        aggregator.flush();
+
+        ArgumentCaptor<InfluxDBPoint> captor = ArgumentCaptor.forClass(InfluxDBPoint.class);
+        verify(writer, times(GROUPING.values().length)).write(captor.capture());
+        List<InfluxDBPoint> points = captor.getAllValues();
+        assertThat(points.stream().map(InfluxDBPoint::getSerie).sorted().toArray(), is(new Object[]{
+                "controller1.rollup.day", "controller1.rollup.hour", "controller1.rollup.minute"}));
+        assertThat(aggregator.getOpenRollup(CONTROLLER, ITEM, LABEL, GROUPING.MINUTE).isPresent(), is(false));
+    }
+
+    @Test
+    public void bucketSizes() {
+        assertThat(RollupAggregator.getBucketMillis(GROUPING.MINUTE), is(MINUTE));
+        assertThat(RollupAggregator.getBucketMillis(GROUPING.HOUR), is(TimeUnit.HOURS.toMillis(1)));
+        assertThat(RollupAggregator.getBucketMillis(GROUPING.DAY), is(TimeUnit.DAYS.toMillis(1)));
+    }
+}
@@ -0,0 +1,166 @@
+package com.oberasoftware.home.state.file;
+
+import com.oberasoftware.home.api.managers.StateStore;
+import com.oberasoftware.home.api.model.State;
+import com.oberasoftware.home.api.model.StateItem;
+import com.oberasoftware.home.api.model.Status;
+import com.oberasoftware.home.core.model.ImmutableState;
+import com.oberasoftware.home.core.model.StateItemImpl;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * State store that keeps the last value of every item label in a local state file, so the state
+ * manager can restore the state of all items directly after a restart. Updates are appended to a
+ * journal which is flushed periodically, a new checkpoint is written on an interval or when the
+ * journal becomes too large. Checkpoints are always written by the scheduler thread, so storing a
+ * value never writes the full state.
+ *
+ * @author renarj
+ */
+@Component
+public class FileStateStore implements StateStore {
+    private static final Logger LOG = getLogger(FileStateStore.class);
+
+    @Value("${statefile.path:state}")
+    private String path;
+
+    @Value("${statefile.flush.interval:1000}")
+    private long flushInterval;
+
+    @Value("${statefile.checkpoint.interval:300000}")
+    private long checkpointInterval;
+
+    @Value("${statefile.checkpoint.records:10000}")
+    private long checkpointRecords;
+
+    private final Object lock = new Object();
+
+    private final AtomicBoolean checkpointRequested = new AtomicBoolean();
+
+    private final ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+
+    private StateFile stateFile;
+    private Map<String, Map<String, com.oberasoftware.home.api.types.Value>> states = new HashMap<>();
+
+    @PostConstruct
+    public void initialise() throws IOException {
+        long start = System.currentTimeMillis();
+        stateFile = new StateFile(Paths.get(path));
+        states = stateFile.load();
+        LOG.info("Loaded state of: {} items from: {} in: {} ms", states.size(), Paths.get(path).toAbsolutePath(),
+                System.currentTimeMillis() - start);
+
+        scheduledExecutorService.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        scheduledExecutorService.scheduleWithFixedDelay(this::checkpoint, checkpointInterval, checkpointInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduledExecutorService.shutdown();
+        checkpoint();
+
+        synchronized (lock) {
+            try {
+                stateFile.close();
+            } catch(IOException e) {
+                LOG.error("Unable to close state file", e);
+            }
+        }
+    }
+
+    @Override
+    public void store(String itemId, String controllerId, String pluginId, String deviceId, String label, com.oberasoftware.home.api.types.Value value) {
+        synchronized (lock) {
+            states.computeIfAbsent(itemId, k -> new HashMap<>()).put(label, value);
+            try {
+                stateFile.append(itemId, label, value);
+            } catch(IOException e) {
+                LOG.error("Unable to journal state of item: " + itemId + " and label: " + label, e);
+            }
+
+            if(stateFile.getJournalRecords() >= checkpointRecords) {
+                requestCheckpoint();
+            }
+        }
+    }
+
+    private void requestCheckpoint() {
+        if(checkpointRequested.compareAndSet(false, true)) {
+            LOG.debug("State journal reached: {} records, requesting checkpoint", checkpointRecords);
+            try {
+                scheduledExecutorService.execute(this::checkpoint);
+            } catch(RejectedExecutionException e) {
+                LOG.debug("State store is stopping, checkpoint is written on shutdown");
+            }
+        }
+    }
+
+    @Override
+    public Map<String, State> getStates() {
+        Map<String, State> result = new HashMap<>();
+        synchronized (lock) {
+            states.forEach((itemId, values) -> result.put(itemId, toState(itemId, values)));
+        }
+        return result;
+    }
+
+    @Override
+    public State getState(String itemId) {
+        synchronized (lock) {
+            Map<String, com.oberasoftware.home.api.types.Value> values = states.get(itemId);
+            return values != null ? toState(itemId, values) : null;
+        }
+    }
+
+    @Override
+    public SUPPORTED_OPERATIONS getSupportedOperations() {
+        return SUPPORTED_OPERATIONS.READWRITE;
+    }
+
+    public void flush() {
+        synchronized (lock) {
+            try {
+                stateFile.flush();
+            } catch(IOException e) {
+                LOG.error("Unable to flush state journal", e);
+            }
+        }
+    }
+
+    public void checkpoint() {
+        synchronized (lock) {
+            checkpointRequested.set(false);
+            long start = System.currentTimeMillis();
+            try {
+                stateFile.checkpoint(states);
+                LOG.debug("Written state checkpoint of: {} items in: {} ms", states.size(), System.currentTimeMillis() - start);
+            } catch(IOException e) {
+                LOG.error("Unable to write state checkpoint", e);
+            }
+        }
+    }
+
+    private static State toState(String itemId, Map<String, com.oberasoftware.home.api.types.Value> values) {
+        List<StateItem> stateItems = new ArrayList<>(values.size());
+        values.forEach((label, value) -> stateItems.add(new StateItemImpl(label, value)));
+        return new ImmutableState(itemId, Status.UNKNOWN, stateItems);
+    }
+}
@@ -0,0 +1,256 @@
+package com.oberasoftware.home.state.file;
+
+import com.oberasoftware.home.api.types.VALUE_TYPE;
+import com.oberasoftware.home.api.types.Value;
+import com.oberasoftware.home.core.types.ValueImpl;
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Binary state file consisting of a checkpoint containing the state of all items and a journal containing
+ * the updates since the checkpoint. Every journal record is checksummed, so a partially written record at
+ * the end of the journal is ignored when loading.
+ *
+ * This class is not thread safe.
+ *
+ * @author renarj
+ */
+class StateFile {
+    private static final Logger LOG = getLogger(StateFile.class);
+
+    private static final int MAGIC = 0x48415354;
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_RECORD_SIZE = 1024 * 1024;
+
+    private static final String CHECKPOINT_FILE = "state.checkpoint";
+    private static final String JOURNAL_FILE = "state.journal";
+
+    private static final byte LONG = 'L';
+    private static final byte INTEGER = 'I';
+    private static final byte DOUBLE = 'D';
+    private static final byte STRING = 'S';
+
+    private final Path checkpointPath;
+    private final Path journalPath;
+
+    private DataOutputStream journal;
+    private long journalRecords;
+
+    StateFile(Path directory) {
+        this.checkpointPath = directory.resolve(CHECKPOINT_FILE);
+        this.journalPath = directory.resolve(JOURNAL_FILE);
+    }
+
+    /**
+     * Loads the checkpoint and replays the journal on top of it. The loaded state is written as a new checkpoint,
+     * so a partially written record at the end of the journal is not followed by new records.
+     * @return The state of all items indexed on item id and label
+     */
+    Map<String, Map<String, Value>> load() throws IOException {
+        Files.createDirectories(checkpointPath.getParent());
+
+        Map<String, Map<String, Value>> states = new HashMap<>();
+        if(Files.exists(checkpointPath)) {
+            try {
+                readCheckpoint(states);
+            } catch(IOException e) {
+                LOG.error("Unable to read state checkpoint: " + checkpointPath + ", only replaying the journal", e);
+            }
+        }
+        if(Files.exists(journalPath)) {
+            long records = replayJournal(states);
+            LOG.debug("Replayed: {} records from state journal: {}", records, journalPath);
+        }
+
+        checkpoint(states);
+        return states;
+    }
+
+    void append(String itemId, String label, Value value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeUTF(itemId);
+        record.writeUTF(label);
+        writeValue(record, value);
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+
+        journal.writeInt(bytes.size());
+        journal.writeInt((int) crc.getValue());
+        bytes.writeTo(journal);
+        journalRecords++;
+    }
+
+    void flush() throws IOException {
+        journal.flush();
+    }
+
+    long getJournalRecords() {
+        return journalRecords;
+    }
+
+    /**
+     * Writes a new checkpoint with the given states and starts an empty journal. The checkpoint is first written
+     * to a temporary file, so a failure during the checkpoint leaves the previous checkpoint and journal intact.
+     */
+    void checkpoint(Map<String, Map<String, Value>> states) throws IOException {
+        Path tempPath = checkpointPath.resolveSibling(CHECKPOINT_FILE + ".tmp");
+        try(FileOutputStream fileOutput = new FileOutputStream(tempPath.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(fileOutput), new CRC32());
+            DataOutputStream output = new DataOutputStream(checked);
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(states.size());
+            for(Map.Entry<String, Map<String, Value>> item : states.entrySet()) {
+                output.writeUTF(item.getKey());
+                output.writeInt(item.getValue().size());
+                for(Map.Entry<String, Value> label : item.getValue().entrySet()) {
+                    output.writeUTF(label.getKey());
+                    writeValue(output, label.getValue());
+                }
+            }
+            output.flush();
+            long crc = checked.getChecksum().getValue();
+            output.writeLong(crc);
+            output.flush();
+            fileOutput.getFD().sync();
+        }
+        Files.move(tempPath, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        close();
+        journal = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(journalPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)));
+        journalRecords = 0;
+    }
+
+    void close() throws IOException {
+        if(journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    private void readCheckpoint(Map<String, Map<String, Value>> states) throws IOException {
+        try(InputStream fileInput = Files.newInputStream(checkpointPath)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(fileInput), new CRC32());
+            DataInputStream input = new DataInputStream(checked);
+            if(input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+                throw new IOException("State checkpoint: " + checkpointPath + " has an unknown format");
+            }
+
+            Map<String, Map<String, Value>> checkpoint = new HashMap<>();
+            int items = input.readInt();
+            for(int i=0; i<items; i++) {
+                String itemId = input.readUTF();
+                int labels = input.readInt();
+                Map<String, Value> values = new HashMap<>(labels * 2);
+                for(int j=0; j<labels; j++) {
+                    values.put(input.readUTF(), readValue(input));
+                }
+                checkpoint.put(itemId, values);
+            }
+
+            long crc = checked.getChecksum().getValue();
+            if(input.readLong() != crc) {
+                throw new IOException("State checkpoint: " + checkpointPath + " is corrupt");
+            }
+            states.putAll(checkpoint);
+        }
+    }
+
+    private long replayJournal(Map<String, Map<String, Value>> states) throws IOException {
+        long records = 0;
+        try(DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalPath)))) {
+            while(true) {
+                byte[] bytes;
+                int expectedCrc;
+                try {
+                    int length = input.readInt();
+                    expectedCrc = input.readInt();
+                    if(length < 0 || length > MAX_RECORD_SIZE) {
+                        LOG.warn("State journal: {} contains an invalid record after: {} records, ignoring remainder", journalPath, records);
+                        break;
+                    }
+                    bytes = new byte[length];
+                    input.readFully(bytes);
+                } catch(EOFException e) {
+                    break;
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+                if((int) crc.getValue() != expectedCrc) {
+                    LOG.warn("State journal: {} contains a corrupt record after: {} records, ignoring remainder", journalPath, records);
+                    break;
+                }
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(bytes));
+                String itemId = record.readUTF();
+                String label = record.readUTF();
+                states.computeIfAbsent(itemId, k -> new HashMap<>()).put(label, readValue(record));
+                records++;
+            }
+        } catch(IOException | RuntimeException e) {
+            LOG.warn("Unable to fully replay state journal: {} after: {} records reason: {}", journalPath, records, e.getMessage());
+        }
+        return records;
+    }
+
+    private static void writeValue(DataOutputStream output, Value value) throws IOException {
+        output.writeByte(value.getType().ordinal());
+
+        Object raw = value.getValue();
+        if(raw instanceof Long) {
+            output.writeByte(LONG);
+            output.writeLong((Long) raw);
+        } else if(raw instanceof Integer) {
+            output.writeByte(INTEGER);
+            output.writeInt((Integer) raw);
+        } else if(raw instanceof Double) {
+            output.writeByte(DOUBLE);
+            output.writeDouble((Double) raw);
+        } else {
+            output.writeByte(STRING);
+            output.writeUTF(value.asString());
+        }
+    }
+
+    private static Value readValue(DataInputStream input) throws IOException {
+        VALUE_TYPE type = VALUE_TYPE.values()[input.readByte()];
+        byte tag = input.readByte();
+        switch(tag) {
+            case LONG:
+                return new ValueImpl(type, input.readLong());
+            case INTEGER:
+                return new ValueImpl(type, input.readInt());
+            case DOUBLE:
+                return new ValueImpl(type, input.readDouble());
+            case STRING:
+                return new ValueImpl(type, input.readUTF());
+            default:
+                throw new IOException("Unknown value encoding: " + tag);
+        }
+    }
+}
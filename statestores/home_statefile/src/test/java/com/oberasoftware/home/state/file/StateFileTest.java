@@ -0,0 +1,128 @@
+package com.oberasoftware.home.state.file;
+
+import com.oberasoftware.home.api.types.VALUE_TYPE;
+import com.oberasoftware.home.api.types.Value;
+import com.oberasoftware.home.core.types.ValueImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author renarj
+ */
+public class StateFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCheckpointAndJournal() throws IOException {
+        Path directory = folder.newFolder().toPath();
+
+        StateFile stateFile = new StateFile(directory);
+        Map<String, Map<String, Value>> states = stateFile.load();
+        assertThat(states.isEmpty(), is(true));
+
+        stateFile.append("item1", "temperature", new ValueImpl(VALUE_TYPE.DECIMAL, 21.5));
+        stateFile.append("item1", "on-off", new ValueImpl(VALUE_TYPE.STRING, "on"));
+        stateFile.append("item2", "power", new ValueImpl(VALUE_TYPE.NUMBER, 100l));
+        stateFile.flush();
+
+        states = new StateFile(directory).load();
+        assertThat(states.size(), is(2));
+        assertThat(states.get("item1").get("temperature"), is(new ValueImpl(VALUE_TYPE.DECIMAL, 21.5)));
+        assertThat(states.get("item1").get("on-off"), is(new ValueImpl(VALUE_TYPE.STRING, "on")));
+        assertThat(states.get("item2").get("power"), is(new ValueImpl(VALUE_TYPE.NUMBER, 100l)));
+
+        states.get("item2").put("power", new ValueImpl(VALUE_TYPE.NUMBER, 5));
+        stateFile.checkpoint(states);
+        stateFile.append("item2", "power", new ValueImpl(VALUE_TYPE.NUMBER, 200l));
+        stateFile.close();
+
+        states = new StateFile(directory).load();
+        assertThat(states.get("item1").get("temperature"), is(new ValueImpl(VALUE_TYPE.DECIMAL, 21.5)));
+        assertThat(states.get("item2").get("power"), is(new ValueImpl(VALUE_TYPE.NUMBER, 200l)));
+    }
+
+    @Test
+    public void testPartialJournalRecord() throws IOException {
+        Path directory = folder.newFolder().toPath();
+
+        StateFile stateFile = new StateFile(directory);
+        stateFile.load();
+        stateFile.append("item1", "power", new ValueImpl(VALUE_TYPE.NUMBER, 10l));
+        stateFile.append("item1", "power", new ValueImpl(VALUE_TYPE.NUMBER, 20l));
+        stateFile.close();
+
+        Path journal = directory.resolve("state.journal");
+        byte[] bytes = Files.readAllBytes(journal);
+        Files.write(journal, Arrays.copyOf(bytes, bytes.length - 3), StandardOpenOption.TRUNCATE_EXISTING);
+
+        stateFile = new StateFile(directory);
+        Map<String, Map<String, Value>> states = stateFile.load();
+        assertThat(states.get("item1").get("power"), is(new ValueImpl(VALUE_TYPE.NUMBER, 10l)));
+
+        stateFile.append("item1", "power", new ValueImpl(VALUE_TYPE.NUMBER, 30l));
+        stateFile.close();
+
+        states = new StateFile(directory).load();
+        assertThat(states.get("item1").get("power"), is(new ValueImpl(VALUE_TYPE.NUMBER, 30l)));
+    }
+
+    @Test
+    public void testCorruptJournalRecord() throws IOException {
+        Path directory = folder.newFolder().toPath();
+
+        StateFile stateFile = new StateFile(directory);
+        stateFile.load();
+        stateFile.append("item1", "power", new ValueImpl(VALUE_TYPE.NUMBER, 10l));
+        stateFile.append("item1", "power", new ValueImpl(VALUE_TYPE.NUMBER, 20l));
+        stateFile.append("item2", "power", new ValueImpl(VALUE_TYPE.NUMBER, 30l));
+        stateFile.close();
+
+        //flip a bit in the value of the second record, its checksum no longer matches
+        Path journal = directory.resolve("state.journal");
+        byte[] bytes = Files.readAllBytes(journal);
+        int recordSize = bytes.length / 3;
+        bytes[2 * recordSize - 1] ^= 0x01;
+        Files.write(journal, bytes, StandardOpenOption.TRUNCATE_EXISTING);
+
+        stateFile = new StateFile(directory);
+        Map<String, Map<String, Value>> states = stateFile.load();
+        assertThat(states.get("item1").get("power"), is(new ValueImpl(VALUE_TYPE.NUMBER, 10l)));
+        assertThat(states.containsKey("item2"), is(false));
+
+        stateFile.append("item2", "power", new ValueImpl(VALUE_TYPE.NUMBER, 40l));
+        stateFile.close();
+
+        states = new StateFile(directory).load();
+        assertThat(states.get("item1").get("power"), is(new ValueImpl(VALUE_TYPE.NUMBER, 10l)));
+        assertThat(states.get("item2").get("power"), is(new ValueImpl(VALUE_TYPE.NUMBER, 40l)));
+    }
+
+    @Test
+    public void testTruncatedRecordHeader() throws IOException {
+        Path directory = folder.newFolder().toPath();
+
+        StateFile stateFile = new StateFile(directory);
+        stateFile.load();
+        stateFile.append("item1", "power", new ValueImpl(VALUE_TYPE.NUMBER, 10l));
+        stateFile.close();
+
+        Path journal = directory.resolve("state.journal");
+        Files.write(journal, new byte[] {0, 0}, StandardOpenOption.APPEND);
+
+        Map<String, Map<String, Value>> states = new StateFile(directory).load();
+        assertThat(states.size(), is(1));
+        assertThat(states.get("item1").get("power"), is(new ValueImpl(VALUE_TYPE.NUMBER, 10l)));
+    }
+}
@@ -0,0 +1,96 @@
+package com.oberasoftware.home.state.timeseries;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bit level reading and writing on top of a byte buffer, bits are stored most significant bit first
+ * starting at a fixed byte offset in the buffer.
+ *
+ * @author renarj
+ */
+class BitBuffer {
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final long capacity;
+
+    private long position;
+
+    BitBuffer(ByteBuffer buffer, int offset, long position) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.capacity = (long) (buffer.capacity() - offset) * 8;
+        this.position = position;
+    }
+
+    long getPosition() {
+        return position;
+    }
+
+    long remaining() {
+        return capacity - position;
+    }
+
+    void writeBit(boolean bit) {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * Writes the lowest bits of the given value
+     * @param value The value to write
+     * @param bits The amount of bits to write, between 0 and 64
+     */
+    void writeBits(long value, int bits) {
+        while(bits > 0) {
+            int index = offset + (int) (position >>> 3);
+            int bitOffset = (int) (position & 7);
+            int free = 8 - bitOffset;
+            int take = Math.min(free, bits);
+
+            int chunk = (int) ((value >>> (bits - take)) & ((1 << take) - 1));
+            int current = bitOffset == 0 ? 0 : buffer.get(index) & 0xFF;
+            buffer.put(index, (byte) (current | (chunk << (free - take))));
+
+            position += take;
+            bits -= take;
+        }
+    }
+
+    boolean readBit() {
+        return readBits(1) == 1;
+    }
+
+    /**
+     * Reads an unsigned value of the given amount of bits
+     * @param bits The amount of bits to read, between 0 and 64
+     */
+    long readBits(int bits) {
+        long value = 0;
+        while(bits > 0) {
+            int index = offset + (int) (position >>> 3);
+            int bitOffset = (int) (position & 7);
+            int available = 8 - bitOffset;
+            int take = Math.min(available, bits);
+
+            int current = buffer.get(index) & 0xFF;
+            int chunk = (current >>> (available - take)) & ((1 << take) - 1);
+            value = (value << take) | chunk;
+
+            position += take;
+            bits -= take;
+        }
+        return value;
+    }
+
+    /**
+     * Clears any bits in the current byte beyond the current position, used to discard
+     * partially written data after a crash
+     */
+    void clearTail() {
+        int bitOffset = (int) (position & 7);
+        if(bitOffset != 0) {
+            int index = offset + (int) (position >>> 3);
+            int mask = 0xFF << (8 - bitOffset);
+            buffer.put(index, (byte) (buffer.get(index) & mask));
+        }
+    }
+}
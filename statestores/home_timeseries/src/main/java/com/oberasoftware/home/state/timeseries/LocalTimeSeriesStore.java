@@ -0,0 +1,261 @@
+package com.oberasoftware.home.state.timeseries;
+
+import com.oberasoftware.home.api.exceptions.RuntimeHomeAutomationException;
+import com.oberasoftware.home.api.managers.TimeSeriesStore;
+import com.oberasoftware.home.api.model.DataPoint;
+import com.oberasoftware.home.api.model.State;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Embedded time series store, every (controller, item, label) series is stored in its own directory
+ * of compressed memory mapped segments that are partitioned on time. Partitions older than the
+ * retention period are removed.
+ *
+ * @author renarj
+ */
+@Component
+public class LocalTimeSeriesStore implements TimeSeriesStore {
+    private static final Logger LOG = getLogger(LocalTimeSeriesStore.class);
+
+    private static final String ENCODING = "UTF-8";
+
+    private static final long RETENTION_CHECK_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    @Value("${timeseries.path:timeseries}")
+    private String path;
+
+    @Value("${timeseries.partition.hours:24}")
+    private int partitionHours;
+
+    @Value("${timeseries.retention.days:30}")
+    private int retentionDays;
+
+    @Value("${timeseries.segment.size:1048576}")
+    private int segmentSize;
+
+    private final ConcurrentMap<SeriesKey, Series> series = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+
+    private Path basePath;
+
+    @PostConstruct
+    public void initialise() throws IOException {
+        basePath = Paths.get(path);
+        LOG.info("Starting local time series store in: {} with partitions of: {} hours and retention of: {} days",
+                basePath.toAbsolutePath(), partitionHours, retentionDays);
+
+        Files.createDirectories(basePath);
+        loadSeries();
+
+        scheduledExecutorService.scheduleAtFixedRate(this::purgeExpired, 0, RETENTION_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduledExecutorService.shutdown();
+        series.values().forEach(Series::close);
+    }
+
+    @Override
+    public void store(String itemId, String controllerId, String pluginId, String deviceId, String label, com.oberasoftware.home.api.types.Value value) {
+        double convertedValue = 0;
+        switch (value.getType()) {
+            case NUMBER:
+                Object v = value.getValue();
+                if (v instanceof Long) {
+                    convertedValue = value.<Long>getValue();
+                } else if (v instanceof Integer) {
+                    convertedValue = value.<Integer>getValue();
+                }
+                break;
+            case DECIMAL:
+                convertedValue = value.getValue();
+                break;
+            case STRING:
+            default:
+                if (value.asString().equals("on")) {
+                    convertedValue = 1.0;
+                }
+        }
+
+        try {
+            getSeries(new SeriesKey(controllerId, itemId, label)).append(System.currentTimeMillis(), convertedValue);
+        } catch(IOException e) {
+            LOG.error("Unable to store time series point for item: " + itemId + " and label: " + label, e);
+        }
+    }
+
+    @Override
+    public List<DataPoint> findDataPoints(String controllerId, String itemId, String label, GROUPING grouping, long time, TimeUnit unit) {
+        long to = System.currentTimeMillis();
+        long from = to - unit.toMillis(time);
+
+        Series itemSeries = series.get(new SeriesKey(controllerId, itemId, label));
+        if(itemSeries == null) {
+            return new ArrayList<>();
+        }
+
+        long bucketMillis = getBucketMillis(grouping);
+        Map<Long, double[]> buckets = new TreeMap<>();
+        try {
+            itemSeries.scan(from, to, (t, v) -> {
+                double[] bucket = buckets.computeIfAbsent(t - Math.floorMod(t, bucketMillis), b -> new double[2]);
+                bucket[0] += v;
+                bucket[1]++;
+            });
+        } catch(IOException e) {
+            throw new RuntimeHomeAutomationException("Unable to read time series of item: " + itemId + " and label: " + label, e);
+        }
+
+        List<DataPoint> dataPoints = new ArrayList<>(buckets.size());
+        buckets.forEach((t, b) -> dataPoints.add(new TimeSeriesDataPoint(itemId, label, t, b[0] / b[1])));
+        return dataPoints;
+    }
+
+    @Override
+    public Map<String, State> getStates() {
+        throw new RuntimeHomeAutomationException("Retrieval of state from local time series store not supported");
+    }
+
+    @Override
+    public State getState(String itemId) {
+        throw new RuntimeHomeAutomationException("Retrieval of state from local time series store not supported");
+    }
+
+    @Override
+    public SUPPORTED_OPERATIONS getSupportedOperations() {
+        return SUPPORTED_OPERATIONS.WRITE;
+    }
+
+    public void purgeExpired() {
+        long before = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays);
+        series.forEach((k, s) -> {
+            try {
+                int removed = s.purge(before);
+                if(removed > 0) {
+                    LOG.info("Removed: {} expired segments of series: {}", removed, k);
+                }
+            } catch(IOException | RuntimeException e) {
+                //a failure must not escape, the scheduled retention check would not run again
+                LOG.error("Unable to remove expired segments of series: " + k, e);
+            }
+        });
+    }
+
+    private static long getBucketMillis(GROUPING grouping) {
+        switch(grouping) {
+            case DAY:
+                return TimeUnit.DAYS.toMillis(1);
+            case HOUR:
+                return TimeUnit.HOURS.toMillis(1);
+            case MINUTE:
+            default:
+                return TimeUnit.MINUTES.toMillis(1);
+        }
+    }
+
+    private Series getSeries(SeriesKey key) {
+        return series.computeIfAbsent(key, k -> new Series(basePath.resolve(encode(k.controllerId))
+                .resolve(encode(k.itemId)).resolve(encode(k.label)), TimeUnit.HOURS.toMillis(partitionHours), segmentSize));
+    }
+
+    private void loadSeries() throws IOException {
+        for(Path controllerDir : listDirectories(basePath)) {
+            for(Path itemDir : listDirectories(controllerDir)) {
+                for(Path labelDir : listDirectories(itemDir)) {
+                    SeriesKey key = new SeriesKey(decode(controllerDir), decode(itemDir), decode(labelDir));
+                    Series s = getSeries(key);
+                    s.load();
+                }
+            }
+        }
+        LOG.info("Loaded: {} time series", series.size());
+    }
+
+    private static List<Path> listDirectories(Path directory) throws IOException {
+        List<Path> directories = new ArrayList<>();
+        try(DirectoryStream<Path> paths = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            paths.forEach(directories::add);
+        }
+        return directories;
+    }
+
+    private static String encode(String name) {
+        try {
+            return URLEncoder.encode(name, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeHomeAutomationException("Unable to encode series name: " + name, e);
+        }
+    }
+
+    private static String decode(Path path) {
+        try {
+            return URLDecoder.decode(path.getFileName().toString(), ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeHomeAutomationException("Unable to decode series name: " + path, e);
+        }
+    }
+
+    private static final class SeriesKey {
+        private final String controllerId;
+        private final String itemId;
+        private final String label;
+
+        private SeriesKey(String controllerId, String itemId, String label) {
+            this.controllerId = controllerId;
+            this.itemId = itemId;
+            this.label = label;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            SeriesKey seriesKey = (SeriesKey) o;
+
+            if (!controllerId.equals(seriesKey.controllerId)) return false;
+            if (!itemId.equals(seriesKey.itemId)) return false;
+            return Objects.equals(label, seriesKey.label);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = controllerId.hashCode();
+            result = 31 * result + itemId.hashCode();
+            result = 31 * result + Objects.hashCode(label);
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return controllerId + "/" + itemId + "/" + label;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.oberasoftware.home.state.timeseries;
+
+/**
+ * Compresses time series points using delta-of-delta encoding for the timestamps and XOR encoding
+ * for the values. Both encoding and decoding track the same state, so a codec that decoded all points
+ * of a segment can continue appending to it.
+ *
+ * @author renarj
+ */
+class PointCodec {
+    /**
+     * Upper bound of the bits needed to encode a single point
+     */
+    static final int MAX_POINT_BITS = 160;
+
+    private static final int NO_BLOCK = -1;
+
+    private int count;
+    private long lastTimestamp;
+    private long lastDelta;
+    private long lastValueBits;
+    private int leading = NO_BLOCK;
+    private int trailing;
+
+    private long timestamp;
+    private double value;
+
+    int getCount() {
+        return count;
+    }
+
+    long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * @return The timestamp of the last decoded point
+     */
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return The value of the last decoded point
+     */
+    double getValue() {
+        return value;
+    }
+
+    void encode(BitBuffer bits, long timestamp, double value) {
+        long valueBits = Double.doubleToLongBits(value);
+
+        if(count == 0) {
+            bits.writeBits(timestamp, 64);
+            bits.writeBits(valueBits, 64);
+        } else {
+            long delta = timestamp - lastTimestamp;
+            encodeDeltaOfDelta(bits, delta - lastDelta);
+            encodeValue(bits, valueBits ^ lastValueBits);
+            lastDelta = delta;
+        }
+
+        lastTimestamp = timestamp;
+        lastValueBits = valueBits;
+        count++;
+    }
+
+    /**
+     * Decodes the next point, the result is available through {@link #getTimestamp()} and {@link #getValue()}
+     */
+    void decode(BitBuffer bits) {
+        if(count == 0) {
+            lastTimestamp = bits.readBits(64);
+            lastValueBits = bits.readBits(64);
+        } else {
+            long delta = lastDelta + decodeDeltaOfDelta(bits);
+            lastValueBits = lastValueBits ^ decodeValue(bits);
+            lastTimestamp = lastTimestamp + delta;
+            lastDelta = delta;
+        }
+        count++;
+
+        timestamp = lastTimestamp;
+        value = Double.longBitsToDouble(lastValueBits);
+    }
+
+    private void encodeDeltaOfDelta(BitBuffer bits, long dod) {
+        if(dod == 0) {
+            bits.writeBits(0b0, 1);
+        } else if(fits(dod, 7)) {
+            bits.writeBits(0b10, 2);
+            bits.writeBits(dod, 7);
+        } else if(fits(dod, 9)) {
+            bits.writeBits(0b110, 3);
+            bits.writeBits(dod, 9);
+        } else if(fits(dod, 12)) {
+            bits.writeBits(0b1110, 4);
+            bits.writeBits(dod, 12);
+        } else {
+            bits.writeBits(0b1111, 4);
+            bits.writeBits(dod, 64);
+        }
+    }
+
+    private long decodeDeltaOfDelta(BitBuffer bits) {
+        if(!bits.readBit()) {
+            return 0;
+        } else if(!bits.readBit()) {
+            return signed(bits.readBits(7), 7);
+        } else if(!bits.readBit()) {
+            return signed(bits.readBits(9), 9);
+        } else if(!bits.readBit()) {
+            return signed(bits.readBits(12), 12);
+        } else {
+            return bits.readBits(64);
+        }
+    }
+
+    private void encodeValue(BitBuffer bits, long xor) {
+        if(xor == 0) {
+            bits.writeBit(false);
+            return;
+        }
+        bits.writeBit(true);
+
+        int leadingZeros = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailingZeros = Long.numberOfTrailingZeros(xor);
+        if(leading != NO_BLOCK && leadingZeros >= leading && trailingZeros >= trailing) {
+            bits.writeBit(false);
+            bits.writeBits(xor >>> trailing, 64 - leading - trailing);
+        } else {
+            int significant = 64 - leadingZeros - trailingZeros;
+            bits.writeBit(true);
+            bits.writeBits(leadingZeros, 5);
+            bits.writeBits(significant - 1, 6);
+            bits.writeBits(xor >>> trailingZeros, significant);
+
+            leading = leadingZeros;
+            trailing = trailingZeros;
+        }
+    }
+
+    private long decodeValue(BitBuffer bits) {
+        if(!bits.readBit()) {
+            return 0;
+        }
+
+        if(bits.readBit()) {
+            leading = (int) bits.readBits(5);
+            int significant = (int) bits.readBits(6) + 1;
+            trailing = 64 - leading - significant;
+        }
+        return bits.readBits(64 - leading - trailing) << trailing;
+    }
+
+    private static boolean fits(long value, int bits) {
+        long limit = 1L << (bits - 1);
+        return value >= -limit && value < limit;
+    }
+
+    private static long signed(long value, int bits) {
+        long limit = 1L << (bits - 1);
+        return value >= limit ? value - (1L << bits) : value;
+    }
+}
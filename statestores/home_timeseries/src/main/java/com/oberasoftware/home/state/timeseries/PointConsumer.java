@@ -0,0 +1,11 @@
+package com.oberasoftware.home.state.timeseries;
+
+/**
+ * Receives decoded time series points
+ *
+ * @author renarj
+ */
+@FunctionalInterface
+interface PointConsumer {
+    void accept(long timestamp, double value);
+}
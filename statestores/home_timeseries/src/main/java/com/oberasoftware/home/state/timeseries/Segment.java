@@ -0,0 +1,163 @@
+package com.oberasoftware.home.state.timeseries;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * An append-only memory mapped file containing the compressed points of a single series within
+ * one time partition. The header holds the amount of points and the amount of committed bits,
+ * anything written beyond the committed bits is ignored when the segment is opened again.
+ *
+ * @author renarj
+ */
+class Segment {
+    private static final Logger LOG = getLogger(Segment.class);
+
+    private static final int MAGIC = 0x48545331;
+    private static final int VERSION = 1;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int PARTITION_OFFSET = 8;
+    private static final int COUNT_OFFSET = 16;
+    private static final int BITS_OFFSET = 20;
+    static final int HEADER_SIZE = 32;
+
+    private final Path file;
+    private final long partitionStart;
+    private final MappedByteBuffer buffer;
+    private final PointCodec codec;
+    private final BitBuffer writer;
+
+    private Segment(Path file, long partitionStart, MappedByteBuffer buffer, PointCodec codec, BitBuffer writer) {
+        this.file = file;
+        this.partitionStart = partitionStart;
+        this.buffer = buffer;
+        this.codec = codec;
+        this.writer = writer;
+    }
+
+    static Segment create(Path file, long partitionStart, int size) throws IOException {
+        MappedByteBuffer buffer = map(file, size);
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putLong(PARTITION_OFFSET, partitionStart);
+        buffer.putInt(COUNT_OFFSET, 0);
+        buffer.putLong(BITS_OFFSET, 0);
+
+        return new Segment(file, partitionStart, buffer, new PointCodec(), new BitBuffer(buffer, HEADER_SIZE, 0));
+    }
+
+    static Segment open(Path file) throws IOException {
+        MappedByteBuffer buffer = map(file, 0);
+        if(buffer.capacity() < HEADER_SIZE || buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException("Not a valid time series segment: " + file);
+        }
+
+        PointCodec codec = new PointCodec();
+        BitBuffer reader = new BitBuffer(buffer, HEADER_SIZE, 0);
+        int count = buffer.getInt(COUNT_OFFSET);
+        for(int i=0; i<count; i++) {
+            codec.decode(reader);
+        }
+
+        BitBuffer writer = new BitBuffer(buffer, HEADER_SIZE, reader.getPosition());
+        writer.clearTail();
+
+        return new Segment(file, buffer.getLong(PARTITION_OFFSET), buffer, codec, writer);
+    }
+
+    private static MappedByteBuffer map(Path file, int size) throws IOException {
+        try(RandomAccessFile randomAccessFile = new RandomAccessFile(file.toFile(), "rw")) {
+            if(size > 0) {
+                randomAccessFile.setLength(size);
+            }
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, randomAccessFile.length());
+        }
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    long getPartitionStart() {
+        return partitionStart;
+    }
+
+    int getCount() {
+        return codec.getCount();
+    }
+
+    long getLastTimestamp() {
+        return codec.getLastTimestamp();
+    }
+
+    /**
+     * Appends a point to the segment
+     * @return True if the point was appended, false if the segment is full
+     */
+    boolean append(long timestamp, double value) {
+        if(writer.remaining() < PointCodec.MAX_POINT_BITS) {
+            return false;
+        }
+
+        codec.encode(writer, timestamp, value);
+        buffer.putLong(BITS_OFFSET, writer.getPosition());
+        buffer.putInt(COUNT_OFFSET, codec.getCount());
+        return true;
+    }
+
+    /**
+     * Decodes all points of this segment with a timestamp between from (inclusive) and to (exclusive)
+     */
+    void scan(long from, long to, PointConsumer consumer) {
+        PointCodec decoder = new PointCodec();
+        BitBuffer reader = new BitBuffer(buffer, HEADER_SIZE, 0);
+        int count = codec.getCount();
+        for(int i=0; i<count; i++) {
+            decoder.decode(reader);
+
+            long timestamp = decoder.getTimestamp();
+            if(timestamp >= from && timestamp < to) {
+                consumer.accept(timestamp, decoder.getValue());
+            }
+        }
+    }
+
+    void flush() {
+        buffer.force();
+    }
+
+    /**
+     * Flushes and releases the mapping of this segment, the segment can no longer be used afterwards
+     */
+    void close() {
+        buffer.force();
+        unmap(buffer);
+    }
+
+    /**
+     * A mapping is otherwise only released when the buffer is garbage collected, which keeps the file
+     * mapped after it has been deleted.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if(cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch(ReflectiveOperationException | RuntimeException e) {
+            LOG.debug("Unable to unmap segment, mapping is released on garbage collection: {}", e.getMessage());
+        }
+    }
+}
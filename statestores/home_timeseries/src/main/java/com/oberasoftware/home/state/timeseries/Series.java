@@ -0,0 +1,174 @@
+package com.oberasoftware.home.state.timeseries;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * All segments of a single (controller, item, label) series. Segments are partitioned on time, a partition
+ * can consist of multiple segments if a single segment is not large enough to hold all its points.
+ *
+ * @author renarj
+ */
+class Series {
+    private static final Logger LOG = getLogger(Series.class);
+
+    private static final String SEGMENT_EXTENSION = ".seg";
+
+    private final Path directory;
+    private final long partitionMillis;
+    private final int segmentSize;
+
+    private final List<SegmentFile> segments = new ArrayList<>();
+
+    Series(Path directory, long partitionMillis, int segmentSize) {
+        this.directory = directory;
+        this.partitionMillis = partitionMillis;
+        this.segmentSize = segmentSize;
+    }
+
+    synchronized void load() throws IOException {
+        if(Files.isDirectory(directory)) {
+            try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_EXTENSION)) {
+                files.forEach(f -> SegmentFile.parse(f).ifPresent(segments::add));
+            }
+            segments.sort(SegmentFile.ORDER);
+            LOG.debug("Loaded: {} segments for series: {}", segments.size(), directory);
+        }
+    }
+
+    synchronized void append(long timestamp, double value) throws IOException {
+        long partitionStart = timestamp - Math.floorMod(timestamp, partitionMillis);
+
+        SegmentFile segmentFile = findLastSegment(partitionStart);
+        if(segmentFile == null || !getSegment(segmentFile).append(timestamp, value)) {
+            int sequence = segmentFile != null ? segmentFile.sequence + 1 : 0;
+            segmentFile = createSegment(partitionStart, sequence);
+            segmentFile.segment.append(timestamp, value);
+        }
+    }
+
+    /**
+     * Scans all points with a timestamp between from (inclusive) and to (exclusive), only the segments
+     * of the partitions overlapping the requested period are read.
+     */
+    synchronized void scan(long from, long to, PointConsumer consumer) throws IOException {
+        for(SegmentFile segmentFile : segments) {
+            if(segmentFile.partitionStart < to && segmentFile.partitionStart + partitionMillis > from) {
+                getSegment(segmentFile).scan(from, to, consumer);
+            }
+        }
+    }
+
+    /**
+     * Removes all segments of partitions that ended before the given time, open segments are unmapped
+     * before their file is deleted.
+     * @return The amount of removed segments
+     */
+    synchronized int purge(long before) throws IOException {
+        int removed = 0;
+        Iterator<SegmentFile> iterator = segments.iterator();
+        while(iterator.hasNext()) {
+            SegmentFile segmentFile = iterator.next();
+            if(segmentFile.partitionStart + partitionMillis <= before) {
+                LOG.debug("Removing expired segment: {}", segmentFile.file);
+                iterator.remove();
+                segmentFile.close();
+                Files.deleteIfExists(segmentFile.file);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    synchronized boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    synchronized void flush() {
+        segments.stream().filter(s -> s.segment != null).forEach(s -> s.segment.flush());
+    }
+
+    synchronized void close() {
+        segments.forEach(SegmentFile::close);
+    }
+
+    private SegmentFile findLastSegment(long partitionStart) {
+        for(int i=segments.size() - 1; i>=0; i--) {
+            SegmentFile segmentFile = segments.get(i);
+            if(segmentFile.partitionStart == partitionStart) {
+                return segmentFile;
+            } else if(segmentFile.partitionStart < partitionStart) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    private SegmentFile createSegment(long partitionStart, int sequence) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(partitionStart + "-" + sequence + SEGMENT_EXTENSION);
+        LOG.debug("Creating new segment: {}", file);
+
+        SegmentFile segmentFile = new SegmentFile(file, partitionStart, sequence);
+        segmentFile.segment = Segment.create(file, partitionStart, segmentSize);
+        segments.add(segmentFile);
+        segments.sort(SegmentFile.ORDER);
+
+        return segmentFile;
+    }
+
+    private Segment getSegment(SegmentFile segmentFile) throws IOException {
+        if(segmentFile.segment == null) {
+            segmentFile.segment = Segment.open(segmentFile.file);
+        }
+        return segmentFile.segment;
+    }
+
+    private static class SegmentFile {
+        private static final Comparator<SegmentFile> ORDER = Comparator.<SegmentFile>comparingLong(s -> s.partitionStart)
+                .thenComparingInt(s -> s.sequence);
+
+        private final Path file;
+        private final long partitionStart;
+        private final int sequence;
+
+        private Segment segment;
+
+        private SegmentFile(Path file, long partitionStart, int sequence) {
+            this.file = file;
+            this.partitionStart = partitionStart;
+            this.sequence = sequence;
+        }
+
+        private void close() {
+            if(segment != null) {
+                segment.close();
+                segment = null;
+            }
+        }
+
+        private static Optional<SegmentFile> parse(Path file) {
+            String name = file.getFileName().toString();
+            String[] parts = name.substring(0, name.length() - SEGMENT_EXTENSION.length()).split("-");
+            if(parts.length == 2) {
+                try {
+                    return Optional.of(new SegmentFile(file, Long.parseLong(parts[0]), Integer.parseInt(parts[1])));
+                } catch(NumberFormatException e) {
+                    LOG.warn("Ignoring unknown file: {} in series directory", file);
+                }
+            }
+            return Optional.empty();
+        }
+    }
+}
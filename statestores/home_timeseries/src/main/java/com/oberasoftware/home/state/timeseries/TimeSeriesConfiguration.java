@@ -0,0 +1,13 @@
+package com.oberasoftware.home.state.timeseries;
+
+import com.oberasoftware.home.api.extensions.SpringExtension;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author renarj
+ */
+@Configuration
+@ComponentScan
+public class TimeSeriesConfiguration implements SpringExtension {
+}
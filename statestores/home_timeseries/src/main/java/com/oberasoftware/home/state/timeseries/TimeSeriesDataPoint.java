@@ -0,0 +1,50 @@
+package com.oberasoftware.home.state.timeseries;
+
+import com.oberasoftware.home.api.model.DataPoint;
+
+/**
+ * @author renarj
+ */
+public class TimeSeriesDataPoint implements DataPoint {
+    private final String itemId;
+    private final String label;
+    private final double timestamp;
+    private final double value;
+
+    public TimeSeriesDataPoint(String itemId, String label, double timestamp, double value) {
+        this.itemId = itemId;
+        this.label = label;
+        this.timestamp = timestamp;
+        this.value = value;
+    }
+
+    @Override
+    public double getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String getItemId() {
+        return itemId;
+    }
+
+    @Override
+    public String getLabel() {
+        return label;
+    }
+
+    @Override
+    public double getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "TimeSeriesDataPoint{" +
+                "itemId='" + itemId + '\'' +
+                ", label='" + label + '\'' +
+                ", timestamp=" + timestamp +
+                ", value=" + value +
+                '}';
+    }
+}
@@ -0,0 +1,103 @@
+package com.oberasoftware.home.state.timeseries;
+
+import com.oberasoftware.home.api.managers.TimeSeriesStore.GROUPING;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author renarj
+ */
+public class LocalTimeSeriesStoreTest {
+    private static final long PARTITION = TimeUnit.HOURS.toMillis(1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LocalTimeSeriesStore store;
+    private Path basePath;
+
+    @Before
+    public void setUp() throws IOException {
+        basePath = folder.newFolder().toPath();
+
+        store = new LocalTimeSeriesStore();
+        ReflectionTestUtils.setField(store, "path", basePath.toString());
+        ReflectionTestUtils.setField(store, "partitionHours", 1);
+        ReflectionTestUtils.setField(store, "retentionDays", 1);
+        ReflectionTestUtils.setField(store, "segmentSize", 4096);
+    }
+
+    @After
+    public void tearDown() {
+        store.shutdown();
+    }
+
+    @Test
+    public void retentionRemovesMappedSegment() throws IOException {
+        long now = System.currentTimeMillis();
+        Path directory = createSeries("item1", now - TimeUnit.DAYS.toMillis(3), now - PARTITION);
+
+        store.initialise();
+        //reading maps the expired segment before retention runs
+        store.findDataPoints("controller1", "item1", "on-off", GROUPING.HOUR, 4, TimeUnit.DAYS);
+        store.purgeExpired();
+
+        assertThat(countSegments(directory), is(1L));
+        assertThat(store.findDataPoints("controller1", "item1", "on-off", GROUPING.HOUR, 4, TimeUnit.DAYS).size(), is(1));
+    }
+
+    @Test
+    public void retentionContinuesAfterFailure() throws IOException {
+        long now = System.currentTimeMillis();
+        Path directory = createSeries("item1", now - TimeUnit.DAYS.toMillis(3));
+        createSeries("item2", now - TimeUnit.DAYS.toMillis(3));
+
+        store.initialise();
+        Series failing = new Series(basePath, PARTITION, 4096) {
+            @Override
+            synchronized int purge(long before) {
+                throw new IllegalStateException("Purge failure");
+            }
+        };
+        getSeries().replaceAll((k, s) -> k.toString().contains("item2") ? failing : s);
+
+        store.purgeExpired();
+
+        assertThat(countSegments(directory), is(0L));
+    }
+
+    private Path createSeries(String itemId, long... timestamps) throws IOException {
+        Path directory = basePath.resolve("controller1").resolve(itemId).resolve("on-off");
+        Series series = new Series(directory, PARTITION, 4096);
+        for(long timestamp : timestamps) {
+            series.append(timestamp, 1.0);
+        }
+        series.close();
+        return directory;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Object, Series> getSeries() {
+        return (Map<Object, Series>) ReflectionTestUtils.getField(store, "series");
+    }
+
+    private long countSegments(Path directory) throws IOException {
+        try(Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.oberasoftware.home.state.timeseries;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author renarj
+ */
+public class SegmentTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAppendAndScan() throws IOException {
+        Path file = folder.newFile().toPath();
+        Segment segment = Segment.create(file, 0, 64 * 1024);
+
+        List<long[]> expected = new ArrayList<>();
+        Random random = new Random(42);
+        long time = 1445000000000L;
+        for(int i=0; i<1000; i++) {
+            //mix of regular intervals, jitter, large gaps and out of order points
+            time += i % 100 == 0 ? random.nextInt(100000000) - 1000 : 1000 + random.nextInt(50);
+            double value = i % 10 == 0 ? random.nextDouble() * 1000 : 21.5 + (i % 3);
+
+            assertThat(segment.append(time, value), is(true));
+            expected.add(new long[]{time, Double.doubleToLongBits(value)});
+        }
+
+        assertPoints(segment, expected);
+        assertPoints(Segment.open(file), expected);
+    }
+
+    @Test
+    public void testReopenAndAppend() throws IOException {
+        Path file = folder.newFile().toPath();
+        Segment segment = Segment.create(file, 0, 4096);
+        segment.append(1000, 1.0);
+        segment.append(2000, 2.0);
+        segment.flush();
+
+        Segment reopened = Segment.open(file);
+        assertThat(reopened.getCount(), is(2));
+        assertThat(reopened.getLastTimestamp(), is(2000L));
+        reopened.append(3000, 3.0);
+
+        List<Double> values = new ArrayList<>();
+        Segment.open(file).scan(0, Long.MAX_VALUE, (t, v) -> values.add(v));
+        assertThat(values.size(), is(3));
+        assertThat(values.get(2), is(3.0));
+    }
+
+    @Test
+    public void testSegmentFull() throws IOException {
+        Segment segment = Segment.create(folder.newFile().toPath(), 0, Segment.HEADER_SIZE + 64);
+
+        int appended = 0;
+        while(segment.append(appended * 1000L, appended * 1.1)) {
+            appended++;
+        }
+        assertThat(segment.getCount(), is(appended));
+
+        List<Long> timestamps = new ArrayList<>();
+        segment.scan(0, Long.MAX_VALUE, (t, v) -> timestamps.add(t));
+        assertThat(timestamps.size(), is(appended));
+    }
+
+    private void assertPoints(Segment segment, List<long[]> expected) {
+        List<long[]> actual = new ArrayList<>();
+        segment.scan(Long.MIN_VALUE, Long.MAX_VALUE, (t, v) -> actual.add(new long[]{t, Double.doubleToLongBits(v)}));
+
+        assertThat(actual.size(), is(expected.size()));
+        for(int i=0; i<expected.size(); i++) {
+            assertThat(actual.get(i)[0], is(expected.get(i)[0]));
+            assertThat(actual.get(i)[1], is(expected.get(i)[1]));
+        }
+    }
+}
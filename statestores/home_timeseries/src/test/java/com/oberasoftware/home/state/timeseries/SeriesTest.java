@@ -0,0 +1,82 @@
+package com.oberasoftware.home.state.timeseries;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author renarj
+ */
+public class SeriesTest {
+    private static final long PARTITION = TimeUnit.HOURS.toMillis(1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPartitionedScan() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        Series series = new Series(directory, PARTITION, 4096);
+        for(long t=0; t<3 * PARTITION; t+=TimeUnit.MINUTES.toMillis(1)) {
+            series.append(t, t / 1000.0);
+        }
+        assertThat(countSegments(directory), is(3L));
+
+        List<Long> timestamps = new ArrayList<>();
+        series.scan(PARTITION + TimeUnit.MINUTES.toMillis(30), 2 * PARTITION, (t, v) -> timestamps.add(t));
+        assertThat(timestamps.size(), is(30));
+        assertThat(timestamps.get(0), is(PARTITION + TimeUnit.MINUTES.toMillis(30)));
+    }
+
+    @Test
+    public void testRollOverFullSegment() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        Series series = new Series(directory, PARTITION, Segment.HEADER_SIZE + 128);
+        for(int i=0; i<100; i++) {
+            series.append(i * 1000L, Math.random());
+        }
+        assertThat(countSegments(directory) > 1, is(true));
+
+        Series reloaded = new Series(directory, PARTITION, Segment.HEADER_SIZE + 128);
+        reloaded.load();
+        reloaded.append(100 * 1000L, 1.0);
+
+        List<Long> timestamps = new ArrayList<>();
+        reloaded.scan(0, PARTITION, (t, v) -> timestamps.add(t));
+        assertThat(timestamps.size(), is(101));
+        assertThat(timestamps.get(100), is(100 * 1000L));
+    }
+
+    @Test
+    public void testPurge() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        Series series = new Series(directory, PARTITION, 4096);
+        series.append(10, 1.0);
+        series.append(PARTITION + 10, 2.0);
+
+        assertThat(series.purge(PARTITION), is(1));
+        assertThat(countSegments(directory), is(1L));
+
+        List<Double> values = new ArrayList<>();
+        series.scan(0, Long.MAX_VALUE, (t, v) -> values.add(v));
+        assertThat(values.size(), is(1));
+        assertThat(values.get(0), is(2.0));
+    }
+
+    private long countSegments(Path directory) throws IOException {
+        try(Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}